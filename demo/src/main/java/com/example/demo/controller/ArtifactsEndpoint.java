@@ -0,0 +1,29 @@
+package com.example.demo.controller;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.service.FhirValidatorService;
+
+/**
+ * Management-Endpunkt ({@code /actuator/fhirartifacts}) mit den aktiven Versionen der
+ * Profile, CodeSystems und ValueSets sowie dem Stand des letzten Neuladens.
+ */
+@Component
+@Endpoint(id = "fhirartifacts")
+public class ArtifactsEndpoint {
+
+    private final FhirValidatorService fhirValidatorService;
+
+    public ArtifactsEndpoint(FhirValidatorService fhirValidatorService) {
+        this.fhirValidatorService = fhirValidatorService;
+    }
+
+    @ReadOperation
+    public Map<String, Object> artifacts() {
+        return fhirValidatorService.getArtifactStatus();
+    }
+}
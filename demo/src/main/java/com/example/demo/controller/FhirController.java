@@ -1,25 +1,54 @@
 package com.example.demo.controller;
 
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
 import org.hl7.fhir.r4.model.DocumentReference;
+import org.hl7.fhir.r4.model.OperationOutcome.IssueType;
 import org.hl7.fhir.r4.model.Patient;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import ca.uhn.fhir.parser.DataFormatException;
 import ca.uhn.fhir.parser.IParser;
 
-import com.example.demo.service.ProprietaryApiService;
+import com.example.demo.service.AsyncJobService;
+import com.example.demo.service.BinaryStoreService;
+import com.example.demo.service.BulkheadService;
 import com.example.demo.service.DocumentReferenceService;
+import com.example.demo.service.LargePayloadService;
+import com.example.demo.service.PatientDispatchService;
 import com.example.demo.service.PatientService;
+import com.example.demo.service.ReadStoreService;
 import com.example.demo.dto.DocumentDTO;
 import com.example.demo.dto.PersonDTO;
+import com.example.demo.mapping.ValueConversionException;
 
 import com.example.demo.service.FhirResponseService;
+import com.example.demo.util.BinaryNotFoundException;
+import com.example.demo.util.BoundedInputStream;
+import com.example.demo.util.CorruptBodyException;
 import com.example.demo.util.JsonSchemaUtil;
 import com.example.demo.util.FhirMessages;
+import com.example.demo.util.PayloadTooLargeException;
+import com.example.demo.util.SpooledBody;
+import com.example.demo.util.ValidationReport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,54 +62,152 @@ public class FhirController {
 
     private static final Logger logger = LoggerFactory.getLogger(FhirController.class);
 
-    private final ProprietaryApiService proprietaryApiService;
+    private final PatientDispatchService patientDispatchService;
     private final PatientService patientService;
     private final DocumentReferenceService documentReferenceService;
     private final FhirResponseService fhirResponseService;
+    private final LargePayloadService largePayloadService;
+    private final BinaryStoreService binaryStoreService;
+    private final AsyncJobService asyncJobService;
+    private final ReadStoreService readStoreService;
+    private final BulkheadService bulkheadService;
     private final IParser jsonParser;
 
+    // Maximale Größe der Anfragekörper für Patient bzw. DocumentReference
+    @Value("${fhir.request.max-patient-bytes:1048576}")
+    private long maxPatientBytes;
+
+    @Value("${fhir.request.max-document-bytes:536870912}")
+    private long maxDocumentBytes;
+
     /**
      * Konstruktor-Injektion für bessere Testbarkeit
      * Spring Boot injiziert automatisch die Abhängigkeiten.
      *
      * @param fhirContext           Singleton FHIR-Context für JSON-Parsing, spart
      *                              Ressourcen
-     * @param proprietaryApiService Service für Kommunikation mit proprietärer API
+     * @param patientDispatchService Pro Patient geordnete Übermittlung an die proprietäre API
      * @param patientService        Service für Patientenlogik
+     * @param largePayloadService   Service für das Auslagern großer Anfragekörper
+     * @param binaryStoreService    Lokaler Speicher für Binary-Ressourcen
+     * @param asyncJobService       Hintergrundverarbeitung für Prefer: respond-async
+     * @param readStoreService      Lokaler Lesespeicher der weitergeleiteten Daten
+     * @param bulkheadService       Getrennte Obergrenzen für Patient- und Dokument-Anfragen
      */
     @Autowired
     public FhirController(IParser jsonParser,
-            ProprietaryApiService proprietaryApiService,
+            PatientDispatchService patientDispatchService,
             PatientService patientService,
             DocumentReferenceService documentReferenceService,
-            FhirResponseService fhirResponseService) {
+            FhirResponseService fhirResponseService,
+            LargePayloadService largePayloadService,
+            BinaryStoreService binaryStoreService,
+            AsyncJobService asyncJobService,
+            ReadStoreService readStoreService,
+            BulkheadService bulkheadService) {
         this.jsonParser = jsonParser;
-        this.proprietaryApiService = proprietaryApiService;
+        this.patientDispatchService = patientDispatchService;
         this.patientService = patientService;
         this.documentReferenceService = documentReferenceService;
         this.fhirResponseService = fhirResponseService;
+        this.largePayloadService = largePayloadService;
+        this.binaryStoreService = binaryStoreService;
+        this.asyncJobService = asyncJobService;
+        this.readStoreService = readStoreService;
+        this.bulkheadService = bulkheadService;
     }
 
     /**
      * Erstellt einen neuen Patienten in der proprietären API.
      *
-     * @param patientResource Die Patienten-Ressource als JSON-String
+     * Mit {@code Prefer: respond-async} wird die Anfrage nach dem Parsen angenommen
+     * (HTTP 202) und im Hintergrund verarbeitet; das Ergebnis ist unter der
+     * Status-URL aus {@code Content-Location} abrufbar.
+     *
+     * Der Körper wird direkt aus dem Datenstrom geparst, ohne ihn vorher als String
+     * zu puffern. Überschreitet er {@code fhir.request.max-patient-bytes}, wird die
+     * Anfrage mit HTTP 413 abgelehnt (anhand von Content-Length bereits vor dem Lesen).
+     * Ist der Patient-Bulkhead ausgelastet, wird die Anfrage mit HTTP 503 abgelehnt,
+     * unabhängig von der Last durch Dokument-Uploads.
+     *
+     * @param patientResource Die Patienten-Ressource als Datenstrom
+     * @param contentLength   Optionaler Content-Length-Header
+     * @param prefer          Optionaler Prefer-Header
      * @return Eine HTTP-Antwort, die den Erfolg oder Misserfolg der Anfrage anzeigt
      * 
      *         Beispiel: POST http://localhost:8080/fhir/Person
      */
     @PostMapping("/Patient") // Mapped HTTP POST-Anfragen auf diesen Endpunkt
-    public ResponseEntity<String> createPatient(@RequestBody String patientResource) {
+    public ResponseEntity<String> createPatient(InputStream patientResource,
+            @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long contentLength,
+            @RequestHeader(value = "Prefer", required = false) String prefer) {
         logger.info("Received request to create a new patient. ");
+        if (contentLength != null && contentLength > maxPatientBytes) {
+            return fhirResponseService.handlePayloadTooLarge(FhirMessages.PAYLOAD_TOO_LARGE);
+        }
+        BulkheadService.Bulkhead bulkhead = bulkheadService.get(BulkheadService.PERSON);
+        if (!bulkhead.tryEnter()) {
+            return fhirResponseService.handleServiceUnavailable(FhirMessages.SERVICE_UNAVAILABLE, 1);
+        }
         try {
-            // Parsen des Patient-Ressource-Strings in ein Patient-Objekt
-            Patient patient = jsonParser.parseResource(Patient.class, patientResource);
+            // Parsen des Patient-Datenstroms in ein Patient-Objekt (Größe wird beim Lesen begrenzt)
+            Patient patient;
+            try (Reader reader = new InputStreamReader(new BoundedInputStream(patientResource, maxPatientBytes),
+                    StandardCharsets.UTF_8)) {
+                patient = jsonParser.parseResource(Patient.class, reader);
+            }
+
+            if (AsyncJobService.isRespondAsync(prefer)) {
+                return acceptAsync(() -> inBulkhead(bulkhead, () -> processPatient(patient)));
+            }
+            return processPatient(patient);
+        } catch (PayloadTooLargeException e) {
+            return fhirResponseService.handlePayloadTooLarge(FhirMessages.PAYLOAD_TOO_LARGE);
+        } catch (CorruptBodyException e) {
+            return fhirResponseService.handleValidationFailure(FhirMessages.CORRUPT_COMPRESSED_BODY);
+        } catch (DataFormatException e) {
+            if (isCausedBy(e, PayloadTooLargeException.class)) {
+                return fhirResponseService.handlePayloadTooLarge(FhirMessages.PAYLOAD_TOO_LARGE);
+            }
+            if (isCausedBy(e, CorruptBodyException.class)) {
+                return fhirResponseService.handleValidationFailure(FhirMessages.CORRUPT_COMPRESSED_BODY);
+            }
+            return fhirResponseService.handleValidationFailure(FhirMessages.INVALID_PATIENT_RESOURCE);
+        } catch (RejectedExecutionException e) {
+            return fhirResponseService.handleServiceUnavailable(FhirMessages.SERVICE_UNAVAILABLE);
+        } catch (Exception e) {
+            // Loggt und gibt eine Fehlerantwort zurück, wenn eine Ausnahme auftritt
+            logger.error("Unexpected error while processing patient request", e);
+            return fhirResponseService.handleException(e, FhirMessages.INTERNAL_SERVER_ERROR);
+            // *Bianca Rech:
+            // *mein innerer Monk würde hier gerne genauere Fehlerbehandlung einbauen,
+            // *aber das wurde ja in den Anforderungen explizit nicht gefordert ;)
+            // *ich lasse die Blöcke trotzdem mal einzeln hier drin, falls man das mal machen möchte
+        } finally {
+            bulkhead.exit();
+        }
+    }
+
+    /**
+     * Validiert und mappt den Patienten und sendet ihn an die proprietäre API.
+     */
+    private ResponseEntity<String> processPatient(Patient patient) {
+        try {
+            // Ungültige Eingaben sind häufig: sie werden ohne Ausnahme als HTTP 400 beantwortet
+            ValidationReport report = patientService.validate(patient);
+            if (!report.isValid()) {
+                return fhirResponseService.handleValidationFailure(report);
+            }
 
             // Verarbeitung der Patient-Ressource mit DTO
             PersonDTO personDTO = patientService.processPatient(patient);
 
-            // Sendet die Patientendaten an die proprietäre API
-            boolean apiSuccess = proprietaryApiService.sendPatientData(personDTO);
+            // Sendet die Patientendaten an die proprietäre API (geordnet pro Patient-ID wie die
+            // Dokumente über subject; ein Patient ohne ID wird ungeordnet übermittelt)
+            boolean apiSuccess = patientDispatchService.sendPatientData(patient.getIdElement().getIdPart(),
+                    personDTO);
+
+            readStoreService.recordPatient(patient.getIdElement().getIdPart(), personDTO, apiSuccess ? 201 : 500);
 
             if (apiSuccess) {
                 // Loggt und gibt Erfolgsantwort zurück, wenn die API-Anfrage erfolgreich war
@@ -93,48 +220,85 @@ public class FhirController {
                         new RuntimeException("API failure"),
                         FhirMessages.API_FAILURE);
             }
+        } catch (ValueConversionException e) {
+            return handleConversionFailure(e);
+        } catch (RejectedExecutionException e) {
+            return fhirResponseService.handleServiceUnavailable(FhirMessages.SERVICE_UNAVAILABLE);
         } catch (Exception e) {
-            // Loggt und gibt eine Fehlerantwort zurück, wenn eine Ausnahme auftritt
             logger.error("Unexpected error while processing patient request", e);
             return fhirResponseService.handleException(e, FhirMessages.INTERNAL_SERVER_ERROR);
-            // *Bianca Rech:
-            // *mein innerer Monk würde hier gerne genauere Fehlerbehandlung einbauen,
-            // *aber das wurde ja in den Anforderungen explizit nicht gefordert ;)
-            // *ich lasse die Blöcke trotzdem mal einzeln hier drin, falls man das mal machen möchte
         }
     }
 
     /**
      * Erstellt ein neues Dokument in der proprietären API.
      * 
-     * @param documentResource Die DocumentReference-Ressource als JSON-String
+     * Große Anfragekörper werden auf die Platte ausgelagert (siehe LargePayloadService),
+     * damit der Heap-Bedarf pro Anfrage unabhängig von der Dokumentgröße bleibt.
+     * Mit {@code Prefer: respond-async} wird die Anfrage nach dem Parsen angenommen
+     * (HTTP 202); der ausgelagerte Körper gehört dann dem Hintergrundauftrag.
+     * Körper oberhalb von {@code fhir.request.max-document-bytes} werden mit HTTP 413
+     * abgelehnt (anhand von Content-Length bereits vor dem Lesen). Gleichzeitige Uploads
+     * sind durch den Dokument-Bulkhead begrenzt; ist er ausgelastet, folgt HTTP 503.
+     *
+     * @param documentResource Die DocumentReference-Ressource als Datenstrom
+     * @param contentLength    Optionaler Content-Length-Header
+     * @param prefer           Optionaler Prefer-Header
      * @return Eine HTTP-Antwort, die den Erfolg oder Misserfolg der Anfrage anzeigt
      * 
      *         Beispiel: POST http://localhost:8080/fhir/DocumentReference
      */
     @PostMapping("/DocumentReference")
-    public ResponseEntity<String> createDocumentReference(@RequestBody String documentResource) {
+    public ResponseEntity<String> createDocumentReference(InputStream documentResource,
+            @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long contentLength,
+            @RequestHeader(value = "Prefer", required = false) String prefer) {
         logger.info("Received request to create a new document.");
+        if (contentLength != null && contentLength > maxDocumentBytes) {
+            return fhirResponseService.handlePayloadTooLarge(FhirMessages.PAYLOAD_TOO_LARGE);
+        }
+        BulkheadService.Bulkhead bulkhead = bulkheadService.get(BulkheadService.DOCUMENT);
+        if (!bulkhead.tryEnter()) {
+            return fhirResponseService.handleServiceUnavailable(FhirMessages.SERVICE_UNAVAILABLE, 1);
+        }
+        SpooledBody body = null;
         try {
-            // Parsen des DocumentReference-Ressource-Strings in ein Patient-Objekt
-            DocumentReference documentReference = jsonParser.parseResource(DocumentReference.class, documentResource);
-            
-            // Verarbeitung der Document-Ressource mit DTO
-            DocumentDTO documentDTO = documentReferenceService.processDocumentReference(documentReference);
+            body = largePayloadService.spool(new BoundedInputStream(documentResource, maxDocumentBytes));
 
-            // Sendet die Dokumentdaten an die proprietäre API
-            boolean apiSuccess = proprietaryApiService.sendDocumentData(documentDTO);
+            // Leere oder nicht als Base64 kodierte Attachment-Daten werden vor dem Parsen abgelehnt
+            ValidationReport dataReport = largePayloadService.checkAttachmentData(body);
+            if (!dataReport.isValid()) {
+                return fhirResponseService.handleValidationFailure(dataReport);
+            }
 
-            if (apiSuccess) {
-                // Loggt und gibt Erfolgsantwort zurück, wenn die API-Anfrage erfolgreich war
-                logger.info("DocumentReference data sent successfully.");
-                return fhirResponseService.createSuccessResponse(FhirMessages.DOCUMENT_CREATED);
-            } else {
-                 // Loggt und gibt eine Fehlerantwort zurück, wenn die API-Anfrage fehlschlägt
-                logger.warn("Failed to send DocumentReference");
-                return fhirResponseService.handleException(new RuntimeException("API failure"),
-                        FhirMessages.API_FAILURE);
+            // Parsen des DocumentReference-Datenstroms in ein DocumentReference-Objekt
+            DocumentReference documentReference = largePayloadService.parseDocumentReference(body);
+
+            if (AsyncJobService.isRespondAsync(prefer)) {
+                SpooledBody ownedBody = body;
+                ResponseEntity<String> accepted = acceptAsync(() -> {
+                    try (ownedBody) {
+                        return inBulkhead(bulkhead, () -> processDocumentReference(documentReference, ownedBody));
+                    }
+                });
+                // Der Auftrag schließt den Körper nach der Verarbeitung
+                body = null;
+                return accepted;
+            }
+            return processDocumentReference(documentReference, body);
+        } catch (PayloadTooLargeException e) {
+            return fhirResponseService.handlePayloadTooLarge(FhirMessages.PAYLOAD_TOO_LARGE);
+        } catch (CorruptBodyException e) {
+            return fhirResponseService.handleValidationFailure(FhirMessages.CORRUPT_COMPRESSED_BODY);
+        } catch (DataFormatException e) {
+            if (isCausedBy(e, PayloadTooLargeException.class)) {
+                return fhirResponseService.handlePayloadTooLarge(FhirMessages.PAYLOAD_TOO_LARGE);
             }
+            if (isCausedBy(e, CorruptBodyException.class)) {
+                return fhirResponseService.handleValidationFailure(FhirMessages.CORRUPT_COMPRESSED_BODY);
+            }
+            return fhirResponseService.handleValidationFailure(FhirMessages.INVALID_DOCUMENT_RESOURCE);
+        } catch (RejectedExecutionException e) {
+            return fhirResponseService.handleServiceUnavailable(FhirMessages.SERVICE_UNAVAILABLE);
         } catch (Exception e) {
             // Loggt und gibt eine Fehlerantwort zurück, wenn eine Ausnahme auftritt
             logger.error("Unexpected error while processing document request", e);
@@ -143,7 +307,179 @@ public class FhirController {
             // *mein innerer Monk würde hier gerne genauere Fehlerbehandlung einbauen,
             // *aber das wurde ja in den Anforderungen explizit nicht gefordert ;)
             // *ich lasse die Blöcke trotzdem mal einzeln hier drin, falls man das mal machen möchte
+        } finally {
+            closeQuietly(body);
+            bulkhead.exit();
+        }
+    }
+
+    /**
+     * Validiert und mappt die DocumentReference und sendet jeden content-Eintrag als eigenes
+     * Dokument an die proprietäre API. Das Ergebnis aller Einträge wird in einem
+     * OperationOutcome gemeldet.
+     */
+    private ResponseEntity<String> processDocumentReference(DocumentReference documentReference, SpooledBody body) {
+        try {
+            ValidationReport report = documentReferenceService.validate(documentReference);
+            if (!report.isValid()) {
+                return fhirResponseService.handleValidationFailure(report);
+            }
+
+            // Ein DTO pro content-Eintrag; bei ausgelagerten Körpern wird der Inhalt direkt
+            // aus der Datei gelesen
+            List<DocumentDTO> documentDTOs = documentReferenceService.processDocumentReference(documentReference,
+                    body.getDataSlices());
+
+            // Sendet die Dokumentdaten an die proprietäre API (geordnet pro Patient, Inhalte parallel)
+            boolean[] sent = patientDispatchService.sendDocumentParts(documentDTOs);
+
+            List<String> locations = new ArrayList<>(sent.length);
+            for (int i = 0; i < sent.length; i++) {
+                readStoreService.recordDocument(documentDTOs.get(i), sent[i] ? 201 : 500);
+                locations.add("DocumentReference.content[" + i + "]");
+            }
+            return fhirResponseService.createPartResultsResponse(FhirMessages.DOCUMENT_CREATED, locations, sent);
+        } catch (ValueConversionException e) {
+            return handleConversionFailure(e);
+        } catch (BinaryNotFoundException e) {
+            // Zwischen validate() und dem Auflösen durch die Aufbewahrungsfrist gelöscht
+            ValidationReport report = new ValidationReport().addIssue(IssueType.NOTFOUND, e.getLocation(),
+                    FhirMessages.BINARY_NOT_FOUND + e.getUrl());
+            return fhirResponseService.handleValidationFailure(report);
+        } catch (RejectedExecutionException e) {
+            return fhirResponseService.handleServiceUnavailable(FhirMessages.SERVICE_UNAVAILABLE);
+        } catch (Exception e) {
+            logger.error("Unexpected error while processing document request", e);
+            return fhirResponseService.handleException(e, FhirMessages.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Ein Wert, den das Mapping nicht umwandeln kann, stammt aus der Anfrage und wird
+     * wie ein Validierungsbefund als HTTP 400 mit Fundstelle beantwortet.
+     */
+    private ResponseEntity<String> handleConversionFailure(ValueConversionException e) {
+        logger.info("Rejected unconvertible value at {}: {}", e.getLocation(), e.getMessage());
+        ValidationReport report = new ValidationReport().addIssue(IssueType.INVALID, e.getLocation(),
+                FhirMessages.VALUE_NOT_CONVERTIBLE + e.getValue());
+        return fhirResponseService.handleValidationFailure(report);
+    }
+
+    /**
+     * Liefert den Status einer asynchron verarbeiteten Anfrage: HTTP 202, solange sie
+     * aussteht, danach Status und OperationOutcome des Ergebnisses.
+     *
+     * Beispiel: GET http://localhost:8080/fhir/_async/{id}
+     */
+    @GetMapping("/_async/{id}")
+    public ResponseEntity<String> getAsyncStatus(@PathVariable String id) {
+        AsyncJobService.JobStatus status = asyncJobService.getStatus(id);
+        if (status == null) {
+            return fhirResponseService.handleNotFound(FhirMessages.UNKNOWN_ASYNC_JOB + id);
+        }
+        if (!status.isDone()) {
+            return fhirResponseService.createAcceptedResponse(FhirMessages.REQUEST_IN_PROGRESS, statusLocation(id));
+        }
+        return ResponseEntity.status(status.getHttpStatus()).body(status.getOutcome());
+    }
+
+    /**
+     * Führt einen asynchronen Auftrag im Bulkhead aus. Der Platz der annehmenden Anfrage
+     * wird mit der 202-Antwort frei; der Auftrag belegt beim Start einen eigenen und
+     * wartet darauf, da die Anzahl der Aufträge bereits durch die Threads der
+     * asynchronen Verarbeitung begrenzt ist.
+     */
+    private ResponseEntity<String> inBulkhead(BulkheadService.Bulkhead bulkhead,
+            Callable<ResponseEntity<String>> job) throws Exception {
+        if (!bulkhead.enter()) {
+            return fhirResponseService.handleServiceUnavailable(FhirMessages.SERVICE_UNAVAILABLE);
+        }
+        try {
+            return job.call();
+        } finally {
+            bulkhead.exit();
+        }
+    }
+
+    private ResponseEntity<String> acceptAsync(Callable<ResponseEntity<String>> job) {
+        String id = asyncJobService.submit(job);
+        logger.info("Request accepted for async processing as job {}", id);
+        return fhirResponseService.createAcceptedResponse(FhirMessages.REQUEST_ACCEPTED, statusLocation(id));
+    }
+
+    private static String statusLocation(String id) {
+        return ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/fhir/_async/{id}")
+                .buildAndExpand(id)
+                .toUriString();
+    }
+
+    /**
+     * HAPI meldet Lesefehler des Datenstroms als DataFormatException; eine überschrittene
+     * Größengrenze steckt dann in der Ursachenkette.
+     */
+    private static boolean isCausedBy(Throwable e, Class<? extends Throwable> type) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void closeQuietly(SpooledBody body) {
+        if (body != null) {
+            body.close();
+        }
+    }
+
+    /**
+     * Speichert eine Binary-Ressource (Rohdaten, beliebiger Content-Type) im lokalen
+     * Binary-Speicher. Eine DocumentReference kann anschließend per Attachment.url
+     * ("Binary/{id}") darauf verweisen, statt den Inhalt Base64-kodiert einzubetten.
+     *
+     * Uploads oberhalb von {@code fhir.binary-store.max-bytes} werden mit HTTP 413 abgelehnt.
+     *
+     * @param content       Die Rohdaten als Datenstrom
+     * @param contentLength Optionaler Content-Length-Header
+     * @return 201 mit Location-Header der neuen Binary-Ressource
+     *
+     *         Beispiel: POST http://localhost:8080/fhir/Binary
+     */
+    @PostMapping("/Binary")
+    public ResponseEntity<String> createBinary(InputStream content,
+            @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long contentLength) {
+        logger.info("Received request to create a new binary.");
+        if (contentLength != null && contentLength > binaryStoreService.getMaxBytes()) {
+            return fhirResponseService.handlePayloadTooLarge(FhirMessages.PAYLOAD_TOO_LARGE);
+        }
+        try {
+            String id = binaryStoreService.store(content);
+            return fhirResponseService.createSuccessResponse(FhirMessages.BINARY_CREATED, "Binary/" + id);
+        } catch (PayloadTooLargeException e) {
+            return fhirResponseService.handlePayloadTooLarge(FhirMessages.PAYLOAD_TOO_LARGE);
+        } catch (CorruptBodyException e) {
+            return fhirResponseService.handleValidationFailure(FhirMessages.CORRUPT_COMPRESSED_BODY);
+        } catch (Exception e) {
+            logger.error("Unexpected error while storing binary", e);
+            return fhirResponseService.handleException(e, FhirMessages.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Behandelt Anfragekörper, die Spring nicht einlesen konnte (z. B. @RequestBody String),
+     * und liefert ein FHIR-konformes OperationOutcome statt der Standard-Fehlerseite.
+     * Überschreitet der (entpackte) Körper die Maximalgröße, wird HTTP 413 zurückgegeben.
+     */
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<String> handleUnreadableBody(HttpMessageNotReadableException e) {
+        if (e.getCause() instanceof PayloadTooLargeException) {
+            return fhirResponseService.handlePayloadTooLarge(FhirMessages.PAYLOAD_TOO_LARGE);
+        }
+        if (e.getCause() instanceof CorruptBodyException) {
+            return fhirResponseService.handleValidationFailure(FhirMessages.CORRUPT_COMPRESSED_BODY);
         }
+        return fhirResponseService.handleValidationFailure(FhirMessages.UNREADABLE_BODY);
     }
 
     /**
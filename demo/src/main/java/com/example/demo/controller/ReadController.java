@@ -0,0 +1,204 @@
+package com.example.demo.controller;
+
+import java.util.Date;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.DocumentReference;
+import org.hl7.fhir.r4.model.Enumerations.DocumentReferenceStatus;
+import org.hl7.fhir.r4.model.Meta;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.example.demo.service.FhirResponseService;
+import com.example.demo.service.ReadStoreService;
+import com.example.demo.service.ReadStoreService.DateRange;
+import com.example.demo.service.ReadStoreService.DocumentRecord;
+import com.example.demo.service.ReadStoreService.Page;
+import com.example.demo.service.ReadStoreService.PatientRecord;
+import com.example.demo.util.FhirMessages;
+import com.example.demo.util.PartialDate;
+
+import ca.uhn.fhir.context.FhirContext;
+
+/**
+ * REST Controller für Leseanfragen auf die weitergeleiteten Patienten und Dokumente.
+ *
+ * Die Antworten werden aus dem lokalen Lesespeicher ({@link ReadStoreService})
+ * erzeugt, ohne die proprietäre API aufzurufen. Das Ergebnis der Weiterleitung
+ * (HTTP-Status) steht als {@code meta.tag}, der Zeitpunkt in {@code meta.lastUpdated}.
+ */
+@RestController
+@RequestMapping("/fhir")
+public class ReadController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadController.class);
+
+    private static final MediaType FHIR_JSON = MediaType.parseMediaType("application/fhir+json");
+    private static final String KDL_SYSTEM = "http://dvmd.de/fhir/CodeSystem/kdl";
+    private static final String SUBMISSION_STATUS_SYSTEM = "urn:local:submission-status";
+
+    private final ReadStoreService readStoreService;
+    private final FhirResponseService fhirResponseService;
+    private final FhirContext fhirContext;
+
+    // Standard- und Höchstzahl der Treffer pro Suchseite
+    @Value("${fhir.read-store.default-count:20}")
+    private int defaultCount;
+
+    @Value("${fhir.read-store.max-count:100}")
+    private int maxCount;
+
+    public ReadController(ReadStoreService readStoreService,
+            FhirResponseService fhirResponseService,
+            FhirContext fhirContext) {
+        this.readStoreService = readStoreService;
+        this.fhirResponseService = fhirResponseService;
+        this.fhirContext = fhirContext;
+    }
+
+    /**
+     * Liefert einen weitergeleiteten Patienten.
+     *
+     * Beispiel: GET http://localhost:8080/fhir/Patient/123
+     */
+    @GetMapping("/Patient/{id}")
+    public ResponseEntity<String> readPatient(@PathVariable String id) {
+        PatientRecord record = readStoreService.findPatient(id);
+        if (record == null) {
+            return fhirResponseService.handleNotFound(FhirMessages.UNKNOWN_PATIENT + id);
+        }
+
+        Patient patient = new Patient();
+        patient.setId(record.id);
+        patient.setMeta(meta(record.status, record.submittedAt));
+        patient.addName().setFamily(record.lastName);
+        if (record.firstName != null) {
+            for (String given : record.firstName.split(" ")) {
+                patient.getNameFirstRep().addGiven(given);
+            }
+        }
+        DateType birthDate = toFhirDate(record.birthDate);
+        if (birthDate != null) {
+            patient.setBirthDateElement(birthDate);
+        }
+        return fhirJson(patient);
+    }
+
+    /**
+     * Sucht weitergeleitete Dokumente (neueste zuerst).
+     *
+     * @param patient   Patienten-ID (auch als "Patient/123")
+     * @param type      KDL-Code (auch als "system|code")
+     * @param encounter Fallnummer (auch als "Encounter/456")
+     * @param date      Erstellungsdatum (yyyy, yyyy-MM oder yyyy-MM-dd), optional mit Präfix eq/ge/gt/le/lt
+     *
+     * Beispiel: GET http://localhost:8080/fhir/DocumentReference?patient=123&type=PT130102&date=ge2024-01-01
+     */
+    @GetMapping("/DocumentReference")
+    public ResponseEntity<String> searchDocumentReferences(@RequestParam(required = false) String patient,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String encounter,
+            @RequestParam(required = false) String date,
+            @RequestParam(name = "_count", required = false) Integer count,
+            @RequestParam(name = "_offset", required = false, defaultValue = "0") int offset) {
+        DateRange dateRange;
+        try {
+            dateRange = date != null ? DateRange.parse(date) : null;
+        } catch (IllegalArgumentException e) {
+            return fhirResponseService.handleValidationFailure(e.getMessage());
+        }
+        int pageSize = Math.min(count != null ? Math.max(count, 0) : defaultCount, maxCount);
+
+        Page<DocumentRecord> page = readStoreService.searchDocuments(stripPrefix(patient, '/'),
+                stripPrefix(encounter, '/'), stripPrefix(type, '|'), dateRange, offset, pageSize);
+
+        Bundle bundle = new Bundle();
+        bundle.setType(Bundle.BundleType.SEARCHSET);
+        bundle.setTotal(page.getTotal());
+        UriComponentsBuilder self = ServletUriComponentsBuilder.fromCurrentRequest();
+        bundle.addLink().setRelation("self").setUrl(self.toUriString());
+        int next = page.getOffset() + page.getItems().size();
+        if (next < page.getTotal() && pageSize > 0) {
+            bundle.addLink().setRelation("next").setUrl(self.cloneBuilder()
+                    .replaceQueryParam("_offset", next)
+                    .replaceQueryParam("_count", pageSize)
+                    .toUriString());
+        }
+        for (DocumentRecord record : page.getItems()) {
+            bundle.addEntry()
+                    .setFullUrl("DocumentReference/" + record.id)
+                    .setResource(toDocumentReference(record))
+                    .getSearch().setMode(Bundle.SearchEntryMode.MATCH);
+        }
+        logger.debug("DocumentReference search returned {} of {} records", page.getItems().size(), page.getTotal());
+        return fhirJson(bundle);
+    }
+
+    private DocumentReference toDocumentReference(DocumentRecord record) {
+        DocumentReference documentReference = new DocumentReference();
+        documentReference.setId(record.id);
+        documentReference.setMeta(meta(record.status, record.submittedAt));
+        documentReference.setStatus(DocumentReferenceStatus.CURRENT);
+        if (record.kdlCode != null) {
+            documentReference.getType().addCoding().setSystem(KDL_SYSTEM).setCode(record.kdlCode);
+        }
+        if (record.patientId != null) {
+            documentReference.setSubject(new Reference("Patient/" + record.patientId));
+        }
+        if (record.visitNumber != null) {
+            documentReference.getContext().addEncounter(new Reference("Encounter/" + record.visitNumber));
+        }
+        // Nur Metadaten: der Inhalt selbst wird nicht gespeichert
+        DocumentReference.DocumentReferenceContentComponent content = documentReference.addContent();
+        PartialDate created = PartialDate.parseDto(record.dateCreated);
+        if (created != null) {
+            content.getAttachment().setCreationElement(new DateTimeType(created.toFhirString()));
+        }
+        return documentReference;
+    }
+
+    private static Meta meta(int status, long submittedAt) {
+        Meta meta = new Meta();
+        meta.setLastUpdated(new Date(submittedAt));
+        meta.addTag().setSystem(SUBMISSION_STATUS_SYSTEM).setCode(String.valueOf(status));
+        return meta;
+    }
+
+    private static String stripPrefix(String value, char separator) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        int index = value.lastIndexOf(separator);
+        return index >= 0 ? value.substring(index + 1) : value;
+    }
+
+    /**
+     * Wandelt ein Datum des Mappings (dd.MM.yyyy, MM.yyyy oder yyyy) mit gleicher
+     * Genauigkeit zurück in ein FHIR-Datum; nicht lesbare Werte ergeben null.
+     */
+    private static DateType toFhirDate(String value) {
+        PartialDate date = PartialDate.parseDto(value);
+        return date != null ? new DateType(date.toFhirString()) : null;
+    }
+
+    private ResponseEntity<String> fhirJson(Resource resource) {
+        return ResponseEntity.ok()
+                .contentType(FHIR_JSON)
+                .body(fhirContext.newJsonParser().encodeResourceToString(resource));
+    }
+}
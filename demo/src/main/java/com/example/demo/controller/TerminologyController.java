@@ -0,0 +1,239 @@
+package com.example.demo.controller;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.BooleanType;
+import org.hl7.fhir.r4.model.Enumerations.PublicationStatus;
+import org.hl7.fhir.r4.model.IntegerType;
+import org.hl7.fhir.r4.model.Parameters;
+import org.hl7.fhir.r4.model.StringType;
+import org.hl7.fhir.r4.model.ValueSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import com.example.demo.service.FhirResponseService;
+import com.example.demo.service.TerminologyService;
+import com.example.demo.service.TerminologyService.Concept;
+import com.example.demo.service.TerminologyService.ConceptIndex;
+import com.example.demo.util.FhirMessages;
+
+import ca.uhn.fhir.context.FhirContext;
+
+/**
+ * REST Controller für die lokalen Terminologie-Operationen
+ * ($validate-code, $lookup, $expand) auf CodeSystem und ValueSet.
+ *
+ * Die Antworten werden aus dem In-Memory-Index der {@link TerminologyService}
+ * erzeugt und sind per ETag (Hash über URL, Version und Konzepte des Artefakts) und
+ * Cache-Control cachebar.
+ */
+@RestController
+@RequestMapping("/fhir")
+public class TerminologyController {
+
+    private static final Logger logger = LoggerFactory.getLogger(TerminologyController.class);
+
+    private static final MediaType FHIR_JSON = MediaType.parseMediaType("application/fhir+json");
+
+    private final TerminologyService terminologyService;
+    private final FhirResponseService fhirResponseService;
+    private final FhirContext fhirContext;
+
+    // Gültigkeitsdauer der Antworten in Client- und Proxy-Caches
+    @Value("${fhir.terminology.cache-max-age-seconds:3600}")
+    private long cacheMaxAgeSeconds;
+
+    // Standard- und Höchstzahl der Konzepte pro $expand-Seite
+    @Value("${fhir.terminology.expand-default-count:100}")
+    private int expandDefaultCount;
+
+    @Value("${fhir.terminology.expand-max-count:1000}")
+    private int expandMaxCount;
+
+    public TerminologyController(TerminologyService terminologyService,
+            FhirResponseService fhirResponseService,
+            FhirContext fhirContext) {
+        this.terminologyService = terminologyService;
+        this.fhirResponseService = fhirResponseService;
+        this.fhirContext = fhirContext;
+    }
+
+    /**
+     * Prüft, ob ein Code im CodeSystem definiert ist.
+     *
+     * Beispiel: GET http://localhost:8080/fhir/CodeSystem/$validate-code?url=http://dvmd.de/fhir/CodeSystem/kdl&code=PT130102
+     */
+    @GetMapping("/CodeSystem/$validate-code")
+    public ResponseEntity<String> validateCodeInCodeSystem(@RequestParam(required = false) String url,
+            @RequestParam(required = false) String system,
+            @RequestParam(required = false) String code,
+            @RequestParam(required = false) String display,
+            WebRequest request) {
+        String codeSystemUrl = url != null ? url : system;
+        if (codeSystemUrl == null || code == null) {
+            return fhirResponseService.handleValidationFailure(FhirMessages.MISSING_PARAMETER + "url, code");
+        }
+        ConceptIndex index = terminologyService.getCodeSystem(codeSystemUrl);
+        if (index == null) {
+            return fhirResponseService.handleNotFound(FhirMessages.UNKNOWN_CODE_SYSTEM + codeSystemUrl);
+        }
+        if (request.checkNotModified(index.getCacheTag())) {
+            return null;
+        }
+        return cacheable(validateCode(index, index.lookup(code), code, display));
+    }
+
+    /**
+     * Prüft, ob ein Code im ValueSet enthalten ist.
+     *
+     * Beispiel: GET http://localhost:8080/fhir/ValueSet/$validate-code?url=http://dvmd.de/fhir/ValueSet/kdl&code=PT130102
+     */
+    @GetMapping("/ValueSet/$validate-code")
+    public ResponseEntity<String> validateCodeInValueSet(@RequestParam(required = false) String url,
+            @RequestParam(required = false) String system,
+            @RequestParam(required = false) String code,
+            @RequestParam(required = false) String display,
+            WebRequest request) {
+        if (url == null || code == null) {
+            return fhirResponseService.handleValidationFailure(FhirMessages.MISSING_PARAMETER + "url, code");
+        }
+        ConceptIndex index = terminologyService.getValueSet(url);
+        if (index == null) {
+            return fhirResponseService.handleNotFound(FhirMessages.UNKNOWN_VALUE_SET + url);
+        }
+        if (request.checkNotModified(index.getCacheTag())) {
+            return null;
+        }
+        return cacheable(validateCode(index, index.lookup(system, code), code, display));
+    }
+
+    /**
+     * Liefert Anzeigetext und Definition eines Codes.
+     *
+     * Beispiel: GET http://localhost:8080/fhir/CodeSystem/$lookup?system=http://dvmd.de/fhir/CodeSystem/kdl&code=PT130102
+     */
+    @GetMapping("/CodeSystem/$lookup")
+    public ResponseEntity<String> lookup(@RequestParam(required = false) String system,
+            @RequestParam(required = false) String code,
+            WebRequest request) {
+        if (system == null || code == null) {
+            return fhirResponseService.handleValidationFailure(FhirMessages.MISSING_PARAMETER + "system, code");
+        }
+        ConceptIndex index = terminologyService.getCodeSystem(system);
+        if (index == null) {
+            return fhirResponseService.handleNotFound(FhirMessages.UNKNOWN_CODE_SYSTEM + system);
+        }
+        Concept concept = index.lookup(code);
+        if (concept == null) {
+            return fhirResponseService.handleNotFound(FhirMessages.UNKNOWN_CODE + code);
+        }
+        if (request.checkNotModified(index.getCacheTag())) {
+            return null;
+        }
+
+        Parameters parameters = new Parameters();
+        if (index.getName() != null) {
+            parameters.addParameter("name", new StringType(index.getName()));
+        }
+        if (index.getVersion() != null) {
+            parameters.addParameter("version", new StringType(index.getVersion()));
+        }
+        if (concept.getDisplay() != null) {
+            parameters.addParameter("display", new StringType(concept.getDisplay()));
+        }
+        if (concept.getDefinition() != null) {
+            parameters.addParameter("definition", new StringType(concept.getDefinition()));
+        }
+        return cacheable(parameters);
+    }
+
+    /**
+     * Expandiert ein ValueSet, optional gefiltert (Präfixsuche auf Anzeigetext und Code)
+     * und seitenweise über offset/count.
+     *
+     * Beispiel: GET http://localhost:8080/fhir/ValueSet/$expand?url=http://dvmd.de/fhir/ValueSet/kdl&filter=arztbr
+     */
+    @GetMapping("/ValueSet/$expand")
+    public ResponseEntity<String> expand(@RequestParam(required = false) String url,
+            @RequestParam(required = false) String filter,
+            @RequestParam(required = false, defaultValue = "0") int offset,
+            @RequestParam(required = false) Integer count,
+            WebRequest request) {
+        if (url == null) {
+            return fhirResponseService.handleValidationFailure(FhirMessages.MISSING_PARAMETER + "url");
+        }
+        ConceptIndex index = terminologyService.getValueSet(url);
+        if (index == null) {
+            return fhirResponseService.handleNotFound(FhirMessages.UNKNOWN_VALUE_SET + url);
+        }
+        if (request.checkNotModified(index.getCacheTag())) {
+            return null;
+        }
+
+        List<Concept> matches = index.search(filter);
+        int pageSize = Math.min(count != null ? Math.max(count, 0) : expandDefaultCount, expandMaxCount);
+        int from = Math.min(Math.max(offset, 0), matches.size());
+        int to = Math.min(from + pageSize, matches.size());
+
+        ValueSet valueSet = new ValueSet();
+        valueSet.setUrl(index.getUrl());
+        valueSet.setVersion(index.getVersion());
+        valueSet.setName(index.getName());
+        valueSet.setStatus(PublicationStatus.ACTIVE);
+        ValueSet.ValueSetExpansionComponent expansion = valueSet.getExpansion();
+        expansion.setTimestamp(terminologyService.getIndexedAt());
+        expansion.setTotal(matches.size());
+        expansion.setOffset(from);
+        if (filter != null) {
+            expansion.addParameter().setName("filter").setValue(new StringType(filter));
+        }
+        expansion.addParameter().setName("count").setValue(new IntegerType(pageSize));
+        for (Concept concept : matches.subList(from, to)) {
+            expansion.addContains()
+                    .setSystem(concept.getSystem())
+                    .setCode(concept.getCode())
+                    .setDisplay(concept.getDisplay());
+        }
+        logger.debug("Expanded ValueSet {} (filter '{}'): {} of {} concepts", url, filter, to - from,
+                matches.size());
+        return cacheable(valueSet);
+    }
+
+    private static Parameters validateCode(ConceptIndex index, Concept concept, String code, String display) {
+        Parameters parameters = new Parameters();
+        boolean displayMatches = concept == null || display == null || display.equals(concept.getDisplay());
+        parameters.addParameter("result", new BooleanType(concept != null && displayMatches));
+        if (concept == null) {
+            parameters.addParameter("message",
+                    new StringType("Code '" + code + "' ist nicht in " + index.getUrl() + " enthalten."));
+            return parameters;
+        }
+        if (!displayMatches) {
+            parameters.addParameter("message", new StringType("Anzeigetext '" + display
+                    + "' passt nicht zu Code '" + code + "'."));
+        }
+        if (concept.getDisplay() != null) {
+            parameters.addParameter("display", new StringType(concept.getDisplay()));
+        }
+        return parameters;
+    }
+
+    private ResponseEntity<String> cacheable(IBaseResource resource) {
+        // ETag wurde bereits über WebRequest.checkNotModified gesetzt
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(cacheMaxAgeSeconds, TimeUnit.SECONDS).cachePublic())
+                .contentType(FHIR_JSON)
+                .body(fhirContext.newJsonParser().encodeResourceToString(resource));
+    }
+}
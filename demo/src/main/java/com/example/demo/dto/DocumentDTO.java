@@ -1,5 +1,7 @@
 package com.example.demo.dto;
 
+import com.example.demo.util.FileSlice;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class DocumentDTO {
@@ -18,6 +20,10 @@ public class DocumentDTO {
     @JsonProperty("contentB64")
     private String contentB64;
 
+    // Alternativ zu contentB64: Base64-Inhalt liegt in einer ausgelagerten Datei
+    @JsonIgnore
+    private FileSlice contentSlice;
+
     public DocumentDTO() {
     }
 
@@ -69,6 +75,14 @@ public class DocumentDTO {
         this.contentB64 = contentB64;
     }
 
+    public FileSlice getContentSlice() {
+        return contentSlice;
+    }
+
+    public void setContentSlice(FileSlice contentSlice) {
+        this.contentSlice = contentSlice;
+    }
+
     @Override
     public String toString() {
         return "DocumentDTO{" +
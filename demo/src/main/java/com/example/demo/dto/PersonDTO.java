@@ -13,6 +13,9 @@ public class PersonDTO {
     @JsonProperty("PersonDOB")
     private String birthDate;
 
+    public PersonDTO() {
+    }
+
     public PersonDTO(String firstName, String lastName, String birthDate) {
         this.firstName = firstName;
         this.lastName = lastName;
@@ -0,0 +1,118 @@
+package com.example.demo.filter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.X509Certificate;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.demo.service.AdmissionControlService;
+import com.example.demo.service.AdmissionControlService.Admission;
+import com.example.demo.service.FhirResponseService;
+import com.example.demo.util.FhirMessages;
+
+/**
+ * Servlet-Filter für die Zugangskontrolle der FHIR-Endpunkte.
+ *
+ * Läuft vor allen anderen Filtern, damit abgelehnte Anfragen weder entpackt noch
+ * gelesen werden. Abgelehnte Anfragen erhalten HTTP 429 bzw. 503 mit
+ * {@code Retry-After} und einem OperationOutcome der {@link FhirResponseService}.
+ *
+ * Das Abfragen des Status asynchroner Aufträge ({@code /fhir/_async/{id}}) ist
+ * ausgenommen: Es ist billig, und ein Client, der nach einem 202 abfragt, soll weder
+ * sein Ratenlimit verbrauchen noch in Überlast sein Ergebnis verlieren.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControlFilter.class);
+
+    private static final String CERTIFICATE_ATTRIBUTE = "javax.servlet.request.X509Certificate";
+
+    // Statusabfragen asynchroner Aufträge (siehe FhirController)
+    private static final String ASYNC_STATUS_PATH = "/fhir/_async/";
+
+    private final AdmissionControlService admissionControlService;
+    private final FhirResponseService fhirResponseService;
+
+    @Value("${fhir.admission.enabled:true}")
+    private boolean enabled;
+
+    // Header zur Identifikation des Clients; ohne Header wird das Client-Zertifikat bzw. die Adresse verwendet
+    @Value("${fhir.admission.client-header:X-Client-Id}")
+    private String clientHeader;
+
+    public AdmissionControlFilter(AdmissionControlService admissionControlService,
+            FhirResponseService fhirResponseService) {
+        this.admissionControlService = admissionControlService;
+        this.fhirResponseService = fhirResponseService;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !enabled || !path.startsWith("/fhir/") || path.startsWith(ASYNC_STATUS_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Admission admission;
+        try {
+            admission = admissionControlService.admit(clientId(request));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writeResponse(response, fhirResponseService.handleServiceUnavailable(FhirMessages.SERVICE_UNAVAILABLE, 1));
+            return;
+        }
+
+        if (!admission.isAdmitted()) {
+            logger.debug("Rejected {} {} with status {}", request.getMethod(), request.getRequestURI(),
+                    admission.getRejectionStatus());
+            writeResponse(response, admission.getRejectionStatus() == 429
+                    ? fhirResponseService.handleTooManyRequests(FhirMessages.TOO_MANY_REQUESTS,
+                            admission.getRetryAfterSeconds())
+                    : fhirResponseService.handleServiceUnavailable(FhirMessages.SERVICE_UNAVAILABLE,
+                            admission.getRetryAfterSeconds()));
+            return;
+        }
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            admission.release();
+        }
+    }
+
+    private String clientId(HttpServletRequest request) {
+        String header = request.getHeader(clientHeader);
+        if (header != null && !header.isBlank()) {
+            return "header:" + header.trim();
+        }
+        Object certificates = request.getAttribute(CERTIFICATE_ATTRIBUTE);
+        if (certificates instanceof X509Certificate[] && ((X509Certificate[]) certificates).length > 0) {
+            return "cert:" + ((X509Certificate[]) certificates)[0].getSubjectX500Principal().getName();
+        }
+        return "addr:" + request.getRemoteAddr();
+    }
+
+    private void writeResponse(HttpServletResponse response, ResponseEntity<String> entity) throws IOException {
+        response.setStatus(entity.getStatusCodeValue());
+        entity.getHeaders().forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        response.setContentType("application/fhir+json;charset=UTF-8");
+        response.getOutputStream().write(entity.getBody().getBytes(StandardCharsets.UTF_8));
+    }
+}
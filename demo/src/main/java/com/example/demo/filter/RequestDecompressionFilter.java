@@ -0,0 +1,245 @@
+package com.example.demo.filter;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.demo.service.FhirResponseService;
+import com.example.demo.util.FhirMessages;
+import com.example.demo.util.BoundedInputStream;
+import com.example.demo.util.CorruptBodyException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Servlet-Filter, der komprimierte Anfragekörper ({@code Content-Encoding: gzip}
+ * bzw. {@code deflate}) transparent und streamend entpackt.
+ *
+ * Zum Schutz vor Dekompressionsbomben wird die Anzahl der entpackten Bytes
+ * begrenzt; bei Überschreitung wird die Anfrage mit HTTP 413 beantwortet.
+ * Beschädigte oder abgeschnittene Daten werden als {@link CorruptBodyException}
+ * gemeldet und von den Controllern mit HTTP 400 beantwortet.
+ * Nicht unterstützte Encodings werden mit HTTP 415 abgelehnt.
+ */
+@Component
+public class RequestDecompressionFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestDecompressionFilter.class);
+
+    private final FhirResponseService fhirResponseService;
+    private final Counter compressedBytes;
+    private final Counter decompressedBytes;
+
+    // Maximale Größe eines Anfragekörpers nach dem Entpacken
+    @Value("${fhir.request.max-decompressed-bytes:1073741824}")
+    private long maxDecompressedBytes;
+
+    public RequestDecompressionFilter(FhirResponseService fhirResponseService, MeterRegistry meterRegistry) {
+        this.fhirResponseService = fhirResponseService;
+        this.compressedBytes = meterRegistry.counter("fhir.request.compression.bytes", "stage", "compressed");
+        this.decompressedBytes = meterRegistry.counter("fhir.request.compression.bytes", "stage", "decompressed");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String encoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+        if (encoding == null || encoding.isBlank() || "identity".equalsIgnoreCase(encoding.trim())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String normalized = encoding.trim().toLowerCase(Locale.ROOT);
+        if (!"gzip".equals(normalized) && !"x-gzip".equals(normalized) && !"deflate".equals(normalized)) {
+            logger.warn("Rejecting request with unsupported Content-Encoding: {}", encoding);
+            writeResponse(response, fhirResponseService.handleUnsupportedEncoding(FhirMessages.UNSUPPORTED_ENCODING));
+            return;
+        }
+
+        long contentLength = request.getContentLengthLong();
+        if (contentLength > 0) {
+            compressedBytes.increment(contentLength);
+        }
+
+        DecompressingRequest wrapped = new DecompressingRequest(request, normalized);
+        try {
+            chain.doFilter(wrapped, response);
+        } finally {
+            decompressedBytes.increment(wrapped.getBytesRead());
+        }
+    }
+
+    private void writeResponse(HttpServletResponse response, ResponseEntity<String> entity) throws IOException {
+        response.setStatus(entity.getStatusCodeValue());
+        response.setContentType("application/fhir+json;charset=UTF-8");
+        response.getOutputStream().write(entity.getBody().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Request-Wrapper, der den entpackten Datenstrom liefert und die
+     * Encoding-/Längen-Header ausblendet.
+     */
+    private final class DecompressingRequest extends HttpServletRequestWrapper {
+
+        private final String encoding;
+        private DecompressedServletInputStream stream;
+
+        DecompressingRequest(HttpServletRequest request, String encoding) {
+            super(request);
+            this.encoding = encoding;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (stream == null) {
+                InputStream raw = super.getInputStream();
+                try {
+                    InputStream inflated = "deflate".equals(encoding)
+                            ? new InflaterInputStream(raw)
+                            : new GZIPInputStream(raw, 8192);
+                    stream = new DecompressedServletInputStream(new BoundedInputStream(inflated, maxDecompressedBytes));
+                } catch (ZipException | EOFException e) {
+                    // Ungültiger oder abgeschnittener gzip-Header
+                    throw new CorruptBodyException(e);
+                }
+            }
+            return stream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            String charset = getCharacterEncoding() != null ? getCharacterEncoding() : "UTF-8";
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1L;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            if (isHiddenHeader(name)) {
+                return null;
+            }
+            return super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if (isHiddenHeader(name)) {
+                return Collections.emptyEnumeration();
+            }
+            return super.getHeaders(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            List<String> names = Collections.list(super.getHeaderNames());
+            names.removeIf(this::isHiddenHeader);
+            return Collections.enumeration(names);
+        }
+
+        private boolean isHiddenHeader(String name) {
+            return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)
+                    || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name);
+        }
+
+        long getBytesRead() {
+            return stream == null ? 0 : stream.getBytesRead();
+        }
+    }
+
+    /**
+     * ServletInputStream über dem entpackten Datenstrom. Das Größenlimit prüft der
+     * umschlossene {@link BoundedInputStream}; Formatfehler des Inflaters (beschädigte
+     * oder abgeschnittene Daten) werden als {@link CorruptBodyException} gemeldet.
+     */
+    private static final class DecompressedServletInputStream extends ServletInputStream {
+
+        private final BoundedInputStream delegate;
+        private boolean finished = false;
+
+        DecompressedServletInputStream(BoundedInputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                int b = delegate.read();
+                finished = b == -1;
+                return b;
+            } catch (ZipException | EOFException e) {
+                throw new CorruptBodyException(e);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                int read = delegate.read(b, off, len);
+                finished = read == -1;
+                return read;
+            } catch (ZipException | EOFException e) {
+                throw new CorruptBodyException(e);
+            }
+        }
+
+        long getBytesRead() {
+            return delegate.getBytesRead();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException("Async reads are not supported for decompressed bodies");
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.demo.mapping;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hl7.fhir.instance.model.api.IBase;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition.IAccessor;
+
+/**
+ * Zur Startzeit kompiliertes Mapping einer FHIR-Ressource auf ein DTO.
+ *
+ * Jeder Pfad ist eine Kette bereits aufgelöster HAPI-Accessoren, jedes Zielfeld
+ * ein vorab ermittelter Setter-MethodHandle. Pro Anfrage werden daher weder Pfade
+ * geparst noch Reflection-Lookups durchgeführt.
+ *
+ * Primitive Werte werden über einen {@link PrimitiveReader} gelesen, der gegen die
+ * konkrete Basisklasse (z. B. {@code PrimitiveType}) statt gegen das Interface
+ * {@code IPrimitiveType} prüft. Typprüfungen gegen Interfaces nutzen in der JVM einen
+ * Cache mit nur einem Eintrag je Klasse; da HAPI dieselben Objekte gegen {@code IBase}
+ * prüft, würde dieser Cache bei jedem Element verdrängt.
+ *
+ * @param <T> Der DTO-Typ
+ */
+public final class CompiledMapping<T> {
+
+    private final String resourceType;
+    private final Class<T> targetType;
+    private final MethodHandle constructor;
+    private final List<FieldMapping> fields;
+
+    CompiledMapping(String resourceType, Class<T> targetType, MethodHandle constructor, List<FieldMapping> fields) {
+        this.resourceType = resourceType;
+        this.targetType = targetType;
+        this.constructor = constructor;
+        this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+    }
+
+    public String getResourceType() {
+        return resourceType;
+    }
+
+    public Class<T> getTargetType() {
+        return targetType;
+    }
+
+    /**
+     * Wendet das Mapping auf eine Ressource (bzw. ein Element) an.
+     *
+     * @throws ValueConversionException wenn ein Konverter den Wert nicht umwandeln kann;
+     *         die Fundstelle ist der Pfad des Zielfelds
+     */
+    public T map(IBase source) {
+        Object target;
+        try {
+            target = (Object) constructor.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not instantiate " + targetType.getName(), e);
+        }
+
+        for (FieldMapping field : fields) {
+            String value = field.evaluate(source);
+            try {
+                field.setter.invokeExact(target, (Object) value);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Could not set field " + field.name, e);
+            }
+        }
+        return targetType.cast(target);
+    }
+
+    /**
+     * Ein Zielfeld mit kompiliertem Pfad, Konverter und Setter.
+     */
+    static final class FieldMapping {
+
+        private final String name;
+        private final String location;
+        private final List<Step> path;
+        private final PrimitiveReader reader;
+        private final ValueConverter converter;
+        private final MethodHandle setter;
+
+        FieldMapping(String name, String location, List<Step> path, PrimitiveReader reader, ValueConverter converter,
+                MethodHandle setter) {
+            this.name = name;
+            this.location = location;
+            this.path = path;
+            this.reader = reader;
+            this.converter = converter;
+            this.setter = setter;
+        }
+
+        String evaluate(IBase source) {
+            List<IBase> current = Collections.singletonList(source);
+            for (Step step : path) {
+                current = step.apply(current);
+                if (current.isEmpty()) {
+                    break;
+                }
+            }
+
+            List<String> values = new ArrayList<>(current.size());
+            for (IBase element : current) {
+                String value = reader.read(element);
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+            try {
+                return converter.convert(values);
+            } catch (ValueConversionException e) {
+                throw e.at(location);
+            }
+        }
+    }
+
+    /**
+     * Ein Schritt eines kompilierten Pfads.
+     */
+    interface Step {
+        List<IBase> apply(List<IBase> input);
+    }
+
+    /**
+     * Navigiert zu einem Kindelement über den vorab aufgelösten HAPI-Accessor.
+     */
+    static final class ChildStep implements Step {
+
+        private final IAccessor accessor;
+
+        ChildStep(IAccessor accessor) {
+            this.accessor = accessor;
+        }
+
+        @Override
+        public List<IBase> apply(List<IBase> input) {
+            if (input.size() == 1) {
+                return accessor.getValues(input.get(0));
+            }
+            List<IBase> result = new ArrayList<>();
+            for (IBase element : input) {
+                result.addAll(accessor.getValues(element));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Wählt das n-te Element aus ({@code name[n]}).
+     */
+    static final class IndexStep implements Step {
+
+        private final int index;
+
+        IndexStep(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public List<IBase> apply(List<IBase> input) {
+            return index < input.size() ? Collections.singletonList(input.get(index)) : Collections.emptyList();
+        }
+    }
+
+    /**
+     * Filtert Elemente, deren primitives Kindelement einen bestimmten Wert hat
+     * ({@code where(system='...')}).
+     */
+    static final class WhereStep implements Step {
+
+        private final IAccessor accessor;
+        private final PrimitiveReader reader;
+        private final String expected;
+
+        WhereStep(IAccessor accessor, PrimitiveReader reader, String expected) {
+            this.accessor = accessor;
+            this.reader = reader;
+            this.expected = expected;
+        }
+
+        @Override
+        public List<IBase> apply(List<IBase> input) {
+            List<IBase> result = new ArrayList<>(1);
+            for (IBase element : input) {
+                for (IBase value : accessor.getValues(element)) {
+                    if (expected.equals(reader.read(value))) {
+                        result.add(element);
+                        break;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Liest den Wert eines primitiven Elements als String. Geprüft und aufgerufen wird
+     * gegen die zur Startzeit ermittelte Basisklasse, nicht gegen {@code IPrimitiveType}.
+     */
+    static final class PrimitiveReader {
+
+        private final Class<?> type;
+        private final MethodHandle valueAsString;
+
+        /**
+         * @param type          Konkrete Basisklasse der primitiven Elemente
+         * @param valueAsString Handle auf {@code getValueAsString()} mit Typ (IBase)String
+         */
+        PrimitiveReader(Class<?> type, MethodHandle valueAsString) {
+            this.type = type;
+            this.valueAsString = valueAsString;
+        }
+
+        /**
+         * @return Der Wert oder null, wenn das Element nicht primitiv ist oder keinen Wert hat
+         */
+        String read(IBase element) {
+            if (!type.isInstance(element)) {
+                return null;
+            }
+            try {
+                return (String) valueAsString.invokeExact(element);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Could not read primitive value of " + type.getName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.demo.mapping;
+
+import java.beans.PropertyDescriptor;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementDefinition;
+import ca.uhn.fhir.context.FhirContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Lädt die deklarativen Mapping-Definitionen (FHIR-Ressource → DTO) beim Start
+ * und kompiliert sie in {@link CompiledMapping}s.
+ *
+ * Pfade werden dabei gegen das HAPI-Strukturmodell des FhirContext aufgelöst,
+ * sodass Tippfehler in Elementnamen bereits beim Start auffallen und pro Anfrage
+ * nur noch die vorab ermittelten Accessoren aufgerufen werden.
+ */
+@Service
+public class FhirMappingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FhirMappingService.class);
+
+    private final FhirContext fhirContext;
+    private final ObjectMapper objectMapper;
+    private final Map<String, CompiledMapping<?>> mappings = new HashMap<>();
+
+    // Ablageort der Mapping-Definitionen
+    @Value("${fhir.mapping.location:classpath:mappings/*.json}")
+    private String mappingLocation;
+
+    public FhirMappingService(FhirContext fhirContext, ObjectMapper objectMapper) {
+        this.fhirContext = fhirContext;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    private void loadMappings() {
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources(mappingLocation);
+            for (Resource resource : resources) {
+                try (InputStream in = resource.getInputStream()) {
+                    MappingDefinition definition = objectMapper.readValue(in, MappingDefinition.class);
+                    mappings.put(definition.name, compile(definition));
+                    logger.info("Compiled FHIR mapping '{}' ({} -> {})", definition.name,
+                            definition.resourceType, definition.target);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Fehler beim Laden der Mapping-Definitionen: {}", mappingLocation, e);
+            throw new IllegalStateException("Error loading FHIR mappings from " + mappingLocation, e);
+        }
+    }
+
+    /**
+     * Wendet das Mapping mit dem angegebenen Namen an.
+     *
+     * @param name   Name der Mapping-Definition (z. B. "patient-to-person")
+     * @param source Die Quell-Ressource bzw. das Quell-Element
+     * @param target Erwarteter DTO-Typ
+     */
+    public <T> T map(String name, IBase source, Class<T> target) {
+        CompiledMapping<?> mapping = mappings.get(name);
+        if (mapping == null || !target.equals(mapping.getTargetType())) {
+            throw new IllegalStateException("No mapping '" + name + "' for target " + target.getName());
+        }
+        if (source instanceof IBaseResource && !mapping.getResourceType()
+                .equals(fhirContext.getResourceDefinition((IBaseResource) source).getName())) {
+            throw new IllegalArgumentException("Mapping '" + name + "' expects " + mapping.getResourceType());
+        }
+        return target.cast(mapping.map(source));
+    }
+
+    /**
+     * Kompiliert eine Mapping-Definition. Ist {@code resourceType} ein Pfad wie
+     * "DocumentReference.content", wird das Mapping relativ zu diesem Element kompiliert.
+     */
+    CompiledMapping<?> compile(MappingDefinition definition) throws ReflectiveOperationException {
+        Class<?> targetType = Class.forName(definition.target);
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        MethodHandle constructor = lookup.findConstructor(targetType, MethodType.methodType(void.class))
+                .asType(MethodType.methodType(Object.class));
+
+        BaseRuntimeElementDefinition<?> rootDefinition = resolveRoot(definition.resourceType);
+
+        List<CompiledMapping.FieldMapping> fields = new ArrayList<>();
+        for (Map.Entry<String, MappingDefinition.FieldDefinition> entry : definition.fields.entrySet()) {
+            PropertyDescriptor property = BeanUtils.getPropertyDescriptor(targetType, entry.getKey());
+            Method writeMethod = property != null ? property.getWriteMethod() : null;
+            if (writeMethod == null || !writeMethod.getParameterTypes()[0].equals(String.class)) {
+                throw new IllegalStateException("No String setter for field '" + entry.getKey() + "' on "
+                        + targetType.getName());
+            }
+            MethodHandle setter = lookup.unreflect(writeMethod)
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+
+            List<CompiledMapping.Step> path = new ArrayList<>();
+            BaseRuntimeElementDefinition<?> leaf = compilePath(rootDefinition, entry.getValue().path, path);
+            fields.add(new CompiledMapping.FieldMapping(entry.getKey(),
+                    definition.resourceType + "." + entry.getValue().path, path,
+                    primitiveReader(leaf, entry.getValue().path), entry.getValue().converter, setter));
+        }
+
+        return newMapping(rootResourceType(definition.resourceType), targetType, constructor, fields);
+    }
+
+    private static <T> CompiledMapping<T> newMapping(String resourceType, Class<T> targetType,
+            MethodHandle constructor, List<CompiledMapping.FieldMapping> fields) {
+        return new CompiledMapping<>(resourceType, targetType, constructor, fields);
+    }
+
+    private static String rootResourceType(String resourceType) {
+        int dot = resourceType.indexOf('.');
+        return dot >= 0 ? resourceType.substring(0, dot) : resourceType;
+    }
+
+    private BaseRuntimeElementDefinition<?> resolveRoot(String resourceType) {
+        String[] parts = resourceType.split("\\.");
+        BaseRuntimeElementDefinition<?> definition = fhirContext.getResourceDefinition(parts[0]);
+        for (int i = 1; i < parts.length; i++) {
+            BaseRuntimeChildDefinition child = requireChild(definition, parts[i], resourceType);
+            definition = child.getChildByName(parts[i]);
+        }
+        return definition;
+    }
+
+    /**
+     * Übersetzt einen Pfad in eine Kette von Schritten mit aufgelösten Accessoren.
+     *
+     * @param steps Erhält die Schritte des Pfads
+     * @return Die Definition des Elements, auf das der Pfad zeigt
+     */
+    private BaseRuntimeElementDefinition<?> compilePath(BaseRuntimeElementDefinition<?> root, String path,
+            List<CompiledMapping.Step> steps) {
+        BaseRuntimeElementDefinition<?> current = root;
+
+        for (String token : splitPath(path)) {
+            if (token.startsWith("where(") && token.endsWith(")")) {
+                String condition = token.substring("where(".length(), token.length() - 1);
+                int equals = condition.indexOf('=');
+                String element = condition.substring(0, equals).trim();
+                String expected = condition.substring(equals + 1).trim();
+                if (expected.length() < 2 || expected.charAt(0) != '\'' || !expected.endsWith("'")) {
+                    throw new IllegalStateException("Invalid where() condition in path: " + path);
+                }
+                BaseRuntimeChildDefinition child = requireChild(current, element, path);
+                steps.add(new CompiledMapping.WhereStep(child.getAccessor(),
+                        primitiveReader(child.getChildByName(element), path),
+                        expected.substring(1, expected.length() - 1)));
+                continue;
+            }
+
+            String name = token;
+            int index = -1;
+            int bracket = token.indexOf('[');
+            if (bracket >= 0) {
+                name = token.substring(0, bracket);
+                index = Integer.parseInt(token.substring(bracket + 1, token.indexOf(']')));
+            }
+
+            BaseRuntimeChildDefinition child = requireChild(current, name, path);
+            steps.add(new CompiledMapping.ChildStep(child.getAccessor()));
+            if (index >= 0) {
+                steps.add(new CompiledMapping.IndexStep(index));
+            }
+            current = child.getChildByName(name);
+        }
+        return current;
+    }
+
+    /**
+     * Erstellt den Leser für die Werte eines primitiven Elements. Als Typ dient die
+     * oberste Klasse der Hierarchie, die noch primitiv ist (in R4 {@code PrimitiveType}),
+     * damit auch abgeleitete Typen wie {@code CodeType} oder {@code UriType} passen.
+     */
+    private static CompiledMapping.PrimitiveReader primitiveReader(BaseRuntimeElementDefinition<?> definition,
+            String path) {
+        Class<?> type = definition == null ? null : definition.getImplementingClass();
+        if (type == null || !IPrimitiveType.class.isAssignableFrom(type)) {
+            throw new IllegalStateException("Path does not end in a primitive element: " + path);
+        }
+        while (type.getSuperclass() != null && IPrimitiveType.class.isAssignableFrom(type.getSuperclass())) {
+            type = type.getSuperclass();
+        }
+        try {
+            MethodHandle valueAsString = MethodHandles.publicLookup()
+                    .findVirtual(type, "getValueAsString", MethodType.methodType(String.class))
+                    .asType(MethodType.methodType(String.class, IBase.class));
+            return new CompiledMapping.PrimitiveReader(type, valueAsString);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No getValueAsString() on " + type.getName() + " in path: " + path, e);
+        }
+    }
+
+    private static BaseRuntimeChildDefinition requireChild(BaseRuntimeElementDefinition<?> definition, String name,
+            String path) {
+        if (!(definition instanceof BaseRuntimeElementCompositeDefinition)) {
+            throw new IllegalStateException("Element '" + name + "' cannot be navigated in path: " + path);
+        }
+        BaseRuntimeChildDefinition child = ((BaseRuntimeElementCompositeDefinition<?>) definition)
+                .getChildByName(name);
+        if (child == null) {
+            throw new IllegalStateException("Unknown element '" + name + "' in path: " + path);
+        }
+        return child;
+    }
+
+    /**
+     * Zerlegt einen Pfad an Punkten, die nicht in Anführungszeichen oder Klammern stehen.
+     */
+    private static List<String> splitPath(String path) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        boolean quoted = false;
+        int depth = 0;
+        for (char c : path.toCharArray()) {
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && c == '(') {
+                depth++;
+            } else if (!quoted && c == ')') {
+                depth--;
+            } else if (!quoted && depth == 0 && c == '.') {
+                tokens.add(token.toString());
+                token.setLength(0);
+                continue;
+            }
+            token.append(c);
+        }
+        tokens.add(token.toString());
+        return tokens;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.demo.mapping;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Deklarative Mapping-Definition, wie sie aus {@code mappings/*.json} gelesen wird.
+ *
+ * Beispiel:
+ * <pre>
+ * {
+ *   "name": "patient-to-person",
+ *   "resourceType": "Patient",
+ *   "target": "com.example.demo.dto.PersonDTO",
+ *   "fields": {
+ *     "firstName": { "path": "name[0].given", "converter": "JOIN" }
+ *   }
+ * }
+ * </pre>
+ */
+public class MappingDefinition {
+
+    public String name;
+    public String resourceType;
+    public String target;
+    public Map<String, FieldDefinition> fields = new LinkedHashMap<>();
+
+    /**
+     * Pfad (FHIRPath-ähnlich: Elementnamen, {@code [n]} und {@code where(x='y')})
+     * und Konverter für ein Zielfeld.
+     */
+    public static class FieldDefinition {
+        public String path;
+        public ValueConverter converter = ValueConverter.FIRST;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.demo.mapping;
+
+/**
+ * Wird geworfen, wenn ein {@link ValueConverter} einen Wert nicht umwandeln kann.
+ * Der Wert stammt aus der Anfrage; der Fehler wird daher als HTTP 400 mit der
+ * Fundstelle im OperationOutcome beantwortet.
+ */
+public class ValueConversionException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String location;
+    private final String value;
+
+    public ValueConversionException(String value, String message) {
+        this(null, value, message);
+    }
+
+    public ValueConversionException(String location, String value, String message) {
+        super(message);
+        this.location = location;
+        this.value = value;
+    }
+
+    /**
+     * @return dieselbe Ausnahme mit der Fundstelle (FHIRPath, z. B. {@code Patient.birthDate})
+     */
+    public ValueConversionException at(String location) {
+        return new ValueConversionException(location, value, getMessage());
+    }
+
+    /**
+     * @return die Fundstelle oder null, wenn sie nicht bekannt ist
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * @return der nicht umwandelbare Wert oder null, wenn keiner vorhanden war
+     */
+    public String getValue() {
+        return value;
+    }
+}
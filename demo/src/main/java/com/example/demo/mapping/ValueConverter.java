@@ -0,0 +1,92 @@
+package com.example.demo.mapping;
+
+import java.util.List;
+
+/**
+ * Konverter, die auf das Ergebnis eines Mapping-Pfads angewendet werden.
+ * Eingabe ist jeweils die Liste der String-Werte aller gefundenen Elemente
+ * (in Dokumentreihenfolge).
+ */
+public enum ValueConverter {
+
+    /** Erster Wert oder null. */
+    FIRST {
+        @Override
+        public String convert(List<String> values) {
+            return values.isEmpty() ? null : values.get(0);
+        }
+    },
+
+    /** Alle Werte mit Leerzeichen verbunden (z. B. mehrere Vornamen). */
+    JOIN {
+        @Override
+        public String convert(List<String> values) {
+            if (values.isEmpty()) {
+                return null;
+            }
+            return values.size() == 1 ? values.get(0) : String.join(" ", values);
+        }
+    },
+
+    /**
+     * ISO-8601-Datum nach deutschem Format unter Beibehaltung der Genauigkeit:
+     * YYYY-MM-DD (optional mit Uhrzeit) nach dd.MM.yyyy, YYYY-MM nach MM.yyyy und
+     * YYYY nach yyyy. FHIR erlaubt Teildaten z. B. für Geburtsdaten.
+     */
+    DATE {
+        @Override
+        public String convert(List<String> values) {
+            String value = FIRST.convert(values);
+            if (value == null) {
+                throw new ValueConversionException(null, "Missing date");
+            }
+            if (isIsoDate(value, 10)) {
+                return new StringBuilder(10)
+                        .append(value, 8, 10).append('.')
+                        .append(value, 5, 7).append('.')
+                        .append(value, 0, 4)
+                        .toString();
+            }
+            if (value.length() == 7 && isIsoDate(value, 7)) {
+                return new StringBuilder(7).append(value, 5, 7).append('.').append(value, 0, 4).toString();
+            }
+            if (value.length() == 4 && isIsoDate(value, 4)) {
+                return value;
+            }
+            throw new ValueConversionException(value, "Invalid date format. Expected format: YYYY, YYYY-MM or YYYY-MM-DD");
+        }
+    },
+
+    /** ID einer FHIR-Referenz (entfernt alles bis zum letzten /). */
+    REFERENCE_ID {
+        @Override
+        public String convert(List<String> values) {
+            String reference = FIRST.convert(values);
+            if (reference == null) {
+                return null;
+            }
+            int slash = reference.lastIndexOf('/');
+            return slash >= 0 ? reference.substring(slash + 1) : reference;
+        }
+    };
+
+    public abstract String convert(List<String> values);
+
+    /**
+     * Prüft ohne Regex, ob die ersten {@code length} Zeichen des Werts dem Format
+     * YYYY-MM-DD (bzw. dessen Anfang YYYY-MM oder YYYY) entsprechen.
+     */
+    private static boolean isIsoDate(String value, int length) {
+        if (value.length() < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            boolean separator = i == 4 || i == 7;
+            if (separator ? c != '-' : (c < '0' || c > '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.demo.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Zugangskontrolle für eingehende Anfragen.
+ *
+ * <ul>
+ * <li>Ratenbegrenzung pro Client über Token-Buckets (HTTP 429)</li>
+ * <li>Globale Obergrenze gleichzeitig verarbeiteter Anfragen</li>
+ * <li>Latenzbasiertes Abwerfen: Überschreitet die erwartete bzw. tatsächliche
+ * Wartezeit auf einen Verarbeitungsplatz das Budget, wird früh abgelehnt (HTTP 503)</li>
+ * </ul>
+ *
+ * So bleibt die Latenz der angenommenen Anfragen auch in Lastspitzen stabil,
+ * statt dass alle Aufrufer in wachsenden Warteschlangen in Timeouts laufen.
+ */
+@Service
+public class AdmissionControlService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControlService.class);
+
+    // Glättungsfaktor des gleitenden Mittels der Bearbeitungszeit
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong lastSweep = new AtomicLong();
+    private final MeterRegistry meterRegistry;
+
+    private Semaphore inFlight;
+    private TokenBucket overflowBucket;
+    private long sweepIntervalNanos;
+    private volatile double avgServiceNanos = 0;
+
+    private Counter rejectedRateLimit;
+    private Counter rejectedQueueTime;
+    private Timer queueTime;
+
+    // Dauerhaft erlaubte Anfragen pro Sekunde und Client sowie kurzfristiger Burst
+    @Value("${fhir.admission.client-rate-per-second:20}")
+    private double clientRatePerSecond;
+
+    @Value("${fhir.admission.client-burst:40}")
+    private int clientBurst;
+
+    // Maximale Anzahl verfolgter Clients (inaktive Buckets werden darüber hinaus verworfen,
+    // weitere Clients teilen sich einen gemeinsamen Bucket)
+    @Value("${fhir.admission.max-clients:10000}")
+    private int maxClients;
+
+    // Globale Obergrenze gleichzeitig verarbeiteter Anfragen
+    @Value("${fhir.admission.max-in-flight:64}")
+    private int maxInFlight;
+
+    // Maximale Wartezeit auf einen Verarbeitungsplatz
+    @Value("${fhir.admission.queue-time-budget-ms:200}")
+    private long queueTimeBudgetMs;
+
+    public AdmissionControlService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    private void init() {
+        if (maxInFlight < 1 || clientRatePerSecond <= 0 || clientBurst < 1 || maxClients < 1) {
+            throw new IllegalStateException("fhir.admission.* limits must be positive");
+        }
+        inFlight = new Semaphore(maxInFlight);
+        overflowBucket = new TokenBucket(clientRatePerSecond, clientBurst);
+        // Ein bei der letzten Bereinigung leerer Bucket ist spätestens nach dieser Zeit wieder voll
+        sweepIntervalNanos = Math.min(TimeUnit.SECONDS.toNanos(1),
+                (long) (clientBurst / clientRatePerSecond * TimeUnit.SECONDS.toNanos(1)));
+        lastSweep.set(System.nanoTime() - sweepIntervalNanos);
+        rejectedRateLimit = meterRegistry.counter("fhir.admission.rejected", "reason", "rate_limit");
+        rejectedQueueTime = meterRegistry.counter("fhir.admission.rejected", "reason", "queue_time");
+        queueTime = meterRegistry.timer("fhir.admission.queue.time");
+        meterRegistry.gauge("fhir.admission.in_flight", this, service -> maxInFlight - service.inFlight.availablePermits());
+    }
+
+    /**
+     * Entscheidet über die Annahme einer Anfrage. Wird sie angenommen, muss
+     * {@link Admission#release()} nach der Verarbeitung aufgerufen werden.
+     *
+     * @param clientId Kennung des Clients (Header, Zertifikat oder Adresse)
+     */
+    public Admission admit(String clientId) throws InterruptedException {
+        // (1) Ratenbegrenzung pro Client
+        long waitNanos = bucketFor(clientId).tryAcquire(System.nanoTime());
+        if (waitNanos > 0) {
+            rejectedRateLimit.increment();
+            logger.debug("Rate limit exceeded for client {}", clientId);
+            return Admission.rejected(429, toRetryAfterSeconds(waitNanos));
+        }
+
+        // (2) Frühes Abwerfen, wenn die erwartete Wartezeit das Budget bereits übersteigt
+        long budgetNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeBudgetMs);
+        long expectedWait = expectedQueueNanos();
+        if (expectedWait > budgetNanos) {
+            rejectedQueueTime.increment();
+            return Admission.rejected(503, toRetryAfterSeconds(expectedWait));
+        }
+
+        // (3) Globale Obergrenze, höchstens bis zum Ende des Budgets warten
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = inFlight.tryAcquire(budgetNanos, TimeUnit.NANOSECONDS);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        long waited = System.nanoTime() - start;
+        queueTime.record(waited, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            rejectedQueueTime.increment();
+            logger.debug("Queue time budget of {} ms exceeded, shedding request", queueTimeBudgetMs);
+            return Admission.rejected(503, toRetryAfterSeconds(Math.max(expectedQueueNanos(), budgetNanos)));
+        }
+        return new Admission(this, System.nanoTime());
+    }
+
+    /**
+     * Erwartete Wartezeit für eine neue Anfrage: Anzahl der Wartenden pro
+     * Verarbeitungsplatz mal mittlere Bearbeitungszeit.
+     */
+    private long expectedQueueNanos() {
+        int queued = waiting.get();
+        if (queued == 0 && inFlight.availablePermits() > 0) {
+            return 0;
+        }
+        return (long) ((queued + 1) * avgServiceNanos / maxInFlight);
+    }
+
+    private void release(long startNanos) {
+        inFlight.release();
+        double serviceNanos = System.nanoTime() - startNanos;
+        // Ungeschützte Aktualisierung genügt für eine Schätzung
+        avgServiceNanos = avgServiceNanos == 0 ? serviceNanos
+                : avgServiceNanos + EWMA_ALPHA * (serviceNanos - avgServiceNanos);
+    }
+
+    /**
+     * Liefert den Bucket des Clients. Ist die Obergrenze verfolgter Clients erreicht und
+     * lassen sich keine inaktiven Buckets verwerfen, teilen sich alle weiteren Clients
+     * einen gemeinsamen Bucket, damit die Tabelle nicht unbegrenzt wächst.
+     */
+    private TokenBucket bucketFor(String clientId) {
+        TokenBucket bucket = buckets.get(clientId);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxClients) {
+            sweepInactiveBuckets();
+            if (buckets.size() >= maxClients) {
+                logger.debug("Client table full, client {} shares the overflow bucket", clientId);
+                return overflowBucket;
+            }
+        }
+        return buckets.computeIfAbsent(clientId, key -> new TokenBucket(clientRatePerSecond, clientBurst));
+    }
+
+    /**
+     * Verwirft volle Buckets, die zu inaktiven Clients gehören. Höchstens einmal pro
+     * Intervall, damit Anfragen im Überlauf nicht jedes Mal die ganze Tabelle durchlaufen.
+     */
+    private void sweepInactiveBuckets() {
+        long now = System.nanoTime();
+        long last = lastSweep.get();
+        if (now - last < sweepIntervalNanos || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        buckets.values().removeIf(candidate -> candidate.isFull(now));
+    }
+
+    private static long toRetryAfterSeconds(long nanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(nanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    /**
+     * Ergebnis der Zugangskontrolle.
+     */
+    public static final class Admission {
+
+        private final AdmissionControlService owner;
+        private final long startNanos;
+        private final int rejectionStatus;
+        private final long retryAfterSeconds;
+        private boolean released;
+
+        private Admission(AdmissionControlService owner, long startNanos) {
+            this.owner = owner;
+            this.startNanos = startNanos;
+            this.rejectionStatus = 0;
+            this.retryAfterSeconds = 0;
+        }
+
+        private Admission(int rejectionStatus, long retryAfterSeconds) {
+            this.owner = null;
+            this.startNanos = 0;
+            this.rejectionStatus = rejectionStatus;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        static Admission rejected(int status, long retryAfterSeconds) {
+            return new Admission(status, retryAfterSeconds);
+        }
+
+        public boolean isAdmitted() {
+            return owner != null;
+        }
+
+        /**
+         * @return 429 (Ratenbegrenzung) oder 503 (Überlast); 0, wenn angenommen
+         */
+        public int getRejectionStatus() {
+            return rejectionStatus;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+
+        /**
+         * Gibt den Verarbeitungsplatz frei; mehrfacher Aufruf ist wirkungslos.
+         */
+        public void release() {
+            if (owner != null && !released) {
+                released = true;
+                owner.release(startNanos);
+            }
+        }
+    }
+
+    /**
+     * Token-Bucket mit kontinuierlicher Auffüllung.
+     */
+    private static final class TokenBucket {
+
+        private final double tokensPerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(double tokensPerSecond, int capacity) {
+            this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        /**
+         * @return 0, wenn ein Token entnommen wurde; sonst die Wartezeit bis zum nächsten Token
+         */
+        synchronized long tryAcquire(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / tokensPerNano);
+        }
+
+        synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+
+        private void refill(long now) {
+            if (now > lastRefill) {
+                tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+                lastRefill = now;
+            }
+        }
+    }
+}
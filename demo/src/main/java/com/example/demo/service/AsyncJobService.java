@@ -0,0 +1,386 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.util.FhirMessages;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Asynchrone Verarbeitung von Anfragen mit {@code Prefer: respond-async}.
+ *
+ * Aufträge laufen in einem eigenen, begrenzten Thread-Pool. Der Status jedes
+ * Auftrags (ausstehend bzw. HTTP-Status und OperationOutcome des Ergebnisses) wird
+ * im Speicher gehalten und ist über eine Status-URL abrufbar. Die Anzahl der
+ * Statuseinträge ist begrenzt; abgeschlossene Aufträge werden nach Ablauf der
+ * Aufbewahrungsdauer bzw. bei Erreichen der Obergrenze (älteste zuerst) verworfen.
+ *
+ * Optional werden die Statuseinträge zusätzlich als JSON-Dateien abgelegt, sodass
+ * Ergebnisse auch nach einem Neustart abrufbar bleiben. Aufträge, die beim Neustart
+ * noch ausstanden, werden dann als abgebrochen gemeldet. Aus dem Speicher verdrängte
+ * Einträge bleiben so bis zum Ablauf der Aufbewahrungsdauer abrufbar; abgelaufene
+ * Dateien werden beim Start und danach höchstens einmal pro Minute gelöscht.
+ */
+@Service
+public class AsyncJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncJobService.class);
+
+    private static final Pattern JOB_ID = Pattern.compile("[0-9a-f\\-]{36}");
+
+    private static final String FILE_SUFFIX = ".json";
+
+    // Mindestabstand zwischen zwei Durchläufen über das Ablageverzeichnis
+    private static final long PURGE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final FhirResponseService fhirResponseService;
+    private final ObjectMapper objectMapper;
+
+    private final ConcurrentHashMap<String, JobStatus> jobs = new ConcurrentHashMap<>();
+    // Aufträge im Speicher in Eingangsreihenfolge (für Aufbewahrung und Verdrängung)
+    private final ConcurrentLinkedQueue<JobStatus> order = new ConcurrentLinkedQueue<>();
+    private final AtomicLong lastStorePurge = new AtomicLong();
+
+    private ThreadPoolExecutor executor;
+    private Path persistenceDirectory;
+
+    // Anzahl paralleler Verarbeitungs-Threads und maximale Anzahl wartender Aufträge
+    @Value("${fhir.async.threads:4}")
+    private int threads;
+
+    @Value("${fhir.async.queue-capacity:1000}")
+    private int queueCapacity;
+
+    // Maximale Anzahl gespeicherter Statuseinträge
+    @Value("${fhir.async.max-jobs:10000}")
+    private int maxJobs;
+
+    // Aufbewahrungsdauer abgeschlossener Aufträge
+    @Value("${fhir.async.retention-minutes:60}")
+    private long retentionMinutes;
+
+    // Verzeichnis zur Ablage der Statuseinträge (leer = nur im Speicher)
+    @Value("${fhir.async.persistence-dir:}")
+    private String persistenceDir;
+
+    public AsyncJobService(FhirResponseService fhirResponseService, ObjectMapper objectMapper) {
+        this.fhirResponseService = fhirResponseService;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    private void init() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "fhir-async-" + counter.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        if (persistenceDir != null && !persistenceDir.isBlank()) {
+            persistenceDirectory = Paths.get(persistenceDir);
+            try {
+                Files.createDirectories(persistenceDirectory);
+            } catch (IOException e) {
+                logger.error("Fehler beim Anlegen des Verzeichnisses für asynchrone Aufträge: {}", persistenceDir, e);
+                throw new IllegalStateException("Error creating async job directory " + persistenceDir, e);
+            }
+            purgeStored(true);
+        }
+        logger.info("Async processing enabled ({} threads, persistence {})", threads,
+                persistenceDirectory != null ? persistenceDirectory : "off");
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Prüft, ob der {@code Prefer}-Header die asynchrone Verarbeitung anfordert.
+     */
+    public static boolean isRespondAsync(String prefer) {
+        if (prefer == null) {
+            return false;
+        }
+        for (String token : prefer.split(",")) {
+            if ("respond-async".equals(token.trim().toLowerCase(Locale.ROOT))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reiht einen Auftrag ein.
+     *
+     * @param job Verarbeitung, deren Antwort (Status + OperationOutcome) gespeichert wird
+     * @return ID des Auftrags für die Status-URL
+     * @throws RejectedExecutionException wenn Warteschlange oder Statusspeicher voll sind
+     */
+    public synchronized String submit(Callable<ResponseEntity<String>> job) {
+        purgeExpired();
+        if (jobs.size() >= maxJobs && !evictOldestFinished()) {
+            throw new RejectedExecutionException("Async job store is full");
+        }
+
+        String id = UUID.randomUUID().toString();
+        JobStatus pending = JobStatus.pending(id);
+        jobs.put(id, pending);
+        persist(pending);
+        try {
+            executor.execute(() -> run(id, job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(id);
+            deleteStored(id);
+            throw e;
+        }
+        order.add(pending);
+        return id;
+    }
+
+    private void run(String id, Callable<ResponseEntity<String>> job) {
+        ResponseEntity<String> response;
+        try {
+            response = job.call();
+        } catch (Exception e) {
+            response = fhirResponseService.handleException(e, FhirMessages.INTERNAL_SERVER_ERROR);
+        }
+        int httpStatus = response.getStatusCodeValue();
+        String outcome = response.getBody();
+        // Ausstehende Aufträge werden nie verdrängt, der Eintrag ist daher vorhanden
+        JobStatus finished = jobs.computeIfPresent(id, (key, status) -> status.finish(httpStatus, outcome));
+        if (finished != null) {
+            persist(finished);
+            logger.debug("Async job {} finished with status {}", id, httpStatus);
+        }
+    }
+
+    /**
+     * Liefert den Status eines Auftrags oder null, wenn er unbekannt bzw. verworfen ist.
+     */
+    public JobStatus getStatus(String id) {
+        if (id == null || !JOB_ID.matcher(id).matches()) {
+            return null;
+        }
+        JobStatus status = jobs.get(id);
+        if (status != null) {
+            return status;
+        }
+        JobStatus stored = load(id);
+        if (stored != null && !stored.isDone()) {
+            // Ausstehend auf der Platte, aber nicht im Speicher: durch Neustart abgebrochen
+            ResponseEntity<String> aborted = fhirResponseService.handleServiceUnavailable(FhirMessages.ASYNC_JOB_ABORTED);
+            return stored.finish(aborted.getStatusCodeValue(), aborted.getBody());
+        }
+        return stored;
+    }
+
+    private void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes);
+        Iterator<JobStatus> iterator = order.iterator();
+        while (iterator.hasNext()) {
+            JobStatus entry = iterator.next();
+            if (entry.getCreatedAt() >= cutoff) {
+                break;
+            }
+            JobStatus status = jobs.get(entry.getId());
+            if (status == null || status.isDone()) {
+                iterator.remove();
+                jobs.remove(entry.getId());
+                deleteStored(entry.getId());
+            }
+        }
+        purgeStored(false);
+    }
+
+    /**
+     * Löscht abgelegte Einträge, deren Aufbewahrungsdauer abgelaufen ist. Erfasst auch
+     * verdrängte Aufträge und solche aus früheren Läufen, die nicht mehr im Speicher sind.
+     */
+    private void purgeStored(boolean startup) {
+        if (persistenceDirectory == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long last = lastStorePurge.get();
+        if (!startup && (now - last < PURGE_INTERVAL_MS || !lastStorePurge.compareAndSet(last, now))) {
+            return;
+        }
+        lastStorePurge.set(now);
+        long cutoff = now - TimeUnit.MINUTES.toMillis(retentionMinutes);
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(persistenceDirectory, "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String id = name.substring(0, name.length() - FILE_SUFFIX.length());
+                if (!jobs.containsKey(id) && Files.getLastModifiedTime(file).toMillis() < cutoff
+                        && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not purge expired async jobs in {}", persistenceDirectory, e);
+        }
+        if (deleted > 0) {
+            logger.info("Deleted {} expired async job results from {}", deleted, persistenceDirectory);
+        }
+    }
+
+    /**
+     * Verdrängt den ältesten abgeschlossenen Auftrag aus dem Speicher. Abgelegte
+     * Ergebnisse bleiben bis zum Ablauf der Aufbewahrungsdauer abrufbar
+     * (siehe {@link #purgeStored}).
+     */
+    private boolean evictOldestFinished() {
+        Iterator<JobStatus> iterator = order.iterator();
+        while (iterator.hasNext()) {
+            JobStatus entry = iterator.next();
+            JobStatus status = jobs.get(entry.getId());
+            if (status != null && status.isDone()) {
+                iterator.remove();
+                jobs.remove(entry.getId());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void persist(JobStatus status) {
+        if (persistenceDirectory == null) {
+            return;
+        }
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("id", status.getId());
+        record.put("done", status.isDone());
+        record.put("status", status.getHttpStatus());
+        record.put("outcome", status.getOutcome());
+        record.put("createdAt", status.getCreatedAt());
+        try {
+            Path target = persistenceDirectory.resolve(status.getId() + FILE_SUFFIX);
+            Path temp = persistenceDirectory.resolve(status.getId() + FILE_SUFFIX + ".part");
+            objectMapper.writeValue(temp.toFile(), record);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not persist status of async job {}", status.getId(), e);
+        }
+    }
+
+    private JobStatus load(String id) {
+        if (persistenceDirectory == null) {
+            return null;
+        }
+        Path file = persistenceDirectory.resolve(id + FILE_SUFFIX);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            JsonNode record = objectMapper.readTree(file.toFile());
+            long createdAt = record.path("createdAt").asLong();
+            if (createdAt < System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes)) {
+                deleteStored(id);
+                return null;
+            }
+            return new JobStatus(id, record.path("done").asBoolean(), record.path("status").asInt(),
+                    record.path("outcome").asText(null), createdAt);
+        } catch (IOException e) {
+            logger.warn("Could not read status of async job {}", id, e);
+            return null;
+        }
+    }
+
+    private void deleteStored(String id) {
+        if (persistenceDirectory == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(persistenceDirectory.resolve(id + FILE_SUFFIX));
+        } catch (IOException e) {
+            logger.warn("Could not delete status of async job {}", id, e);
+        }
+    }
+
+    /**
+     * Unveränderlicher Status eines Auftrags.
+     */
+    public static final class JobStatus {
+
+        private final String id;
+        private final boolean done;
+        private final int httpStatus;
+        private final String outcome;
+        private final long createdAt;
+
+        JobStatus(String id, boolean done, int httpStatus, String outcome, long createdAt) {
+            this.id = id;
+            this.done = done;
+            this.httpStatus = httpStatus;
+            this.outcome = outcome;
+            this.createdAt = createdAt;
+        }
+
+        static JobStatus pending(String id) {
+            return new JobStatus(id, false, 0, null, System.currentTimeMillis());
+        }
+
+        JobStatus finish(int status, String body) {
+            return new JobStatus(id, true, status, body, createdAt);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+
+        /**
+         * @return HTTP-Status des Ergebnisses; 0, solange der Auftrag aussteht
+         */
+        public int getHttpStatus() {
+            return httpStatus;
+        }
+
+        /**
+         * @return OperationOutcome des Ergebnisses als JSON; null, solange der Auftrag aussteht
+         */
+        public String getOutcome() {
+            return outcome;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+    }
+}
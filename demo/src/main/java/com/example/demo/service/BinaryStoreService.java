@@ -0,0 +1,191 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import com.example.demo.util.BinaryNotFoundException;
+import com.example.demo.util.BoundedInputStream;
+import com.example.demo.util.FileSlice;
+
+/**
+ * Lokaler, dateibasierter Speicher für FHIR-Binary-Ressourcen.
+ *
+ * Clients laden große Dokumente als Rohdaten über {@code POST /fhir/Binary} hoch und
+ * referenzieren sie anschließend per {@code Attachment.url} (z. B. "Binary/123").
+ * Die Daten werden beim Hochladen einmalig Base64-kodiert abgelegt, da die
+ * proprietäre API den Inhalt als contentB64 erwartet. Beim Senden wird die Datei
+ * blockweise über einen FileChannel in die Puffer der Verbindung gelesen; sie muss
+ * so nicht erneut kodiert werden und liegt nie vollständig im Heap.
+ *
+ * Uploads sind auf {@code fhir.binary-store.max-bytes} begrenzt. Gespeicherte Binaries
+ * werden nach {@code fhir.binary-store.retention-hours} gelöscht; geprüft wird beim
+ * Start und höchstens einmal pro Minute bei einem neuen Upload.
+ */
+@Service
+public class BinaryStoreService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BinaryStoreService.class);
+
+    // Erlaubt "Binary/{id}" sowie absolute URLs, die auf ".../Binary/{id}" enden
+    private static final Pattern BINARY_REFERENCE = Pattern.compile("(?:^|.*/)Binary/([A-Za-z0-9\\-.]{1,64})$");
+    private static final String FILE_SUFFIX = ".b64";
+    private static final String PART_SUFFIX = ".part";
+    private static final long PURGE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
+    @Value("${fhir.binary-store.dir:${java.io.tmpdir}/fhir-binary}")
+    private String storeDir;
+
+    // Maximale Größe eines Uploads (Rohdaten vor der Base64-Kodierung)
+    @Value("${fhir.binary-store.max-bytes:536870912}")
+    private long maxBytes;
+
+    // Aufbewahrungsdauer gespeicherter Binaries
+    @Value("${fhir.binary-store.retention-hours:24}")
+    private long retentionHours;
+
+    private Path storePath;
+    private final AtomicLong lastPurge = new AtomicLong();
+
+    @PostConstruct
+    private void initStore() {
+        storePath = Paths.get(storeDir).toAbsolutePath();
+        try {
+            Files.createDirectories(storePath);
+        } catch (IOException e) {
+            logger.error("Binary store directory could not be created: {}", storePath, e);
+            throw new IllegalStateException("Binary store directory could not be created: " + storePath, e);
+        }
+        purgeExpired(true);
+        logger.info("Binary store initialized at {} (retention {} h, max {} bytes)", storePath, retentionHours,
+                maxBytes);
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Speichert die Rohdaten eines Binary-Uploads Base64-kodiert auf der Platte.
+     *
+     * @param content Die Rohdaten des Uploads
+     * @return Die logische ID der neuen Binary-Ressource
+     * @throws com.example.demo.util.PayloadTooLargeException wenn der Upload
+     *         {@code fhir.binary-store.max-bytes} überschreitet
+     */
+    public String store(InputStream content) throws IOException {
+        purgeExpired(false);
+        String id = UUID.randomUUID().toString();
+        Path target = storePath.resolve(id + FILE_SUFFIX);
+        Path temp = Files.createTempFile(storePath, id, PART_SUFFIX);
+        try {
+            try (OutputStream out = Base64.getEncoder().wrap(Files.newOutputStream(temp))) {
+                StreamUtils.copy(new BoundedInputStream(content, maxBytes), out);
+            }
+            Files.move(temp, target);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        logger.info("Stored Binary/{} ({} Base64 bytes)", id, Files.size(target));
+        return id;
+    }
+
+    /**
+     * Prüft, ob die URL eines Attachments auf eine Binary-Ressource verweist.
+     */
+    public boolean isBinaryReference(String url) {
+        return url != null && BINARY_REFERENCE.matcher(url).matches();
+    }
+
+    /**
+     * Prüft, ob die URL auf eine gespeicherte Binary-Ressource verweist.
+     */
+    public boolean exists(String url) {
+        Matcher matcher = url == null ? null : BINARY_REFERENCE.matcher(url);
+        return matcher != null && matcher.matches()
+                && Files.isRegularFile(storePath.resolve(matcher.group(1) + FILE_SUFFIX));
+    }
+
+    /**
+     * Löscht Binaries, deren Aufbewahrungsdauer abgelaufen ist. Beim Start werden
+     * zusätzlich abgebrochene Uploads entfernt.
+     *
+     * @param startup true beim Start; sonst wird höchstens einmal pro Minute geprüft
+     */
+    private void purgeExpired(boolean startup) {
+        long now = System.currentTimeMillis();
+        long last = lastPurge.get();
+        if (!startup && (now - last < PURGE_INTERVAL_MS || !lastPurge.compareAndSet(last, now))) {
+            return;
+        }
+        lastPurge.set(now);
+        long cutoff = now - TimeUnit.HOURS.toMillis(retentionHours);
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(storePath)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                boolean expired = name.endsWith(FILE_SUFFIX)
+                        && Files.getLastModifiedTime(file).toMillis() < cutoff;
+                if (expired || (startup && name.endsWith(PART_SUFFIX))) {
+                    Files.deleteIfExists(file);
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not purge expired binaries in {}", storePath, e);
+        }
+        if (deleted > 0) {
+            logger.info("Deleted {} expired or incomplete binaries from {}", deleted, storePath);
+        }
+    }
+
+    /**
+     * Löst eine Attachment-URL in den Base64-Inhalt der gespeicherten Binary-Ressource auf.
+     *
+     * @param url Die Attachment-URL (z. B. "Binary/123")
+     * @return Der Dateibereich mit dem Base64-Inhalt
+     * @throws IllegalArgumentException wenn die URL nicht auf eine Binary-Ressource verweist
+     * @throws BinaryNotFoundException wenn die Binary-Ressource nicht (mehr) gespeichert ist,
+     *         etwa weil sie seit der Validierung durch die Aufbewahrungsfrist gelöscht wurde
+     */
+    public FileSlice resolve(String url) {
+        Matcher matcher = url == null ? null : BINARY_REFERENCE.matcher(url);
+        if (matcher == null || !matcher.matches()) {
+            throw new IllegalArgumentException("Attachment url is not a Binary reference: " + url);
+        }
+
+        Path file = storePath.resolve(matcher.group(1) + FILE_SUFFIX);
+        try {
+            if (!Files.isRegularFile(file)) {
+                logger.warn("Referenced Binary not found: {}", url);
+                throw new BinaryNotFoundException(url);
+            }
+            return new FileSlice(file, 0, Files.size(file));
+        } catch (NoSuchFileException e) {
+            logger.warn("Referenced Binary was deleted while resolving: {}", url);
+            throw new BinaryNotFoundException(url);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Referenced Binary could not be read: " + url, e);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.demo.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Bulkheads zur Isolation des Patient- und des DocumentReference-Verkehrs.
+ *
+ * Kleine, latenzkritische Patient-Anfragen ({@code /Person}) und große, langsame
+ * Dokument-Uploads ({@code /Document}) erhalten jeweils eine eigene Obergrenze
+ * gleichzeitiger Anfragen, eine Obergrenze gleichzeitig belegter Dispatch-Lanes
+ * ({@link PatientDispatchService}) und einen eigenen Verbindungspool zur proprietären
+ * API ({@link ProprietaryApiService}). Die Lanes selbst werden geteilt, damit Daten
+ * desselben Patienten über beide Bulkheads hinweg in Eingangsreihenfolge bleiben; ein
+ * Ansturm großer Dokumente belegt dennoch nie alle Lanes, Verbindungen oder
+ * Servlet-Threads. Die Dokument-Grenze liegt standardmäßig bei der Hälfte der
+ * Validierungs-Threads, sodass dort immer Threads für Patient-Anfragen frei bleiben.
+ *
+ * Pro Bulkhead werden Auslastung (in_flight, saturation), Wartezeit und Ablehnungen
+ * als Metriken veröffentlicht.
+ */
+@Service
+public class BulkheadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkheadService.class);
+
+    public static final String PERSON = "person";
+    public static final String DOCUMENT = "document";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Bulkhead> bulkheads = new LinkedHashMap<>();
+
+    // Patient-Anfragen: gleichzeitige Anfragen, Wartezeit auf einen freien Platz, Lanes und Verbindungen
+    @Value("${fhir.bulkhead.person.max-concurrent:64}")
+    private int personMaxConcurrent;
+
+    @Value("${fhir.bulkhead.person.max-wait-ms:50}")
+    private long personMaxWaitMs;
+
+    @Value("${fhir.bulkhead.person.lanes:8}")
+    private int personLanes;
+
+    @Value("${fhir.bulkhead.person.connections:8}")
+    private int personConnections;
+
+    // Dokument-Anfragen: gleichzeitige Anfragen (0 = Hälfte der Validierungs-Threads), Wartezeit
+    // auf einen freien Platz, Lanes und Verbindungen
+    @Value("${fhir.bulkhead.document.max-concurrent:0}")
+    private int documentMaxConcurrent;
+
+    @Value("${fhir.bulkhead.document.max-wait-ms:1000}")
+    private long documentMaxWaitMs;
+
+    @Value("${fhir.bulkhead.document.lanes:4}")
+    private int documentLanes;
+
+    @Value("${fhir.bulkhead.document.connections:4}")
+    private int documentConnections;
+
+    // Anzahl der Validierungs-Threads (0 = Anzahl der CPU-Kerne), Grundlage der Dokument-Grenze
+    @Value("${fhir.validation.threads:0}")
+    private int validatorThreads;
+
+    public BulkheadService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    private void createBulkheads() {
+        register(new Bulkhead(PERSON, "/Person", personMaxConcurrent, personMaxWaitMs, personLanes, personConnections));
+        int documentLimit = documentMaxConcurrent > 0 ? documentMaxConcurrent
+                : Math.max(1, FhirValidatorService.poolSize(validatorThreads) / 2);
+        register(new Bulkhead(DOCUMENT, "/Document", documentLimit, documentMaxWaitMs, documentLanes,
+                documentConnections));
+    }
+
+    private void register(Bulkhead bulkhead) {
+        if (bulkhead.maxConcurrent < 1 || bulkhead.lanes < 1 || bulkhead.connections < 1) {
+            throw new IllegalStateException("Bulkhead " + bulkhead.name + " needs positive limits");
+        }
+        bulkheads.put(bulkhead.name, bulkhead);
+        Gauge.builder("fhir.bulkhead.in_flight", bulkhead, Bulkhead::getInFlight)
+                .tag("bulkhead", bulkhead.name)
+                .register(meterRegistry);
+        Gauge.builder("fhir.bulkhead.saturation", bulkhead,
+                        b -> (double) b.getInFlight() / b.maxConcurrent)
+                .tag("bulkhead", bulkhead.name)
+                .register(meterRegistry);
+        bulkhead.waitTime = meterRegistry.timer("fhir.bulkhead.wait", "bulkhead", bulkhead.name);
+        bulkhead.rejected = meterRegistry.counter("fhir.bulkhead.rejected", "bulkhead", bulkhead.name);
+        logger.info("Bulkhead {} ({}): {} concurrent requests, {} lanes, {} connections", bulkhead.name,
+                bulkhead.endpoint, bulkhead.maxConcurrent, bulkhead.lanes, bulkhead.connections);
+    }
+
+    public Bulkhead get(String name) {
+        Bulkhead bulkhead = bulkheads.get(name);
+        if (bulkhead == null) {
+            throw new IllegalArgumentException("Unknown bulkhead: " + name);
+        }
+        return bulkhead;
+    }
+
+    public Collection<Bulkhead> getAll() {
+        return Collections.unmodifiableCollection(bulkheads.values());
+    }
+
+    /**
+     * Abgeschotteter Bereich mit eigener Obergrenze gleichzeitiger Anfragen.
+     */
+    public static final class Bulkhead {
+
+        private final String name;
+        private final String endpoint;
+        private final int maxConcurrent;
+        private final long maxWaitMs;
+        private final int lanes;
+        private final int connections;
+        private final Semaphore permits;
+        // Belegte Dispatch-Lanes: Lane → eingereihte oder laufende Aufträge dieses Bulkheads
+        private final Map<Integer, Integer> occupiedLanes = new HashMap<>();
+        // Anzahl freigewordener Lanes; Wartende erkennen daran eine verpasste Freigabe
+        private long laneReleases;
+
+        private Timer waitTime;
+        private Counter rejected;
+
+        Bulkhead(String name, String endpoint, int maxConcurrent, long maxWaitMs, int lanes, int connections) {
+            this.name = name;
+            this.endpoint = endpoint;
+            this.maxConcurrent = maxConcurrent;
+            this.maxWaitMs = maxWaitMs;
+            this.lanes = lanes;
+            this.connections = connections;
+            this.permits = new Semaphore(maxConcurrent);
+        }
+
+        /**
+         * Belegt einen Platz und wartet dafür höchstens {@code max-wait-ms}.
+         *
+         * @return false, wenn der Bulkhead ausgelastet ist; dann darf {@link #exit()}
+         *         nicht aufgerufen werden
+         */
+        public boolean tryEnter() {
+            if (permits.tryAcquire()) {
+                waitTime.record(0, TimeUnit.NANOSECONDS);
+                return true;
+            }
+            long start = System.nanoTime();
+            try {
+                if (permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                    waitTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            rejected.increment();
+            logger.warn("Bulkhead {} saturated ({} in flight), rejecting request", name, getInFlight());
+            return false;
+        }
+
+        /**
+         * Belegt einen Platz und wartet dafür ohne Zeitgrenze; für Hintergrundaufträge,
+         * deren Anzahl bereits durch ihren Thread-Pool begrenzt ist.
+         *
+         * @return false, wenn der Thread beim Warten unterbrochen wurde; dann darf
+         *         {@link #exit()} nicht aufgerufen werden
+         */
+        public boolean enter() {
+            long start = System.nanoTime();
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            waitTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return true;
+        }
+
+        public void exit() {
+            permits.release();
+        }
+
+        /**
+         * Prüft ohne zu warten, ob ein Auftrag dieses Bulkheads in die Lane eingereiht
+         * werden darf: die Lane ist bereits vom Bulkhead belegt, oder er belegt weniger
+         * als {@code lanes} Lanes.
+         */
+        synchronized boolean mayOccupyLane(int lane) {
+            return occupiedLanes.containsKey(lane) || occupiedLanes.size() < lanes;
+        }
+
+        /**
+         * Zählt einen eingereihten Auftrag für die Lane, sofern {@link #mayOccupyLane} gilt.
+         *
+         * @return false, wenn der Bulkhead bereits {@code lanes} andere Lanes belegt; dann
+         *         darf {@link #releaseLane} nicht aufgerufen werden
+         */
+        synchronized boolean tryOccupyLane(int lane) {
+            if (!mayOccupyLane(lane)) {
+                return false;
+            }
+            occupiedLanes.merge(lane, 1, Integer::sum);
+            return true;
+        }
+
+        /**
+         * Gibt den Platz eines ausgeführten (oder nicht eingereihten) Auftrags frei. Ist die
+         * Lane danach frei von Aufträgen des Bulkheads, werden Wartende geweckt.
+         */
+        synchronized void releaseLane(int lane) {
+            if (occupiedLanes.merge(lane, -1, Integer::sum) == 0) {
+                occupiedLanes.remove(lane);
+                laneReleases++;
+                notifyAll();
+            }
+        }
+
+        synchronized long getLaneReleases() {
+            return laneReleases;
+        }
+
+        /**
+         * Wartet, bis seit {@code seenReleases} eine Lane frei geworden ist.
+         *
+         * @return false, wenn innerhalb von {@code timeoutNanos} keine Lane frei wurde
+         */
+        synchronized boolean awaitLaneRelease(long seenReleases, long timeoutNanos) throws InterruptedException {
+            long deadline = System.nanoTime() + timeoutNanos;
+            while (laneReleases == seenReleases) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        }
+
+        public int getInFlight() {
+            return maxConcurrent - permits.availablePermits();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Endpunkt der proprietären API, dessen Aufrufe dieser Bulkhead abschottet
+         */
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        /**
+         * @return Anzahl der Dispatch-Lanes, die gleichzeitig Aufträge dieses Bulkheads enthalten dürfen
+         */
+        public int getLanes() {
+            return lanes;
+        }
+
+        public int getConnections() {
+            return connections;
+        }
+    }
+}
@@ -1,187 +1,204 @@
 package com.example.demo.service;
 
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.hl7.fhir.r4.model.Coding;
 import org.hl7.fhir.r4.model.DocumentReference;
 import org.hl7.fhir.r4.model.Attachment;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.OperationOutcome.IssueType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.example.demo.dto.DocumentDTO;
+import com.example.demo.mapping.FhirMappingService;
+import com.example.demo.mapping.ValueConverter;
+import com.example.demo.mapping.ValueConversionException;
+import com.example.demo.util.BinaryNotFoundException;
+import com.example.demo.util.FhirMessages;
+import com.example.demo.util.FileSlice;
+import com.example.demo.util.ValidationReport;
 
 @Service // Kennzeichnet diese Klasse als Spring Service-Komponente
 public class DocumentReferenceService {
 
     private static final Logger logger = LoggerFactory.getLogger(DocumentReferenceService.class);
+    private static final String DOCUMENT_MAPPING = "documentreference-to-document";
     private static final String KDL_SYSTEM = "http://dvmd.de/fhir/CodeSystem/kdl";
 
     // Hier injizieren wir unsere "echte" Bean für die FHIR-Validierung
     private final FhirValidatorService fhirValidatorService;
+    // Auflösung von Attachment.url-Referenzen auf lokal gespeicherte Binaries
+    private final BinaryStoreService binaryStoreService;
+    // Deklaratives FHIR-zu-DTO-Mapping
+    private final FhirMappingService fhirMappingService;
 
     @Autowired
-    public DocumentReferenceService(FhirValidatorService fhirValidatorService) {
+    public DocumentReferenceService(FhirValidatorService fhirValidatorService,
+            BinaryStoreService binaryStoreService,
+            FhirMappingService fhirMappingService) {
         this.fhirValidatorService = fhirValidatorService;
+        this.binaryStoreService = binaryStoreService;
+        this.fhirMappingService = fhirMappingService;
     }
 
-    // Überprüft, ob das DocumentReference-Objekt gültige Daten enthält
-    public boolean isValid(DocumentReference documentReference) {
+    // Überprüft, ob das DocumentReference-Objekt gültige Daten enthält, und sammelt alle
+    // Befunde. Profilvalidierung und KDL-Prüfung laufen nur, wenn die Pflichtangaben vorhanden sind.
+    public ValidationReport validate(DocumentReference documentReference) {
+        ValidationReport report = new ValidationReport();
         if (documentReference == null) {
-            logger.warn("DocumentReference is null");
-            return false;
+            return report.addIssue(IssueType.REQUIRED, null, FhirMessages.RESOURCE_MISSING);
         }
 
         if (!documentReference.hasType() || documentReference.getType().getCoding().isEmpty()) {
-            logger.warn("DocumentReference type is missing");
-            return false;
+            report.addIssue(IssueType.REQUIRED, "DocumentReference.type", FhirMessages.DOCUMENT_TYPE_MISSING);
         }
 
         if (!documentReference.hasSubject() || !documentReference.getSubject().hasReference()) {
-            logger.warn("DocumentReference subject (patientId) is missing");
-            return false;
+            report.addIssue(IssueType.REQUIRED, "DocumentReference.subject", FhirMessages.DOCUMENT_SUBJECT_MISSING);
         }
 
         if (!documentReference.hasContext() || !documentReference.getContext().hasEncounter()
                 || !documentReference.getContext().getEncounterFirstRep().hasReference()) {
-            logger.warn("DocumentReference encounter (visitNumber) is missing");
-            return false;
+            report.addIssue(IssueType.REQUIRED, "DocumentReference.context.encounter",
+                    FhirMessages.DOCUMENT_ENCOUNTER_MISSING);
         }
 
         if (!documentReference.hasContent() || documentReference.getContent().isEmpty()) {
-            logger.warn("DocumentReference content is missing");
-            return false;
-        }
-
-        Attachment attachment = documentReference.getContentFirstRep().getAttachment();
-        if (!attachment.hasData()) {
-            logger.warn("DocumentReference attachment data is missing");
-            return false;
+            report.addIssue(IssueType.REQUIRED, "DocumentReference.content", FhirMessages.DOCUMENT_CONTENT_MISSING);
+        } else {
+            // Jeder content-Eintrag wird als eigenes Dokument übermittelt und daher einzeln geprüft
+            List<DocumentReference.DocumentReferenceContentComponent> contents = documentReference.getContent();
+            for (int i = 0; i < contents.size(); i++) {
+                Attachment attachment = contents.get(i).getAttachment();
+                // Inhalt entweder inline (data) oder als Referenz auf eine gespeicherte Binary-Ressource (url)
+                if (!attachment.hasData() && !binaryStoreService.isBinaryReference(attachment.getUrl())) {
+                    report.addIssue(IssueType.REQUIRED, "DocumentReference.content[" + i + "].attachment.data",
+                            FhirMessages.DOCUMENT_DATA_MISSING);
+                } else if (!attachment.hasData() && !binaryStoreService.exists(attachment.getUrl())) {
+                    report.addIssue(IssueType.NOTFOUND, "DocumentReference.content[" + i + "].attachment.url",
+                            FhirMessages.BINARY_NOT_FOUND + attachment.getUrl());
+                }
+                if (!attachment.hasCreation()) {
+                    report.addIssue(IssueType.REQUIRED, "DocumentReference.content[" + i + "].attachment.creation",
+                            FhirMessages.DOCUMENT_CREATION_MISSING);
+                }
+            }
         }
 
-        if (!attachment.hasCreation()) {
-            logger.warn("DocumentReference creation date is missing");
-            return false;
+        if (!report.isValid()) {
+            logger.debug("DocumentReference rejected with {} issue(s)", report.getIssues().size());
+            return report;
         }
 
-        return true;
-    }
+        // Erweiterte Validierung: gegen ISiK-Strukturdefinition (hier ISiKDokumentenMetadaten)
+        report.addAll(fhirValidatorService.validateIsikDocumentReference(documentReference));
 
-    // Konvertiert ein gültiges DocumentReference-Objekt in ein DocumentDTO-Objekt
-    public DocumentDTO processDocumentReference(DocumentReference documentReference) {
-        if (!isValid(documentReference)) {
-            logger.error("Invalid DocumentReference data");
-            throw new IllegalArgumentException("Invalid DocumentReference data");
+        // Prüfe zusätzlich Mitgliedschaft des KDL-Codes im CodeSystem/ValueSet
+        String kdlCode = kdlCode(documentReference);
+        if (kdlCode != null) {
+            fhirValidatorService.checkKdlCode(kdlCode, report);
+        } else {
+            logger.warn("No valid KDL Code found");
         }
+        return report;
+    }
 
-        // Erweiterte Validierung: gegen ISiK-Strukturdefinition (hier
-        // ISiKDokumentenMetadaten)
-        // Wird die Validierung nicht bestanden, wirft FhirInstanceValidatorUtil eine
-        // Exception.
-        fhirValidatorService.validateIsikDocumentReference(documentReference);
+    // Konvertiert ein gültiges DocumentReference-Objekt (siehe validate) in ein DocumentDTO
+    // pro content-Eintrag
+    public List<DocumentDTO> processDocumentReference(DocumentReference documentReference) {
+        return processDocumentReference(documentReference, Collections.emptyList());
+    }
 
-        String kdlCode = extractKdlCode(documentReference);
-        String patientId = extractPatientId(documentReference);
-        String visitNumber = extractVisitNumber(documentReference);
-        String dateCreated = extractDateCreated(documentReference);
-        String contentB64 = extractContentBase64(documentReference);
+    // Konvertiert ein DocumentReference-Objekt in ein DocumentDTO pro content-Eintrag
+    // (gleiche Metadaten, eigenes Erstellungsdatum und eigener Inhalt). Wurde der Körper
+    // ausgelagert (siehe LargePayloadService), enthält dataSlices an Position i die
+    // Attachment-Daten von content[i]; der Inhalt wird dann später direkt aus der Datei gestreamt.
+    public List<DocumentDTO> processDocumentReference(DocumentReference documentReference,
+            List<FileSlice> dataSlices) {
+        // Metadaten über das deklarative Mapping (mappings/documentreference-to-document.json)
+        DocumentDTO metadata = fhirMappingService.map(DOCUMENT_MAPPING, documentReference, DocumentDTO.class);
 
         logger.info(
-                "Extracted DocumentReference Data: KDL Code: {}, Patient ID: {}, Visit Number: {}, Date Created: {}",
-                kdlCode, patientId, visitNumber, dateCreated);
-
-        logger.debug("Document content extracted (size: {} bytes)", contentB64.length());
-
-        // logger.debug("Content (Base64): " + (contentB64.length() > 50 ?
-        // contentB64.substring(0, 50) + "..." : contentB64)); // Auskommentiert, da der
-        // Anfragekörper sensibele Daten enhalten könnte, nur zum Testen reinkommentieren
-
-        return new DocumentDTO(kdlCode, patientId, visitNumber, dateCreated, contentB64);
-    }
+                "Extracted DocumentReference Data: KDL Code: {}, Patient ID: {}, Visit Number: {}, Content entries: {}",
+                metadata.getKdlCode(), metadata.getPatientId(), metadata.getVisitNumber(),
+                documentReference.getContent().size());
+
+        List<DocumentReference.DocumentReferenceContentComponent> contents = documentReference.getContent();
+        List<DocumentDTO> documentDTOs = new ArrayList<>(contents.size());
+        for (int i = 0; i < contents.size(); i++) {
+            Attachment attachment = contents.get(i).getAttachment();
+            DocumentDTO documentDTO = new DocumentDTO(metadata.getKdlCode(), metadata.getPatientId(),
+                    metadata.getVisitNumber(), dateCreated(attachment, i), null);
+
+            FileSlice contentSlice = null;
+            if (attachment.hasData()) {
+                // Ohne ausgelagerten Bereich liegen die Daten bereits vollständig in der Ressource
+                contentSlice = i < dataSlices.size() ? dataSlices.get(i) : null;
+            } else {
+                // Ohne Inline-Daten wird der Inhalt aus dem lokalen Binary-Speicher gestreamt
+                contentSlice = resolveBinary(attachment, i);
+            }
 
-    // Extrahiert den KDL-Code aus der Coding-Liste des DocumentReference-Typs
-    private String extractKdlCode(DocumentReference documentReference) {
-        for (Coding coding : documentReference.getType().getCoding()) {
-            if (isValidKdlCodeSystem(coding)) {
-                String code = coding.getCode();
-                logger.debug("Extracted KDL Code: {}", code);
+            if (contentSlice != null) {
+                logger.debug("Document content streamed from file (size: {} bytes)", contentSlice.getLength());
+                documentDTO.setContentSlice(contentSlice);
+            } else {
+                String contentB64 = extractContentBase64(attachment);
+                logger.debug("Document content extracted (size: {} bytes)", contentB64.length());
 
-                // Prüfe zusätzlich Mitgliedschaft im CodeSystem/ValueSet
-                fhirValidatorService.ensureKdlCodeIsValid(code);
+                // logger.debug("Content (Base64): " + (contentB64.length() > 50 ?
+                // contentB64.substring(0, 50) + "..." : contentB64)); // Auskommentiert, da der
+                // Anfragekörper sensibele Daten enhalten könnte, nur zum Testen reinkommentieren
 
-                // Wenn die Validierung erfolgreich war, wird der Code zurückgegeben
-                return code;
+                documentDTO.setContentB64(contentB64);
             }
+            documentDTOs.add(documentDTO);
         }
-        logger.warn("No valid KDL Code found");
-        return null;
+        return documentDTOs;
     }
 
-    // Validiert ob das CodeSystem KDL entspricht
-    private boolean isValidKdlCodeSystem(Coding coding) {
-        return coding != null && coding.hasSystem() && coding.hasCode() && KDL_SYSTEM.equals(coding.getSystem());
-    }
-
-    // Extrahiert die Patient-ID aus der Subject-Referenz
-    private String extractPatientId(DocumentReference documentReference) {
-        String patientId = extractIdFromReference(documentReference.getSubject().getReference());
-        logger.debug("Extracted Patient ID: {}", patientId);
-        return patientId;
-    }
-
-    // Extrahiert die Besuchsnummer aus der Encounter-Referenz
-    private String extractVisitNumber(DocumentReference documentReference) {
-        String visitNumber = extractIdFromReference(
-                documentReference.getContext().getEncounterFirstRep().getReference());
-        logger.debug("Extracted Visit Number: {}", visitNumber);
-        return visitNumber;
-    }
-
-    // Extrahiert das Erstellungsdatum aus dem Content-Attachment
-    private String extractDateCreated(DocumentReference documentReference) {
-        String rawDateCreated = documentReference.getContentFirstRep().getAttachment().getCreationElement()
-                .asStringValue();
-        String formattedDate = convertDate(rawDateCreated);
-        logger.debug("Formatted Creation Date: {}", formattedDate);
-        return formattedDate;
+    // Erstellungsdatum eines Attachments im Format des Mappings (dd.MM.yyyy)
+    private static String dateCreated(Attachment attachment, int index) {
+        try {
+            return ValueConverter.DATE.convert(
+                    Collections.singletonList(attachment.getCreationElement().getValueAsString()));
+        } catch (ValueConversionException e) {
+            throw e.at("DocumentReference.content[" + index + "].attachment.creation");
+        }
     }
 
-    // Extrahiert den Base64-kodierten Inhalt des Dokumentes
-    private String extractContentBase64(DocumentReference documentReference) {
-        byte[] contentBytes = documentReference.getContentFirstRep().getAttachment().getData();
-        if (contentBytes == null || contentBytes.length == 0) {
-            logger.warn("Document content is empty or null.");
-            return "";
+    // Löst Attachment.url auf; eine seit validate() gelöschte Binary wird mit Fundstelle gemeldet
+    private FileSlice resolveBinary(Attachment attachment, int index) {
+        try {
+            return binaryStoreService.resolve(attachment.getUrl());
+        } catch (BinaryNotFoundException e) {
+            throw e.at("DocumentReference.content[" + index + "].attachment.url");
         }
-        return Base64.getEncoder().encodeToString(contentBytes);
     }
 
-    // Extrahiert die ID aus einer generischen FHIR-Referenz (entfernt alles vor dem
-    // /)
-    private String extractIdFromReference(String reference) {
-        if (reference.contains("/")) {
-            String id = reference.substring(reference.lastIndexOf("/") + 1);
-            logger.debug("Extracted ID from Reference: {} -> {}", reference, id);
-            return id;
+    // Liefert den KDL-Code aus DocumentReference.type (wie im Mapping documentreference-to-document)
+    private static String kdlCode(DocumentReference documentReference) {
+        for (Coding coding : documentReference.getType().getCoding()) {
+            if (KDL_SYSTEM.equals(coding.getSystem()) && coding.hasCode()) {
+                return coding.getCode();
+            }
         }
-        return reference;
+        return null;
     }
 
-    // Konvertiert das Erstellungsdatum von ISO-8601 in dd.MM.yyyy
-    // (Datumsformat der API war in der Aufgabenstellung nicht angegeben,
-    // konvertieren fühlte sich aber sinnvoll an ;) )
-    private String convertDate(String creationDate) {
-        if (creationDate == null || !creationDate.matches("\\d{4}-\\d{2}-\\d{2}.*")) {
-            logger.warn("Invalid creation date format: {}", creationDate);
-            throw new IllegalArgumentException("Invalid creation date format. Expected format: YYYY-MM-DD");
+    // Extrahiert den Base64-kodierten Inhalt eines Attachments. Es wird die Base64-Darstellung
+    // des Attachments übernommen, statt die Bytes zu dekodieren und erneut zu kodieren;
+    // der DocumentBodyWriter streamt diesen String anschließend blockweise an die API.
+    private String extractContentBase64(Attachment attachment) {
+        String contentB64 = attachment.getDataElement().getValueAsString();
+        if (contentB64 == null || contentB64.isEmpty()) {
+            logger.warn("Document content is empty or null.");
+            return "";
         }
-
-        String[] dateComponents = creationDate.split("T")[0].split("-");
-        String day = dateComponents[2];
-        String month = dateComponents[1];
-        String year = dateComponents[0];
-
-        return day + "." + month + "." + year;
+        return contentB64;
     }
-
 }
@@ -0,0 +1,244 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.dto.DocumentDTO;
+import com.example.demo.dto.PersonDTO;
+import com.example.demo.util.JsonSchemaUtil;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+
+/**
+ * Prüft ausgehende DTOs gegen die JSON-Schemas der proprietären API
+ * ({@code schemas/Person-JSON-Scheme.json}, {@code schemas/DocumentJsonScheme.json}),
+ * bevor sie gesendet werden.
+ *
+ * Die Schemas werden beim Start einmalig in Regeln pro DTO-Property übersetzt
+ * (Typ, Pflichtfeld, Länge, Pattern, Enum); der Zugriff auf die Werte erfolgt über
+ * die von Jackson ermittelten Accessoren, d. h. mit denselben Property-Namen wie bei
+ * der Serialisierung. Geprüft wird das DTO selbst, ohne es zu serialisieren.
+ * Der Dokumentinhalt (contentB64) wird nur auf Vorhandensein geprüft und nie gelesen,
+ * da er auch aus einer ausgelagerten Datei gestreamt werden kann.
+ *
+ * Unterstützt wird die von den Schemas genutzte Teilmenge: {@code type},
+ * {@code required}, {@code minLength}, {@code maxLength}, {@code pattern}, {@code enum}.
+ */
+@Service
+public class DtoContractService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DtoContractService.class);
+
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?");
+    private static final Pattern INTEGER = Pattern.compile("-?\\d+");
+
+    private final ObjectMapper objectMapper;
+
+    private final Map<Class<?>, List<PropertyRule>> contracts = new HashMap<>();
+
+    // Ausgehende DTOs vor dem Senden gegen die Schemas prüfen
+    @Value("${api.proprietary.contract-check.enabled:true}")
+    private boolean enabled;
+
+    public DtoContractService(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    private void compileContracts() {
+        Map<String, Function<Object, Object>> documentOverrides = new HashMap<>();
+        // Inhalt liegt entweder als String oder als Datei-Ausschnitt vor; beides zählt als vorhanden
+        documentOverrides.put("contentB64", dto -> {
+            DocumentDTO document = (DocumentDTO) dto;
+            return document.getContentB64() != null ? document.getContentB64() : document.getContentSlice();
+        });
+
+        contracts.put(PersonDTO.class, compile(PersonDTO.class, "person", Collections.emptyMap()));
+        contracts.put(DocumentDTO.class, compile(DocumentDTO.class, "documentreference", documentOverrides));
+        logger.info("Compiled outbound contracts for {} DTO types (check {})", contracts.size(),
+                enabled ? "enabled" : "disabled");
+    }
+
+    /**
+     * Übersetzt das Schema in Regeln für die Properties der DTO-Klasse.
+     *
+     * @param opaque Properties, deren Wert über die angegebene Funktion ermittelt und nur
+     *               auf Vorhandensein geprüft wird
+     */
+    private List<PropertyRule> compile(Class<?> dtoType, String schemaType,
+            Map<String, Function<Object, Object>> opaque) {
+        JsonNode schema;
+        try {
+            schema = objectMapper.readTree(JsonSchemaUtil.getSchema(schemaType));
+        } catch (Exception e) {
+            throw new IllegalStateException("Error compiling schema " + schemaType, e);
+        }
+
+        Map<String, Function<Object, Object>> accessors = new HashMap<>();
+        Map<String, Class<?>> rawTypes = new HashMap<>();
+        BeanDescription description = objectMapper.getSerializationConfig()
+                .introspect(objectMapper.constructType(dtoType));
+        for (BeanPropertyDefinition property : description.findProperties()) {
+            AnnotatedMember accessor = property.getAccessor();
+            if (accessor != null) {
+                accessor.fixAccess(true);
+                accessors.put(property.getName(), accessor::getValue);
+                rawTypes.put(property.getName(), accessor.getRawType());
+            }
+        }
+
+        Set<String> required = new HashSet<>();
+        schema.path("required").forEach(name -> required.add(name.asText()));
+
+        List<PropertyRule> rules = new ArrayList<>();
+        Iterator<Map.Entry<String, JsonNode>> properties = schema.path("properties").fields();
+        while (properties.hasNext()) {
+            Map.Entry<String, JsonNode> entry = properties.next();
+            String name = entry.getKey();
+            boolean isOpaque = opaque.containsKey(name);
+            Function<Object, Object> accessor = isOpaque ? opaque.get(name) : accessors.get(name);
+            if (accessor == null) {
+                throw new IllegalStateException("Schema " + schemaType + " declares property '" + name
+                        + "' that " + dtoType.getSimpleName() + " does not serialize");
+            }
+            PropertyRule rule = new PropertyRule(name, accessor, entry.getValue(), required.remove(name), isOpaque);
+            if (!isOpaque && ("number".equals(rule.type) || "integer".equals(rule.type))
+                    && CharSequence.class.isAssignableFrom(rawTypes.get(name))) {
+                logger.warn("Schema {} declares '{}' as {}, but {} serializes it as string; "
+                        + "checking its lexical form", schemaType, name, rule.type, dtoType.getSimpleName());
+            }
+            rules.add(rule);
+        }
+        if (!required.isEmpty()) {
+            throw new IllegalStateException("Schema " + schemaType + " requires undeclared properties " + required);
+        }
+        return Collections.unmodifiableList(rules);
+    }
+
+    /**
+     * Prüft ein ausgehendes DTO.
+     *
+     * @return Verstöße gegen das Schema; eine leere Liste, wenn das DTO
+     *         gültig ist, die Prüfung abgeschaltet ist oder für den Typ kein Schema existiert
+     */
+    public List<String> check(Object dto) {
+        if (!enabled || dto == null) {
+            return Collections.emptyList();
+        }
+        List<PropertyRule> rules = contracts.get(dto.getClass());
+        if (rules == null) {
+            return Collections.emptyList();
+        }
+        List<String> violations = null;
+        for (int i = 0; i < rules.size(); i++) {
+            String violation = rules.get(i).check(dto);
+            if (violation != null) {
+                if (violations == null) {
+                    violations = new ArrayList<>(2);
+                }
+                violations.add(violation);
+            }
+        }
+        return violations != null ? violations : Collections.emptyList();
+    }
+
+    /**
+     * Vorkompilierte Regel für eine Property des Schemas.
+     */
+    private static final class PropertyRule {
+
+        final String name;
+        final Function<Object, Object> accessor;
+        final String type;
+        final boolean required;
+        final boolean opaque;
+        final int minLength;
+        final int maxLength;
+        final Pattern pattern;
+        final Set<String> enumValues;
+
+        PropertyRule(String name, Function<Object, Object> accessor, JsonNode definition, boolean required,
+                boolean opaque) {
+            this.name = name;
+            this.accessor = accessor;
+            this.type = definition.path("type").asText(null);
+            this.required = required;
+            this.opaque = opaque;
+            this.minLength = definition.path("minLength").asInt(0);
+            this.maxLength = definition.path("maxLength").asInt(Integer.MAX_VALUE);
+            this.pattern = definition.has("pattern") ? Pattern.compile(definition.get("pattern").asText()) : null;
+            if (definition.has("enum")) {
+                Set<String> values = new HashSet<>();
+                definition.get("enum").forEach(value -> values.add(value.asText()));
+                this.enumValues = values;
+            } else {
+                this.enumValues = null;
+            }
+        }
+
+        /**
+         * @return Beschreibung des Verstoßes oder null
+         */
+        String check(Object dto) {
+            Object value = accessor.apply(dto);
+            if (value == null) {
+                return required ? name + ": required property is missing" : null;
+            }
+            if (opaque) {
+                return null;
+            }
+            if (type != null && !hasType(value)) {
+                return name + ": expected " + type;
+            }
+            if (value instanceof CharSequence) {
+                CharSequence text = (CharSequence) value;
+                if (text.length() < minLength || text.length() > maxLength) {
+                    return name + ": length " + text.length() + " outside [" + minLength + ", " + maxLength + "]";
+                }
+                if (pattern != null && !pattern.matcher(text).matches()) {
+                    return name + ": does not match pattern " + pattern.pattern();
+                }
+            }
+            if (enumValues != null && !enumValues.contains(String.valueOf(value))) {
+                return name + ": value not in enum";
+            }
+            return null;
+        }
+
+        private boolean hasType(Object value) {
+            switch (type) {
+                case "string":
+                    return value instanceof CharSequence;
+                // Als String modellierte Zahlen werden anhand ihrer Schreibweise geprüft
+                case "number":
+                    return value instanceof Number
+                            || (value instanceof CharSequence && NUMBER.matcher((CharSequence) value).matches());
+                case "integer":
+                    return value instanceof Integer || value instanceof Long || value instanceof Short
+                            || (value instanceof CharSequence && INTEGER.matcher((CharSequence) value).matches());
+                case "boolean":
+                    return value instanceof Boolean;
+                default:
+                    return true;
+            }
+        }
+    }
+}
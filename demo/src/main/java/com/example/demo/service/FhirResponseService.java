@@ -1,15 +1,22 @@
 package com.example.demo.service;
 
+import java.net.URI;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.hl7.fhir.r4.model.OperationOutcome;
 import org.hl7.fhir.r4.model.OperationOutcome.IssueSeverity;
 import org.hl7.fhir.r4.model.OperationOutcome.IssueType;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
+import com.example.demo.util.FhirMessages;
+import com.example.demo.util.ValidationReport;
+
 import ca.uhn.fhir.context.FhirContext;
 
 /**
@@ -59,6 +66,102 @@ public class FhirResponseService {
         return createOperationOutcomeResponse(message, HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Beantwortet einen ungültigen Validierungsbericht mit HTTP 400 (Bad Request).
+     * Das `OperationOutcome` enthält ein Issue pro Befund; protokolliert wird nur
+     * die Anzahl, ohne Stacktrace.
+     *
+     * @param report Der Validierungsbericht mit mindestens einem Befund.
+     * @return Eine ResponseEntity mit `OperationOutcome` und HTTP-Status 400.
+     */
+    public ResponseEntity<String> handleValidationFailure(ValidationReport report) {
+        OperationOutcome outcome = new OperationOutcome();
+        for (ValidationReport.Issue issue : report.getIssues()) {
+            OperationOutcome.OperationOutcomeIssueComponent component = outcome.addIssue()
+                .setSeverity(IssueSeverity.ERROR)
+                .setCode(issue.getType())
+                .setDiagnostics(issue.getMessage());
+            if (issue.getLocation() != null) {
+                component.addExpression(issue.getLocation());
+            }
+        }
+
+        String outcomeJson = fhirContext.newJsonParser().encodeResourceToString(outcome);
+        logger.warn("Validation failed - HTTP 400: {} issue(s)", report.getIssues().size());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(outcomeJson);
+    }
+
+    /**
+     * Behandelt Anfragen auf nicht vorhandene Ressourcen und gibt einen HTTP 404 (Not Found) zurück.
+     *
+     * @param message Die Fehlermeldung.
+     * @return Eine ResponseEntity mit `OperationOutcome` und HTTP-Status 404.
+     */
+    public ResponseEntity<String> handleNotFound(String message) {
+        logger.warn("Resource not found - HTTP 404: {}", message);
+        return createOperationOutcomeResponse(message, HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * Behandelt zu große Anfragekörper und gibt einen HTTP 413 (Payload Too Large) zurück.
+     *
+     * @param message Die Fehlermeldung.
+     * @return Eine ResponseEntity mit `OperationOutcome` und HTTP-Status 413.
+     */
+    public ResponseEntity<String> handlePayloadTooLarge(String message) {
+        logger.warn("Payload too large - HTTP 413: {}", message);
+        return createOperationOutcomeResponse(message, HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+
+    /**
+     * Behandelt vorübergehende Überlast (z. B. volle Warteschlangen) und gibt einen
+     * HTTP 503 (Service Unavailable) zurück.
+     *
+     * @param message Die Fehlermeldung.
+     * @return Eine ResponseEntity mit `OperationOutcome` und HTTP-Status 503.
+     */
+    public ResponseEntity<String> handleServiceUnavailable(String message) {
+        logger.warn("Service unavailable - HTTP 503: {}", message);
+        return createOperationOutcomeResponse(message, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * Lehnt eine Anfrage wegen Überlast ab (HTTP 503) und teilt dem Client per
+     * {@code Retry-After} mit, wann ein neuer Versuch sinnvoll ist.
+     *
+     * @param message           Die Fehlermeldung.
+     * @param retryAfterSeconds Wartezeit in Sekunden bis zum nächsten Versuch.
+     * @return Eine ResponseEntity mit `OperationOutcome` und HTTP-Status 503.
+     */
+    public ResponseEntity<String> handleServiceUnavailable(String message, long retryAfterSeconds) {
+        logger.warn("Load shed - HTTP 503 (Retry-After {}s): {}", retryAfterSeconds, message);
+        return createThrottledResponse(message, HttpStatus.SERVICE_UNAVAILABLE, retryAfterSeconds);
+    }
+
+    /**
+     * Lehnt eine Anfrage wegen überschrittener Ratenbegrenzung ab (HTTP 429).
+     *
+     * @param message           Die Fehlermeldung.
+     * @param retryAfterSeconds Wartezeit in Sekunden bis zum nächsten Versuch.
+     * @return Eine ResponseEntity mit `OperationOutcome` und HTTP-Status 429.
+     */
+    public ResponseEntity<String> handleTooManyRequests(String message, long retryAfterSeconds) {
+        logger.warn("Rate limit exceeded - HTTP 429 (Retry-After {}s): {}", retryAfterSeconds, message);
+        return createThrottledResponse(message, HttpStatus.TOO_MANY_REQUESTS, retryAfterSeconds);
+    }
+
+    /**
+     * Behandelt nicht unterstützte Content-Encodings und gibt einen HTTP 415
+     * (Unsupported Media Type) zurück.
+     *
+     * @param message Die Fehlermeldung.
+     * @return Eine ResponseEntity mit `OperationOutcome` und HTTP-Status 415.
+     */
+    public ResponseEntity<String> handleUnsupportedEncoding(String message) {
+        logger.warn("Unsupported content encoding - HTTP 415: {}", message);
+        return createOperationOutcomeResponse(message, HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+    }
+
     /**
      * Erstellt eine FHIR-konforme Erfolgsmeldung in Form eines `OperationOutcome`.
      *
@@ -66,6 +169,18 @@ public class FhirResponseService {
      * @return Eine ResponseEntity mit `OperationOutcome` und HTTP-Status 201 (Created).
      */
     public ResponseEntity<String> createSuccessResponse(String message) {
+        return createSuccessResponse(message, null);
+    }
+
+    /**
+     * Erstellt eine FHIR-konforme Erfolgsmeldung mit Location-Header der neu
+     * angelegten Ressource.
+     *
+     * @param message  Die Erfolgsmeldung.
+     * @param location Relativer Pfad der angelegten Ressource (z. B. "Binary/123") oder null.
+     * @return Eine ResponseEntity mit `OperationOutcome` und HTTP-Status 201 (Created).
+     */
+    public ResponseEntity<String> createSuccessResponse(String message, String location) {
         OperationOutcome outcome = new OperationOutcome();
         outcome.addIssue()
             .setSeverity(IssueSeverity.INFORMATION)
@@ -74,7 +189,90 @@ public class FhirResponseService {
 
         String outcomeJson = fhirContext.newJsonParser().encodeResourceToString(outcome);
         logger.info("FHIR response created successfully - HTTP 201: {}", message);
-        return ResponseEntity.status(HttpStatus.CREATED).body(outcomeJson);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(HttpStatus.CREATED);
+        if (location != null) {
+            builder.location(URI.create(location));
+        }
+        return builder.body(outcomeJson);
+    }
+
+    /**
+     * Meldet das Ergebnis einer Anfrage, deren Teile einzeln übermittelt wurden (z. B. die
+     * content-Einträge einer DocumentReference), in einem `OperationOutcome`: ein
+     * zusammenfassendes Issue und ein Issue pro Teil mit dessen Pfad als Expression.
+     *
+     * @param successMessage Zusammenfassung, wenn alle Teile übermittelt wurden.
+     * @param locations      FHIRPath-Ausdruck pro Teil.
+     * @param sent           Pro Teil, ob er erfolgreich übermittelt wurde.
+     * @return HTTP 201, wenn alle Teile übermittelt wurden, sonst HTTP 500.
+     */
+    public ResponseEntity<String> createPartResultsResponse(String successMessage, List<String> locations,
+            boolean[] sent) {
+        int failed = 0;
+        for (boolean partSent : sent) {
+            if (!partSent) {
+                failed++;
+            }
+        }
+
+        OperationOutcome outcome = new OperationOutcome();
+        outcome.addIssue()
+            .setSeverity(failed == 0 ? IssueSeverity.INFORMATION : IssueSeverity.ERROR)
+            .setCode(failed == 0 ? IssueType.INFORMATIONAL : IssueType.EXCEPTION)
+            .setDiagnostics(failed == 0 ? successMessage : FhirMessages.DOCUMENT_PARTS_FAILED);
+        for (int i = 0; i < sent.length; i++) {
+            outcome.addIssue()
+                .setSeverity(sent[i] ? IssueSeverity.INFORMATION : IssueSeverity.ERROR)
+                .setCode(sent[i] ? IssueType.INFORMATIONAL : IssueType.EXCEPTION)
+                .setDiagnostics(sent[i] ? FhirMessages.DOCUMENT_PART_SENT : FhirMessages.API_FAILURE)
+                .addExpression(locations.get(i));
+        }
+
+        String outcomeJson = fhirContext.newJsonParser().encodeResourceToString(outcome);
+        HttpStatus status = failed == 0 ? HttpStatus.CREATED : HttpStatus.INTERNAL_SERVER_ERROR;
+        logger.info("Part results - HTTP {}: {} of {} part(s) sent", status.value(), sent.length - failed,
+                sent.length);
+        return ResponseEntity.status(status).body(outcomeJson);
+    }
+
+    /**
+     * Bestätigt die Annahme einer asynchron verarbeiteten Anfrage (HTTP 202) und
+     * verweist per {@code Content-Location} auf die Status-URL.
+     *
+     * @param message        Die Meldung.
+     * @param statusLocation URL, unter der das Ergebnis abgefragt werden kann.
+     * @return Eine ResponseEntity mit `OperationOutcome` und HTTP-Status 202 (Accepted).
+     */
+    public ResponseEntity<String> createAcceptedResponse(String message, String statusLocation) {
+        OperationOutcome outcome = new OperationOutcome();
+        outcome.addIssue()
+            .setSeverity(IssueSeverity.INFORMATION)
+            .setCode(IssueType.INFORMATIONAL)
+            .setDiagnostics(message);
+
+        String outcomeJson = fhirContext.newJsonParser().encodeResourceToString(outcome);
+        logger.debug("Request accepted for async processing - HTTP 202: {}", statusLocation);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header(HttpHeaders.CONTENT_LOCATION, statusLocation)
+                .body(outcomeJson);
+    }
+
+    /**
+     * Hilfsmethode für abgelehnte Anfragen: `OperationOutcome` mit Issue-Typ
+     * "throttled" und {@code Retry-After}-Header.
+     */
+    private ResponseEntity<String> createThrottledResponse(String message, HttpStatus status,
+            long retryAfterSeconds) {
+        OperationOutcome outcome = new OperationOutcome();
+        outcome.addIssue()
+            .setSeverity(IssueSeverity.ERROR)
+            .setCode(IssueType.THROTTLED)
+            .setDiagnostics(message);
+
+        String outcomeJson = fhirContext.newJsonParser().encodeResourceToString(outcome);
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(outcomeJson);
     }
 
     /**
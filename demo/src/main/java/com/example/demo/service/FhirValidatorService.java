@@ -1,30 +1,51 @@
 package com.example.demo.service;
 
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StreamUtils;
-import ca.uhn.fhir.context.FhirContext;
-import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.context.support.IValidationSupport;
 import ca.uhn.fhir.validation.FhirValidator;
+import ca.uhn.fhir.validation.ResultSeverityEnum;
 import ca.uhn.fhir.validation.ValidationResult;
 import ca.uhn.fhir.validation.SingleValidationMessage;
 import org.hl7.fhir.instance.model.api.IBaseResource;
-import org.hl7.fhir.r4.model.CodeSystem;
-import org.hl7.fhir.r4.model.StructureDefinition;
-import org.hl7.fhir.r4.model.ValueSet;
-import org.hl7.fhir.common.hapi.validation.support.ValidationSupportChain;
-import org.hl7.fhir.common.hapi.validation.support.PrePopulatedValidationSupport;
-import org.hl7.fhir.common.hapi.validation.support.InMemoryTerminologyServerValidationSupport;
-import org.hl7.fhir.common.hapi.validation.support.CommonCodeSystemsTerminologyService;
-import org.hl7.fhir.common.hapi.validation.support.SnapshotGeneratingValidationSupport;
-import org.hl7.fhir.common.hapi.validation.validator.FhirInstanceValidator;
-import ca.uhn.fhir.context.support.DefaultProfileValidationSupport;
+import org.hl7.fhir.r4.model.DocumentReference;
+import org.hl7.fhir.r4.model.Enumerations.DocumentReferenceStatus;
+import org.hl7.fhir.r4.model.OperationOutcome.IssueType;
+import org.hl7.fhir.r4.model.Patient;
+
+import com.example.demo.util.FhirMessages;
+import com.example.demo.util.ValidationReport;
 
 /**
  * FhirValidatorService ist eine Spring-Service-Komponente, die dazu dient,
@@ -33,186 +54,392 @@ import ca.uhn.fhir.context.support.DefaultProfileValidationSupport;
  * 
  * Diese Validierungen basieren auf HAPI FHIR (FHIR R4) und ermöglichen eine
  * erweiterte Terminology-Validierung im lokalen Entwicklungsumfeld.
+ *
+ * Die Profilvalidierung läuft in einem eigenen, begrenzten Thread-Pool (standardmäßig
+ * ein Thread pro CPU-Kern). Jeder Worker entnimmt für eine Validierung einen Validator
+ * aus dem Vorrat der Kette des Pakets ({@link ProfileRegistryService#withValidator});
+ * geteilt wird nur die threadsichere ValidationSupport-Kette. Der Vorrat wird beim
+ * Start für alle Worker aufgewärmt und verschwindet mit der Kette, wenn diese aus dem
+ * Cache der Registry verdrängt wird.
+ *
+ * Ist {@code fhir.artifacts.dir} gesetzt, wird das Verzeichnis überwacht; existiert es
+ * noch nicht, beginnt die Überwachung, sobald es angelegt wird. Nach einer Änderung (und
+ * einer Ruhezeit von {@code fhir.artifacts.reload-debounce-ms}) werden Profil- und
+ * Terminologie-Index im Hintergrund neu aufgebaut, die neue Kette mit Ressourcen der
+ * ISiK-Profile aufgewärmt und beides gemeinsam aktiviert. Laufende Validierungen beenden ihre Arbeit mit dem
+ * alten Stand; neue Validierungen verwenden Validatoren der neuen Kette. Schlägt
+ * der Neuaufbau fehl, bleibt der bisherige Stand aktiv.
  */
 @Service
 public class FhirValidatorService {
 
     private static final Logger logger = LoggerFactory.getLogger(FhirValidatorService.class);
 
-    private final FhirContext fhirContext;
-    private final IParser jsonParser;
+    private static final String ISIK_PATIENT_PROFILE =
+            "https://gematik.de/fhir/isik/StructureDefinition/ISiKPatient";
+    private static final String ISIK_DOCUMENT_PROFILE =
+            "https://gematik.de/fhir/isik/v3/Dokumentenaustausch/StructureDefinition/ISiKDokumentenMetadaten";
+
+    private static final String KDL_CODE_SYSTEM = "http://dvmd.de/fhir/CodeSystem/kdl";
+    private static final String KDL_VALUE_SET = "http://dvmd.de/fhir/ValueSet/kdl";
+    private static final String KDL_CODING_PATH = "DocumentReference.type.coding";
+
+    private final ProfileRegistryService profileRegistryService;
+    private final TerminologyService terminologyService;
+
+    private ThreadPoolExecutor executor;
+    private WatchService watchService;
+    private Thread watcher;
+
+    // Stand der aktiven Artefakte für den Management-Endpunkt
+    private volatile int artifactGeneration;
+    private volatile Date artifactsActivatedAt = new Date();
+    private volatile String lastReloadError;
+
+    // Anzahl der Validierungs-Threads (0 = Anzahl der CPU-Kerne)
+    @Value("${fhir.validation.threads:0}")
+    private int validatorThreads;
+
+    // Maximale Anzahl wartender Validierungen
+    @Value("${fhir.validation.queue-capacity:256}")
+    private int queueCapacity;
+
+    // Maximale Dauer einer Validierung inkl. Wartezeit
+    @Value("${fhir.validation.timeout-ms:30000}")
+    private long validationTimeoutMs;
+
+    // Validatoren beim Start auf allen Threads erzeugen und aufwärmen
+    @Value("${fhir.validation.warmup:true}")
+    private boolean warmup;
+
+    // Überwachtes Verzeichnis mit austauschbaren Artefakten (leer = keine Überwachung)
+    @Value("${fhir.artifacts.dir:}")
+    private String artifactsDir;
+
+    // Ruhezeit nach der letzten Dateiänderung, bevor neu geladen wird
+    @Value("${fhir.artifacts.reload-debounce-ms:2000}")
+    private long reloadDebounceMs;
 
     @Autowired
-    public FhirValidatorService(FhirContext fhirContext, IParser jsonParser) {
-        this.fhirContext = fhirContext;
-        this.jsonParser = jsonParser;
+    public FhirValidatorService(ProfileRegistryService profileRegistryService, TerminologyService terminologyService) {
+        this.profileRegistryService = profileRegistryService;
+        this.terminologyService = terminologyService;
     }
 
     /**
-     * Liest eine Datei aus dem Classpath und gibt deren Inhalt als String zurück.
-     *
-     * @param resourcePath Pfad zur Resource (z. B. "fhir/codesystems/codesystem-kdl-2021.json")
-     * @return Den Inhalt der Datei als String.
+     * Anzahl der Validierungs-Threads zu {@code fhir.validation.threads} (0 = Anzahl der CPU-Kerne).
      */
-    private String readResourceFile(String resourcePath) {
-        try (InputStream is = new ClassPathResource(resourcePath).getInputStream()) {
-            return StreamUtils.copyToString(is, StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            logger.error("Fehler beim Lesen der Ressourcendatei: {}", resourcePath, e);
-            throw new RuntimeException("Error reading resource file: " + resourcePath, e);
+    static int poolSize(int configuredThreads) {
+        return configuredThreads > 0 ? configuredThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    @PostConstruct
+    private void startPool() {
+        int threads = poolSize(validatorThreads);
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "fhir-validator-" + counter.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.prestartAllCoreThreads();
+        logger.info("Started validator pool with {} threads (queue capacity {})", threads, queueCapacity);
+
+        if (warmup) {
+            warmUp(threads);
+        }
+        startWatcher();
+    }
+
+    @PreDestroy
+    private void stopPool() {
+        stopWatcher();
+        executor.shutdownNow();
+    }
+
+    private void startWatcher() {
+        if (artifactsDir == null || artifactsDir.isBlank()) {
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot watch FHIR artifact directory " + artifactsDir, e);
+        }
+        watcher = new Thread(this::watchArtifacts, "fhir-artifact-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void stopWatcher() {
+        if (watcher == null) {
+            return;
+        }
+        watcher.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.debug("Closing artifact watch service failed", e);
         }
     }
 
     /**
-     * Validiert eine Ressource gegen ein lokales StructureDefinition.
-     *
-     * @param resource                Die zu validierende FHIR-Ressource.
-     * @param structureDefinitionPath Der Classpath-Pfad zur StructureDefinition (z. B. "fhir/profiles/ISiKDokumentenMetadaten.json").
-     * @throws IllegalArgumentException falls die Validierung fehlschlägt.
+     * Überwacht das Artefaktverzeichnis. Fehlt es (beim Start oder weil es gelöscht
+     * wurde), wird im Abstand der Ruhezeit geprüft, ob es angelegt wurde; danach wird
+     * es registriert und sein Inhalt geladen.
      */
-    public void validateResourceAgainstStructureDefinition(IBaseResource resource, String structureDefinitionPath) {
-        String sdContent = readResourceFile(structureDefinitionPath);
-        StructureDefinition sd = (StructureDefinition) jsonParser.parseResource(sdContent);
-
-        PrePopulatedValidationSupport prePopulatedSupport = new PrePopulatedValidationSupport(fhirContext);
-        prePopulatedSupport.addStructureDefinition(sd);
-
-        ValidationSupportChain supportChain = new ValidationSupportChain(
-                new DefaultProfileValidationSupport(fhirContext),
-                new SnapshotGeneratingValidationSupport(fhirContext),
-                prePopulatedSupport,
-                new CommonCodeSystemsTerminologyService(fhirContext),
-                new InMemoryTerminologyServerValidationSupport(fhirContext)
-        );
-
-        FhirInstanceValidator instanceValidator = new FhirInstanceValidator(supportChain);
-        FhirValidator validator = fhirContext.newValidator();
-        validator.registerValidatorModule(instanceValidator);
-
-        ValidationResult result = validator.validateWithResult(resource);
-        if (!result.isSuccessful()) {
-            StringBuilder errorMessages = new StringBuilder();
-            for (SingleValidationMessage message : result.getMessages()) {
-                errorMessages.append(message.getSeverity())
-                        .append(" - ")
-                        .append(message.getLocationString())
-                        .append(" : ")
-                        .append(message.getMessage())
-                        .append("\n");
+    private void watchArtifacts() {
+        Path directory = Paths.get(artifactsDir);
+        // Der Inhalt eines beim Start vorhandenen Verzeichnisses ist bereits geladen
+        boolean loaded = Files.isDirectory(directory);
+        if (!loaded) {
+            logger.warn("FHIR artifact directory {} does not exist yet, waiting for it", directory);
+        }
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey registration = register(directory);
+                if (registration == null) {
+                    loaded = false;
+                    Thread.sleep(reloadDebounceMs);
+                    continue;
+                }
+                logger.info("Watching {} for profile and terminology changes", directory);
+                if (!loaded) {
+                    reloadArtifacts();
+                }
+                awaitChanges();
+                loaded = false;
+                logger.warn("FHIR artifact directory {} was removed, waiting for it", directory);
             }
-            logger.error("Validierung gegen StrcutureDefinition '{}' fehlgeschlagen!", structureDefinitionPath);
-            throw new IllegalArgumentException("FHIR validation failed against StructureDefinition:\n" + errorMessages);
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private WatchKey register(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        try {
+            return directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot watch FHIR artifact directory " + directory, e);
         }
     }
 
     /**
-     * Prüft, ob ein gegebener KDL-Code sowohl im lokalen CodeSystem als auch im ValueSet vorhanden ist.
-     *
-     * @param code Der zu überprüfende KDL-Code.
-     * @throws IllegalArgumentException wenn der Code nicht im CodeSystem oder ValueSet gefunden wird.
+     * Wartet auf Änderungen im Artefaktverzeichnis, bis es gelöscht wird. Mehrere
+     * Änderungen kurz hintereinander (z. B. beim Kopieren mehrerer Dateien) lösen nur
+     * einen Neuaufbau aus.
      */
-    public void ensureKdlCodeIsValid(String code) {
-        // (1) Prüfe im CodeSystem
-        String csContent = readResourceFile("/fhir/codesystems/codesystem-kdl-2021.json");
-        CodeSystem kdlCodeSystem = (CodeSystem) jsonParser.parseResource(csContent);
+    private void awaitChanges() throws InterruptedException {
+        boolean valid = true;
+        while (valid) {
+            WatchKey key = watchService.take();
+            do {
+                key.pollEvents();
+                valid = key.reset();
+                key = watchService.poll(reloadDebounceMs, TimeUnit.MILLISECONDS);
+            } while (key != null);
+            reloadArtifacts();
+        }
+    }
 
-        logger.info("KDL CodeSystem URL: " + kdlCodeSystem.getUrl());
-        logger.info("KDL CodeSystem Version: " + kdlCodeSystem.getVersion());
+    /**
+     * Baut Terminologie- und Profil-Index neu auf, wärmt die neue Kette auf und
+     * aktiviert beides. Aufgewärmt wird mit einem Patienten und einer DocumentReference,
+     * die die ISiK-Profile deklarieren, sodass deren Snapshots und die referenzierten
+     * Terminologien vor dem Tausch aufgelöst werden. Bei einem Fehler bleibt der
+     * bisherige Stand aktiv.
+     */
+    public synchronized void reloadArtifacts() {
+        long start = System.nanoTime();
+        try {
+            TerminologyService.Indexes terminology = terminologyService.prepareReload();
+            ProfileRegistryService.PreparedIndex profiles = profileRegistryService.prepareReload();
+            FhirValidator validator = profileRegistryService.newValidator(profiles.getBundledSupport());
+            warmUpProfile(profiles.getBundledSupport(), validator, warmupPatient(), ISIK_PATIENT_PROFILE);
+            warmUpProfile(profiles.getBundledSupport(), validator, warmupDocumentReference(), ISIK_DOCUMENT_PROFILE);
 
-        boolean foundInCS = checkCodeInCodeSystem(kdlCodeSystem, code);
-        if (!foundInCS) {
-            logger.error("KDL-Code '{}' ist nicht im CodeSystem definiert!", code);
-            throw new IllegalArgumentException("KDL-Code '" + code + "' ist nicht im CodeSystem definiert!");
+            terminologyService.activate(terminology);
+            profileRegistryService.activate(profiles);
+            artifactGeneration++;
+            artifactsActivatedAt = new Date();
+            lastReloadError = null;
+            logger.info("Activated FHIR artifacts generation {} in {} ms", artifactGeneration,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            lastReloadError = e.getMessage();
+            logger.error("Reload of FHIR artifacts failed, keeping generation {}", artifactGeneration, e);
         }
+    }
 
-        // (2) Prüfe im ValueSet
-        String vsContent = readResourceFile("/fhir/valuesets/valueset-kdl-2021.json");
-        ValueSet kdlValueSet = (ValueSet) jsonParser.parseResource(vsContent);
+    /**
+     * Validiert eine Ressource, die {@code profile} deklariert, mit der neuen Kette. Fehlt
+     * das Profil oder kann es nicht ausgewertet werden (FATAL), wird der Neuaufbau abgelehnt.
+     */
+    private static void warmUpProfile(IValidationSupport support, FhirValidator validator, IBaseResource resource,
+            String profile) {
+        if (support.fetchStructureDefinition(profile) == null) {
+            throw new IllegalStateException("Profile " + profile + " is missing in the reloaded artifacts");
+        }
+        resource.getMeta().addProfile(profile);
+        for (SingleValidationMessage message : validator.validateWithResult(resource).getMessages()) {
+            if (message.getSeverity() == ResultSeverityEnum.FATAL) {
+                throw new IllegalStateException("Warm-up against " + profile + " failed: " + message.getMessage());
+            }
+        }
+    }
 
-        logger.info("KDL ValueSet URL: " + kdlValueSet.getUrl());
-        logger.info("KDL ValueSet Version: " + kdlValueSet.getVersion());
+    private static Patient warmupPatient() {
+        Patient patient = new Patient();
+        patient.addName().setFamily("Warmup");
+        return patient;
+    }
 
-        boolean foundInVS = checkCodeInValueSet(kdlValueSet, code);
-        if (!foundInVS) {
-            logger.error("KDL-Code '{}' ist nicht im ValueSet enthalten!", code);
-            throw new IllegalArgumentException("KDL-Code '" + code + "' ist nicht im ValueSet enthalten!");
-        }
+    private static DocumentReference warmupDocumentReference() {
+        DocumentReference documentReference = new DocumentReference();
+        documentReference.setStatus(DocumentReferenceStatus.CURRENT);
+        documentReference.getType().addCoding().setSystem(KDL_CODE_SYSTEM).setCode("AD010101");
+        documentReference.addContent().getAttachment().setContentType("application/pdf");
+        return documentReference;
+    }
 
-        logger.info("KDL-Code '" + code + "' ist gültig (in CodeSystem und ValueSet vorhanden).");
+    /**
+     * @return Generation, Aktivierungszeitpunkt, letzter Fehler sowie die aktiven
+     *         Profile und Terminologien
+     */
+    public Map<String, Object> getArtifactStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("generation", artifactGeneration);
+        status.put("activatedAt", artifactsActivatedAt);
+        status.put("watchedDirectory", artifactsDir == null || artifactsDir.isBlank() ? null : artifactsDir);
+        status.put("lastReloadError", lastReloadError);
+        status.put("terminology", terminologyService.listArtifacts());
+        status.put("profiles", profileRegistryService.listArtifacts());
+        return status;
     }
 
     /**
-     * Durchsucht das übergebene CodeSystem (inklusive aller Unterkonzepte) nach dem Code.
-     *
-     * @param cs   Das CodeSystem, das durchsucht werden soll.
-     * @param code Der zu suchende Code.
-     * @return true, wenn der Code gefunden wurde; andernfalls false.
+     * Erzeugt auf jedem Worker-Thread den Validator für die mitgelieferten Profile und
+     * validiert einen Patienten gegen das ISiK-Profil, damit Basisprofile und Snapshots
+     * vor der ersten Anfrage geladen sind. Die Barriere stellt sicher, dass jeder Thread eine Aufgabe erhält.
      */
-    private boolean checkCodeInCodeSystem(CodeSystem cs, String code) {
-        if (cs.hasConcept()) {
-            for (CodeSystem.ConceptDefinitionComponent concept : cs.getConcept()) {
-                if (code.equals(concept.getCode())) {
-                    return true;
-                }
-                if (concept.hasConcept() && checkCodeInConceptList(concept.getConcept(), code)) {
-                    return true;
-                }
+    private void warmUp(int threads) {
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            tasks.add(executor.submit(() -> {
+                barrier.await();
+                Patient patient = warmupPatient();
+                patient.getMeta().addProfile(ISIK_PATIENT_PROFILE);
+                return profileRegistryService.withValidator(ProfileRegistryService.BUNDLED_PACKAGE,
+                        validator -> validator.validateWithResult(patient));
+            }));
+        }
+        try {
+            for (Future<?> task : tasks) {
+                task.get();
             }
+            logger.info("Validator pool warmed up");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.warn("Warm-up of validator pool failed", e.getCause());
         }
-        return false;
     }
 
     /**
-     * Rekursive Hilfsmethode zum Durchsuchen einer Liste von Konzepten.
+     * Validiert eine Ressource gegen die in {@code meta.profile} deklarierten Profile.
+     * Das Paket wird über die {@link ProfileRegistryService} anhand der Profile
+     * ausgewählt (lokale FHIR-Pakete oder mitgelieferte Artefakte); die Validierung
+     * selbst läuft im Validator-Pool mit einem Validator aus dem Vorrat des Pakets.
      *
-     * @param concepts Die Liste von Konzepten.
-     * @param code     Der zu suchende Code.
-     * @return true, wenn der Code gefunden wurde; andernfalls false.
+     * @param resource       Die zu validierende FHIR-Ressource.
+     * @param defaultProfile Kanonische URL des Profils, dessen Paket ohne passendes meta.profile verwendet wird.
+     * @return Bericht mit einem Befund pro Fehler (error/fatal) des Validators.
+     * @throws RejectedExecutionException falls die Warteschlange des Pools voll ist.
      */
-    private boolean checkCodeInConceptList(List<CodeSystem.ConceptDefinitionComponent> concepts, String code) {
-        for (CodeSystem.ConceptDefinitionComponent concept : concepts) {
-            if (code.equals(concept.getCode())) {
-                return true;
+    public ValidationReport validateResourceAgainstProfiles(IBaseResource resource, String defaultProfile) {
+        String packageId = profileRegistryService.resolvePackage(resource, defaultProfile);
+
+        ValidationResult result = await(executor.submit(() -> profileRegistryService.withValidator(packageId,
+                validator -> validator.validateWithResult(resource))));
+        ValidationReport report = new ValidationReport();
+        if (!result.isSuccessful()) {
+            for (SingleValidationMessage message : result.getMessages()) {
+                if (message.getSeverity() == ResultSeverityEnum.ERROR
+                        || message.getSeverity() == ResultSeverityEnum.FATAL) {
+                    report.addIssue(IssueType.INVALID, message.getLocationString(), message.getMessage());
+                }
             }
-            if (concept.hasConcept() && checkCodeInConceptList(concept.getConcept(), code)) {
-                return true;
+            logger.debug("Validation against StructureDefinition '{}' failed with {} issue(s)", defaultProfile,
+                    report.getIssues().size());
+        }
+        return report;
+    }
+
+    private ValidationResult await(Future<ValidationResult> future) {
+        try {
+            return future.get(validationTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for validation", e);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new IllegalStateException("Validation did not finish within " + validationTimeoutMs + " ms", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw new IllegalStateException("Validation failed", e.getCause());
         }
-        return false;
     }
 
     /**
-     * Prüft, ob der übergebene Code in der Expansion des ValueSets enthalten ist.
-     * 
-     * Falls eine Expansion vorhanden ist, wird diese durchsucht.
+     * Prüft, ob ein gegebener KDL-Code sowohl im lokalen CodeSystem als auch im ValueSet vorhanden ist.
+     * Die Prüfung erfolgt über den beim Start aufgebauten Index der {@link TerminologyService}.
      *
-     * @param vs   Das ValueSet, das geprüft werden soll.
-     * @param code Der zu suchende Code.
-     * @return true, wenn der Code in der Expansion gefunden wurde; andernfalls false.
+     * @param code   Der zu überprüfende KDL-Code.
+     * @param report Bericht, in den ein fehlender Code als Befund eingetragen wird.
      */
-    private boolean checkCodeInValueSet(ValueSet vs, String code) {
-        if (vs.hasExpansion() && vs.getExpansion().hasContains()) {
-            for (ValueSet.ValueSetExpansionContainsComponent contains : vs.getExpansion().getContains()) {
-                if (code.equals(contains.getCode())) {
-                    return true;
-                }
-            }
+    public void checkKdlCode(String code, ValidationReport report) {
+        // (1) Prüfe im CodeSystem
+        TerminologyService.CodeSystemIndex kdlCodeSystem = terminologyService.getCodeSystem(KDL_CODE_SYSTEM);
+        if (kdlCodeSystem == null || kdlCodeSystem.lookup(code) == null) {
+            logger.debug("KDL code '{}' is not defined in the CodeSystem", code);
+            report.addIssue(IssueType.CODEINVALID, KDL_CODING_PATH, FhirMessages.KDL_CODE_NOT_IN_CODE_SYSTEM + code);
+            return;
         }
-        // Falls keine Expansion vorhanden ist, könnte alternativ über compose/include geprüft werden.
-        return false;
+
+        // (2) Prüfe im ValueSet
+        TerminologyService.ValueSetIndex kdlValueSet = terminologyService.getValueSet(KDL_VALUE_SET);
+        if (kdlValueSet == null || kdlValueSet.lookup(KDL_CODE_SYSTEM, code) == null) {
+            logger.debug("KDL code '{}' is not contained in the ValueSet", code);
+            report.addIssue(IssueType.CODEINVALID, KDL_CODING_PATH, FhirMessages.KDL_CODE_NOT_IN_VALUE_SET + code);
+            return;
+        }
+
+        logger.debug("KDL-Code '{}' ist gültig (CodeSystem {}, ValueSet {}).", code,
+                kdlCodeSystem.getVersion(), kdlValueSet.getVersion());
     }
 
     /**
      * Validiert eine Ressource gegen die ISiKDokumentenMetadaten StructureDefinition.
      */
-    public void validateIsikDocumentReference(IBaseResource resource) {
-        validateResourceAgainstStructureDefinition(resource, "/fhir/profiles/ISiKDokumentenMetadaten.json");
+    public ValidationReport validateIsikDocumentReference(IBaseResource resource) {
+        return validateResourceAgainstProfiles(resource, ISIK_DOCUMENT_PROFILE);
     }
 
     /**
      * Validiert eine Ressource gegen die ISiKPatient StructureDefinition.
      */
-    public void validateIsikPatient(IBaseResource resource) {
-        validateResourceAgainstStructureDefinition(resource, "/fhir/profiles/ISiKPatient.json");
+    public ValidationReport validateIsikPatient(IBaseResource resource) {
+        return validateResourceAgainstProfiles(resource, ISIK_PATIENT_PROFILE);
     }
 }
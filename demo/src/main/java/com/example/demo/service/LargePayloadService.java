@@ -0,0 +1,124 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.hl7.fhir.r4.model.DocumentReference;
+import org.hl7.fhir.r4.model.OperationOutcome.IssueType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import ca.uhn.fhir.parser.IParser;
+
+import com.example.demo.util.AttachmentDataLocator;
+import com.example.demo.util.FhirMessages;
+import com.example.demo.util.SpooledBody;
+import com.example.demo.util.ValidationReport;
+
+/**
+ * Service für sehr große Anfragekörper (z. B. DocumentReferences mit eingescannten
+ * Dokumenten im dreistelligen MB-Bereich).
+ *
+ * Körper oberhalb des konfigurierten Schwellwerts werden in eine temporäre Datei
+ * ausgelagert. Beim Parsen wird der Base64-Inhalt der Attachments durch einen
+ * kleinen Platzhalter ersetzt, sodass der Heap-Bedarf pro Anfrage unabhängig von
+ * der Dokumentgröße bleibt. Der eigentliche Inhalt wird später direkt aus der
+ * Datei an die proprietäre API gestreamt.
+ */
+@Service
+public class LargePayloadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LargePayloadService.class);
+
+    // Gültiger Base64-Wert (ein Null-Byte), damit Parser und Profilvalidierung "data" als vorhanden sehen
+    private static final byte[] DATA_PLACEHOLDER = "AA==".getBytes(StandardCharsets.US_ASCII);
+
+    private final IParser jsonParser;
+
+    // Ab dieser Größe wird der Anfragekörper auf die Platte ausgelagert
+    @Value("${fhir.large-payload.threshold-bytes:8388608}")
+    private long thresholdBytes;
+
+    // Verzeichnis für ausgelagerte Anfragekörper (leer = java.io.tmpdir)
+    @Value("${fhir.large-payload.temp-dir:}")
+    private String tempDir;
+
+    public LargePayloadService(IParser jsonParser) {
+        this.jsonParser = jsonParser;
+    }
+
+    /**
+     * Liest den Anfragekörper ein und lagert ihn bei Überschreiten des Schwellwerts aus.
+     */
+    public SpooledBody spool(InputStream requestBody) throws IOException {
+        Path dir = (tempDir == null || tempDir.isBlank()) ? null : Paths.get(tempDir);
+        SpooledBody body = SpooledBody.read(requestBody, thresholdBytes, dir);
+        if (body.isSpooled()) {
+            logger.info("Large request body ({} bytes) spooled to disk, {} attachment(s) located",
+                    body.getSize(), body.getDataRangeCount());
+        }
+        return body;
+    }
+
+    /**
+     * Prüft die beim Einlesen gefundenen Attachment-Daten. Leere Werte und Werte außerhalb
+     * des Base64-Alphabets werden immer gemeldet; Escape-Sequenzen nur bei ausgelagerten
+     * Körpern, da deren Inhalt unverändert aus der Datei weitergereicht wird.
+     *
+     * @return Bericht mit einem Befund pro betroffenem content-Eintrag
+     */
+    public ValidationReport checkAttachmentData(SpooledBody body) {
+        ValidationReport report = new ValidationReport();
+        for (AttachmentDataLocator.Finding finding : body.getDataFindings()) {
+            String location = "DocumentReference.content[" + finding.getContentIndex() + "].attachment.data";
+            switch (finding.getDefect()) {
+                case EMPTY:
+                    report.addIssue(IssueType.REQUIRED, location, FhirMessages.ATTACHMENT_DATA_EMPTY);
+                    break;
+                case NOT_BASE64:
+                    report.addIssue(IssueType.INVALID, location, FhirMessages.ATTACHMENT_DATA_NOT_BASE64);
+                    break;
+                case ESCAPED:
+                    if (body.isSpooled()) {
+                        report.addIssue(IssueType.INVALID, location, FhirMessages.ATTACHMENT_DATA_ESCAPED);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown attachment data defect: " + finding.getDefect());
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Parst eine DocumentReference aus dem (ggf. ausgelagerten) Anfragekörper.
+     * Bei ausgelagerten Körpern werden die Attachment-Daten durch einen Platzhalter
+     * ersetzt; der Inhalt ist dann nur noch über {@link SpooledBody#getDataSlices()} erreichbar.
+     * Der Körper muss zuvor mit {@link #checkAttachmentData} geprüft worden sein.
+     *
+     * @throws IllegalArgumentException wenn die Attachment-Daten kein reines Base64 sind
+     */
+    public DocumentReference parseDocumentReference(SpooledBody body) throws IOException {
+        if (!body.isSpooled()) {
+            try (Reader reader = new InputStreamReader(body.openStream(), StandardCharsets.UTF_8)) {
+                return jsonParser.parseResource(DocumentReference.class, reader);
+            }
+        }
+
+        if (!checkAttachmentData(body).isValid()) {
+            throw new IllegalArgumentException("Attachment data must be plain Base64 without escape sequences");
+        }
+
+        try (Reader reader = new InputStreamReader(body.openStreamWithPlaceholder(DATA_PLACEHOLDER),
+                StandardCharsets.UTF_8)) {
+            return jsonParser.parseResource(DocumentReference.class, reader);
+        }
+    }
+}
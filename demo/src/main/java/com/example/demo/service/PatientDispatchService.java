@@ -0,0 +1,447 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.dto.DocumentDTO;
+import com.example.demo.dto.PersonDTO;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Partitionierter Dispatcher vor der {@link ProprietaryApiService}.
+ *
+ * Aufträge werden anhand der Patienten-ID auf eine feste Anzahl serieller Lanes
+ * verteilt: Daten desselben Patienten erreichen die API in Eingangsreihenfolge,
+ * verschiedene Patienten werden parallel verarbeitet – ohne globale Sperre.
+ *
+ * Jede Lane hat eine begrenzte Warteschlange. Ist sie voll, wartet der Aufrufer blockierend
+ * auf einen frei werdenden Platz, höchstens {@code fhir.dispatch.offer-timeout-ms}
+ * (Backpressure); danach wird der Auftrag abgelehnt. Ein Patient ohne offene Aufträge,
+ * dessen Lane überlastet ist, wird auf die am wenigsten ausgelastete Lane umgezogen.
+ * Solange noch Aufträge offen sind, bleibt seine Lane fest, damit die Reihenfolge
+ * erhalten bleibt.
+ *
+ * Partitionsschlüssel ist die logische ID des Patienten, bei Dokumenten die ID aus
+ * {@code DocumentReference.subject}. Ein Patient, der ohne ID angelegt wird, kann von
+ * keinem Dokument referenziert werden; seine Daten werden ohne Schlüssel und damit
+ * ohne Reihenfolge übermittelt.
+ *
+ * Patient- und Dokumentdaten teilen sich die Lanes, sodass die Reihenfolge pro
+ * Patient über beide Bulkheads hinweg gilt (z. B. Patient vor seinen Dokumenten).
+ * Die Abschottung geschieht beim Einreihen: ein Bulkhead ({@link BulkheadService})
+ * belegt mit seinen eingereihten und laufenden Aufträgen höchstens
+ * {@code fhir.bulkhead.<name>.lanes} Lanes. Gehört die Lane eines Auftrags nicht dazu
+ * und ist die Grenze erreicht, wartet der Aufrufer (innerhalb desselben Timeouts wie
+ * bei voller Lane), bis eine Lane des Bulkheads frei wird – nie der Lane-Thread. So
+ * belegen langsame Dokument-Uploads höchstens {@code fhir.bulkhead.document.lanes}
+ * Lanes, und Patient-Aufträge auf den übrigen Lanes warten nie auf ein Dokument.
+ */
+@Service
+public class PatientDispatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PatientDispatchService.class);
+
+    // Ergebnis eines Einreihversuchs
+    private enum Admission { ENQUEUED, LANE_FULL, BULKHEAD_FULL }
+
+    private final ProprietaryApiService proprietaryApiService;
+    private final BulkheadService bulkheadService;
+    private final MeterRegistry meterRegistry;
+
+    // Von allen Bulkheads geteilte Lanes
+    private LaneGroup laneGroup;
+
+    // Abgelehnte Aufträge pro Bulkhead
+    private final Map<String, Counter> rejected = new HashMap<>();
+
+    // Threads für die parallele Übermittlung mehrerer Dokumentinhalte einer Anfrage
+    private ThreadPoolExecutor partExecutor;
+
+    // Anzahl der seriellen Lanes
+    @Value("${fhir.dispatch.lanes:8}")
+    private int laneCount;
+
+    // Maximale Anzahl wartender Aufträge pro Lane
+    @Value("${fhir.dispatch.queue-capacity:100}")
+    private int queueCapacity;
+
+    // Maximale Wartezeit auf einen freien Platz in der Lane
+    @Value("${fhir.dispatch.offer-timeout-ms:5000}")
+    private long offerTimeoutMs;
+
+    // Ab dieser Warteschlangenlänge gilt eine Lane als überlastet (Umzug neuer Patienten)
+    @Value("${fhir.dispatch.hot-threshold:16}")
+    private int hotThreshold;
+
+    // Gleichzeitige Uploads der content-Einträge einer DocumentReference und Threads dafür (gesamt)
+    @Value("${fhir.dispatch.document-parts.parallelism:4}")
+    private int partParallelism;
+
+    @Value("${fhir.dispatch.document-parts.threads:8}")
+    private int partThreads;
+
+    public PatientDispatchService(ProprietaryApiService proprietaryApiService, BulkheadService bulkheadService,
+            MeterRegistry meterRegistry) {
+        this.proprietaryApiService = proprietaryApiService;
+        this.bulkheadService = bulkheadService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    private void startLanes() {
+        if (laneCount < 1 || queueCapacity < 1) {
+            throw new IllegalStateException("fhir.dispatch.lanes and fhir.dispatch.queue-capacity must be positive");
+        }
+        if (partParallelism < 1 || partThreads < 1) {
+            throw new IllegalStateException("fhir.dispatch.document-parts.* must be positive");
+        }
+        laneGroup = new LaneGroup(laneCount);
+        for (BulkheadService.Bulkhead bulkhead : bulkheadService.getAll()) {
+            rejected.put(bulkhead.getName(),
+                    meterRegistry.counter("fhir.dispatch.rejected", "bulkhead", bulkhead.getName()));
+        }
+        // Ist der Pool ausgelastet, lädt der Lane-Thread den Inhalt selbst hoch
+        AtomicInteger threadIndex = new AtomicInteger();
+        partExecutor = new ThreadPoolExecutor(partThreads, partThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "dispatch-document-part-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    private void stopLanes() {
+        laneGroup.lanes.forEach(ThreadPoolExecutor::shutdown);
+        partExecutor.shutdown();
+    }
+
+    /**
+     * Sendet Patientendaten über die Lane des Patienten und wartet auf das Ergebnis.
+     *
+     * @param patientId Logische ID der Patient-Ressource (Partitionsschlüssel); null bei
+     *                  einem Patienten ohne ID, dessen Daten ungeordnet übermittelt werden
+     */
+    public boolean sendPatientData(String patientId, PersonDTO personDTO) {
+        return await(submit(BulkheadService.PERSON, patientId, () -> proprietaryApiService.sendPatientData(personDTO)));
+    }
+
+    /**
+     * Sendet die Dokumente der content-Einträge einer DocumentReference über die Lane von
+     * {@code DocumentDTO.patientId} und wartet auf das Ergebnis.
+     *
+     * Die Einträge werden als ein Auftrag eingereiht, sodass sie gegenüber anderen Daten
+     * des Patienten in Eingangsreihenfolge bleiben. Innerhalb des Auftrags laufen bis zu
+     * {@code fhir.dispatch.document-parts.parallelism} Uploads gleichzeitig; ihre
+     * Reihenfolge untereinander ist nicht festgelegt.
+     *
+     * @param documentDTOs Dokumente desselben Patienten
+     * @return pro Dokument (in Eingabereihenfolge), ob die Übermittlung erfolgreich war
+     */
+    public boolean[] sendDocumentParts(List<DocumentDTO> documentDTOs) {
+        if (documentDTOs.isEmpty()) {
+            return new boolean[0];
+        }
+        try {
+            return submit(BulkheadService.DOCUMENT, documentDTOs.get(0).getPatientId(),
+                    () -> sendConcurrently(documentDTOs)).join();
+        } catch (CompletionException e) {
+            logger.error("Dispatched API call failed", e.getCause());
+            return new boolean[documentDTOs.size()];
+        }
+    }
+
+    /**
+     * Lädt die Dokumente mit höchstens {@code partParallelism} gleichzeitigen Uploads hoch;
+     * der aufrufende Lane-Thread arbeitet selbst mit.
+     */
+    private boolean[] sendConcurrently(List<DocumentDTO> documentDTOs) {
+        boolean[] sent = new boolean[documentDTOs.size()];
+        AtomicInteger nextPart = new AtomicInteger();
+        Runnable worker = () -> {
+            for (int i = nextPart.getAndIncrement(); i < sent.length; i = nextPart.getAndIncrement()) {
+                try {
+                    sent[i] = proprietaryApiService.sendDocumentData(documentDTOs.get(i));
+                } catch (RuntimeException e) {
+                    logger.error("Upload of document part {} failed", i, e);
+                }
+            }
+        };
+
+        int helpers = Math.min(partParallelism, sent.length) - 1;
+        List<CompletableFuture<Void>> running = new ArrayList<>(helpers);
+        for (int i = 0; i < helpers; i++) {
+            running.add(CompletableFuture.runAsync(worker, partExecutor));
+        }
+        worker.run();
+        // join() stellt zugleich die Sichtbarkeit der Ergebnisse der Helfer-Threads sicher
+        CompletableFuture.allOf(running.toArray(new CompletableFuture<?>[0])).join();
+        return sent;
+    }
+
+    /**
+     * Reiht einen Auftrag in die Lane des Partitionsschlüssels ein, sofern der Bulkhead
+     * die Lane belegen darf. Aufträge ohne Schlüssel unterliegen keiner Reihenfolge und
+     * gehen auf die kürzeste Lane, die der Bulkhead belegen darf.
+     *
+     * @param bulkhead Name des Bulkheads ({@link BulkheadService#PERSON} bzw. {@link BulkheadService#DOCUMENT})
+     * @throws RejectedExecutionException wenn innerhalb des Timeouts kein Platz frei wurde
+     */
+    public <T> CompletableFuture<T> submit(String bulkhead, String partitionKey, Supplier<T> task) {
+        BulkheadService.Bulkhead target = bulkheadService.get(bulkhead);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(offerTimeoutMs);
+
+        QueueSlot slot = new QueueSlot();
+        try {
+            while (true) {
+                long releases = target.getLaneReleases();
+                Admission admission = laneGroup.tryEnqueue(target, partitionKey, task, future, slot);
+                if (admission == Admission.ENQUEUED) {
+                    return future;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    rejected.get(bulkhead).increment();
+                    logger.warn("Dispatch {} in bulkhead {}, rejecting task for partition {}",
+                            admission == Admission.LANE_FULL ? "lane full" : "lanes occupied", bulkhead,
+                            partitionKey);
+                    throw new RejectedExecutionException("Dispatch lane full for partition " + partitionKey);
+                }
+                // Blockierende Übergabe: geweckt wird bei einer frei gewordenen Lane bzw. einem
+                // freien Platz in der vollen Lane, der dann für den nächsten Versuch reserviert ist
+                if (admission == Admission.BULKHEAD_FULL) {
+                    target.awaitLaneRelease(releases, remaining);
+                } else {
+                    slot.held = laneGroup.slots.get(slot.lane).tryAcquire(remaining, TimeUnit.NANOSECONDS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a dispatch lane", e);
+        } finally {
+            if (slot.held) {
+                laneGroup.slots.get(slot.lane).release();
+            }
+        }
+    }
+
+    private static boolean await(CompletableFuture<Boolean> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            logger.error("Dispatched API call failed", e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * Serielle Lanes und Zuordnung Patient → Lane.
+     *
+     * Die Warteschlange einer Lane ist durch einen fairen Semaphor mit
+     * {@code queueCapacity} Plätzen begrenzt. Ein Auftrag belegt einen Platz beim
+     * Einreihen und gibt ihn zu Beginn seiner Ausführung frei; wartende Aufrufer
+     * erhalten frei werdende Plätze in der Reihenfolge ihres Wartens.
+     */
+    private final class LaneGroup {
+
+        private final List<ThreadPoolExecutor> lanes = new ArrayList<>();
+        private final List<Semaphore> slots = new ArrayList<>();
+        // Zuordnung Patient → Lane, nur solange Aufträge des Patienten offen sind
+        private final ConcurrentHashMap<String, Partition> partitions = new ConcurrentHashMap<>();
+        private final Counter rebalanced;
+
+        LaneGroup(int laneCount) {
+            for (int i = 0; i < laneCount; i++) {
+                String name = "dispatch-" + i;
+                // Die Kapazität begrenzt der Semaphor, die Warteschlange selbst ist unbegrenzt
+                ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<>(), runnable -> {
+                            Thread thread = new Thread(runnable, name);
+                            thread.setDaemon(true);
+                            return thread;
+                        }, new ThreadPoolExecutor.AbortPolicy());
+                lanes.add(lane);
+                slots.add(new Semaphore(queueCapacity, true));
+                Gauge.builder("fhir.dispatch.queue.depth", lane, executor -> executor.getQueue().size())
+                        .tag("lane", String.valueOf(i))
+                        .register(meterRegistry);
+            }
+            rebalanced = meterRegistry.counter("fhir.dispatch.rebalanced");
+            logger.info("Started {} dispatch lanes (queue capacity {})", laneCount, queueCapacity);
+        }
+
+        /**
+         * Versucht, den Auftrag ohne Blockieren einzureihen. Lane-Wahl, Belegen der Lane
+         * für den Bulkhead, Einreihen und Zählen der offenen Aufträge geschehen atomar pro
+         * Schlüssel, sodass die Reihenfolge in der Lane der Reihenfolge der Aufrufe entspricht.
+         * Ist die Lane voll, enthält {@code slot} danach ihren Index.
+         */
+        private <T> Admission tryEnqueue(BulkheadService.Bulkhead bulkhead, String partitionKey, Supplier<T> task,
+                CompletableFuture<T> future, QueueSlot slot) {
+            if (partitionKey == null) {
+                int lane = leastLoadedLane(bulkhead);
+                return enqueue(bulkhead, lane, slot, () -> run(bulkhead, lane, null, task, future));
+            }
+
+            Admission[] admission = new Admission[1];
+            partitions.compute(partitionKey, (key, partition) -> {
+                Partition target = partition != null ? partition : new Partition(chooseLane(key));
+                admission[0] = enqueue(bulkhead, target.lane, slot,
+                        () -> run(bulkhead, target.lane, key, task, future));
+                if (admission[0] != Admission.ENQUEUED) {
+                    return partition;
+                }
+                target.pending++;
+                return target;
+            });
+            return admission[0];
+        }
+
+        /**
+         * Reiht einen Auftrag ein, wenn der Bulkhead die Lane belegen darf und ein Platz
+         * frei ist. Ein für eine andere Lane reservierter Platz wird freigegeben.
+         */
+        private Admission enqueue(BulkheadService.Bulkhead bulkhead, int lane, QueueSlot slot, Runnable job) {
+            if (slot.held && slot.lane != lane) {
+                slots.get(slot.lane).release();
+                slot.held = false;
+            }
+            if (!bulkhead.tryOccupyLane(lane)) {
+                return Admission.BULKHEAD_FULL;
+            }
+            Semaphore free = slots.get(lane);
+            if (!slot.held && !tryAcquireInTurn(free)) {
+                bulkhead.releaseLane(lane);
+                slot.lane = lane;
+                return Admission.LANE_FULL;
+            }
+            slot.held = false;
+            try {
+                lanes.get(lane).execute(() -> {
+                    free.release();
+                    job.run();
+                });
+                return Admission.ENQUEUED;
+            } catch (RejectedExecutionException e) {
+                free.release();
+                bulkhead.releaseLane(lane);
+                slot.lane = lane;
+                return Admission.LANE_FULL;
+            }
+        }
+
+        /**
+         * Belegt einen freien Platz, ohne an bereits wartenden Aufrufern vorbeizuziehen
+         * (anders als {@link Semaphore#tryAcquire()}).
+         */
+        private boolean tryAcquireInTurn(Semaphore free) {
+            try {
+                return free.tryAcquire(0, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private <T> void run(BulkheadService.Bulkhead bulkhead, int lane, String partitionKey, Supplier<T> task,
+                CompletableFuture<T> future) {
+            try {
+                future.complete(task.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                bulkhead.releaseLane(lane);
+                if (partitionKey != null) {
+                    partitions.computeIfPresent(partitionKey,
+                            (key, partition) -> --partition.pending == 0 ? null : partition);
+                }
+            }
+        }
+
+        /**
+         * Lane für einen Patienten ohne offene Aufträge: die Hash-Lane, außer sie ist
+         * überlastet und eine andere Lane ist deutlich kürzer.
+         */
+        private int chooseLane(String partitionKey) {
+            int preferred = Math.floorMod(partitionKey.hashCode(), lanes.size());
+            int depth = lanes.get(preferred).getQueue().size();
+            if (depth < hotThreshold) {
+                return preferred;
+            }
+            int candidate = leastLoadedLane(null);
+            if (lanes.get(candidate).getQueue().size() * 2 < depth) {
+                rebalanced.increment();
+                logger.debug("Partition {} moved from hot lane {} to lane {}", partitionKey, preferred, candidate);
+                return candidate;
+            }
+            return preferred;
+        }
+
+        /**
+         * Kürzeste Lane; mit {@code bulkhead} nur unter den Lanes, die er belegen darf.
+         */
+        private int leastLoadedLane(BulkheadService.Bulkhead bulkhead) {
+            int best = 0;
+            int bestDepth = Integer.MAX_VALUE;
+            for (int i = 0; i < lanes.size(); i++) {
+                if (bulkhead != null && !bulkhead.mayOccupyLane(i)) {
+                    continue;
+                }
+                ThreadPoolExecutor lane = lanes.get(i);
+                int depth = lane.getQueue().size() + lane.getActiveCount();
+                if (depth < bestDepth) {
+                    best = i;
+                    bestDepth = depth;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Platz in der Warteschlange einer Lane, den ein wartender Aufrufer für seinen
+     * nächsten Einreihversuch reserviert hat.
+     */
+    private static final class QueueSlot {
+        private int lane = -1;
+        private boolean held;
+    }
+
+    /**
+     * Lane-Zuordnung und Anzahl offener Aufträge eines Patienten; Zugriff nur innerhalb
+     * von {@code partitions.compute*}.
+     */
+    private static final class Partition {
+        private final int lane;
+        private int pending;
+
+        Partition(int lane) {
+            this.lane = lane;
+        }
+    }
+}
@@ -2,97 +2,77 @@ package com.example.demo.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.util.stream.Collectors;
 
+import org.hl7.fhir.r4.model.OperationOutcome.IssueType;
 import org.hl7.fhir.r4.model.Patient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.example.demo.dto.PersonDTO;
+import com.example.demo.mapping.FhirMappingService;
+import com.example.demo.util.FhirMessages;
+import com.example.demo.util.ValidationReport;
 
 @Service // Kennzeichnet diese Klasse als Spring Service-Komponente
 public class PatientService {
 
     private static final Logger logger = LoggerFactory.getLogger(PatientService.class);
+    private static final String PATIENT_MAPPING = "patient-to-person";
 
     // Hier injizieren wir unsere "echte" Validator-Bean
     private final FhirValidatorService fhirValidatorService;
+    // Deklaratives FHIR-zu-DTO-Mapping
+    private final FhirMappingService fhirMappingService;
 
     @Autowired
-    public PatientService(FhirValidatorService fhirValidatorService) {
+    public PatientService(FhirValidatorService fhirValidatorService, FhirMappingService fhirMappingService) {
         this.fhirValidatorService = fhirValidatorService;
+        this.fhirMappingService = fhirMappingService;
     }
 
-    // Überprüft ob das Patientenobjekt gültige Daten enthält
-    public boolean isValid(Patient patient) {
+    // Überprüft, ob das Patientenobjekt gültige Daten enthält, und sammelt alle Befunde.
+    // Die teure Profilvalidierung läuft nur, wenn die Pflichtangaben vorhanden sind.
+    public ValidationReport validate(Patient patient) {
+        ValidationReport report = new ValidationReport();
         if (patient == null) {
-            logger.warn("Patient is null");
-            return false;
+            return report.addIssue(IssueType.REQUIRED, null, FhirMessages.RESOURCE_MISSING);
         }
 
-        if (patient.getName() == null || patient.getName().isEmpty()) {
-            logger.warn("Patient name is missing");
-            return false;
+        if (patient.getName().isEmpty()) {
+            report.addIssue(IssueType.REQUIRED, "Patient.name", FhirMessages.PATIENT_NAME_MISSING);
+        } else {
+            if (patient.getName().get(0).getGiven().isEmpty()) {
+                report.addIssue(IssueType.REQUIRED, "Patient.name[0].given", FhirMessages.PATIENT_GIVEN_NAME_MISSING);
+            }
+            if (patient.getName().get(0).getFamily() == null || patient.getName().get(0).getFamily().isEmpty()) {
+                report.addIssue(IssueType.REQUIRED, "Patient.name[0].family", FhirMessages.PATIENT_FAMILY_NAME_MISSING);
+            }
         }
 
-        if (patient.getName().get(0).getGiven() == null || patient.getName().get(0).getGiven().isEmpty()) {
-            logger.warn("Patient given name is missing");
-            return false;
-        }
-
-        if (patient.getName().get(0).getFamily() == null || patient.getName().get(0).getFamily().isEmpty()) {
-            logger.warn("Patient family name is missing");
-            return false;
+        if (patient.getBirthDate() == null) {
+            report.addIssue(IssueType.REQUIRED, "Patient.birthDate", FhirMessages.PATIENT_BIRTH_DATE_MISSING);
         }
 
-        if (patient.getBirthDate() == null) {
-            logger.warn("Patient birth date is missing");
-            return false;
+        if (!report.isValid()) {
+            logger.debug("Patient rejected with {} issue(s)", report.getIssues().size());
+            return report;
         }
 
-        return true;
+        // Erweiterte Validierung: Überprüfung gegen die ISiKPatient StructureDefinition.
+        return report.addAll(fhirValidatorService.validateIsikPatient(patient));
     }
 
-    // Konvertiert ein gültiges Patient-Objekt in ein PersonDTO-Objekt
+    // Konvertiert ein gültiges Patient-Objekt (siehe validate) in ein PersonDTO-Objekt
     public PersonDTO processPatient(Patient patient) {
-         if (!isValid(patient)) {
-            throw new IllegalArgumentException("Invalid Patient data");
-        }
-        
-        // Erweiterte Validierung: Überprüfung gegen die ISiKPatient StructureDefinition.
-        // Wird die Validierung nicht bestanden, wirft FhirInstanceValidatorUtil eine Exception.
-        fhirValidatorService.validateIsikPatient(patient);
-
-        // Extrahieren des Vornamens aus der Patient-Ressource
-        String firstName = patient.getName().get(0).getGiven().stream()
-                .map(namePart -> namePart.getValue())
-                .collect(Collectors.joining(" "));
-
-        // Extrahieren des Nachnamens aus der Patient-Ressource
-        String lastName = patient.getName().get(0).getFamily();
-
-        // Extrahieren des Geburtsdatums aus der Patient-Ressource und konvertieren
-        String birthDate = convertDate(patient.getBirthDateElement().getValueAsString());
+        // Extrahieren von Vorname(n), Nachname und Geburtsdatum über das deklarative
+        // Mapping (mappings/patient-to-person.json), Datum wird nach DD.MM.YYYY konvertiert
+        PersonDTO personDTO = fhirMappingService.map(PATIENT_MAPPING, patient, PersonDTO.class);
 
         // Loggt die extrahierten und konvertierten Patientendaten
-        logger.debug("Parsed patient data: {} {}, Birthdate: {}", firstName, lastName, birthDate);
+        logger.debug("Parsed patient data: {} {}, Birthdate: {}", personDTO.getFirstName(),
+                personDTO.getLastName(), personDTO.getBirthDate());
 
         // Rückgabe eines PersonDTO-Objekts
-        return new PersonDTO(firstName, lastName, birthDate);
-    }
-
-    // Konvertierung des Geburtsdatums von YYYY-MM-DD zu DD.MM.YYYY
-    private String convertDate(String birthDate) {
-        // Validierung des Eingabeformats
-        if (birthDate == null || !birthDate.matches("\\d{4}-\\d{2}-\\d{2}")) {
-            throw new IllegalArgumentException("Invalid birth date format. Expected format: YYYY-MM-DD");
-        }
-
-        String[] dateParts = birthDate.split("-");
-        String day = dateParts[2];
-        String month = dateParts[1];
-        String year = dateParts[0];
-
-        return day + "." + month + "." + year;
+        return personDTO;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,893 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.hl7.fhir.common.hapi.validation.support.CommonCodeSystemsTerminologyService;
+import org.hl7.fhir.common.hapi.validation.support.InMemoryTerminologyServerValidationSupport;
+import org.hl7.fhir.common.hapi.validation.support.SnapshotGeneratingValidationSupport;
+import org.hl7.fhir.common.hapi.validation.support.ValidationSupportChain;
+import org.hl7.fhir.common.hapi.validation.validator.FhirInstanceValidator;
+import org.hl7.fhir.r4.model.ElementDefinition;
+import org.hl7.fhir.r4.model.StructureDefinition;
+import org.hl7.fhir.utilities.npm.NpmPackage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.support.DefaultProfileValidationSupport;
+import ca.uhn.fhir.context.support.IValidationSupport;
+import ca.uhn.fhir.context.support.ValidationSupportContext;
+import ca.uhn.fhir.validation.FhirValidator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Registry für Validierungsartefakte (StructureDefinitions, ValueSets, CodeSystems).
+ *
+ * Quellen sind die im Classpath mitgelieferten Artefakte unter {@code fhir/} sowie
+ * FHIR-NPM-Pakete ({@code .tgz}) aus einem konfigurierbaren Verzeichnis. Beim Start
+ * wird nur ein Index (kanonische URL + Version → Fundort) aufgebaut; die Artefakte
+ * selbst werden erst geparst, wenn ein Validator sie anfordert. Pakete werden dazu
+ * einmalig mit {@link NpmPackage} gelesen (inkl. pax- und GNU-Erweiterungen des
+ * tar-Formats); ihr ungeparster Inhalt bleibt im Speicher, sodass ein Artefakt ohne
+ * erneutes Entpacken des Archivs geladen wird.
+ *
+ * Die ValidationSupport-Ketten werden pro Paket beim ersten Bedarf erzeugt. Welches
+ * Paket verwendet wird, richtet sich nach {@code meta.profile} der Ressource. Die
+ * Ketten liegen in einem Cache, dessen Größe über den geschätzten Speicherbedarf
+ * der geladenen Artefakte begrenzt wird; verdrängt wird die am längsten nicht
+ * genutzte Kette. Das Abrufen einer vorhandenen Kette kommt ohne Sperre aus.
+ *
+ * Artefakte aus dem Verzeichnis {@code fhir.artifacts.dir} ersetzen mitgelieferte
+ * Artefakte mit derselben kanonischen URL. Ihr Inhalt wird beim Indizieren einmal
+ * gelesen und im Speicher gehalten; eine Kette greift danach nicht mehr auf die Datei
+ * zu, auch wenn diese inzwischen geändert oder gelöscht wurde. Bei Änderungen wird der
+ * Index über {@link #prepareReload()} im Hintergrund neu aufgebaut und mit
+ * {@link #activate} atomar getauscht. Dabei werden die mitgelieferten Artefakte und die
+ * des Artefaktverzeichnisses sofort geparst und die Snapshots der geänderten Profile
+ * erzeugt; ein fehlerhaftes Artefakt verhindert den Tausch. Artefakte aus NPM-Paketen
+ * werden weiterhin erst bei Bedarf geparst. Für Pakete, deren Kette vor dem Neuaufbau
+ * im Cache lag, wird eine neue Kette erzeugt, die unveränderte, bereits geladene
+ * Artefakte der alten Kette übernimmt. Jede Kette liest aus dem Index, mit dem sie
+ * erzeugt wurde, sodass laufende Validierungen auf dem alten Stand zu Ende laufen.
+ */
+@Service
+public class ProfileRegistryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProfileRegistryService.class);
+
+    /** Paket-ID der im Classpath mitgelieferten Artefakte. */
+    public static final String BUNDLED_PACKAGE = "bundled";
+
+    // Geparste Artefakte belegen ein Vielfaches ihrer JSON-Größe im Heap (inkl. Snapshot)
+    private static final int MEMORY_FACTOR = 8;
+
+    // Ressourcentypen, die als Validierungsartefakte indiziert werden
+    private static final String[] ARTIFACT_TYPES = { "StructureDefinition", "ValueSet", "CodeSystem" };
+
+    // Der Zeitpunkt der letzten Nutzung einer Kette wird höchstens so oft aktualisiert
+    private static final long ACCESS_RESOLUTION_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final FhirContext fhirContext;
+    private final ObjectMapper objectMapper;
+
+    // Base-Profile von HL7 werden einmal geladen und von allen Validatoren geteilt
+    private final DefaultProfileValidationSupport defaultProfileSupport;
+
+    private final AtomicReference<Map<String, List<Artifact>>> index =
+            new AtomicReference<>(Collections.emptyMap());
+    private final Map<String, CachedSupport> supports = new ConcurrentHashMap<>();
+
+    // Verzeichnis mit FHIR-NPM-Paketen (leer = nur mitgelieferte Artefakte)
+    @Value("${fhir.packages.dir:}")
+    private String packagesDir;
+
+    // Verzeichnis mit einzelnen Profilen, CodeSystems und ValueSets (*.json), die zur Laufzeit
+    // ausgetauscht werden können (leer = keines)
+    @Value("${fhir.artifacts.dir:}")
+    private String artifactsDir;
+
+    // Obergrenze für den geschätzten Speicherbedarf aller gecachten Validatoren
+    @Value("${fhir.packages.validator-cache-bytes:268435456}")
+    private long validatorCacheBytes;
+
+    public ProfileRegistryService(FhirContext fhirContext, ObjectMapper objectMapper) {
+        this.fhirContext = fhirContext;
+        this.objectMapper = objectMapper;
+        this.defaultProfileSupport = new DefaultProfileValidationSupport(fhirContext);
+    }
+
+    @PostConstruct
+    private void buildIndex() {
+        Map<String, List<Artifact>> artifacts = createIndex();
+        index.set(artifacts);
+        logger.info("Profile registry indexed {} canonical URLs", artifacts.size());
+    }
+
+    private Map<String, List<Artifact>> createIndex() {
+        Map<String, List<Artifact>> artifacts = new HashMap<>();
+        indexClasspath(artifacts);
+        if (packagesDir != null && !packagesDir.isBlank()) {
+            indexPackages(Paths.get(packagesDir), artifacts);
+        }
+        if (artifactsDir != null && !artifactsDir.isBlank()) {
+            indexDirectory(Paths.get(artifactsDir), artifacts);
+        }
+        return artifacts;
+    }
+
+    /**
+     * Baut Index und ValidationSupport-Kette der mitgelieferten Artefakte neu auf,
+     * ohne sie zu aktivieren. Die mitgelieferten Artefakte (inkl. Artefaktverzeichnis)
+     * werden geparst und liegen danach bereits geladen in der neuen Kette. Für Profile
+     * ohne Snapshot wird dieser erzeugt und geprüft, dass jedes Element des Differentials
+     * darin vorkommt. Die Kette kann vor {@link #activate} aufgewärmt werden.
+     *
+     * Für jedes Paket mit gecachter Kette wird eine neue Kette über dem neuen Index
+     * erzeugt, die die geladenen Artefakte der alten Kette übernimmt, sofern sich deren
+     * Inhalt nicht geändert hat. Artefakte von Paketen werden dabei nicht geparst.
+     *
+     * @throws IllegalStateException wenn ein Artefakt nicht gelesen oder geparst werden
+     *                               kann oder der Snapshot eines Profils fehlerhaft ist
+     */
+    public PreparedIndex prepareReload() {
+        Map<String, List<Artifact>> artifacts = createIndex();
+        CachedSupport bundledSupport = buildSupport(BUNDLED_PACKAGE, artifacts);
+        List<Artifact> profiles = new ArrayList<>();
+        for (List<Artifact> candidates : artifacts.values()) {
+            for (Artifact artifact : candidates) {
+                if (!BUNDLED_PACKAGE.equals(artifact.packageId)) {
+                    continue;
+                }
+                IBaseResource resource;
+                try {
+                    resource = loadArtifact(artifact);
+                } catch (RuntimeException e) {
+                    throw new IllegalStateException("Error parsing FHIR artifact " + artifact.source() + ": "
+                            + e.getMessage(), e);
+                }
+                bundledSupport.support.preload(artifact, resource);
+                if (resource instanceof StructureDefinition) {
+                    profiles.add(artifact);
+                }
+            }
+        }
+        // Erst nachdem alle Artefakte vorliegen, da Basisprofile ebenfalls ersetzt sein können
+        for (Artifact artifact : profiles) {
+            bundledSupport.support.completeSnapshot(artifact);
+        }
+
+        Map<String, CachedSupport> packageSupports = new HashMap<>();
+        for (Map.Entry<String, CachedSupport> entry : supports.entrySet()) {
+            if (BUNDLED_PACKAGE.equals(entry.getKey())) {
+                continue;
+            }
+            CachedSupport rebuilt = buildSupport(entry.getKey(), artifacts);
+            int kept = rebuilt.support.carryOver(entry.getValue().support);
+            packageSupports.put(entry.getKey(), rebuilt);
+            logger.info("Rebuilt validation support for FHIR package {} with {} loaded artifacts", entry.getKey(),
+                    kept);
+        }
+        return new PreparedIndex(artifacts, bundledSupport, packageSupports);
+    }
+
+    /**
+     * Erzeugt den Snapshot eines Profils, das nur ein Differential enthält, an einer Kopie.
+     * Der Generator protokolliert unbekannte Elemente lediglich und lässt sie aus; solche
+     * Profile würden beim Validieren stillschweigend ignoriert und werden daher abgelehnt.
+     *
+     * @throws IllegalStateException wenn der Snapshot nicht erzeugt werden kann oder ein
+     *                               Element des Differentials darin fehlt
+     */
+    private static StructureDefinition createSnapshot(IValidationSupport chain, StructureDefinition profile) {
+        IBaseResource generated;
+        try {
+            generated = chain.generateSnapshot(new ValidationSupportContext(chain), profile.copy(), profile.getUrl(),
+                    profile.getUrl(), profile.getName());
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Cannot generate snapshot of profile " + profile.getUrl() + ": "
+                    + e.getMessage(), e);
+        }
+        if (!(generated instanceof StructureDefinition) || !((StructureDefinition) generated).hasSnapshot()) {
+            throw new IllegalStateException("Cannot generate snapshot of profile " + profile.getUrl());
+        }
+        verifyDifferential(profile, (StructureDefinition) generated);
+        return (StructureDefinition) generated;
+    }
+
+    private static void verifyDifferential(StructureDefinition profile, StructureDefinition snapshot) {
+        Set<String> paths = new HashSet<>();
+        for (ElementDefinition element : snapshot.getSnapshot().getElement()) {
+            paths.add(element.getPath());
+        }
+        for (ElementDefinition element : profile.getDifferential().getElement()) {
+            if (!containsPath(paths, element.getPath())) {
+                throw new IllegalStateException("Profile " + profile.getUrl() + " constrains unknown element "
+                        + element.getPath());
+            }
+        }
+    }
+
+    /**
+     * Prüft, ob ein Pfad des Differentials im Snapshot vorkommt. Typspezifische Namen
+     * eines Auswahlelements (z. B. {@code valueQuantity}) entsprechen dabei {@code value[x]}.
+     */
+    private static boolean containsPath(Set<String> paths, String path) {
+        if (path == null || paths.contains(path)) {
+            return true;
+        }
+        String[] segments = path.split("\\.");
+        String prefix = segments[0];
+        for (int i = 1; i < segments.length; i++) {
+            String segment = segments[i];
+            String candidate = prefix + "." + segment;
+            for (int split = segment.length() - 1; !paths.contains(candidate) && split > 0; split--) {
+                if (Character.isUpperCase(segment.charAt(split))) {
+                    candidate = prefix + "." + segment.substring(0, split) + "[x]";
+                }
+            }
+            if (!paths.contains(candidate)) {
+                return false;
+            }
+            prefix = candidate;
+        }
+        return true;
+    }
+
+    /**
+     * Tauscht Index und Ketten atomar aus. Bereits erzeugte Validatoren behalten ihre
+     * alte Kette; neue Validierungen verwenden den neuen Stand. Die beim Neuaufbau
+     * erzeugten Ketten der bisher gecachten Pakete ersetzen deren alte Ketten.
+     */
+    public synchronized void activate(PreparedIndex prepared) {
+        index.set(prepared.artifacts);
+        supports.clear();
+        supports.putAll(prepared.packageSupports);
+        supports.put(BUNDLED_PACKAGE, prepared.bundledSupport);
+        logger.info("Profile registry switched to new index with {} canonical URLs", prepared.artifacts.size());
+    }
+
+    /**
+     * @return alle Artefakte des aktiven Index (Typ, URL, Version, Paket, Fundort)
+     */
+    public List<Map<String, String>> listArtifacts() {
+        List<Map<String, String>> result = new ArrayList<>();
+        for (List<Artifact> candidates : index.get().values()) {
+            for (Artifact artifact : candidates) {
+                Map<String, String> entry = new LinkedHashMap<>();
+                entry.put("resourceType", artifact.resourceType);
+                entry.put("url", artifact.url);
+                entry.put("version", artifact.version);
+                entry.put("package", artifact.packageId);
+                entry.put("source", artifact.source());
+                result.add(entry);
+            }
+        }
+        result.sort((a, b) -> a.get("url").compareTo(b.get("url")));
+        return result;
+    }
+
+    private void indexClasspath(Map<String, List<Artifact>> artifacts) {
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources("classpath:fhir/**/*.json");
+            for (Resource resource : resources) {
+                try (InputStream in = resource.getInputStream()) {
+                    byte[] json = StreamUtils.copyToByteArray(in);
+                    String path = "fhir/" + resource.getURL().getPath().replaceFirst(".*/fhir/", "");
+                    addArtifact(artifacts, objectMapper.readTree(json), BUNDLED_PACKAGE, null, null, null, null,
+                            path, json.length);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Fehler beim Indizieren der mitgelieferten FHIR-Artefakte", e);
+            throw new IllegalStateException("Error indexing bundled FHIR artifacts", e);
+        }
+    }
+
+    private void indexPackages(Path directory, Map<String, List<Artifact>> artifacts) {
+        if (!Files.isDirectory(directory)) {
+            logger.warn("FHIR package directory does not exist: {}", directory);
+            return;
+        }
+        try (DirectoryStream<Path> packages = Files.newDirectoryStream(directory, "*.tgz")) {
+            for (Path archive : packages) {
+                indexPackage(archive, artifacts);
+            }
+        } catch (IOException e) {
+            logger.error("Fehler beim Lesen des Paketverzeichnisses: {}", directory, e);
+            throw new IllegalStateException("Error reading FHIR package directory " + directory, e);
+        }
+    }
+
+    /**
+     * Indiziert die Artefakte aus {@code fhir.artifacts.dir}. Sie gehören zum Paket der
+     * mitgelieferten Artefakte und ersetzen dort Einträge mit derselben URL. Jede Datei
+     * wird genau einmal gelesen; geladen wird später aus dem Inhalt im Speicher.
+     */
+    private void indexDirectory(Path directory, Map<String, List<Artifact>> artifacts) {
+        if (!Files.isDirectory(directory)) {
+            logger.warn("FHIR artifact directory does not exist: {}", directory);
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.json")) {
+            for (Path file : files) {
+                byte[] json = Files.readAllBytes(file);
+                JsonNode node = objectMapper.readTree(json);
+                String url = node.path("url").asText(null);
+                List<Artifact> existing = url != null ? artifacts.get(url) : null;
+                if (existing != null) {
+                    existing.removeIf(artifact -> BUNDLED_PACKAGE.equals(artifact.packageId));
+                }
+                addArtifact(artifacts, node, BUNDLED_PACKAGE, null, null, file, json,
+                        file.getFileName().toString(), json.length);
+            }
+        } catch (IOException e) {
+            logger.error("Fehler beim Lesen des Artefaktverzeichnisses: {}", directory, e);
+            throw new IllegalStateException("Error reading FHIR artifact directory " + directory, e);
+        }
+    }
+
+    /**
+     * Liest ein Paket einmalig ein und indiziert die Artefakte direkt unter {@code package/}
+     * (keine Beispiele o. Ä.).
+     */
+    private void indexPackage(Path archive, Map<String, List<Artifact>> artifacts) throws IOException {
+        NpmPackage npmPackage;
+        try (InputStream in = Files.newInputStream(archive)) {
+            npmPackage = NpmPackage.fromPackage(in);
+        }
+        String packageId = npmPackage.name() != null
+                ? npmPackage.name() + "#" + npmPackage.version()
+                : archive.getFileName().toString();
+
+        int count = 0;
+        NpmPackage.NpmPackageFolder folder = npmPackage.getFolders().get("package");
+        if (folder != null) {
+            for (String resourceType : ARTIFACT_TYPES) {
+                for (String file : folder.getTypes().getOrDefault(resourceType, Collections.emptyList())) {
+                    byte[] json = folder.fetchFile(file);
+                    addArtifact(artifacts, objectMapper.readTree(json), packageId, archive, npmPackage, null, null,
+                            file, json.length);
+                    count++;
+                }
+            }
+        }
+        logger.info("Indexed FHIR package {} ({} artifacts)", packageId, count);
+    }
+
+    private void addArtifact(Map<String, List<Artifact>> artifacts, JsonNode node, String packageId, Path archive,
+            NpmPackage npmPackage, Path file, byte[] content, String entry, long size) {
+        String resourceType = node.path("resourceType").asText();
+        if (!"StructureDefinition".equals(resourceType) && !"ValueSet".equals(resourceType)
+                && !"CodeSystem".equals(resourceType)) {
+            return;
+        }
+        String url = node.path("url").asText(null);
+        if (url == null) {
+            return;
+        }
+        Artifact artifact = new Artifact(resourceType, url, node.path("version").asText(null), packageId,
+                archive, npmPackage, file, content, entry, size);
+        artifacts.computeIfAbsent(url, key -> new ArrayList<>()).add(artifact);
+    }
+
+    /**
+     * Prüft, ob eine StructureDefinition mit der (ggf. versionierten) kanonischen URL bekannt ist.
+     */
+    public boolean isKnownProfile(String canonical) {
+        return findArtifact(canonical, "StructureDefinition", null) != null;
+    }
+
+    /**
+     * Ermittelt das Paket, gegen das eine Ressource validiert wird. Maßgeblich ist das
+     * erste in {@code meta.profile} deklarierte, bekannte Profil; andernfalls wird das
+     * Paket des Standardprofils verwendet.
+     *
+     * @param resource       Die zu validierende Ressource
+     * @param defaultProfile Kanonische URL des Profils, das ohne passendes meta.profile gilt
+     */
+    public String resolvePackage(IBaseResource resource, String defaultProfile) {
+        if (resource.getMeta() != null) {
+            for (IPrimitiveType<String> profile : resource.getMeta().getProfile()) {
+                Artifact artifact = findArtifact(profile.getValue(), "StructureDefinition", null);
+                if (artifact != null) {
+                    return artifact.packageId;
+                }
+                logger.debug("Declared profile {} is not known to the registry", profile.getValue());
+            }
+        }
+        Artifact fallback = findArtifact(defaultProfile, "StructureDefinition", null);
+        return fallback != null ? fallback.packageId : BUNDLED_PACKAGE;
+    }
+
+    /**
+     * Liefert die (ggf. neu erzeugte) ValidationSupport-Kette eines Pakets.
+     *
+     * Die Kette ist threadsicher und wird von allen Validatoren des Pakets geteilt.
+     * Nur das Erzeugen einer fehlenden Kette ist synchronisiert.
+     */
+    public IValidationSupport getValidationSupport(String packageId) {
+        return activeSupport(packageId).chain;
+    }
+
+    /**
+     * Führt {@code action} mit einem Validator des Pakets aus.
+     *
+     * Validatoren sind nicht threadsicher. Jede Kette hält daher einen Vorrat freier
+     * Validatoren, aus dem ein Aufrufer einen exklusiv entnimmt und danach zurücklegt;
+     * der Vorrat wächst höchstens auf die Anzahl gleichzeitiger Aufrufer. Wird die Kette
+     * verdrängt oder durch einen Neuaufbau ersetzt, fällt der Vorrat mit ihr weg, und
+     * gerade benutzte Validatoren werden verworfen statt zurückgelegt.
+     */
+    public <T> T withValidator(String packageId, Function<FhirValidator, T> action) {
+        CachedSupport cached = activeSupport(packageId);
+        FhirValidator validator = cached.idleValidators.pollFirst();
+        if (validator == null) {
+            validator = newValidator(cached.chain);
+        }
+        try {
+            return action.apply(validator);
+        } finally {
+            if (supports.get(packageId) == cached) {
+                cached.idleValidators.offerFirst(validator);
+            }
+        }
+    }
+
+    private CachedSupport activeSupport(String packageId) {
+        CachedSupport cached = supports.get(packageId);
+        if (cached == null) {
+            cached = createSupport(packageId);
+        }
+        cached.touch();
+        return cached;
+    }
+
+    private synchronized CachedSupport createSupport(String packageId) {
+        CachedSupport cached = supports.get(packageId);
+        if (cached == null) {
+            logger.info("Building validation support for FHIR package {}", packageId);
+            cached = buildSupport(packageId, index.get());
+            supports.put(packageId, cached);
+            evictIfNecessary(packageId);
+        }
+        return cached;
+    }
+
+    /**
+     * Erzeugt einen neuen Validator über einer (geteilten) ValidationSupport-Kette.
+     */
+    public FhirValidator newValidator(IValidationSupport validationSupport) {
+        FhirInstanceValidator instanceValidator = new FhirInstanceValidator(validationSupport);
+        FhirValidator validator = fhirContext.newValidator();
+        validator.registerValidatorModule(instanceValidator);
+        return validator;
+    }
+
+    private CachedSupport buildSupport(String packageId, Map<String, List<Artifact>> artifacts) {
+        RegistryValidationSupport registrySupport = new RegistryValidationSupport(fhirContext, packageId, artifacts,
+                () -> evictIfNecessary(packageId));
+        ValidationSupportChain supportChain = new ValidationSupportChain(
+                defaultProfileSupport,
+                new SnapshotGeneratingValidationSupport(fhirContext),
+                registrySupport,
+                new CommonCodeSystemsTerminologyService(fhirContext),
+                new InMemoryTerminologyServerValidationSupport(fhirContext));
+        registrySupport.chain = supportChain;
+        return new CachedSupport(supportChain, registrySupport);
+    }
+
+    /**
+     * Entfernt die am längsten nicht genutzten Ketten, bis die geschätzte
+     * Gesamtgröße unter der Grenze liegt. Die Kette von {@code keep} bleibt erhalten.
+     * Aufgerufen, wenn eine Kette erzeugt oder ein Artefakt neu geladen wurde.
+     */
+    private synchronized void evictIfNecessary(String keep) {
+        long total = 0;
+        for (CachedSupport cached : supports.values()) {
+            total += cached.support.getEstimatedBytes();
+        }
+        if (total <= validatorCacheBytes) {
+            return;
+        }
+        List<Map.Entry<String, CachedSupport>> entries = new ArrayList<>(supports.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+        for (Map.Entry<String, CachedSupport> eldest : entries) {
+            if (total <= validatorCacheBytes) {
+                break;
+            }
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            total -= eldest.getValue().support.getEstimatedBytes();
+            supports.remove(eldest.getKey(), eldest.getValue());
+            logger.info("Evicted validation support for FHIR package {} (cache {} bytes)", eldest.getKey(), total);
+        }
+    }
+
+    /**
+     * Sucht ein Artefakt des angegebenen Typs. Eine Version kann per {@code url|version}
+     * angegeben werden; ohne Version wird das Artefakt aus dem bevorzugten Paket bzw. die
+     * höchste Version gewählt. Kandidaten anderen Typs mit derselben URL (z. B. ein
+     * CodeSystem und ein ValueSet) werden übersprungen.
+     */
+    Artifact findArtifact(String canonical, String resourceType, String preferredPackage) {
+        return findArtifact(index.get(), canonical, resourceType, preferredPackage);
+    }
+
+    private static Artifact findArtifact(Map<String, List<Artifact>> artifacts, String canonical,
+            String resourceType, String preferredPackage) {
+        if (canonical == null) {
+            return null;
+        }
+        String url = canonical;
+        String version = null;
+        int bar = canonical.indexOf('|');
+        if (bar >= 0) {
+            url = canonical.substring(0, bar);
+            version = canonical.substring(bar + 1);
+        }
+
+        List<Artifact> candidates = artifacts.get(url);
+        if (candidates == null || candidates.isEmpty()) {
+            return null;
+        }
+
+        Artifact best = null;
+        for (Artifact candidate : candidates) {
+            if (!resourceType.equals(candidate.resourceType)) {
+                continue;
+            }
+            if (version != null) {
+                if (version.equals(candidate.version)) {
+                    return candidate;
+                }
+                continue;
+            }
+            if (candidate.packageId.equals(preferredPackage)) {
+                return candidate;
+            }
+            if (best == null || compareVersions(candidate.version, best.version) > 0) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private static int compareVersions(String a, String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        String[] left = a.split("[.-]");
+        String[] right = b.split("[.-]");
+        for (int i = 0; i < Math.max(left.length, right.length); i++) {
+            String l = i < left.length ? left[i] : "0";
+            String r = i < right.length ? right[i] : "0";
+            int result;
+            try {
+                result = Integer.compare(Integer.parseInt(l), Integer.parseInt(r));
+            } catch (NumberFormatException e) {
+                result = l.compareTo(r);
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Lädt und parst ein Artefakt aus dem Classpath bzw. dem bereits eingelesenen Inhalt
+     * einer Datei des Artefaktverzeichnisses oder eines NPM-Pakets.
+     */
+    IBaseResource loadArtifact(Artifact artifact) {
+        try {
+            String json;
+            if (artifact.content != null) {
+                json = new String(artifact.content, StandardCharsets.UTF_8);
+            } else if (artifact.archive == null) {
+                try (InputStream in = getClass().getClassLoader().getResourceAsStream(artifact.entry)) {
+                    if (in == null) {
+                        throw new IOException("Classpath resource not found: " + artifact.entry);
+                    }
+                    json = StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+                }
+            } else {
+                try (InputStream in = artifact.npmPackage.load("package", artifact.entry)) {
+                    json = StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+                }
+            }
+            // IParser ist nicht threadsicher, daher pro Ladevorgang ein eigener Parser
+            return fhirContext.newJsonParser().parseResource(json);
+        } catch (IOException e) {
+            logger.error("Fehler beim Laden des Artefakts {} aus {}", artifact.url, artifact.packageId, e);
+            throw new IllegalStateException("Error loading FHIR artifact " + artifact.url, e);
+        }
+    }
+
+    /**
+     * Fundort eines indizierten Artefakts.
+     */
+    static final class Artifact {
+        final String resourceType;
+        final String url;
+        final String version;
+        final String packageId;
+        final Path archive;
+        final NpmPackage npmPackage;
+        final Path file;
+        // Beim Indizieren gelesener Inhalt einer Datei aus dem Artefaktverzeichnis
+        final byte[] content;
+        final String entry;
+        final long size;
+
+        Artifact(String resourceType, String url, String version, String packageId, Path archive,
+                NpmPackage npmPackage, Path file, byte[] content, String entry, long size) {
+            this.resourceType = resourceType;
+            this.url = url;
+            this.version = version;
+            this.packageId = packageId;
+            this.archive = archive;
+            this.npmPackage = npmPackage;
+            this.file = file;
+            this.content = content;
+            this.entry = entry;
+            this.size = size;
+        }
+
+        String source() {
+            return file != null ? file.toString() : archive != null ? archive + "!package/" + entry : entry;
+        }
+
+        /**
+         * Prüft, ob ein Artefakt eines früheren Index denselben Inhalt beschreibt. Pakete
+         * werden über Paket-ID, Eintrag und Größe verglichen, Dateien des
+         * Artefaktverzeichnisses über ihren Inhalt.
+         */
+        boolean hasSameContent(Artifact other) {
+            return resourceType.equals(other.resourceType) && url.equals(other.url)
+                    && Objects.equals(version, other.version) && packageId.equals(other.packageId)
+                    && entry.equals(other.entry) && size == other.size
+                    && Arrays.equals(content, other.content);
+        }
+    }
+
+    private static final class CachedSupport {
+        final ValidationSupportChain chain;
+        final RegistryValidationSupport support;
+        // Freie Validatoren über dieser Kette; zuletzt benutzte werden zuerst wiederverwendet
+        final ConcurrentLinkedDeque<FhirValidator> idleValidators = new ConcurrentLinkedDeque<>();
+        volatile long lastAccess = System.nanoTime();
+
+        CachedSupport(ValidationSupportChain chain, RegistryValidationSupport support) {
+            this.chain = chain;
+            this.support = support;
+        }
+
+        /**
+         * Merkt die Nutzung für die Verdrängung; seltene Schreibzugriffe halten den
+         * Zugriff vieler Validierungs-Threads auf dieselbe Kette billig.
+         */
+        void touch() {
+            long now = System.nanoTime();
+            if (now - lastAccess > ACCESS_RESOLUTION_NANOS) {
+                lastAccess = now;
+            }
+        }
+    }
+
+    /**
+     * Neu aufgebauter, noch nicht aktivierter Index samt Kette der mitgelieferten Artefakte
+ * und den neu erzeugten Ketten der bisher gecachten Pakete.
+     */
+    public static final class PreparedIndex {
+        private final Map<String, List<Artifact>> artifacts;
+        private final CachedSupport bundledSupport;
+        // Neu erzeugte Ketten der vor dem Neuaufbau gecachten Pakete
+        private final Map<String, CachedSupport> packageSupports;
+
+        PreparedIndex(Map<String, List<Artifact>> artifacts, CachedSupport bundledSupport,
+                Map<String, CachedSupport> packageSupports) {
+            this.artifacts = artifacts;
+            this.bundledSupport = bundledSupport;
+            this.packageSupports = packageSupports;
+        }
+
+        public IValidationSupport getBundledSupport() {
+            return bundledSupport.chain;
+        }
+    }
+
+    /**
+     * ValidationSupport, der Artefakte bei Bedarf aus der Registry lädt und pro
+     * Validator zwischenspeichert. Artefakte des eigenen Pakets werden bevorzugt.
+     * Gesucht wird im Index, mit dem die Kette erzeugt wurde.
+     *
+     * Profile ohne Snapshot werden erst mit erzeugtem Snapshot veröffentlicht. Sonst
+     * ergänzt ihn der Validator in der geteilten Instanz, während andere Validatoren sie
+     * lesen.
+     */
+    private final class RegistryValidationSupport implements IValidationSupport {
+
+        private final FhirContext context;
+        private final String packageId;
+        private final Map<String, List<Artifact>> artifacts;
+        private final Map<String, IBaseResource> loaded = new ConcurrentHashMap<>();
+        // Schlüssel der Profile, deren Snapshot diese Kette erzeugt hat
+        private final Set<String> generatedSnapshots = ConcurrentHashMap.newKeySet();
+        private final AtomicLong estimatedBytes = new AtomicLong();
+        private final Runnable onGrowth;
+        // Kette, zu der dieser Support gehört; zum Erzeugen von Snapshots
+        private volatile IValidationSupport chain;
+
+        RegistryValidationSupport(FhirContext context, String packageId, Map<String, List<Artifact>> artifacts,
+                Runnable onGrowth) {
+            this.context = context;
+            this.packageId = packageId;
+            this.artifacts = artifacts;
+            this.onGrowth = onGrowth;
+        }
+
+        @Override
+        public FhirContext getFhirContext() {
+            return context;
+        }
+
+        long getEstimatedBytes() {
+            return estimatedBytes.get();
+        }
+
+        private IBaseResource fetch(String resourceType, String canonical) {
+            Artifact artifact = findArtifact(artifacts, canonical, resourceType, packageId);
+            if (artifact == null) {
+                return null;
+            }
+            String key = key(artifact);
+            IBaseResource resource = loaded.get(key);
+            if (resource == null) {
+                // Nicht in computeIfAbsent, da das Erzeugen des Snapshots weitere Artefakte lädt
+                IBaseResource original = loadArtifact(artifact);
+                IBaseResource parsed = withSnapshot(original);
+                resource = loaded.putIfAbsent(key, parsed);
+                if (resource == null) {
+                    resource = parsed;
+                    if (parsed != original) {
+                        generatedSnapshots.add(key);
+                    }
+                    estimatedBytes.addAndGet(artifact.size * MEMORY_FACTOR);
+                    // Außerhalb der Map, da die Verdrängung andere Ketten sperrt
+                    onGrowth.run();
+                }
+            }
+            return resource;
+        }
+
+        private IBaseResource withSnapshot(IBaseResource resource) {
+            if (!(resource instanceof StructureDefinition) || ((StructureDefinition) resource).hasSnapshot()
+                    || !((StructureDefinition) resource).hasDifferential()) {
+                return resource;
+            }
+            try {
+                return createSnapshot(chain, (StructureDefinition) resource);
+            } catch (IllegalStateException e) {
+                logger.warn("Using profile without snapshot: {}", e.getMessage());
+                return resource;
+            }
+        }
+
+        /**
+         * Übernimmt ein bereits geparstes Artefakt, bevor die Kette aktiviert wird.
+         */
+        void preload(Artifact artifact, IBaseResource resource) {
+            if (loaded.putIfAbsent(key(artifact), resource) == null) {
+                estimatedBytes.addAndGet(artifact.size * MEMORY_FACTOR);
+            }
+        }
+
+        /**
+         * Übernimmt die geladenen Artefakte einer Kette des vorherigen Index, deren Inhalt
+         * im neuen Index unverändert ist. Profile mit hier erzeugtem Snapshot werden neu
+         * erzeugt, da sich ihre Basisprofile geändert haben können.
+         *
+         * @return Anzahl der übernommenen Artefakte
+         */
+        int carryOver(RegistryValidationSupport previous) {
+            int kept = 0;
+            for (List<Artifact> candidates : artifacts.values()) {
+                for (Artifact artifact : candidates) {
+                    String key = key(artifact);
+                    IBaseResource resource = previous.loaded.get(key);
+                    if (resource == null || previous.generatedSnapshots.contains(key)) {
+                        continue;
+                    }
+                    for (Artifact old : previous.artifacts.getOrDefault(artifact.url, Collections.emptyList())) {
+                        if (key.equals(key(old)) && artifact.hasSameContent(old)) {
+                            preload(artifact, resource);
+                            kept++;
+                            break;
+                        }
+                    }
+                }
+            }
+            return kept;
+        }
+
+        /**
+         * Ersetzt ein vorab geladenes Profil durch eine Kopie mit Snapshot bzw. prüft den
+         * vorhandenen Snapshot gegen das Differential.
+         *
+         * @throws IllegalStateException wenn der Snapshot fehlerhaft ist
+         */
+        void completeSnapshot(Artifact artifact) {
+            String key = key(artifact);
+            StructureDefinition profile = (StructureDefinition) loaded.get(key);
+            if (!profile.hasSnapshot() && profile.hasDifferential()) {
+                loaded.put(key, createSnapshot(chain, profile));
+            } else {
+                verifyDifferential(profile, profile);
+            }
+        }
+
+        private String key(Artifact artifact) {
+            return artifact.resourceType + "|" + artifact.url + "|" + artifact.version + "|" + artifact.packageId;
+        }
+
+        @Override
+        public IBaseResource fetchStructureDefinition(String url) {
+            return fetch("StructureDefinition", url);
+        }
+
+        @Override
+        public IBaseResource fetchValueSet(String url) {
+            return fetch("ValueSet", url);
+        }
+
+        @Override
+        public IBaseResource fetchCodeSystem(String system) {
+            return fetch("CodeSystem", system);
+        }
+
+        @Override
+        public boolean isCodeSystemSupported(ValidationSupportContext validationSupportContext, String system) {
+            return findArtifact(artifacts, system, "CodeSystem", packageId) != null;
+        }
+
+        @Override
+        public boolean isValueSetSupported(ValidationSupportContext validationSupportContext, String valueSetUrl) {
+            return findArtifact(artifacts, valueSetUrl, "ValueSet", packageId) != null;
+        }
+    }
+}
@@ -1,34 +1,103 @@
 package com.example.demo.service;
 
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
 
 import com.example.demo.dto.DocumentDTO;
 import com.example.demo.dto.PersonDTO;
+import com.example.demo.util.CompressionUtil;
+import com.example.demo.util.DocumentBodyWriter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.handler.timeout.ReadTimeoutException;
+import io.netty.handler.timeout.WriteTimeoutHandler;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientRequest;
+import reactor.netty.resources.ConnectionProvider;
+
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 @Service // Kennzeichnet diese Klasse als Spring Service-Komponente
 public class ProprietaryApiService {
 
     private static final Logger logger = LoggerFactory.getLogger(ProprietaryApiService.class);
 
-    // WebClient für nicht-blockierende API-Aufrufe
+    // Blockgröße beim Streamen der Dokumentinhalte
+    private static final int STREAM_CHUNK_SIZE = 64 * 1024;
+
+    // WebClient für nicht-blockierende API-Aufrufe, je Bulkhead mit eigenem Verbindungspool
     private final WebClient.Builder webClientBuilder;
-    private WebClient webClient;
+    private final BulkheadService bulkheadService;
+    private final Map<String, WebClient> webClients = new HashMap<>();
+    private final Map<String, ConnectionProvider> connectionProviders = new HashMap<>();
+
+    // Metriken zur Komprimierung: eingesparte Bytes vs. aufgewendete CPU-Zeit
+    private final Counter originalBytes;
+    private final Counter compressedBytes;
+    private final Timer compressionTime;
+
+    // Prüfung der DTOs gegen die JSON-Schemas der API vor dem Senden
+    private final DtoContractService dtoContractService;
+    private final MeterRegistry meterRegistry;
+
+    // Adaptive Antwort-Timeouts und Hedging pro Endpunkt
+    private final TailLatencyService tailLatencyService;
 
     // API-URL aus Konfigurationsdatei beziehen
     @Value("${api.proprietary.url}")
     private String apiUrl;
 
-    public ProprietaryApiService(WebClient.Builder webClientBuilder) {
+    // gzip-Komprimierung der /Document-Payloads (muss von der API unterstützt werden)
+    @Value("${api.proprietary.compression.enabled:false}")
+    private boolean compressionEnabled;
+
+    // Kleinere Payloads werden unkomprimiert gesendet
+    @Value("${api.proprietary.compression.min-bytes:1024}")
+    private int compressionMinBytes;
+
+    // Fester Timeout für stockende Schreibvorgänge
+    @Value("${api.proprietary.timeout.write-ms:30000}")
+    private long writeTimeoutMs;
+
+    public ProprietaryApiService(WebClient.Builder webClientBuilder, MeterRegistry meterRegistry,
+            DtoContractService dtoContractService, BulkheadService bulkheadService,
+            TailLatencyService tailLatencyService) {
         this.webClientBuilder = webClientBuilder;
+        this.bulkheadService = bulkheadService;
+        this.tailLatencyService = tailLatencyService;
+        this.dtoContractService = dtoContractService;
+        this.meterRegistry = meterRegistry;
+        this.originalBytes = meterRegistry.counter("proprietary.api.compression.bytes", "stage", "original");
+        this.compressedBytes = meterRegistry.counter("proprietary.api.compression.bytes", "stage", "compressed");
+        this.compressionTime = meterRegistry.timer("proprietary.api.compression.time");
     }
 
     @PostConstruct
@@ -39,8 +108,34 @@ public class ProprietaryApiService {
             throw new IllegalStateException("API URL is not set! Check application.properties.");
         }
 
-        this.webClient = webClientBuilder.baseUrl(apiUrl).build();
-        logger.info("WebClient initialized with base URL: {}", apiUrl);
+        // Eigener Verbindungspool pro Bulkhead: langsame Dokument-Uploads belegen keine
+        // Verbindungen, die für Patientendaten gebraucht werden
+        for (BulkheadService.Bulkhead bulkhead : bulkheadService.getAll()) {
+            ConnectionProvider provider = ConnectionProvider.builder("proprietary-" + bulkhead.getName())
+                    .maxConnections(bulkhead.getConnections())
+                    .metrics(true)
+                    .build();
+            connectionProviders.put(bulkhead.getEndpoint(), provider);
+            // Antwort- und Verbindungs-Timeout folgen den aktuellen Perzentilen des Endpunkts
+            // (siehe TailLatencyService): der Antwort-Timeout wird pro Anfrage gesetzt, der
+            // Verbindungs-Timeout beim Öffnen jeder neuen Verbindung
+            TailLatencyService.EndpointPolicy policy = tailLatencyService.get(bulkhead.getEndpoint());
+            HttpClient httpClient = HttpClient.create(provider)
+                    .doOnChannelInit((observer, channel, address) -> channel.config()
+                            .setConnectTimeoutMillis(policy.getConnectTimeoutMillis()))
+                    .doOnConnected(connection -> connection.addHandlerLast(
+                            new WriteTimeoutHandler(writeTimeoutMs, TimeUnit.MILLISECONDS)));
+            webClients.put(bulkhead.getEndpoint(), webClientBuilder.clone()
+                    .clientConnector(new ReactorClientHttpConnector(httpClient))
+                    .baseUrl(apiUrl)
+                    .build());
+        }
+        logger.info("WebClient initialized with base URL: {} ({} connection pools)", apiUrl, webClients.size());
+    }
+
+    @PreDestroy
+    private void disposeConnectionPools() {
+        connectionProviders.values().forEach(ConnectionProvider::dispose);
     }
 
     /**
@@ -62,7 +157,46 @@ public class ProprietaryApiService {
      *         aufgetreten ist
      */
     public boolean sendDocumentData(DocumentDTO documentDTO) {
-        return sendData(documentDTO, "/Document");
+        return sendDocument(documentDTO, "/Document");
+    }
+
+    /**
+     * Sendet ein DocumentDTO über den {@link DocumentBodyWriter}: Die kleinen Felder
+     * und der Base64-Inhalt werden direkt in die Puffer der Verbindung geschrieben,
+     * ohne vorher eine vollständige Kopie des Anfragekörpers aufzubauen. Der Inhalt
+     * stammt entweder aus dem ursprünglichen Base64-String oder aus einer Datei.
+     */
+    private boolean sendDocument(DocumentDTO documentDTO, String endpoint) {
+        if (!satisfiesContract(documentDTO, endpoint)) {
+            return false;
+        }
+        DocumentBodyWriter writer = new DocumentBodyWriter(documentDTO, STREAM_CHUNK_SIZE);
+        long contentLength = writer.getContentLength();
+
+        if (compressionEnabled && contentLength >= compressionMinBytes) {
+            // Mit Hedging wird der Körper je Versuch neu komprimiert; gezählt wird das
+            // Dokument aber nur einmal: der Originalumfang sofort, der komprimierte Umfang
+            // vom ersten vollständig geschriebenen Körper (gzip ist deterministisch)
+            originalBytes.increment(contentLength);
+            AtomicBoolean compressedCounted = new AtomicBoolean();
+            // Länge nach der Komprimierung unbekannt, daher chunked senden
+            BodyInserter<Void, ReactiveHttpOutputMessage> gzipped = (message, context) -> {
+                AtomicLong written = new AtomicLong();
+                return message.writeWith(CompressionUtil.gzip(writer.write(message.bufferFactory()),
+                        message.bufferFactory(), nanos -> compressionTime.record(nanos, TimeUnit.NANOSECONDS))
+                        .doOnNext(buffer -> written.addAndGet(buffer.readableByteCount()))
+                        .doOnComplete(() -> {
+                            if (compressedCounted.compareAndSet(false, true)) {
+                                compressedBytes.increment(written.get());
+                            }
+                        }));
+            };
+            return exchange(gzipped, -1, CompressionUtil.GZIP, endpoint);
+        }
+
+        BodyInserter<Void, ReactiveHttpOutputMessage> body =
+                (message, context) -> message.writeWith(writer.write(message.bufferFactory()));
+        return exchange(body, contentLength, null, endpoint);
     }
 
     /**
@@ -74,6 +208,43 @@ public class ProprietaryApiService {
      *         aufgetreten ist
      */
     private boolean sendData(Object data, String endpoint) {
+        if (!satisfiesContract(data, endpoint)) {
+            return false;
+        }
+        return exchange(BodyInserters.fromValue(data), -1, null, endpoint);
+    }
+
+    /**
+     * Prüft das DTO gegen das Schema des Endpunkts. Verstöße werden lokal abgelehnt,
+     * statt einen Roundtrip zur API zu verursachen, die sie ohnehin zurückweisen würde.
+     */
+    private boolean satisfiesContract(Object data, String endpoint) {
+        List<String> violations = dtoContractService.check(data);
+        if (violations.isEmpty()) {
+            return true;
+        }
+        meterRegistry.counter("proprietary.api.contract.rejected", "endpoint", endpoint).increment();
+        logger.error("Outbound payload for endpoint {} violates the API schema: {}", endpoint, violations);
+        return false;
+    }
+
+    /**
+     * Führt die POST-Anfrage an die proprietäre API aus.
+     *
+     * Die Wartezeit auf die Antwort ist durch den adaptiven Timeout des Endpunkts
+     * begrenzt, der gesamte Aufruf durch dessen feste Gesamtfrist. Ist Hedging
+     * freigegeben, startet nach der Hedge-Verzögerung ein zweiter Versuch; die erste
+     * erfolgreiche Antwort gewinnt, der andere Versuch wird abgebrochen. Abgebrochene
+     * Versuche gehen mit ihrer bisherigen Dauer in das Fenster des Endpunkts ein.
+     *
+     * @param body          Der Anfragekörper
+     * @param contentLength   Bekannte Länge des Körpers in Bytes oder -1
+     * @param contentEncoding Content-Encoding des Körpers (z. B. "gzip") oder null
+     * @param endpoint        Das API-Endpoint
+     * @return true, wenn die API-Anfrage erfolgreich war
+     */
+    private boolean exchange(BodyInserter<?, ? super ClientHttpRequest> body, long contentLength,
+            String contentEncoding, String endpoint) {
         try {
             // Loggt die URL und den Anfragekörper
             String requestUrl = apiUrl + endpoint;
@@ -82,13 +253,49 @@ public class ProprietaryApiService {
             // logger.debug("Request body: " + data); // Auskommentiert, da der Anfragekörper
             // sensibele Daten enhalten könnte, nur zum Testen auskommentieren
 
-            // Sendet eine POST-Anfrage an die proprietäre API mit WebClient
-            ResponseEntity<String> response = webClient.post()
-                    .uri(requestUrl)
-                    .bodyValue(data)
-                    .retrieve()
-                    .toEntity(String.class)
-                    .block();
+            // Sendet eine POST-Anfrage an die proprietäre API mit dem WebClient des Bulkheads
+            WebClient webClient = webClients.get(endpoint);
+            if (webClient == null) {
+                throw new IllegalArgumentException("No bulkhead configured for endpoint " + endpoint);
+            }
+            TailLatencyService.EndpointPolicy policy = tailLatencyService.get(endpoint);
+            Duration responseTimeout = policy.getResponseTimeout();
+            Mono<ResponseEntity<String>> attempt = Mono.defer(() -> {
+                long attemptStart = System.nanoTime();
+                WebClient.RequestBodySpec request = webClient.post()
+                        .uri(requestUrl)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .httpRequest(httpRequest -> httpRequest.<HttpClientRequest>getNativeRequest()
+                                .responseTimeout(responseTimeout));
+                if (contentLength >= 0) {
+                    request = request.contentLength(contentLength);
+                }
+                if (contentEncoding != null) {
+                    request = request.header(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+                }
+                return request
+                        .body(body)
+                        .retrieve()
+                        .toEntity(String.class)
+                        .doOnSuccess(result -> policy.recordSuccess(System.nanoTime() - attemptStart))
+                        .doOnError(e -> {
+                            if (hasCause(e, ReadTimeoutException.class)) {
+                                policy.recordTimeout(System.nanoTime() - attemptStart);
+                            }
+                        })
+                        .doOnCancel(() -> policy.recordCancelled(System.nanoTime() - attemptStart));
+            });
+
+            Duration hedgeDelay = policy.beginRequest();
+            Mono<ResponseEntity<String>> call = attempt;
+            if (hedgeDelay != null) {
+                Mono<ResponseEntity<String>> hedge = Mono.delay(hedgeDelay)
+                        .flatMap(tick -> policy.tryHedge()
+                                ? attempt.doOnSuccess(result -> policy.hedgeWon())
+                                : Mono.<ResponseEntity<String>>empty());
+                call = Mono.firstWithValue(attempt, hedge);
+            }
+            ResponseEntity<String> response = call.timeout(policy.getDeadline()).block();
 
             // Loggt den Statuscode der Antwort & ANtwortzeit
             long duration = System.currentTimeMillis() - startTime;
@@ -106,9 +313,28 @@ public class ProprietaryApiService {
                 return false;
             }
         } catch (Exception e) {
+            if (hasCause(e, ReadTimeoutException.class) || hasCause(e, ConnectTimeoutException.class)
+                    || hasCause(e, TimeoutException.class)) {
+                logger.error("Timeout while sending data to endpoint {}", endpoint);
+                return false;
+            }
             // Loggt eine Ausnahme, falls eine auftritt
             logger.error("Exception occurred while sending data to endpoint {}", endpoint, e);
             return false;
         }
     }
-}
\ No newline at end of file
+
+    private static boolean hasCause(Throwable e, Class<? extends Throwable> type) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+            for (Throwable suppressed : cause.getSuppressed()) {
+                if (hasCause(suppressed, type)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,466 @@
+package com.example.demo.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.dto.DocumentDTO;
+import com.example.demo.dto.PersonDTO;
+import com.example.demo.util.PartialDate;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Lokaler Lesespeicher für die an die proprietäre API weitergeleiteten Patienten
+ * und Dokumente (nur Metadaten, ohne Inhalt), jeweils mit Ergebnis und Zeitstempel.
+ *
+ * Die Einträge werden in eine Append-only-Datei (NDJSON) geschrieben und beim Start
+ * wieder eingelesen; dabei wird die Datei bei Bedarf kompaktiert. Abfragen werden
+ * aus dem Speicher über Indizes auf patientId, visitNumber, kdlCode und Datum bedient.
+ */
+@Service
+public class ReadStoreService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadStoreService.class);
+
+    private final ObjectMapper objectMapper;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, PatientRecord> patients = new HashMap<>();
+    private final List<DocumentRecord> documents = new ArrayList<>();
+    private final Map<String, List<DocumentRecord>> byPatient = new HashMap<>();
+    private final Map<String, List<DocumentRecord>> byVisit = new HashMap<>();
+    private final Map<String, List<DocumentRecord>> byKdlCode = new HashMap<>();
+    private final TreeMap<LocalDate, List<DocumentRecord>> byDate = new TreeMap<>();
+
+    private Path storeFile;
+    private BufferedWriter writer;
+    private long fileLines;
+
+    // Datei des Lesespeichers
+    @Value("${fhir.read-store.file:${java.io.tmpdir}/fhir-read-store.ndjson}")
+    private String storeLocation;
+
+    public ReadStoreService(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    private void open() {
+        storeFile = Paths.get(storeLocation);
+        try {
+            if (storeFile.getParent() != null) {
+                Files.createDirectories(storeFile.getParent());
+            }
+            if (Files.exists(storeFile)) {
+                replay();
+                terminateLastLine();
+            }
+            if (fileLines > 2L * (patients.size() + documents.size()) + 1000) {
+                compact();
+            }
+            writer = Files.newBufferedWriter(storeFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            logger.error("Fehler beim Öffnen des Lesespeichers: {}", storeFile, e);
+            throw new IllegalStateException("Error opening read store " + storeFile, e);
+        }
+        logger.info("Read store opened with {} patients and {} documents", patients.size(), documents.size());
+    }
+
+    @PreDestroy
+    private void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void replay() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(storeFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                fileLines++;
+                JsonNode node;
+                try {
+                    node = objectMapper.readTree(line);
+                } catch (IOException e) {
+                    // Unvollständige letzte Zeile nach Absturz
+                    logger.warn("Skipping unreadable read store entry in line {}", fileLines);
+                    continue;
+                }
+                if ("Patient".equals(node.path("type").asText())) {
+                    index(objectMapper.treeToValue(node, PatientRecord.class));
+                } else if ("DocumentReference".equals(node.path("type").asText())) {
+                    index(objectMapper.treeToValue(node, DocumentRecord.class));
+                }
+            }
+        }
+    }
+
+    /**
+     * Schließt eine nach einem Absturz unvollständige letzte Zeile ab, damit neue
+     * Einträge nicht an das Fragment angehängt und beim nächsten Start verworfen werden.
+     */
+    private void terminateLastLine() throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(storeFile, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            if (channel.size() == 0) {
+                return;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.position(channel.size() - 1).read(last);
+            if (last.get(0) != '\n') {
+                channel.position(channel.size()).write(ByteBuffer.wrap(new byte[] { '\n' }));
+            }
+        }
+    }
+
+    /**
+     * Schreibt nur die aktuellen Einträge in eine neue Datei und ersetzt die alte atomar.
+     */
+    private void compact() throws IOException {
+        Path temp = storeFile.resolveSibling(storeFile.getFileName() + ".compact");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (PatientRecord patient : patients.values()) {
+                writeLine(out, "Patient", patient);
+            }
+            for (DocumentRecord document : documents) {
+                writeLine(out, "DocumentReference", document);
+            }
+        }
+        Files.move(temp, storeFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Compacted read store from {} to {} entries", fileLines, patients.size() + documents.size());
+        fileLines = patients.size() + documents.size();
+    }
+
+    private void writeLine(BufferedWriter out, String type, Object record) throws IOException {
+        ObjectNode node = objectMapper.valueToTree(record);
+        node.put("type", type);
+        out.write(objectMapper.writeValueAsString(node));
+        out.newLine();
+    }
+
+    /**
+     * Speichert einen weitergeleiteten Patienten. Fehler beim Schreiben werden nur
+     * protokolliert, damit die eigentliche Anfrage nicht daran scheitert.
+     *
+     * @param patientId  Logische ID der Patient-Ressource
+     * @param personDTO  Die weitergeleiteten Daten
+     * @param httpStatus Ergebnis der Verarbeitung (z. B. 201 oder 500)
+     */
+    public void recordPatient(String patientId, PersonDTO personDTO, int httpStatus) {
+        if (patientId == null) {
+            logger.debug("Patient without logical id is not stored in the read store");
+            return;
+        }
+        PatientRecord record = new PatientRecord();
+        record.id = patientId;
+        record.firstName = personDTO.getFirstName();
+        record.lastName = personDTO.getLastName();
+        record.birthDate = personDTO.getBirthDate();
+        record.status = httpStatus;
+        record.submittedAt = System.currentTimeMillis();
+        append("Patient", record, () -> index(record));
+    }
+
+    /**
+     * Speichert die Metadaten eines weitergeleiteten Dokuments (ohne Inhalt).
+     *
+     * @return Die lokale ID des Eintrags
+     */
+    public String recordDocument(DocumentDTO documentDTO, int httpStatus) {
+        DocumentRecord record = new DocumentRecord();
+        record.id = UUID.randomUUID().toString();
+        record.patientId = documentDTO.getPatientId();
+        record.visitNumber = documentDTO.getVisitNumber();
+        record.kdlCode = documentDTO.getKdlCode();
+        record.dateCreated = documentDTO.getDateCreated();
+        record.status = httpStatus;
+        record.submittedAt = System.currentTimeMillis();
+        append("DocumentReference", record, () -> index(record));
+        return record.id;
+    }
+
+    private void append(String type, Object record, Runnable indexer) {
+        lock.writeLock().lock();
+        try {
+            writeLine(writer, type, record);
+            writer.flush();
+            fileLines++;
+            indexer.run();
+        } catch (IOException e) {
+            logger.error("Fehler beim Schreiben in den Lesespeicher: {}", storeFile, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void index(PatientRecord record) {
+        patients.put(record.id, record);
+    }
+
+    private void index(DocumentRecord record) {
+        record.sequence = documents.size();
+        documents.add(record);
+        addTo(byPatient, record.patientId, record);
+        addTo(byVisit, record.visitNumber, record);
+        addTo(byKdlCode, record.kdlCode, record);
+        // Teildaten (MM.yyyy, yyyy) stehen unter dem ersten Tag ihres Zeitraums
+        PartialDate date = PartialDate.parseDto(record.dateCreated);
+        if (date != null) {
+            byDate.computeIfAbsent(date.getStart(), key -> new ArrayList<>(1)).add(record);
+        }
+    }
+
+    private static void addTo(Map<String, List<DocumentRecord>> index, String key, DocumentRecord record) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new ArrayList<>(1)).add(record);
+        }
+    }
+
+    public PatientRecord findPatient(String id) {
+        lock.readLock().lock();
+        try {
+            return patients.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sucht Dokumente; alle Kriterien sind optional und werden UND-verknüpft.
+     * Ausgewertet wird zunächst der selektivste Index, die übrigen Kriterien filtern.
+     * Das Ergebnis ist nach Eingang absteigend sortiert (neueste zuerst).
+     *
+     * @param patientId   Patienten-ID
+     * @param visitNumber Fallnummer
+     * @param kdlCode     KDL-Code
+     * @param date        Datumsbereich (null = beliebig)
+     * @param offset      Index des ersten Treffers der Seite
+     * @param count       Maximale Anzahl Treffer der Seite
+     */
+    public Page<DocumentRecord> searchDocuments(String patientId, String visitNumber, String kdlCode,
+            DateRange date, int offset, int count) {
+        lock.readLock().lock();
+        try {
+            List<Collection<DocumentRecord>> candidates = new ArrayList<>();
+            if (patientId != null) {
+                candidates.add(byPatient.getOrDefault(patientId, Collections.emptyList()));
+            }
+            if (visitNumber != null) {
+                candidates.add(byVisit.getOrDefault(visitNumber, Collections.emptyList()));
+            }
+            if (kdlCode != null) {
+                candidates.add(byKdlCode.getOrDefault(kdlCode, Collections.emptyList()));
+            }
+            if (date != null) {
+                List<DocumentRecord> inRange = new ArrayList<>();
+                date.select(byDate).values().forEach(inRange::addAll);
+                // Eingangsreihenfolge wie in den übrigen Indizes herstellen
+                inRange.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+                candidates.add(inRange);
+            }
+
+            Collection<DocumentRecord> smallest = documents;
+            for (Collection<DocumentRecord> candidate : candidates) {
+                if (candidate.size() < smallest.size()) {
+                    smallest = candidate;
+                }
+            }
+
+            List<DocumentRecord> matches = new ArrayList<>();
+            for (DocumentRecord record : smallest) {
+                if ((patientId == null || patientId.equals(record.patientId))
+                        && (visitNumber == null || visitNumber.equals(record.visitNumber))
+                        && (kdlCode == null || kdlCode.equals(record.kdlCode))
+                        && (date == null || date.contains(PartialDate.parseDto(record.dateCreated)))) {
+                    matches.add(record);
+                }
+            }
+            Collections.reverse(matches);
+
+            int from = Math.min(Math.max(offset, 0), matches.size());
+            int to = Math.min(from + Math.max(count, 0), matches.size());
+            return new Page<>(new ArrayList<>(matches.subList(from, to)), matches.size(), from);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gespeicherte Daten eines Patienten.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class PatientRecord {
+        public String id;
+        public String firstName;
+        public String lastName;
+        public String birthDate;
+        public int status;
+        public long submittedAt;
+    }
+
+    /**
+     * Gespeicherte Metadaten eines Dokuments.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class DocumentRecord {
+        public String id;
+        public String patientId;
+        public String visitNumber;
+        public String kdlCode;
+        public String dateCreated;
+        public int status;
+        public long submittedAt;
+        // Position in der Eingangsreihenfolge, wird beim Indizieren vergeben
+        @JsonIgnore
+        long sequence;
+    }
+
+    /**
+     * Eine Seite von Suchergebnissen.
+     */
+    public static final class Page<T> {
+        private final List<T> items;
+        private final int total;
+        private final int offset;
+
+        Page(List<T> items, int total, int offset) {
+            this.items = items;
+            this.total = total;
+            this.offset = offset;
+        }
+
+        public List<T> getItems() {
+            return items;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+    }
+
+    /**
+     * Datumsbereich für die Suche; Grenzen sind optional. Verglichen wird in der
+     * gröberen Genauigkeit von Grenze und gespeichertem Datum, sodass "05.2024" von
+     * "eq2024-05-17" und "ge2024-05-17" getroffen wird, von "lt2024-05-17" aber nicht.
+     */
+    public static final class DateRange {
+        private final PartialDate from;
+        private final boolean fromInclusive;
+        private final PartialDate to;
+        private final boolean toInclusive;
+
+        public DateRange(PartialDate from, boolean fromInclusive, PartialDate to, boolean toInclusive) {
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+        }
+
+        /**
+         * Erzeugt einen Bereich aus einem FHIR-Datumsparameter, z. B. "2024-05-01",
+         * "ge2024-05", "lt2025" oder "le2024-06-01".
+         *
+         * @throws IllegalArgumentException bei ungültigem Format
+         */
+        public static DateRange parse(String parameter) {
+            String prefix = parameter.length() > 2 && Character.isLetter(parameter.charAt(0))
+                    ? parameter.substring(0, 2) : "eq";
+            String value = "eq".equals(prefix) && !parameter.startsWith("eq") ? parameter : parameter.substring(2);
+            PartialDate date = PartialDate.parseFhir(value);
+            if (date == null) {
+                throw new IllegalArgumentException("Invalid date parameter: " + parameter);
+            }
+            switch (prefix) {
+                case "eq":
+                    return new DateRange(date, true, date, true);
+                case "ge":
+                    return new DateRange(date, true, null, false);
+                case "gt":
+                    return new DateRange(date, false, null, false);
+                case "le":
+                    return new DateRange(null, false, date, true);
+                case "lt":
+                    return new DateRange(null, false, date, false);
+                default:
+                    throw new IllegalArgumentException("Unsupported date prefix: " + prefix);
+            }
+        }
+
+        /**
+         * Liefert die Kandidaten aus dem Datumsindex. Der Bereich wird auf ganze Jahre
+         * erweitert, damit auch Einträge mit Monats- oder Jahresgenauigkeit enthalten
+         * sind; {@link #contains} filtert danach exakt.
+         */
+        NavigableMap<LocalDate, List<DocumentRecord>> select(TreeMap<LocalDate, List<DocumentRecord>> index) {
+            NavigableMap<LocalDate, List<DocumentRecord>> result = index;
+            if (from != null) {
+                result = result.tailMap(from.getStart().withDayOfYear(1), true);
+            }
+            if (to != null) {
+                result = result.headMap(to.getStart().withDayOfYear(1).plusYears(1), false);
+            }
+            return result;
+        }
+
+        boolean contains(PartialDate date) {
+            if (date == null) {
+                return false;
+            }
+            if (from != null) {
+                int cmp = date.compareAtPrecision(from);
+                if (fromInclusive ? cmp < 0 : cmp <= 0) {
+                    return false;
+                }
+            }
+            if (to != null) {
+                int cmp = date.compareAtPrecision(to);
+                return toInclusive ? cmp <= 0 : cmp < 0;
+            }
+            return true;
+        }
+    }
+}
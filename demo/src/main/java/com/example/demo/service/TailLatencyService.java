@@ -0,0 +1,330 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Adaptive Timeouts und Hedging für die Aufrufe der proprietären API.
+ *
+ * Pro Endpunkt (ein Endpunkt je {@link BulkheadService.Bulkhead}) werden die Dauern der
+ * letzten Versuche in einem gleitenden Fenster gesammelt. Daraus ergeben sich:
+ * <ul>
+ * <li>der Antwort-Timeout: Perzentil {@code api.proprietary.timeout.percentile} mal
+ * {@code multiplier}, begrenzt auf {@code min-ms} bis {@code max-ms} des Endpunkts.
+ * Solange weniger als {@code min-samples} Messwerte vorliegen, gilt {@code max-ms};</li>
+ * <li>der Timeout für den Verbindungsaufbau: der Antwort-Timeout, höchstens
+ * {@code api.proprietary.timeout.connect-ms}. Ein Verbindungsaufbau, der länger dauert
+ * als ein ganzer Aufruf dauern darf, gilt als gescheitert;</li>
+ * <li>die Hedge-Verzögerung: Perzentil {@code api.proprietary.hedge.percentile}. Ist
+ * Hedging für den Endpunkt freigegeben, wird danach ein zweiter Versuch gestartet und
+ * die erste erfolgreiche Antwort verwendet.</li>
+ * </ul>
+ * Unabhängig davon begrenzt die feste Gesamtfrist {@code deadline-ms} des Endpunkts
+ * die Wartezeit des Aufrufers inklusive Upload und zweitem Versuch.
+ *
+ * Versuche, die in den Antwort-Timeout laufen oder vor ihrer Antwort abgebrochen werden
+ * (verlorener Hedge, Gesamtfrist), gehen mit ihrer Dauer bis zum Abbruch in das Fenster
+ * ein; ihre tatsächliche Dauer ist mindestens so lang. Ohne diese Messwerte fielen gerade
+ * die langsamen Versuche heraus und die Timeouts verkürzten sich selbst immer weiter.
+ * Hedges sind über ein Budget auf den Anteil {@code api.proprietary.hedge.max-ratio} der
+ * Aufrufe begrenzt, damit sie eine ohnehin überlastete API nicht zusätzlich belasten.
+ */
+@Service
+public class TailLatencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TailLatencyService.class);
+
+    // Obergrenze angesparter Hedges, damit nach ruhigen Phasen kein Hedge-Schwall folgt
+    private static final double MAX_HEDGE_TOKENS = 10;
+
+    private final BulkheadService bulkheadService;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, EndpointPolicy> policies = new HashMap<>();
+
+    // Perzentil der Aufrufdauer und Faktor, aus denen sich der Antwort-Timeout ergibt
+    @Value("${api.proprietary.timeout.percentile:0.99}")
+    private double timeoutPercentile;
+
+    @Value("${api.proprietary.timeout.multiplier:3}")
+    private double timeoutMultiplier;
+
+    // Größe des gleitenden Fensters und Mindestanzahl an Messwerten für adaptive Werte
+    @Value("${api.proprietary.timeout.window:1000}")
+    private int windowSize;
+
+    @Value("${api.proprietary.timeout.min-samples:100}")
+    private int minSamples;
+
+    // Obergrenze des Timeouts für den Verbindungsaufbau
+    @Value("${api.proprietary.timeout.connect-ms:2000}")
+    private long connectMaxMs;
+
+    // Grenzen des Antwort-Timeouts für /Person
+    @Value("${api.proprietary.timeout.person.min-ms:200}")
+    private long personMinMs;
+
+    @Value("${api.proprietary.timeout.person.max-ms:5000}")
+    private long personMaxMs;
+
+    // Gesamtfrist eines Aufrufs an /Person inkl. Verbindungsaufbau, Upload und zweitem Versuch
+    @Value("${api.proprietary.timeout.person.deadline-ms:10000}")
+    private long personDeadlineMs;
+
+    // Grenzen des Antwort-Timeouts für /Document
+    @Value("${api.proprietary.timeout.document.min-ms:2000}")
+    private long documentMinMs;
+
+    @Value("${api.proprietary.timeout.document.max-ms:120000}")
+    private long documentMaxMs;
+
+    // Gesamtfrist eines Aufrufs an /Document inkl. Verbindungsaufbau, Upload und zweitem Versuch
+    @Value("${api.proprietary.timeout.document.deadline-ms:300000}")
+    private long documentDeadlineMs;
+
+    // Hedging nur für Endpunkte, bei denen ein doppelter Aufruf unschädlich ist
+    @Value("${api.proprietary.hedge.person.enabled:false}")
+    private boolean personHedgeEnabled;
+
+    @Value("${api.proprietary.hedge.document.enabled:false}")
+    private boolean documentHedgeEnabled;
+
+    // Perzentil der Aufrufdauer, nach dem der zweite Versuch startet, und Mindestverzögerung
+    @Value("${api.proprietary.hedge.percentile:0.95}")
+    private double hedgePercentile;
+
+    @Value("${api.proprietary.hedge.min-delay-ms:10}")
+    private long hedgeMinDelayMs;
+
+    // Maximaler Anteil der Aufrufe, für die ein zweiter Versuch gestartet werden darf
+    @Value("${api.proprietary.hedge.max-ratio:0.05}")
+    private double hedgeMaxRatio;
+
+    public TailLatencyService(BulkheadService bulkheadService, MeterRegistry meterRegistry) {
+        this.bulkheadService = bulkheadService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    private void createPolicies() {
+        if (!isFraction(timeoutPercentile) || !isFraction(hedgePercentile) || hedgeMaxRatio < 0
+                || timeoutMultiplier < 1 || windowSize < 1 || connectMaxMs < 1) {
+            throw new IllegalStateException("Invalid api.proprietary.timeout/hedge configuration");
+        }
+        for (BulkheadService.Bulkhead bulkhead : bulkheadService.getAll()) {
+            EndpointPolicy policy;
+            if (BulkheadService.PERSON.equals(bulkhead.getName())) {
+                policy = new EndpointPolicy(bulkhead.getEndpoint(), personMinMs, personMaxMs, personDeadlineMs,
+                        personHedgeEnabled);
+            } else if (BulkheadService.DOCUMENT.equals(bulkhead.getName())) {
+                policy = new EndpointPolicy(bulkhead.getEndpoint(), documentMinMs, documentMaxMs,
+                        documentDeadlineMs, documentHedgeEnabled);
+            } else {
+                throw new IllegalStateException("No timeout configuration for bulkhead " + bulkhead.getName());
+            }
+            policies.put(bulkhead.getEndpoint(), policy);
+            logger.info("Timeouts for {}: response {}-{} ms (p{} x {}), connect up to {} ms, deadline {} ms, "
+                    + "hedging {}", bulkhead.getEndpoint(), policy.minNanos / 1_000_000, policy.maxNanos / 1_000_000,
+                    timeoutPercentile * 100, timeoutMultiplier, connectMaxMs, policy.deadline.toMillis(),
+                    policy.hedgeEnabled ? "after p" + hedgePercentile * 100 : "disabled");
+        }
+    }
+
+    private static boolean isFraction(double value) {
+        return value > 0 && value < 1;
+    }
+
+    public EndpointPolicy get(String endpoint) {
+        EndpointPolicy policy = policies.get(endpoint);
+        if (policy == null) {
+            throw new IllegalArgumentException("No timeout policy for endpoint " + endpoint);
+        }
+        return policy;
+    }
+
+    /**
+     * Timeout- und Hedging-Zustand eines Endpunkts.
+     */
+    public final class EndpointPolicy {
+
+        private final String endpoint;
+        private final long minNanos;
+        private final long maxNanos;
+        private final Duration deadline;
+        private final boolean hedgeEnabled;
+
+        // Ringpuffer der letzten Aufrufdauern; Zugriff nur unter synchronized
+        private final long[] window = new long[windowSize];
+        private int next;
+        private int filled;
+        private int sinceRecompute;
+        private double hedgeTokens = MAX_HEDGE_TOKENS;
+
+        // Zuletzt berechnete Werte, werden alle windowSize/10 Messwerte aktualisiert
+        private volatile long responseTimeoutNanos;
+        private volatile long hedgeDelayNanos;
+
+        private final Timer latency;
+        private final Counter responseTimeouts;
+        private final Counter cancelled;
+        private final Counter hedgesSent;
+        private final Counter hedgesWon;
+        private final Counter hedgesDenied;
+
+        EndpointPolicy(String endpoint, long minMs, long maxMs, long deadlineMs, boolean hedgeEnabled) {
+            if (minMs < 1 || maxMs < minMs || deadlineMs < maxMs) {
+                throw new IllegalStateException("Invalid response timeout bounds or deadline for " + endpoint);
+            }
+            this.endpoint = endpoint;
+            this.minNanos = TimeUnit.MILLISECONDS.toNanos(minMs);
+            this.maxNanos = TimeUnit.MILLISECONDS.toNanos(maxMs);
+            this.deadline = Duration.ofMillis(deadlineMs);
+            this.hedgeEnabled = hedgeEnabled;
+            this.responseTimeoutNanos = maxNanos;
+            this.hedgeDelayNanos = maxNanos;
+
+            this.latency = meterRegistry.timer("proprietary.api.latency", "endpoint", endpoint);
+            this.responseTimeouts = meterRegistry.counter("proprietary.api.timeouts", "endpoint", endpoint);
+            this.cancelled = meterRegistry.counter("proprietary.api.cancelled", "endpoint", endpoint);
+            this.hedgesSent = meterRegistry.counter("proprietary.api.hedge", "endpoint", endpoint, "result", "sent");
+            this.hedgesWon = meterRegistry.counter("proprietary.api.hedge", "endpoint", endpoint, "result", "won");
+            this.hedgesDenied = meterRegistry.counter("proprietary.api.hedge", "endpoint", endpoint,
+                    "result", "denied");
+            TimeGauge.builder("proprietary.api.timeout.response", this, TimeUnit.NANOSECONDS,
+                            p -> p.responseTimeoutNanos)
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+            TimeGauge.builder("proprietary.api.hedge.delay", this, TimeUnit.NANOSECONDS, p -> p.hedgeDelayNanos)
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+        }
+
+        /**
+         * @return aktueller Antwort-Timeout (Zeit zwischen gesendeter Anfrage und Antwort)
+         */
+        public Duration getResponseTimeout() {
+            return Duration.ofNanos(responseTimeoutNanos);
+        }
+
+        /**
+         * @return aktueller Timeout für den Aufbau einer neuen Verbindung in Millisekunden
+         */
+        public int getConnectTimeoutMillis() {
+            return (int) Math.min(connectMaxMs, TimeUnit.NANOSECONDS.toMillis(responseTimeoutNanos));
+        }
+
+        /**
+         * @return feste Gesamtfrist eines Aufrufs inklusive aller Versuche
+         */
+        public Duration getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * Meldet einen neuen Aufruf an und liefert die Verzögerung, nach der ein zweiter
+         * Versuch gestartet werden soll.
+         *
+         * @return Hedge-Verzögerung oder null, wenn für den Endpunkt kein Hedging erfolgt
+         */
+        public Duration beginRequest() {
+            if (!hedgeEnabled) {
+                return null;
+            }
+            synchronized (this) {
+                hedgeTokens = Math.min(MAX_HEDGE_TOKENS, hedgeTokens + hedgeMaxRatio);
+            }
+            return Duration.ofNanos(hedgeDelayNanos);
+        }
+
+        /**
+         * Entnimmt einen Hedge aus dem Budget.
+         *
+         * @return false, wenn das Budget erschöpft ist; dann unterbleibt der zweite Versuch
+         */
+        public boolean tryHedge() {
+            synchronized (this) {
+                if (hedgeTokens >= 1) {
+                    hedgeTokens -= 1;
+                    hedgesSent.increment();
+                    return true;
+                }
+            }
+            hedgesDenied.increment();
+            return false;
+        }
+
+        public void hedgeWon() {
+            hedgesWon.increment();
+        }
+
+        /**
+         * Erfasst die Dauer eines erfolgreichen Aufrufs.
+         */
+        public void recordSuccess(long nanos) {
+            latency.record(nanos, TimeUnit.NANOSECONDS);
+            record(nanos);
+        }
+
+        /**
+         * Erfasst einen Aufruf, der in den Antwort-Timeout gelaufen ist.
+         */
+        public void recordTimeout(long nanos) {
+            responseTimeouts.increment();
+            record(nanos);
+        }
+
+        /**
+         * Erfasst einen Versuch, der vor seiner Antwort abgebrochen wurde, weil der andere
+         * Versuch gewonnen hat oder die Gesamtfrist abgelaufen ist.
+         */
+        public void recordCancelled(long nanos) {
+            cancelled.increment();
+            record(nanos);
+        }
+
+        private synchronized void record(long nanos) {
+            window[next] = nanos;
+            next = (next + 1) % window.length;
+            if (filled < window.length) {
+                filled++;
+            }
+            if (++sinceRecompute >= Math.max(1, window.length / 10)) {
+                sinceRecompute = 0;
+                recompute();
+            }
+        }
+
+        private void recompute() {
+            if (filled < minSamples) {
+                return;
+            }
+            long[] sorted = Arrays.copyOf(window, filled);
+            Arrays.sort(sorted);
+            long timeout = (long) (percentile(sorted, timeoutPercentile) * timeoutMultiplier);
+            responseTimeoutNanos = Math.max(minNanos, Math.min(maxNanos, timeout));
+            hedgeDelayNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(hedgeMinDelayMs),
+                    Math.min(responseTimeoutNanos, percentile(sorted, hedgePercentile)));
+            logger.debug("Updated timeouts for {}: response {} ms, hedge delay {} ms", endpoint,
+                    responseTimeoutNanos / 1_000_000, hedgeDelayNanos / 1_000_000);
+        }
+
+        private long percentile(long[] sorted, double quantile) {
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+    }
+}
@@ -0,0 +1,507 @@
+package com.example.demo.service;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.annotation.PostConstruct;
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.CodeSystem;
+import org.hl7.fhir.r4.model.ValueSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+
+/**
+ * In-Memory-Index über die lokalen CodeSystems und ValueSets (z. B. KDL 2021).
+ *
+ * Die Artefakte werden einmal beim Start geparst. Für jedes Paar aus System und Code
+ * gibt es eine Hash-Map, für die Anzeigetexte einen sortierten Token-Index, über den
+ * Präfixsuchen (Autovervollständigung) ohne Durchlaufen aller Konzepte möglich sind.
+ *
+ * CodeSystems und ValueSets aus {@code fhir.artifacts.dir} ersetzen mitgelieferte
+ * mit derselben URL. Ein neu aufgebauter Index ({@link #prepareReload()}) wird mit
+ * {@link #activate} als Ganzes getauscht, sodass Leser nie einen gemischten Stand sehen.
+ */
+@Service
+public class TerminologyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TerminologyService.class);
+
+    private final FhirContext fhirContext;
+
+    private volatile Indexes indexes = new Indexes(Collections.emptyMap(), Collections.emptyMap());
+
+    // Ablageorte der indizierten Artefakte
+    @Value("${fhir.terminology.codesystems:classpath:fhir/codesystems/*.json}")
+    private String codeSystemLocation;
+
+    @Value("${fhir.terminology.valuesets:classpath:fhir/valuesets/*.json}")
+    private String valueSetLocation;
+
+    // Verzeichnis mit zur Laufzeit austauschbaren Artefakten (leer = keines)
+    @Value("${fhir.artifacts.dir:}")
+    private String artifactsDir;
+
+    public TerminologyService(FhirContext fhirContext) {
+        this.fhirContext = fhirContext;
+    }
+
+    @PostConstruct
+    private void buildIndex() {
+        activate(prepareReload());
+    }
+
+    /**
+     * Baut den Index aus allen Quellen neu auf, ohne ihn zu aktivieren.
+     *
+     * @throws IllegalStateException wenn ein Artefakt nicht gelesen werden kann
+     */
+    public Indexes prepareReload() {
+        IParser parser = fhirContext.newJsonParser();
+        List<CodeSystem> codeSystemResources = new ArrayList<>();
+        List<ValueSet> valueSetResources = new ArrayList<>();
+        try {
+            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+            for (Resource resource : resolver.getResources(codeSystemLocation)) {
+                codeSystemResources.add(parser.parseResource(CodeSystem.class, read(resource)));
+            }
+            for (Resource resource : resolver.getResources(valueSetLocation)) {
+                valueSetResources.add(parser.parseResource(ValueSet.class, read(resource)));
+            }
+            if (artifactsDir != null && !artifactsDir.isBlank() && Files.isDirectory(Paths.get(artifactsDir))) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(artifactsDir), "*.json")) {
+                    for (Path file : files) {
+                        IBaseResource resource = parser.parseResource(Files.readString(file));
+                        if (resource instanceof CodeSystem) {
+                            codeSystemResources.add((CodeSystem) resource);
+                        } else if (resource instanceof ValueSet) {
+                            valueSetResources.add((ValueSet) resource);
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Fehler beim Aufbau des Terminologie-Index", e);
+            throw new IllegalStateException("Error building terminology index", e);
+        }
+
+        // Spätere Quellen (Artefaktverzeichnis) überschreiben frühere mit derselben URL
+        Map<String, CodeSystemIndex> newCodeSystems = new HashMap<>();
+        for (CodeSystem codeSystem : codeSystemResources) {
+            newCodeSystems.put(codeSystem.getUrl(), new CodeSystemIndex(codeSystem));
+            logger.info("Indexed CodeSystem {} (version {})", codeSystem.getUrl(), codeSystem.getVersion());
+        }
+        Map<String, ValueSetIndex> newValueSets = new HashMap<>();
+        for (ValueSet valueSet : valueSetResources) {
+            newValueSets.put(valueSet.getUrl(), new ValueSetIndex(valueSet, newCodeSystems));
+            logger.info("Indexed ValueSet {} (version {})", valueSet.getUrl(), valueSet.getVersion());
+        }
+        return new Indexes(newCodeSystems, newValueSets);
+    }
+
+    /**
+     * Aktiviert einen mit {@link #prepareReload()} aufgebauten Index.
+     */
+    public void activate(Indexes prepared) {
+        indexes = prepared;
+    }
+
+    private static String read(Resource resource) throws java.io.IOException {
+        try (InputStream is = resource.getInputStream()) {
+            return StreamUtils.copyToString(is, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * @return alle aktiven CodeSystems und ValueSets (Typ, URL, Version, Anzahl Konzepte)
+     */
+    public List<Map<String, Object>> listArtifacts() {
+        Indexes current = indexes;
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (CodeSystemIndex index : current.codeSystems.values()) {
+            result.add(describe("CodeSystem", index));
+        }
+        for (ValueSetIndex index : current.valueSets.values()) {
+            result.add(describe("ValueSet", index));
+        }
+        result.sort((a, b) -> ((String) a.get("url")).compareTo((String) b.get("url")));
+        return result;
+    }
+
+    private static Map<String, Object> describe(String resourceType, ConceptIndex index) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("resourceType", resourceType);
+        entry.put("url", index.getUrl());
+        entry.put("version", index.getVersion());
+        entry.put("concepts", index.size());
+        return entry;
+    }
+
+    /**
+     * @return Der Index des CodeSystems oder null, wenn es nicht bekannt ist.
+     */
+    public CodeSystemIndex getCodeSystem(String url) {
+        return url == null ? null : indexes.codeSystems.get(url);
+    }
+
+    /**
+     * @return Der Index des ValueSets oder null, wenn es nicht bekannt ist.
+     */
+    public ValueSetIndex getValueSet(String url) {
+        return url == null ? null : indexes.valueSets.get(url);
+    }
+
+    /**
+     * @return Zeitpunkt des Indexaufbaus (z. B. für ValueSet.expansion.timestamp).
+     */
+    public Date getIndexedAt() {
+        return indexes.indexedAt;
+    }
+
+    /**
+     * Normalisiert Text für die Suche: Kleinschreibung, Umlaute/Akzente entfernt, ß → ss.
+     */
+    static String normalize(String text) {
+        String lower = text.toLowerCase(Locale.GERMAN).replace("ß", "ss");
+        String decomposed = Normalizer.normalize(lower, Normalizer.Form.NFD);
+        StringBuilder result = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : normalize(text).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Unveränderlicher Stand aller CodeSystem- und ValueSet-Indizes.
+     */
+    public static final class Indexes {
+        private final Map<String, CodeSystemIndex> codeSystems;
+        private final Map<String, ValueSetIndex> valueSets;
+        private final Date indexedAt = new Date();
+
+        Indexes(Map<String, CodeSystemIndex> codeSystems, Map<String, ValueSetIndex> valueSets) {
+            this.codeSystems = codeSystems;
+            this.valueSets = valueSets;
+        }
+    }
+
+    /**
+     * Ein Konzept mit vorberechneten Such-Tokens.
+     */
+    public static final class Concept {
+        private final String system;
+        private final String code;
+        private final String display;
+        private final String definition;
+        private final List<String> tokens;
+
+        Concept(String system, String code, String display, String definition) {
+            this.system = system;
+            this.code = code;
+            this.display = display;
+            this.definition = definition;
+            List<String> allTokens = tokenize(display);
+            allTokens.add(normalize(code));
+            this.tokens = allTokens;
+        }
+
+        public String getSystem() {
+            return system;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public String getDisplay() {
+            return display;
+        }
+
+        public String getDefinition() {
+            return definition;
+        }
+
+        boolean matchesPrefix(String filterToken) {
+            for (String token : tokens) {
+                if (token.startsWith(filterToken)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Gemeinsame Basis: Konzepte in Definitionsreihenfolge, Map über System und Code
+     * sowie Token-Präfixindex auf die Positionen der Konzepte.
+     */
+    public abstract static class ConceptIndex {
+        private final String url;
+        private final String version;
+        private final String name;
+        private final List<Concept> concepts = new ArrayList<>();
+        private final Map<String, Concept> bySystemAndCode = new HashMap<>();
+        private final Map<String, Concept> byCode = new HashMap<>();
+        private final TreeMap<String, List<Integer>> byToken = new TreeMap<>();
+        private volatile String cacheTag;
+
+        ConceptIndex(String url, String version, String name) {
+            this.url = url;
+            this.version = version;
+            this.name = name;
+        }
+
+        /**
+         * Nimmt ein Konzept auf. Ein weiteres Konzept mit gleichem System und Code
+         * wird ignoriert; bei gleichem Code aus verschiedenen Systemen (z. B. in einem
+         * ValueSet) bleiben beide erhalten.
+         */
+        void add(Concept concept) {
+            if (bySystemAndCode.putIfAbsent(key(concept.getSystem(), concept.getCode()), concept) != null) {
+                return;
+            }
+            byCode.putIfAbsent(concept.getCode(), concept);
+            Integer position = concepts.size();
+            concepts.add(concept);
+            for (String token : concept.tokens) {
+                List<Integer> positions = byToken.computeIfAbsent(token, ignored -> new ArrayList<>(1));
+                if (positions.isEmpty() || !positions.get(positions.size() - 1).equals(position)) {
+                    positions.add(position);
+                }
+            }
+        }
+
+        private static String key(String system, String code) {
+            return system + "|" + code;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Tag für HTTP-Caching (ETag). Enthält neben URL und Version einen Hash über alle
+         * Konzepte, damit sich der Tag auch ändert, wenn ein Artefakt ohne neue Version
+         * ausgetauscht wird.
+         */
+        public String getCacheTag() {
+            String tag = cacheTag;
+            if (tag == null) {
+                tag = computeCacheTag();
+                cacheTag = tag;
+            }
+            return tag;
+        }
+
+        private String computeCacheTag() {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+            update(digest, url);
+            update(digest, version);
+            for (Concept concept : concepts) {
+                update(digest, concept.getSystem());
+                update(digest, concept.getCode());
+                update(digest, concept.getDisplay());
+                update(digest, concept.getDefinition());
+            }
+            byte[] hash = digest.digest();
+            StringBuilder tag = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) {
+                tag.append(Character.forDigit((hash[i] >> 4) & 0xf, 16)).append(Character.forDigit(hash[i] & 0xf, 16));
+            }
+            return tag.toString();
+        }
+
+        private static void update(MessageDigest digest, String value) {
+            if (value != null) {
+                digest.update(value.getBytes(StandardCharsets.UTF_8));
+            }
+            // Trennzeichen, damit ("ab", "c") und ("a", "bc") verschieden sind
+            digest.update((byte) 0);
+        }
+
+        /**
+         * @return das erste Konzept mit dem Code, unabhängig vom System
+         */
+        public Concept lookup(String code) {
+            return code == null ? null : byCode.get(code);
+        }
+
+        /**
+         * @return das Konzept mit System und Code; ohne System wie {@link #lookup(String)}
+         */
+        public Concept lookup(String system, String code) {
+            if (system == null) {
+                return lookup(code);
+            }
+            return code == null ? null : bySystemAndCode.get(key(system, code));
+        }
+
+        public int size() {
+            return concepts.size();
+        }
+
+        /**
+         * Sucht Konzepte, bei denen jedes Wort des Filters Präfix eines Tokens aus
+         * Anzeigetext oder Code ist. Ohne Filter werden alle Konzepte geliefert.
+         * Die Reihenfolge entspricht der Definitionsreihenfolge.
+         *
+         * Geprüft werden nur die Kandidaten des ersten Filterworts aus dem Präfixindex;
+         * deren Positionen werden sortiert, um die Definitionsreihenfolge herzustellen.
+         */
+        public List<Concept> search(String filter) {
+            List<String> filterTokens = tokenize(filter);
+            if (filterTokens.isEmpty()) {
+                return new ArrayList<>(concepts);
+            }
+
+            String first = filterTokens.get(0);
+            SortedMap<String, List<Integer>> range = byToken.subMap(first, first + Character.MAX_VALUE);
+            int count = 0;
+            for (List<Integer> positions : range.values()) {
+                count += positions.size();
+            }
+            int[] candidates = new int[count];
+            count = 0;
+            for (List<Integer> positions : range.values()) {
+                for (Integer position : positions) {
+                    candidates[count++] = position;
+                }
+            }
+            Arrays.sort(candidates);
+
+            List<Concept> result = new ArrayList<>();
+            for (int i = 0; i < candidates.length; i++) {
+                if (i > 0 && candidates[i] == candidates[i - 1]) {
+                    continue;
+                }
+                Concept concept = concepts.get(candidates[i]);
+                boolean matches = true;
+                for (int j = 1; j < filterTokens.size() && matches; j++) {
+                    matches = concept.matchesPrefix(filterTokens.get(j));
+                }
+                if (matches) {
+                    result.add(concept);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Index eines CodeSystems inklusive aller hierarchisch verschachtelten Konzepte.
+     */
+    public static final class CodeSystemIndex extends ConceptIndex {
+
+        CodeSystemIndex(CodeSystem codeSystem) {
+            super(codeSystem.getUrl(), codeSystem.getVersion(), codeSystem.getName());
+            addConcepts(codeSystem.getUrl(), codeSystem.getConcept());
+        }
+
+        private void addConcepts(String system, List<CodeSystem.ConceptDefinitionComponent> concepts) {
+            for (CodeSystem.ConceptDefinitionComponent concept : concepts) {
+                add(new Concept(system, concept.getCode(), concept.getDisplay(), concept.getDefinition()));
+                if (concept.hasConcept()) {
+                    addConcepts(system, concept.getConcept());
+                }
+            }
+        }
+    }
+
+    /**
+     * Index eines ValueSets auf Basis seiner Expansion. Ohne Expansion werden
+     * vollständig eingeschlossene, bekannte CodeSystems sowie explizit aufgezählte
+     * Konzepte übernommen; Filter werden nicht ausgewertet.
+     */
+    public static final class ValueSetIndex extends ConceptIndex {
+
+        ValueSetIndex(ValueSet valueSet, Map<String, CodeSystemIndex> codeSystems) {
+            super(valueSet.getUrl(), valueSet.getVersion(), valueSet.getName());
+            if (valueSet.hasExpansion() && valueSet.getExpansion().hasContains()) {
+                for (ValueSet.ValueSetExpansionContainsComponent contains : valueSet.getExpansion().getContains()) {
+                    add(new Concept(contains.getSystem(), contains.getCode(), contains.getDisplay(), null));
+                }
+                return;
+            }
+            for (ValueSet.ConceptSetComponent include : valueSet.getCompose().getInclude()) {
+                CodeSystemIndex codeSystem = codeSystems.get(include.getSystem());
+                if (include.hasFilter()) {
+                    continue;
+                }
+                if (include.hasConcept()) {
+                    addConcepts(include, codeSystem);
+                } else if (codeSystem != null) {
+                    codeSystem.search(null).forEach(this::add);
+                }
+            }
+        }
+
+        /**
+         * Übernimmt die aufgezählten Konzepte; fehlende Anzeigetexte und Definitionen
+         * kommen aus dem CodeSystem, sofern es bekannt ist.
+         */
+        private void addConcepts(ValueSet.ConceptSetComponent include, CodeSystemIndex codeSystem) {
+            String system = include.getSystem();
+            for (ValueSet.ConceptReferenceComponent reference : include.getConcept()) {
+                Concept known = codeSystem == null ? null : codeSystem.lookup(system, reference.getCode());
+                String display = reference.hasDisplay() ? reference.getDisplay()
+                        : known == null ? null : known.getDisplay();
+                add(new Concept(system, reference.getCode(), display, known == null ? null : known.getDefinition()));
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.demo.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sucht in einem JSON-Bytestrom einer DocumentReference nach den Werten von
+ * {@code content[i].attachment.data} und merkt sich deren Byte-Bereiche, ohne den
+ * Inhalt zu puffern. Der Locator wird blockweise gefüttert, sodass er beim Auslagern
+ * des Anfragekörpers in einem einzigen Durchlauf mitlaufen kann.
+ *
+ * Der Locator verfolgt Verschachtelung und Zeichenketten des JSON-Dokuments. Gleichnamige
+ * Felder an anderer Stelle (z. B. in contained-Ressourcen oder Extensions) und
+ * {@code "data"} innerhalb von Zeichenketten werden daher nicht erfasst.
+ *
+ * Jeder gefundene Wert wird geprüft: ein leerer Wert, ein Wert mit Escape-Sequenzen
+ * (z. B. {@code \/}) oder mit Zeichen außerhalb des Base64-Alphabets wird als
+ * {@link Finding} gemeldet. Nur Werte ohne Befund erhalten einen Bereich.
+ */
+public final class AttachmentDataLocator {
+
+    private static final byte[] KEY_CONTENT = "content".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEY_ATTACHMENT = "attachment".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEY_DATA = "data".getBytes(StandardCharsets.US_ASCII);
+
+    // Erkannte Schlüssel; alle anderen gelten als OTHER
+    private static final int OTHER = 0;
+    private static final int CONTENT = 1;
+    private static final int ATTACHMENT = 2;
+    private static final int DATA = 3;
+
+    private static final byte OBJECT = '{';
+    private static final byte ARRAY = '[';
+
+    // Längster erkannter Schlüssel ("attachment")
+    private static final int MAX_KEY_LENGTH = KEY_ATTACHMENT.length;
+
+    /**
+     * Art eines Befunds zu einem Attachment-Datenwert.
+     */
+    public enum Defect {
+        /** Der Wert ist eine leere Zeichenkette. */
+        EMPTY,
+        /** Der Wert enthält JSON-Escape-Sequenzen und kann nicht 1:1 weitergereicht werden. */
+        ESCAPED,
+        /** Der Wert enthält Zeichen außerhalb des Base64-Alphabets. */
+        NOT_BASE64
+    }
+
+    private final List<long[]> ranges = new ArrayList<>();
+    private final List<Finding> findings = new ArrayList<>();
+    private long position = 0;
+
+    // Offene Container: Typ, zuletzt gelesener Schlüssel (Objekte) bzw. Elementindex (Arrays)
+    private byte[] containers = new byte[16];
+    private int[] keys = new int[16];
+    private int[] indexes = new int[16];
+    private int depth = 0;
+    private boolean expectKey = false;
+
+    // Zustand innerhalb einer Zeichenkette
+    private boolean inString = false;
+    private boolean escape = false;
+    private boolean readingKey = false;
+    private final byte[] keyBuffer = new byte[MAX_KEY_LENGTH];
+    private int keyLength = 0;
+
+    // Zustand innerhalb eines Attachment-Datenwerts (valueStart < 0: kein Datenwert)
+    private long valueStart = -1;
+    private boolean valueEscaped = false;
+    private boolean valueNotBase64 = false;
+
+    /**
+     * Verarbeitet den nächsten Block des Datenstroms.
+     */
+    public void update(byte[] buffer, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (inString) {
+                consumeString(buffer[i]);
+            } else {
+                consumeStructure(buffer[i]);
+            }
+            position++;
+        }
+    }
+
+    private void consumeStructure(byte b) {
+        switch (b) {
+            case '"':
+                startString();
+                break;
+            case '{':
+                push(OBJECT);
+                expectKey = true;
+                break;
+            case '[':
+                push(ARRAY);
+                expectKey = false;
+                break;
+            case '}':
+            case ']':
+                if (depth > 0) {
+                    depth--;
+                }
+                expectKey = false;
+                break;
+            case ':':
+                expectKey = false;
+                break;
+            case ',':
+                if (depth > 0 && containers[depth - 1] == OBJECT) {
+                    expectKey = true;
+                    keys[depth - 1] = OTHER;
+                } else if (depth > 0) {
+                    indexes[depth - 1]++;
+                }
+                break;
+            default:
+                // Leerraum, Zahlen und Literale sind für die Suche ohne Bedeutung
+                break;
+        }
+    }
+
+    private void startString() {
+        inString = true;
+        escape = false;
+        readingKey = expectKey && depth > 0 && containers[depth - 1] == OBJECT;
+        keyLength = 0;
+        if (!readingKey && isAttachmentData()) {
+            valueStart = position + 1;
+            valueEscaped = false;
+            valueNotBase64 = false;
+        }
+    }
+
+    private void consumeString(byte b) {
+        if (escape) {
+            escape = false;
+            appendKey(b);
+            return;
+        }
+        if (b == '\\') {
+            escape = true;
+            valueEscaped = true;
+            appendKey(b);
+            return;
+        }
+        if (b == '"') {
+            endString();
+            return;
+        }
+        if (valueStart >= 0 && !isBase64(b)) {
+            valueNotBase64 = true;
+        }
+        appendKey(b);
+    }
+
+    private void endString() {
+        inString = false;
+        if (readingKey) {
+            keys[depth - 1] = recognizeKey();
+            readingKey = false;
+            return;
+        }
+        if (valueStart < 0) {
+            return;
+        }
+        long length = position - valueStart;
+        int contentIndex = indexes[1];
+        if (length == 0) {
+            findings.add(new Finding(contentIndex, Defect.EMPTY));
+        } else if (valueEscaped) {
+            findings.add(new Finding(contentIndex, Defect.ESCAPED));
+        } else if (valueNotBase64) {
+            findings.add(new Finding(contentIndex, Defect.NOT_BASE64));
+        } else {
+            ranges.add(new long[] { valueStart, length, contentIndex });
+        }
+        valueStart = -1;
+    }
+
+    private void appendKey(byte b) {
+        if (readingKey && keyLength <= MAX_KEY_LENGTH) {
+            if (keyLength < MAX_KEY_LENGTH) {
+                keyBuffer[keyLength] = b;
+            }
+            keyLength++;
+        }
+    }
+
+    private int recognizeKey() {
+        if (keyLength > MAX_KEY_LENGTH) {
+            return OTHER;
+        }
+        byte[] key = Arrays.copyOf(keyBuffer, keyLength);
+        if (Arrays.equals(key, KEY_CONTENT)) {
+            return CONTENT;
+        }
+        if (Arrays.equals(key, KEY_ATTACHMENT)) {
+            return ATTACHMENT;
+        }
+        if (Arrays.equals(key, KEY_DATA)) {
+            return DATA;
+        }
+        return OTHER;
+    }
+
+    /**
+     * Prüft, ob die aktuelle Position dem Pfad {@code content[i].attachment.data}
+     * der Wurzelressource entspricht.
+     */
+    private boolean isAttachmentData() {
+        return depth == 4
+                && containers[0] == OBJECT && keys[0] == CONTENT
+                && containers[1] == ARRAY
+                && containers[2] == OBJECT && keys[2] == ATTACHMENT
+                && containers[3] == OBJECT && keys[3] == DATA;
+    }
+
+    private void push(byte type) {
+        if (depth == containers.length) {
+            containers = Arrays.copyOf(containers, depth * 2);
+            keys = Arrays.copyOf(keys, depth * 2);
+            indexes = Arrays.copyOf(indexes, depth * 2);
+        }
+        containers[depth] = type;
+        keys[depth] = OTHER;
+        indexes[depth] = 0;
+        depth++;
+    }
+
+    private static boolean isBase64(byte b) {
+        return (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || (b >= '0' && b <= '9')
+                || b == '+' || b == '/' || b == '=';
+    }
+
+    /**
+     * @return Die gültigen Datenwerte als {@code [offset, length, contentIndex]} in Dokumentreihenfolge.
+     */
+    public List<long[]> getRanges() {
+        return Collections.unmodifiableList(ranges);
+    }
+
+    /**
+     * @return Die Befunde in Dokumentreihenfolge.
+     */
+    public List<Finding> getFindings() {
+        return Collections.unmodifiableList(findings);
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Befund zu einem Attachment-Datenwert: Index des content-Eintrags und Art des Befunds.
+     */
+    public static final class Finding {
+
+        private final int contentIndex;
+        private final Defect defect;
+
+        Finding(int contentIndex, Defect defect) {
+            this.contentIndex = contentIndex;
+            this.defect = defect;
+        }
+
+        public int getContentIndex() {
+            return contentIndex;
+        }
+
+        public Defect getDefect() {
+            return defect;
+        }
+    }
+}
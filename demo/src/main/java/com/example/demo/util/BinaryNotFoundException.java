@@ -0,0 +1,43 @@
+package com.example.demo.util;
+
+/**
+ * Wird geworfen, wenn eine per Attachment.url referenzierte Binary-Ressource nicht
+ * (mehr) im Binary-Speicher liegt, z. B. weil sie nach der Validierung durch die
+ * Aufbewahrungsfrist gelöscht wurde. Wird wie ein Validierungsbefund mit HTTP 400 und
+ * Fundstelle beantwortet.
+ */
+public class BinaryNotFoundException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String url;
+    private final String location;
+
+    public BinaryNotFoundException(String url) {
+        this(url, null);
+    }
+
+    private BinaryNotFoundException(String url, String location) {
+        super("Referenced Binary not found: " + url);
+        this.url = url;
+        this.location = location;
+    }
+
+    /**
+     * @return dieselbe Ausnahme mit der Fundstelle (FHIRPath, z. B. {@code DocumentReference.content[0].attachment.url})
+     */
+    public BinaryNotFoundException at(String location) {
+        return new BinaryNotFoundException(url, location);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return die Fundstelle oder null, wenn sie nicht bekannt ist
+     */
+    public String getLocation() {
+        return location;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * InputStream, der höchstens {@code limit} Bytes liefert und beim Überschreiten eine
+ * {@link PayloadTooLargeException} wirft. Die Grenze wird während des Lesens geprüft,
+ * sodass zu große Anfragekörper abgebrochen werden, bevor sie vollständig gepuffert sind.
+ */
+public final class BoundedInputStream extends FilterInputStream {
+
+    private final long limit;
+    private long bytesRead = 0;
+
+    public BoundedInputStream(InputStream delegate, long limit) {
+        super(delegate);
+        this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        if (skipped > 0) {
+            count(skipped);
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * @return Anzahl der bisher gelieferten Bytes
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    private void count(long read) throws PayloadTooLargeException {
+        bytesRead += read;
+        if (bytesRead > limit) {
+            throw new PayloadTooLargeException(limit);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.demo.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Hilfsmethoden für die gzip-Komprimierung ausgehender Anfragekörper.
+ */
+public final class CompressionUtil {
+
+    public static final String GZIP = "gzip";
+
+    // Größe der Ausgangspuffer; ein Puffer wird erst weitergegeben, wenn er voll ist
+    private static final int OUTPUT_BUFFER_SIZE = 16 * 1024;
+
+    // gzip-Kopf nach RFC 1952: Magic, Deflate, keine Flags, keine Zeit, unbekanntes OS
+    private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    private CompressionUtil() {
+        throw new UnsupportedOperationException("Utility class - cannot be instantiated.");
+    }
+
+    /**
+     * Komprimiert einen Strom von DataBuffers blockweise mit gzip, ohne den
+     * gesamten Inhalt zu puffern. Der Deflater liest direkt aus den Eingangspuffern
+     * und schreibt direkt in die Ausgangspuffer der Factory; es entstehen keine
+     * Zwischenkopien als byte[]. Die Eingangspuffer werden nach dem Komprimieren
+     * freigegeben.
+     *
+     * Der native Speicher des Deflaters wird bei jedem Ende des Stroms freigegeben,
+     * also auch bei Abbruch (z. B. Timeout oder verlorener Hedge-Versuch).
+     *
+     * @param source        Der unkomprimierte Datenstrom
+     * @param bufferFactory Factory für die Ausgangspuffer
+     * @param cpuNanos      Erhält die für das Komprimieren aufgewendete Zeit je Block
+     */
+    public static Flux<DataBuffer> gzip(Flux<DataBuffer> source, DataBufferFactory bufferFactory,
+            LongConsumer cpuNanos) {
+        return Flux.defer(() -> {
+            GzipEncoder encoder = new GzipEncoder(bufferFactory);
+
+            Flux<DataBuffer> body = source.concatMapIterable(buffer -> {
+                long start = System.nanoTime();
+                try {
+                    return encoder.encode(buffer);
+                } finally {
+                    DataBufferUtils.release(buffer);
+                    cpuNanos.accept(System.nanoTime() - start);
+                }
+            });
+
+            Flux<DataBuffer> trailer = Flux.defer(() -> {
+                long start = System.nanoTime();
+                List<DataBuffer> last = encoder.finish();
+                cpuNanos.accept(System.nanoTime() - start);
+                return Flux.fromIterable(last);
+            });
+
+            return body.concatWith(trailer)
+                    .doFinally(signal -> encoder.end())
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        });
+    }
+
+    /**
+     * gzip-Kodierer auf Basis eines Deflaters ohne zlib-Rahmen. Kopf, CRC32 und Länge
+     * werden selbst geschrieben. Die Methoden sind synchronisiert, da ein Abbruch
+     * ({@link #end()}) auf einem anderen Thread eintreffen kann als die Daten.
+     */
+    private static final class GzipEncoder {
+
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final CRC32 crc = new CRC32();
+        private final DataBufferFactory bufferFactory;
+        private DataBuffer current;
+        private boolean ended = false;
+
+        GzipEncoder(DataBufferFactory bufferFactory) {
+            this.bufferFactory = bufferFactory;
+            this.current = bufferFactory.allocateBuffer(OUTPUT_BUFFER_SIZE);
+            this.current.write(HEADER);
+        }
+
+        synchronized List<DataBuffer> encode(DataBuffer input) {
+            if (ended || input.readableByteCount() == 0) {
+                return Collections.emptyList();
+            }
+            ByteBuffer in = input.asByteBuffer();
+            crc.update(in.duplicate());
+            deflater.setInput(in);
+            List<DataBuffer> out = new ArrayList<>(2);
+            while (!deflater.needsInput()) {
+                deflate(out);
+            }
+            return out;
+        }
+
+        synchronized List<DataBuffer> finish() {
+            if (ended) {
+                return Collections.emptyList();
+            }
+            deflater.finish();
+            List<DataBuffer> out = new ArrayList<>(2);
+            while (!deflater.finished()) {
+                deflate(out);
+            }
+            if (current == null) {
+                current = bufferFactory.allocateBuffer(8);
+            }
+            // Abschluss nach RFC 1952: CRC32 und Länge der Eingabe (mod 2^32), little-endian
+            writeIntLe((int) crc.getValue());
+            writeIntLe((int) deflater.getBytesRead());
+            out.add(current);
+            current = null;
+            return out;
+        }
+
+        synchronized void end() {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            deflater.end();
+            if (current != null) {
+                DataBufferUtils.release(current);
+                current = null;
+            }
+        }
+
+        private void deflate(List<DataBuffer> out) {
+            if (current == null) {
+                current = bufferFactory.allocateBuffer(OUTPUT_BUFFER_SIZE);
+            }
+            int position = current.writePosition();
+            ByteBuffer target = current.asByteBuffer(position, current.writableByteCount());
+            int written = deflater.deflate(target);
+            current.writePosition(position + written);
+            if (current.writableByteCount() == 0) {
+                out.add(current);
+                current = null;
+            }
+        }
+
+        private void writeIntLe(int value) {
+            current.write(new byte[] {
+                    (byte) value, (byte) (value >>> 8), (byte) (value >>> 16), (byte) (value >>> 24) });
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.demo.util;
+
+import java.io.IOException;
+
+/**
+ * Wird geworfen, wenn ein komprimierter Anfragekörper beschädigt oder abgeschnitten
+ * ist und nicht entpackt werden kann. Wird als HTTP 400 beantwortet, da es sich um
+ * fehlerhafte Client-Eingaben handelt.
+ */
+public class CorruptBodyException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CorruptBodyException(IOException cause) {
+        super("Compressed request body cannot be decompressed: " + cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.demo.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import com.example.demo.dto.DocumentDTO;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Schreibt ein {@link DocumentDTO} als JSON direkt in die DataBuffer des
+ * ausgehenden Requests, ohne den Anfragekörper vorher vollständig aufzubauen.
+ *
+ * Die kleinen Felder werden per Jackson serialisiert, der Inhalt (contentB64)
+ * wird anschließend blockweise in die (bei Reactor Netty gepoolten) Puffer der
+ * Verbindung geschrieben. Als Quelle dient entweder der ursprüngliche
+ * Base64-String des Attachments oder ein {@link FileSlice} (ausgelagerter
+ * Anfragekörper bzw. Binary-Speicher). Base64 besteht nur aus ASCII-Zeichen,
+ * daher entspricht die Zeichenanzahl der Byteanzahl.
+ */
+public final class DocumentBodyWriter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final byte[] CONTENT_START = ",\"contentB64\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONTENT_END = "\"}".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONTENT_NULL = ",\"contentB64\":null}".getBytes(StandardCharsets.US_ASCII);
+
+    private final DocumentDTO document;
+    private final int chunkSize;
+    private final byte[] head;
+
+    /**
+     * @param document  Das zu schreibende DTO
+     * @param chunkSize Größe der einzelnen Puffer für den Inhalt
+     */
+    public DocumentBodyWriter(DocumentDTO document, int chunkSize) {
+        this.document = document;
+        this.chunkSize = chunkSize;
+        this.head = writeHead(document);
+    }
+
+    /**
+     * Serialisiert die kleinen Felder als offenes JSON-Objekt (ohne schließende Klammer).
+     */
+    private static byte[] writeHead(DocumentDTO document) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("kdlCode", document.getKdlCode());
+            generator.writeStringField("patientId", document.getPatientId());
+            generator.writeStringField("visitNumber", document.getVisitNumber());
+            generator.writeStringField("dateCreated", document.getDateCreated());
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] json = out.toByteArray();
+        byte[] open = new byte[json.length - 1];
+        System.arraycopy(json, 0, open, 0, open.length);
+        return open;
+    }
+
+    /**
+     * @return Die exakte Länge des Anfragekörpers in Bytes.
+     */
+    public long getContentLength() {
+        if (document.getContentSlice() != null) {
+            return head.length + CONTENT_START.length + document.getContentSlice().getLength() + CONTENT_END.length;
+        }
+        if (document.getContentB64() != null) {
+            return head.length + CONTENT_START.length + document.getContentB64().length() + CONTENT_END.length;
+        }
+        return head.length + CONTENT_NULL.length;
+    }
+
+    /**
+     * Erzeugt den Anfragekörper als Strom von DataBuffers aus der übergebenen Factory.
+     */
+    public Flux<DataBuffer> write(DataBufferFactory bufferFactory) {
+        Mono<DataBuffer> prefix = Mono.fromSupplier(() -> {
+            DataBuffer buffer = bufferFactory.allocateBuffer(head.length + CONTENT_START.length);
+            return buffer.write(head).write(CONTENT_START);
+        });
+        Mono<DataBuffer> suffix = Mono.fromSupplier(() -> bufferFactory.wrap(CONTENT_END));
+
+        FileSlice slice = document.getContentSlice();
+        if (slice != null) {
+            Flux<DataBuffer> content = DataBufferUtils.takeUntilByteCount(
+                    DataBufferUtils.readByteChannel(slice::openChannel, bufferFactory, chunkSize),
+                    slice.getLength());
+            return Flux.concat(prefix, content, suffix);
+        }
+
+        String contentB64 = document.getContentB64();
+        if (contentB64 != null) {
+            return Flux.concat(prefix, writeAscii(contentB64, bufferFactory), suffix);
+        }
+
+        return Mono.fromSupplier(() -> {
+            DataBuffer buffer = bufferFactory.allocateBuffer(head.length + CONTENT_NULL.length);
+            return buffer.write(head).write(CONTENT_NULL);
+        }).flux();
+    }
+
+    /**
+     * Schreibt einen ASCII-String blockweise in Puffer, ohne ihn vorher in ein
+     * Byte-Array zu kopieren.
+     */
+    private Flux<DataBuffer> writeAscii(String content, DataBufferFactory bufferFactory) {
+        int chunks = (content.length() + chunkSize - 1) / chunkSize;
+        return Flux.range(0, chunks).map(index -> {
+            int from = index * chunkSize;
+            int to = Math.min(content.length(), from + chunkSize);
+            DataBuffer buffer = bufferFactory.allocateBuffer(to - from);
+            return buffer.write(CharBuffer.wrap(content, from, to), StandardCharsets.US_ASCII);
+        });
+    }
+}
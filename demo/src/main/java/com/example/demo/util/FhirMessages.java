@@ -16,8 +16,46 @@ public final class FhirMessages {
      public static final String INVALID_PATIENT_RESOURCE = "Die übermittelte Patientenressource ist ungültig.";
      public static final String INVALID_DOCUMENT_RESOURCE = "Die übermittelte DocumentReference-Ressource ist ungültig.";
      public static final String API_FAILURE = "Fehler beim Senden der Daten an die proprietaere API.";
+     public static final String DOCUMENT_PARTS_FAILED = "Nicht alle Dokumentinhalte konnten an die proprietaere API gesendet werden.";
+     public static final String PAYLOAD_TOO_LARGE = "Der Anfragekörper überschreitet die maximal zulässige Größe.";
+     public static final String UNSUPPORTED_ENCODING = "Das Content-Encoding der Anfrage wird nicht unterstützt.";
+     public static final String CORRUPT_COMPRESSED_BODY = "Der komprimierte Anfragekörper ist beschädigt oder unvollständig.";
+     public static final String UNREADABLE_BODY = "Der Anfragekörper konnte nicht gelesen werden.";
+     public static final String SERVICE_UNAVAILABLE = "Der Dienst ist vorübergehend überlastet. Bitte später erneut versuchen.";
+     public static final String TOO_MANY_REQUESTS = "Zu viele Anfragen. Bitte die Wartezeit aus Retry-After einhalten.";
+     public static final String UNKNOWN_ASYNC_JOB = "Der asynchrone Auftrag ist nicht bekannt oder abgelaufen: ";
+     public static final String ASYNC_JOB_ABORTED = "Der asynchrone Auftrag wurde durch einen Neustart abgebrochen.";
+     public static final String UNKNOWN_CODE_SYSTEM = "Das CodeSystem ist nicht bekannt: ";
+     public static final String UNKNOWN_VALUE_SET = "Das ValueSet ist nicht bekannt: ";
+     public static final String UNKNOWN_CODE = "Der Code ist im CodeSystem nicht definiert: ";
+     public static final String MISSING_PARAMETER = "Pflichtparameter fehlt: ";
+     public static final String UNKNOWN_PATIENT = "Der Patient ist nicht bekannt: ";
+
+     // Befunde der Validierung (ein Issue pro Befund im OperationOutcome)
+     public static final String RESOURCE_MISSING = "Die Ressource fehlt.";
+     public static final String PATIENT_NAME_MISSING = "Der Name des Patienten fehlt.";
+     public static final String PATIENT_GIVEN_NAME_MISSING = "Der Vorname des Patienten fehlt.";
+     public static final String PATIENT_FAMILY_NAME_MISSING = "Der Nachname des Patienten fehlt.";
+     public static final String PATIENT_BIRTH_DATE_MISSING = "Das Geburtsdatum des Patienten fehlt.";
+     public static final String DOCUMENT_TYPE_MISSING = "Der Dokumenttyp (KDL-Code) fehlt.";
+     public static final String DOCUMENT_SUBJECT_MISSING = "Der Patientenbezug (subject) fehlt.";
+     public static final String DOCUMENT_ENCOUNTER_MISSING = "Der Fallbezug (context.encounter) fehlt.";
+     public static final String DOCUMENT_CONTENT_MISSING = "Der Dokumentinhalt (content) fehlt.";
+     public static final String DOCUMENT_DATA_MISSING = "Das Attachment enthält weder Daten noch einen Verweis auf eine Binary-Ressource.";
+     public static final String ATTACHMENT_DATA_EMPTY = "Die Attachment-Daten (data) sind leer.";
+     public static final String ATTACHMENT_DATA_NOT_BASE64 = "Die Attachment-Daten (data) sind kein gültiges Base64.";
+     public static final String ATTACHMENT_DATA_ESCAPED = "Große Attachment-Daten (data) müssen reines Base64 ohne JSON-Escape-Sequenzen sein.";
+     public static final String BINARY_NOT_FOUND = "Die referenzierte Binary-Ressource ist nicht bekannt: ";
+     public static final String DOCUMENT_CREATION_MISSING = "Das Erstellungsdatum des Attachments fehlt.";
+     public static final String KDL_CODE_NOT_IN_CODE_SYSTEM = "Der KDL-Code ist nicht im CodeSystem definiert: ";
+     public static final String KDL_CODE_NOT_IN_VALUE_SET = "Der KDL-Code ist nicht im ValueSet enthalten: ";
+     public static final String VALUE_NOT_CONVERTIBLE = "Der Wert kann nicht in das Zielformat umgewandelt werden: ";
  
      // Erfolgsmeldungen
      public static final String PATIENT_CREATED = "Patient wurde erfolgreich erstellt.";
      public static final String DOCUMENT_CREATED = "DocumentReference wurde erfolgreich erstellt.";
+     public static final String DOCUMENT_PART_SENT = "Dokumentinhalt wurde an die proprietaere API gesendet.";
+     public static final String REQUEST_ACCEPTED = "Die Anfrage wurde zur asynchronen Verarbeitung angenommen.";
+     public static final String REQUEST_IN_PROGRESS = "Die Anfrage wird noch verarbeitet.";
+     public static final String BINARY_CREATED = "Binary wurde erfolgreich gespeichert.";
 }
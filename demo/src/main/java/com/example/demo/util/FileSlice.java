@@ -0,0 +1,59 @@
+package com.example.demo.util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Beschreibt einen zusammenhängenden Byte-Bereich innerhalb einer Datei
+ * (z. B. den Base64-Inhalt eines Attachments in einem ausgelagerten Anfragekörper).
+ * Der Inhalt selbst wird nie in den Heap geladen, sondern bei Bedarf über einen
+ * FileChannel gelesen.
+ */
+public final class FileSlice {
+
+    private final Path path;
+    private final long offset;
+    private final long length;
+
+    public FileSlice(Path path, long offset, long length) {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Offset and length must not be negative");
+        }
+        this.path = path;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Öffnet einen lesenden FileChannel, der bereits auf den Anfang des Bereichs positioniert ist.
+     * Der Aufrufer ist für das Schließen verantwortlich und darf höchstens {@link #getLength()} Bytes lesen.
+     */
+    public FileChannel openChannel() throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        channel.position(offset);
+        return channel;
+    }
+
+    @Override
+    public String toString() {
+        return "FileSlice{" +
+                "path=" + path +
+                ", offset=" + offset +
+                ", length=" + length +
+                '}';
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.demo.util;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Datum mit Genauigkeit Tag, Monat oder Jahr, wie es das Mapping liefert
+ * (dd.MM.yyyy, MM.yyyy oder yyyy) bzw. FHIR verwendet (yyyy-MM-dd, yyyy-MM, yyyy).
+ *
+ * Vergleiche erfolgen in der gröberen Genauigkeit beider Werte: "05.2024" ist
+ * gleich "2024-05-17", aber kleiner als "2024-06-01".
+ */
+public final class PartialDate {
+
+    private final LocalDate start;
+    private final ChronoUnit precision;
+
+    private PartialDate(LocalDate start, ChronoUnit precision) {
+        this.start = start;
+        this.precision = precision;
+    }
+
+    /**
+     * Liest ein Datum im Format des Mappings (dd.MM.yyyy, MM.yyyy oder yyyy).
+     *
+     * @return das Datum oder null, wenn der Wert fehlt oder nicht lesbar ist
+     */
+    public static PartialDate parseDto(String value) {
+        if (value == null) {
+            return null;
+        }
+        switch (value.length()) {
+            case 10:
+                if (value.charAt(2) != '.' || value.charAt(5) != '.') {
+                    return null;
+                }
+                return of(value.substring(6), value.substring(3, 5), value.substring(0, 2));
+            case 7:
+                if (value.charAt(2) != '.') {
+                    return null;
+                }
+                return of(value.substring(3), value.substring(0, 2), null);
+            case 4:
+                return of(value, null, null);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Liest ein FHIR-Datum (yyyy-MM-dd, yyyy-MM oder yyyy).
+     *
+     * @return das Datum oder null, wenn der Wert fehlt oder nicht lesbar ist
+     */
+    public static PartialDate parseFhir(String value) {
+        if (value == null) {
+            return null;
+        }
+        switch (value.length()) {
+            case 10:
+                if (value.charAt(4) != '-' || value.charAt(7) != '-') {
+                    return null;
+                }
+                return of(value.substring(0, 4), value.substring(5, 7), value.substring(8));
+            case 7:
+                if (value.charAt(4) != '-') {
+                    return null;
+                }
+                return of(value.substring(0, 4), value.substring(5), null);
+            case 4:
+                return of(value, null, null);
+            default:
+                return null;
+        }
+    }
+
+    private static PartialDate of(String year, String month, String day) {
+        for (String part : new String[] { year, month, day }) {
+            if (part != null && !part.chars().allMatch(Character::isDigit)) {
+                return null;
+            }
+        }
+        try {
+            if (month == null) {
+                return new PartialDate(LocalDate.of(Integer.parseInt(year), 1, 1), ChronoUnit.YEARS);
+            }
+            if (day == null) {
+                return new PartialDate(LocalDate.of(Integer.parseInt(year), Integer.parseInt(month), 1),
+                        ChronoUnit.MONTHS);
+            }
+            return new PartialDate(LocalDate.of(Integer.parseInt(year), Integer.parseInt(month),
+                    Integer.parseInt(day)), ChronoUnit.DAYS);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return erster Tag des Zeitraums
+     */
+    public LocalDate getStart() {
+        return start;
+    }
+
+    /**
+     * @return Genauigkeit ({@link ChronoUnit#DAYS}, {@link ChronoUnit#MONTHS} oder {@link ChronoUnit#YEARS})
+     */
+    public ChronoUnit getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Vergleicht in der gröberen Genauigkeit beider Werte.
+     *
+     * @return negativ, 0 oder positiv wie {@link Comparable#compareTo}
+     */
+    public int compareAtPrecision(PartialDate other) {
+        ChronoUnit coarser = precision.compareTo(other.precision) >= 0 ? precision : other.precision;
+        return truncate(start, coarser).compareTo(truncate(other.start, coarser));
+    }
+
+    private static LocalDate truncate(LocalDate date, ChronoUnit unit) {
+        switch (unit) {
+            case YEARS:
+                return date.withDayOfYear(1);
+            case MONTHS:
+                return date.withDayOfMonth(1);
+            default:
+                return date;
+        }
+    }
+
+    /**
+     * @return das Datum im FHIR-Format mit der gespeicherten Genauigkeit
+     */
+    public String toFhirString() {
+        switch (precision) {
+            case YEARS:
+                return String.format("%04d", start.getYear());
+            case MONTHS:
+                return String.format("%04d-%02d", start.getYear(), start.getMonthValue());
+            default:
+                return start.toString();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toFhirString();
+    }
+}
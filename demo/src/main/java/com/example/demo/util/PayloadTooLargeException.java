@@ -0,0 +1,23 @@
+package com.example.demo.util;
+
+import java.io.IOException;
+
+/**
+ * Wird geworfen, wenn ein Anfragekörper (ggf. nach dem Entpacken) die
+ * konfigurierte Maximalgröße überschreitet. Wird als HTTP 413 beantwortet.
+ */
+public class PayloadTooLargeException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long limit;
+
+    public PayloadTooLargeException(long limit) {
+        super("Request body exceeds the limit of " + limit + " bytes");
+        this.limit = limit;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.demo.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Anfragekörper, der bis zu einem Schwellwert im Speicher gehalten und darüber
+ * hinaus in eine temporäre Datei ausgelagert wird. Beim Einlesen werden die
+ * Byte-Bereiche der Attachment-Daten ermittelt, damit große Base64-Inhalte später
+ * direkt aus der Datei weitergereicht werden können.
+ *
+ * Die temporäre Datei wird mit {@link #close()} gelöscht.
+ */
+public final class SpooledBody implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpooledBody.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final byte[] memory;
+    private final Path file;
+    private final long size;
+    private final List<long[]> dataRanges;
+    private final List<AttachmentDataLocator.Finding> dataFindings;
+
+    private SpooledBody(byte[] memory, Path file, long size, AttachmentDataLocator locator) {
+        this.memory = memory;
+        this.file = file;
+        this.size = size;
+        this.dataRanges = locator.getRanges();
+        this.dataFindings = locator.getFindings();
+    }
+
+    /**
+     * Liest den Datenstrom vollständig ein. Überschreitet er {@code threshold} Bytes,
+     * wird er in eine temporäre Datei unter {@code tempDir} geschrieben.
+     *
+     * @param in        Der Anfragekörper
+     * @param threshold Maximale Größe, die im Speicher gehalten wird
+     * @param tempDir   Verzeichnis für die temporäre Datei (null = java.io.tmpdir)
+     */
+    public static SpooledBody read(InputStream in, long threshold, Path tempDir) throws IOException {
+        AttachmentDataLocator locator = new AttachmentDataLocator();
+        ByteArrayOutputStream memoryBuffer = new ByteArrayOutputStream();
+        Path file = null;
+        OutputStream fileOut = null;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long size = 0;
+
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                locator.update(buffer, 0, read);
+                size += read;
+                if (fileOut == null && size > threshold) {
+                    // Schwellwert überschritten: bisherigen Puffer in die Datei verschieben
+                    file = tempDir != null
+                            ? Files.createTempFile(tempDir, "fhir-body-", ".json")
+                            : Files.createTempFile("fhir-body-", ".json");
+                    fileOut = Files.newOutputStream(file);
+                    memoryBuffer.writeTo(fileOut);
+                    memoryBuffer = null;
+                    logger.debug("Request body exceeds {} bytes, spooling to {}", threshold, file);
+                }
+                if (fileOut != null) {
+                    fileOut.write(buffer, 0, read);
+                } else {
+                    memoryBuffer.write(buffer, 0, read);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(fileOut);
+            deleteQuietly(file);
+            throw e;
+        }
+
+        if (fileOut != null) {
+            fileOut.close();
+            return new SpooledBody(null, file, size, locator);
+        }
+        return new SpooledBody(memoryBuffer.toByteArray(), null, size, locator);
+    }
+
+    public boolean isSpooled() {
+        return file != null;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return Befunde zu leeren oder nicht als reines Base64 kodierten Attachment-Daten.
+     */
+    public List<AttachmentDataLocator.Finding> getDataFindings() {
+        return dataFindings;
+    }
+
+    /**
+     * @return Anzahl der gefundenen Attachment-Datenbereiche
+     */
+    public int getDataRangeCount() {
+        return dataRanges.size();
+    }
+
+    /**
+     * Liefert die Attachment-Datenbereiche als {@link FileSlice}s (nur bei ausgelagerten
+     * Körpern, sonst eine leere Liste). Position i der Liste gehört zu {@code content[i]};
+     * Einträge ohne ausgelagerte Daten sind null.
+     */
+    public List<FileSlice> getDataSlices() {
+        List<FileSlice> slices = new ArrayList<>();
+        if (file != null) {
+            for (long[] range : dataRanges) {
+                int contentIndex = (int) range[2];
+                while (slices.size() <= contentIndex) {
+                    slices.add(null);
+                }
+                slices.set(contentIndex, new FileSlice(file, range[0], range[1]));
+            }
+        }
+        return slices;
+    }
+
+    /**
+     * Öffnet den vollständigen Anfragekörper als Datenstrom.
+     */
+    public InputStream openStream() throws IOException {
+        if (file == null) {
+            return new ByteArrayInputStream(memory);
+        }
+        return new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+    }
+
+    /**
+     * Öffnet den Anfragekörper als Datenstrom, in dem jeder Attachment-Datenbereich
+     * durch {@code placeholder} ersetzt ist. So kann die Ressource geparst werden,
+     * ohne den Base64-Inhalt in den Heap zu laden.
+     */
+    public InputStream openStreamWithPlaceholder(byte[] placeholder) throws IOException {
+        return new PlaceholderInputStream(openStream(), dataRanges, placeholder);
+    }
+
+    @Override
+    public void close() {
+        deleteQuietly(file);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            logger.warn("Could not close spool file stream", e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete spool file {}", path, e);
+        }
+    }
+
+    /**
+     * Datenstrom, der festgelegte Bereiche der Quelle überspringt und stattdessen
+     * einen Platzhalter liefert.
+     */
+    private static final class PlaceholderInputStream extends InputStream {
+
+        private final InputStream source;
+        private final List<long[]> ranges;
+        private final byte[] placeholder;
+        private long position = 0;
+        private int rangeIndex = 0;
+        private int placeholderIndex = -1;
+
+        PlaceholderInputStream(InputStream source, List<long[]> ranges, byte[] placeholder) {
+            this.source = source;
+            this.ranges = ranges;
+            this.placeholder = placeholder;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (placeholderIndex >= 0) {
+                int count = Math.min(len, placeholder.length - placeholderIndex);
+                System.arraycopy(placeholder, placeholderIndex, b, off, count);
+                placeholderIndex += count;
+                if (placeholderIndex == placeholder.length) {
+                    placeholderIndex = -1;
+                }
+                return count;
+            }
+            if (rangeIndex < ranges.size() && position == ranges.get(rangeIndex)[0]) {
+                skipFully(ranges.get(rangeIndex)[1]);
+                rangeIndex++;
+                placeholderIndex = 0;
+                return read(b, off, len);
+            }
+            int limit = len;
+            if (rangeIndex < ranges.size()) {
+                limit = (int) Math.min(len, ranges.get(rangeIndex)[0] - position);
+            }
+            int read = source.read(b, off, limit);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        private void skipFully(long count) throws IOException {
+            long remaining = count;
+            while (remaining > 0) {
+                long skipped = source.skip(remaining);
+                if (skipped <= 0) {
+                    if (source.read() == -1) {
+                        throw new IOException("Unexpected end of spooled body");
+                    }
+                    skipped = 1;
+                }
+                remaining -= skipped;
+            }
+            position += count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+}
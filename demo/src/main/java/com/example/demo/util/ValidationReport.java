@@ -0,0 +1,76 @@
+package com.example.demo.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hl7.fhir.r4.model.OperationOutcome.IssueType;
+
+/**
+ * Ergebnis einer Validierung mit allen gefundenen Fehlern.
+ *
+ * Ungültige Eingaben sind im Betrieb der Normalfall und werden daher nicht über
+ * Ausnahmen gemeldet: die Prüfungen sammeln ihre Befunde hier, der Controller
+ * beantwortet einen ungültigen Bericht mit HTTP 400 und einem OperationOutcome
+ * mit einem Issue pro Befund.
+ */
+public final class ValidationReport {
+
+    private final List<Issue> issues = new ArrayList<>(4);
+
+    /**
+     * Fügt einen Befund hinzu.
+     *
+     * @param type     Issue-Typ im OperationOutcome (z. B. REQUIRED, CODEINVALID)
+     * @param location FHIRPath des betroffenen Elements (optional)
+     * @param message  Beschreibung des Fehlers
+     */
+    public ValidationReport addIssue(IssueType type, String location, String message) {
+        issues.add(new Issue(type, location, message));
+        return this;
+    }
+
+    /**
+     * Übernimmt alle Befunde eines anderen Berichts.
+     */
+    public ValidationReport addAll(ValidationReport other) {
+        issues.addAll(other.issues);
+        return this;
+    }
+
+    public boolean isValid() {
+        return issues.isEmpty();
+    }
+
+    public List<Issue> getIssues() {
+        return Collections.unmodifiableList(issues);
+    }
+
+    /**
+     * Einzelner Befund einer Validierung.
+     */
+    public static final class Issue {
+
+        private final IssueType type;
+        private final String location;
+        private final String message;
+
+        Issue(IssueType type, String location, String message) {
+            this.type = type;
+            this.location = location;
+            this.message = message;
+        }
+
+        public IssueType getType() {
+            return type;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
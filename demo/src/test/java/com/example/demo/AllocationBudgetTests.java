@@ -0,0 +1,251 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import org.hl7.fhir.r4.model.DocumentReference;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
+
+import com.example.demo.controller.FhirController;
+import com.example.demo.service.DocumentReferenceService;
+import com.example.demo.service.LargePayloadService;
+import com.example.demo.service.PatientDispatchService;
+import com.example.demo.service.PatientService;
+import com.example.demo.util.FileSlice;
+import com.example.demo.util.SpooledBody;
+
+import ca.uhn.fhir.context.FhirContext;
+
+/**
+ * Prüft die pro Anfrage allokierten Bytes der Verarbeitungsstufen (Validierung,
+ * Mapping, Endpunkt) gegen die Budgets aus {@code allocation-budgets.properties}.
+ *
+ * Gemessen wird über die Allokationszähler der JVM ({@code ThreadMXBean}) nur auf dem
+ * anfragenden Thread und den Threads des Validator-Pools, an den die Validierung
+ * übergeben wird; Hintergrund-Threads (Scheduler, Reactor, Logging) verfälschen die
+ * Messung so nicht. Je Stufe wird nach dem Aufwärmen der Median mehrerer Läufe mit dem
+ * Budget verglichen. DocumentReferences
+ * werden in Größenklassen des Attachments gemessen. Die proprietäre API wird nicht
+ * aufgerufen.
+ */
+@SpringBootTest(properties = "fhir.read-store.file=${java.io.tmpdir}/allocation-budget-read-store.ndjson")
+class AllocationBudgetTests {
+
+    private static final Logger logger = LoggerFactory.getLogger(AllocationBudgetTests.class);
+
+    private static final int WARMUP = 10;
+    private static final int RUNS = 7;
+    private static final String VALIDATOR_THREAD_PREFIX = "fhir-validator-";
+
+    @Autowired
+    private FhirController fhirController;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private DocumentReferenceService documentReferenceService;
+
+    @Autowired
+    private LargePayloadService largePayloadService;
+
+    @Autowired
+    private FhirContext fhirContext;
+
+    @MockBean
+    private PatientDispatchService patientDispatchService;
+
+    @Value("${fhir.large-payload.threshold-bytes}")
+    private long spoolThreshold;
+
+    private com.sun.management.ThreadMXBean threadBean;
+    private Properties budgets;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                "Thread allocation counters are not available on this JVM");
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported(), "Thread allocation counters are not supported");
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        budgets = PropertiesLoaderUtils.loadProperties(new ClassPathResource("allocation-budgets.properties"));
+        when(patientDispatchService.sendPatientData(any(), any())).thenReturn(true);
+        when(patientDispatchService.sendDocumentParts(any())).thenAnswer(invocation -> {
+            boolean[] sent = new boolean[invocation.<List<?>>getArgument(0).size()];
+            Arrays.fill(sent, true);
+            return sent;
+        });
+    }
+
+    @Test
+    void patientStagesStayWithinBudget() throws Exception {
+        String json = readResource("examples/Beispiel-FHIR-Ressource-Patient.json");
+        byte[] payload = json.getBytes(StandardCharsets.UTF_8);
+        Patient patient = fhirContext.newJsonParser().parseResource(Patient.class, json);
+
+        List<String> violations = new ArrayList<>();
+        check(violations, "patient.validate", () -> patientService.validate(patient));
+        check(violations, "patient.process", () -> patientService.processPatient(patient));
+        check(violations, "patient.endpoint", () -> {
+            int status = fhirController.createPatient(new ByteArrayInputStream(payload), null, null)
+                    .getStatusCodeValue();
+            assertNotEquals(500, status);
+            return status;
+        });
+        assertTrue(violations.isEmpty(), String.join("\n", violations));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "small", "medium", "large" })
+    void documentStagesStayWithinBudget(String sizeClass) throws Exception {
+        String prefix = "document." + sizeClass;
+        long attachmentSize = budget(prefix + ".attachment-size");
+        byte[] payload = documentPayload((int) attachmentSize);
+
+        List<String> violations = new ArrayList<>();
+        // Validierung und Mapping erhalten die Ressource wie im Controller: ggf. ausgelagert
+        try (SpooledBody body = largePayloadService.spool(new ByteArrayInputStream(payload))) {
+            assertEquals(payload.length > spoolThreshold, body.isSpooled(), "Unexpected spooling for " + sizeClass);
+            DocumentReference documentReference = largePayloadService.parseDocumentReference(body);
+            List<FileSlice> dataSlices = body.getDataSlices();
+
+            check(violations, prefix + ".validate", () -> documentReferenceService.validate(documentReference));
+            check(violations, prefix + ".process",
+                    () -> documentReferenceService.processDocumentReference(documentReference, dataSlices));
+        }
+        check(violations, prefix + ".endpoint", () -> {
+            int status = fhirController.createDocumentReference(new ByteArrayInputStream(payload), null, null)
+                    .getStatusCodeValue();
+            clearInvocations(patientDispatchService);
+            assertNotEquals(500, status);
+            return status;
+        });
+        assertTrue(violations.isEmpty(), String.join("\n", violations));
+    }
+
+    /**
+     * Misst eine Stufe und trägt eine Überschreitung ihres Budgets in {@code violations} ein.
+     */
+    private void check(List<String> violations, String stage, Callable<?> work) throws Exception {
+        long budget = budget(stage);
+        long allocated = allocatedPerCall(work);
+        logger.info("{} allocated {} bytes per request (budget {})", stage, allocated, budget);
+        if (allocated > budget) {
+            violations.add(String.format("%s allocated %,d bytes per request, budget is %,d bytes",
+                    stage, allocated, budget));
+        }
+    }
+
+    /**
+     * Liefert den Median der pro Aufruf auf dem anfragenden Thread und im Validator-Pool
+     * allokierten Bytes.
+     */
+    private long allocatedPerCall(Callable<?> work) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            work.call();
+        }
+        // Nach dem Aufwärmen sind alle Threads des Validator-Pools gestartet
+        long[] threadIds = measuredThreadIds();
+        long[] before = new long[threadIds.length];
+        long[] samples = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            allocatedBytes(threadIds, before);
+            work.call();
+            samples[i] = allocatedBytes(threadIds, null) - sum(before);
+        }
+        Arrays.sort(samples);
+        return samples[RUNS / 2];
+    }
+
+    /**
+     * Summiert die allokierten Bytes der Threads; {@code perThread} nimmt bei Bedarf die
+     * Einzelwerte auf (Threads, die nicht mehr laufen, zählen mit 0).
+     */
+    private long allocatedBytes(long[] threadIds, long[] perThread) {
+        long total = 0;
+        for (int i = 0; i < threadIds.length; i++) {
+            long bytes = Math.max(0, threadBean.getThreadAllocatedBytes(threadIds[i]));
+            if (perThread != null) {
+                perThread[i] = bytes;
+            }
+            total += bytes;
+        }
+        return total;
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    private static long[] measuredThreadIds() {
+        List<Long> ids = new ArrayList<>();
+        ids.add(Thread.currentThread().getId());
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith(VALIDATOR_THREAD_PREFIX)) {
+                ids.add(thread.getId());
+            }
+        }
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private long budget(String key) {
+        String value = budgets.getProperty(key);
+        assertTrue(value != null, "No allocation budget configured for " + key);
+        return DataSize.parse(value.trim()).toBytes();
+    }
+
+    /**
+     * Beispiel-DocumentReference mit einem (reproduzierbar) zufälligen Attachment der
+     * angegebenen Größe.
+     */
+    private byte[] documentPayload(int attachmentSize) throws Exception {
+        DocumentReference documentReference = fhirContext.newJsonParser().parseResource(DocumentReference.class,
+                readResource("examples/Beispiel-DocumentReferenceBody.json"));
+        byte[] data = new byte[attachmentSize];
+        new Random(attachmentSize).nextBytes(data);
+        documentReference.getContentFirstRep().getAttachment().setData(data);
+        return fhirContext.newJsonParser().encodeResourceToString(documentReference)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String readResource(String path) throws Exception {
+        try (InputStream is = new ClassPathResource(path).getInputStream()) {
+            return StreamUtils.copyToString(is, StandardCharsets.UTF_8);
+        }
+    }
+}
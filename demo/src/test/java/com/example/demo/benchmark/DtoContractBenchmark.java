@@ -0,0 +1,90 @@
+package com.example.demo.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.dto.DocumentDTO;
+import com.example.demo.dto.PersonDTO;
+import com.example.demo.service.DtoContractService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Misst den Aufwand der Schema-Prüfung ausgehender DTOs in {@link DtoContractService}.
+ * Der Dokumentinhalt wird nicht gelesen; die Kosten müssen daher unabhängig von der
+ * Größe von contentB64 sein und im niedrigen Mikrosekundenbereich liegen.
+ *
+ * Kein Bestandteil des normalen Testlaufs; Ausführung mit
+ * {@code mvn test -Dtest=DtoContractBenchmark}.
+ */
+class DtoContractBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(DtoContractBenchmark.class);
+
+    private static final int WARMUP = 500_000;
+    private static final int ITERATIONS = 2_000_000;
+    // Obergrenze pro Prüfung ("niedriger Mikrosekundenbereich")
+    private static final double MAX_NANOS = 2_000;
+    // Zulässiger Faktor zwischen 16-MB- und 1-KB-Dokument (Messrauschen)
+    private static final double MAX_SIZE_FACTOR = 1.5;
+
+    @Test
+    void contractCheckCostsLowMicroseconds() {
+        DtoContractService contractService = new DtoContractService(new ObjectMapper());
+        ReflectionTestUtils.setField(contractService, "enabled", true);
+        ReflectionTestUtils.invokeMethod(contractService, "compileContracts");
+
+        PersonDTO person = new PersonDTO("Peter James", "Chalmers", "25.12.1974");
+        DocumentDTO smallDocument = new DocumentDTO("PT130102", "42", "4711", "31.12.2020", base64(1024));
+        DocumentDTO largeDocument = new DocumentDTO("PT130102", "42", "4711", "31.12.2020", base64(16 * 1024 * 1024));
+        DocumentDTO invalidDocument = new DocumentDTO(null, "P-42", "4711", "31.12.2020", null);
+
+        assertTrue(contractService.check(person).isEmpty());
+        assertTrue(contractService.check(largeDocument).isEmpty());
+        assertEquals(3, contractService.check(invalidDocument).size());
+
+        double personNanos = nanosPerCheck(contractService, person);
+        double smallNanos = nanosPerCheck(contractService, smallDocument);
+        double largeNanos = nanosPerCheck(contractService, largeDocument);
+        double invalidNanos = nanosPerCheck(contractService, invalidDocument);
+        logger.info("PersonDTO:                {} ns/op", String.format("%8.1f", personNanos));
+        logger.info("DocumentDTO (1 KB):       {} ns/op", String.format("%8.1f", smallNanos));
+        logger.info("DocumentDTO (16 MB):      {} ns/op", String.format("%8.1f", largeNanos));
+        logger.info("DocumentDTO (3 errors):   {} ns/op", String.format("%8.1f", invalidNanos));
+
+        for (double nanos : new double[] { personNanos, smallNanos, largeNanos, invalidNanos }) {
+            assertTrue(nanos <= MAX_NANOS, String.format("Contract check took %.1f ns/op", nanos));
+        }
+        assertTrue(largeNanos <= smallNanos * MAX_SIZE_FACTOR, String.format(
+                "Contract check of a 16 MB document took %.2fx the time of a 1 KB document",
+                largeNanos / smallNanos));
+    }
+
+    private static double nanosPerCheck(DtoContractService contractService, Object dto) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += contractService.check(dto).size();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += contractService.check(dto).size();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink < 0) {
+            logger.debug("sink {}", sink);
+        }
+        return (double) elapsed / ITERATIONS;
+    }
+
+    private static String base64(int length) {
+        char[] content = new char[length];
+        Arrays.fill(content, 'A');
+        return new String(content);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.demo.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.hl7.fhir.r4.model.DocumentReference;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.example.demo.service.DocumentReferenceService;
+import com.example.demo.service.PatientService;
+import com.example.demo.util.ValidationReport;
+
+import ca.uhn.fhir.context.FhirContext;
+
+/**
+ * Misst den Durchsatz von Validierung und Mapping über einen synthetischen
+ * ISiK-Workload aus {@link IsikWorkloadGenerator} (10 % fehlerhafte Ressourcen,
+ * log-normalverteilte Attachment-Größen) und prüft, dass genau die absichtlich
+ * fehlerhaften Ressourcen abgelehnt werden.
+ *
+ * Kein Bestandteil des normalen Testlaufs; Ausführung mit
+ * {@code mvn test -Dtest=IsikWorkloadBenchmark}.
+ */
+@SpringBootTest(properties = "fhir.read-store.file=${java.io.tmpdir}/workload-benchmark-read-store.ndjson")
+class IsikWorkloadBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(IsikWorkloadBenchmark.class);
+
+    private static final long SEED = 4711;
+    private static final double INVALID_FRACTION = 0.1;
+    private static final int WARMUP = 500;
+    private static final int RESOURCES = 5_000;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private DocumentReferenceService documentReferenceService;
+
+    @Autowired
+    private FhirContext fhirContext;
+
+    @Test
+    void generatorIsReproducible() throws Exception {
+        StringWriter first = new StringWriter();
+        StringWriter second = new StringWriter();
+        new IsikWorkloadGenerator(fhirContext, SEED).invalidFraction(INVALID_FRACTION)
+                .attachmentSizes(IsikWorkloadGenerator.SizeDistribution.uniform(16, 1024))
+                .writeNdjson(first, 200);
+        new IsikWorkloadGenerator(fhirContext, SEED).invalidFraction(INVALID_FRACTION)
+                .attachmentSizes(IsikWorkloadGenerator.SizeDistribution.uniform(16, 1024))
+                .writeNdjson(second, 200);
+        assertEquals(first.toString(), second.toString());
+    }
+
+    @Test
+    void validateAndProcessSyntheticWorkload() {
+        IsikWorkloadGenerator generator = new IsikWorkloadGenerator(fhirContext, SEED)
+                .invalidFraction(INVALID_FRACTION);
+        run(generator.workload().limit(WARMUP).iterator(), new ArrayList<>());
+
+        List<String> mismatches = new ArrayList<>();
+        long start = System.nanoTime();
+        long[] counts = run(generator.workload().limit(RESOURCES).iterator(), mismatches);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        logger.info("resources:  {} ({} patients, {} documents, {} rejected)", RESOURCES, counts[0], counts[1],
+                counts[2]);
+        logger.info("throughput: {} resources/s, {} MB attachment data/s", String.format("%,.1f", RESOURCES / seconds),
+                String.format("%,.1f", counts[3] / seconds / (1024 * 1024)));
+        assertTrue(mismatches.isEmpty(), String.join("\n", mismatches));
+    }
+
+    /**
+     * @return Anzahl Patienten, Dokumente, abgelehnte Ressourcen und Attachment-Bytes
+     */
+    private long[] run(Iterator<IsikWorkloadGenerator.Generated> workload, List<String> mismatches) {
+        long[] counts = new long[4];
+        while (workload.hasNext()) {
+            IsikWorkloadGenerator.Generated generated = workload.next();
+            ValidationReport report;
+            if (generated.getResource() instanceof Patient) {
+                Patient patient = (Patient) generated.getResource();
+                counts[0]++;
+                report = patientService.validate(patient);
+                if (report.isValid()) {
+                    patientService.processPatient(patient);
+                }
+            } else {
+                DocumentReference documentReference = (DocumentReference) generated.getResource();
+                counts[1]++;
+                counts[3] += documentReference.getContentFirstRep().getAttachment().getData() != null
+                        ? documentReference.getContentFirstRep().getAttachment().getData().length : 0;
+                report = documentReferenceService.validate(documentReference);
+                if (report.isValid()) {
+                    documentReferenceService.processDocumentReference(documentReference);
+                }
+            }
+            if (!report.isValid()) {
+                counts[2]++;
+            }
+            if (report.isValid() != generated.isValid()) {
+                mismatches.add(generated.getResource().getIdElement().getIdPart() + ": expected "
+                        + (generated.isValid() ? "valid" : "invalid (" + generated.getDefect() + ")")
+                        + ", got " + report.getIssues().size() + " issue(s)");
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,408 @@
+package com.example.demo.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.DocumentReference;
+import org.hl7.fhir.r4.model.Enumerations.AdministrativeGender;
+import org.hl7.fhir.r4.model.Enumerations.DocumentReferenceStatus;
+import org.hl7.fhir.r4.model.HumanName;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.Resource;
+import org.hl7.fhir.r4.model.ValueSet;
+import org.springframework.core.io.ClassPathResource;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+
+/**
+ * Erzeugt beliebig viele synthetische ISiK-Patienten und -DocumentReferences für
+ * Benchmarks und Lasttests, ohne gespeicherte Fixtures.
+ *
+ * Die Ausgabe ist bei gleichem Seed reproduzierbar. Variiert werden die Anzahl der
+ * Vornamen, ein optionaler Geburtsname, Geschlecht und Geburtsdatum, der KDL-Code (aus
+ * dem mitgelieferten ValueSet {@code fhir/valuesets/valueset-kdl-2021.json}) und die
+ * Attachment-Größe (aus einer konfigurierbaren {@link SizeDistribution}). Ein
+ * einstellbarer Anteil der Ressourcen erhält genau einen Fehler, den der Server mit
+ * HTTP 400 ablehnen muss; welcher das ist, steht in {@link Generated#getDefect()}.
+ *
+ * Ressourcen werden einzeln erzeugt ({@link #workload()}) und können als NDJSON
+ * ({@link #writeNdjson}) oder als Transaction-Bundles, ein Bundle pro Zeile
+ * ({@link #writeBundles}), gestreamt werden. Für Lasttests außerhalb von JUnit:
+ * {@code IsikWorkloadGenerator <datei> <anzahl> [ndjson|bundle] [seed] [invalid-anteil]}.
+ */
+public final class IsikWorkloadGenerator {
+
+    private static final String KDL_SYSTEM = "http://dvmd.de/fhir/CodeSystem/kdl";
+    private static final String PID_SYSTEM = "https://fhir.krankenhaus.example/sid/PID";
+    private static final String ISIK_DOCUMENT_PROFILE =
+            "https://gematik.de/fhir/isik/v3/Dokumentenaustausch/StructureDefinition/ISiKDokumentenMetadaten";
+
+    private static final String[] GIVEN_NAMES = { "Anna", "Maria", "Sophie", "Lena", "Katharina", "Elisabeth",
+            "Paul", "Lukas", "Jonas", "Felix", "Maximilian", "Johannes", "Emil", "Greta", "Friedrich", "Ida" };
+    private static final String[] FAMILY_NAMES = { "Müller", "Schmidt", "Schneider", "Fischer", "Weber",
+            "Meyer", "Wagner", "Becker", "Schulz", "Hoffmann", "Koch", "Richter", "Klein", "Wolf", "Neumann" };
+
+    private final Random random;
+    private final FhirContext fhirContext;
+    private final List<Coding> kdlCodes;
+
+    private double invalidFraction = 0.0;
+    private SizeDistribution attachmentSizes = SizeDistribution.logNormal(64 * 1024, 1.5, 32 * 1024 * 1024);
+    private int maxDocumentsPerPatient = 3;
+
+    private long patientCounter = 0;
+    private long documentCounter = 0;
+
+    public IsikWorkloadGenerator(FhirContext fhirContext, long seed) {
+        this.fhirContext = fhirContext;
+        this.random = new Random(seed);
+        this.kdlCodes = loadKdlCodes(fhirContext);
+    }
+
+    /**
+     * Anteil (0 bis 1) der Ressourcen, die einen Fehler enthalten.
+     */
+    public IsikWorkloadGenerator invalidFraction(double invalidFraction) {
+        if (invalidFraction < 0 || invalidFraction > 1) {
+            throw new IllegalArgumentException("invalidFraction must be between 0 and 1");
+        }
+        this.invalidFraction = invalidFraction;
+        return this;
+    }
+
+    public IsikWorkloadGenerator attachmentSizes(SizeDistribution attachmentSizes) {
+        this.attachmentSizes = attachmentSizes;
+        return this;
+    }
+
+    /**
+     * Höchstanzahl der DocumentReferences, die in {@link #workload()} auf einen Patienten
+     * folgen (gleichverteilt ab 0).
+     */
+    public IsikWorkloadGenerator maxDocumentsPerPatient(int maxDocumentsPerPatient) {
+        if (maxDocumentsPerPatient < 0) {
+            throw new IllegalArgumentException("maxDocumentsPerPatient must not be negative");
+        }
+        this.maxDocumentsPerPatient = maxDocumentsPerPatient;
+        return this;
+    }
+
+    /**
+     * Unbegrenzter Strom aus Patienten, jeweils gefolgt von ihren DocumentReferences.
+     * Der Strom ist sequentiell zu verarbeiten, sonst ist die Ausgabe nicht reproduzierbar.
+     */
+    public Stream<Generated> workload() {
+        Deque<Generated> pending = new ArrayDeque<>();
+        return Stream.generate(() -> {
+            if (pending.isEmpty()) {
+                Generated patient = nextPatient();
+                pending.add(patient);
+                int documents = random.nextInt(maxDocumentsPerPatient + 1);
+                for (int i = 0; i < documents; i++) {
+                    pending.add(nextDocumentReference(patient.getResource().getIdElement().getIdPart()));
+                }
+            }
+            return pending.poll();
+        });
+    }
+
+    /**
+     * Erzeugt den nächsten ISiK-Patienten; mit Wahrscheinlichkeit {@code invalidFraction}
+     * fehlt eine Pflichtangabe.
+     */
+    public Generated nextPatient() {
+        Patient patient = new Patient();
+        patient.setId("syn-" + (++patientCounter));
+        patient.addIdentifier()
+                .setSystem(PID_SYSTEM)
+                .setValue(String.valueOf(100000 + patientCounter))
+                .getType().addCoding()
+                .setSystem("http://terminology.hl7.org/CodeSystem/v2-0203")
+                .setCode("MR");
+        patient.setActive(true);
+
+        HumanName name = patient.addName().setUse(HumanName.NameUse.OFFICIAL).setFamily(pick(FAMILY_NAMES));
+        // Meist ein, manchmal zwei oder drei Vornamen
+        int givenNames = 1 + (random.nextInt(10) < 7 ? 0 : 1 + random.nextInt(2));
+        for (int i = 0; i < givenNames; i++) {
+            name.addGiven(pick(GIVEN_NAMES));
+        }
+        if (random.nextInt(5) == 0) {
+            patient.addName().setUse(HumanName.NameUse.MAIDEN).setFamily(pick(FAMILY_NAMES));
+        }
+
+        patient.setGender(random.nextBoolean() ? AdministrativeGender.FEMALE : AdministrativeGender.MALE);
+        LocalDate birthDate = LocalDate.of(1930, 1, 1).plusDays(random.nextInt(93 * 365));
+        patient.setBirthDateElement(new DateType(birthDate.toString()));
+
+        String defect = null;
+        if (random.nextDouble() < invalidFraction) {
+            switch (random.nextInt(3)) {
+                case 0:
+                    patient.getName().get(0).getGiven().clear();
+                    defect = "Patient.name[0].given";
+                    break;
+                case 1:
+                    patient.getName().get(0).setFamily(null);
+                    defect = "Patient.name[0].family";
+                    break;
+                default:
+                    patient.setBirthDateElement(null);
+                    defect = "Patient.birthDate";
+                    break;
+            }
+        }
+        return new Generated(patient, defect);
+    }
+
+    /**
+     * Erzeugt die nächste ISiK-DocumentReference zum angegebenen Patienten; mit
+     * Wahrscheinlichkeit {@code invalidFraction} fehlt eine Pflichtangabe oder der
+     * KDL-Code ist unbekannt.
+     */
+    public Generated nextDocumentReference(String patientId) {
+        long number = ++documentCounter;
+        DocumentReference documentReference = new DocumentReference();
+        documentReference.setId("syn-doc-" + number);
+        documentReference.getMeta().addProfile(ISIK_DOCUMENT_PROFILE);
+        documentReference.getMasterIdentifier()
+                .setSystem("urn:ietf:rfc:3986")
+                .setValue("urn:uuid:" + new UUID(random.nextLong(), random.nextLong()));
+        documentReference.setStatus(DocumentReferenceStatus.CURRENT);
+
+        Coding kdl = kdlCodes.get(random.nextInt(kdlCodes.size()));
+        documentReference.getType().addCoding(kdl.copy());
+        documentReference.addCategory().addCoding()
+                .setSystem("http://ihe-d.de/CodeSystems/IHEXDSclassCode")
+                .setCode("BEF")
+                .setDisplay("Befundbericht");
+        documentReference.setDescription(kdl.getDisplay() + " " + number);
+        documentReference.setSubject(new Reference("Patient/" + patientId));
+        documentReference.addSecurityLabel().addCoding()
+                .setSystem("http://terminology.hl7.org/CodeSystem/v3-Confidentiality")
+                .setCode("N");
+
+        byte[] data = new byte[attachmentSizes.next(random)];
+        random.nextBytes(data);
+        ZonedDateTime creation = ZonedDateTime.of(2015, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC)
+                .plusSeconds((long) random.nextInt(10 * 365) * 24 * 3600 + random.nextInt(24 * 3600));
+        DocumentReference.DocumentReferenceContentComponent content = documentReference.addContent();
+        content.getAttachment()
+                .setContentType("application/pdf")
+                .setLanguage("de")
+                .setData(data)
+                .setCreationElement(new DateTimeType(creation.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)));
+        content.getFormat()
+                .setSystem("http://ihe.net/fhir/ihe.formatcode.fhir/CodeSystem/formatcode")
+                .setCode("urn:ihe:iti:xds:2017:mimeTypeSufficient")
+                .setDisplay("mimeType Sufficient");
+
+        DocumentReference.DocumentReferenceContextComponent context = documentReference.getContext();
+        context.addEncounter(new Reference("Encounter/" + (4000 + random.nextInt(1000))));
+        context.getFacilityType().addCoding()
+                .setSystem("http://ihe-d.de/CodeSystems/PatientBezogenenGesundheitsversorgung")
+                .setCode("KHS")
+                .setDisplay("Krankenhaus");
+        context.getPracticeSetting().addCoding()
+                .setSystem("http://ihe-d.de/CodeSystems/AerztlicheFachrichtungen")
+                .setCode("ALLG");
+
+        String defect = null;
+        if (random.nextDouble() < invalidFraction) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    documentReference.setSubject(null);
+                    defect = "DocumentReference.subject";
+                    break;
+                case 1:
+                    context.setEncounter(Collections.emptyList());
+                    defect = "DocumentReference.context.encounter";
+                    break;
+                case 2:
+                    content.getAttachment().setCreationElement(null);
+                    defect = "DocumentReference.content[0].attachment.creation";
+                    break;
+                default:
+                    documentReference.getType().getCodingFirstRep().setCode("XX999999");
+                    defect = "DocumentReference.type.coding";
+                    break;
+            }
+        }
+        return new Generated(documentReference, defect);
+    }
+
+    /**
+     * Schreibt {@code count} Ressourcen aus {@link #workload()} als NDJSON.
+     */
+    public void writeNdjson(Writer out, long count) throws IOException {
+        IParser parser = fhirContext.newJsonParser().setPrettyPrint(false);
+        for (Generated generated : (Iterable<Generated>) workload().limit(count)::iterator) {
+            parser.encodeResourceToWriter(generated.getResource(), out);
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /**
+     * Schreibt {@code count} Ressourcen aus {@link #workload()} als Transaction-Bundles
+     * mit je höchstens {@code bundleSize} Einträgen (POST), ein Bundle pro Zeile.
+     */
+    public void writeBundles(Writer out, long count, int bundleSize) throws IOException {
+        if (bundleSize < 1) {
+            throw new IllegalArgumentException("bundleSize must be positive");
+        }
+        IParser parser = fhirContext.newJsonParser().setPrettyPrint(false);
+        Bundle bundle = null;
+        for (Generated generated : (Iterable<Generated>) workload().limit(count)::iterator) {
+            if (bundle == null) {
+                bundle = new Bundle().setType(Bundle.BundleType.TRANSACTION);
+            }
+            Resource resource = generated.getResource();
+            bundle.addEntry()
+                    .setFullUrl("urn:uuid:" + new UUID(random.nextLong(), random.nextLong()))
+                    .setResource(resource)
+                    .getRequest()
+                    .setMethod(Bundle.HTTPVerb.POST)
+                    .setUrl(resource.fhirType());
+            if (bundle.getEntry().size() == bundleSize) {
+                parser.encodeResourceToWriter(bundle, out);
+                out.write('\n');
+                bundle = null;
+            }
+        }
+        if (bundle != null) {
+            parser.encodeResourceToWriter(bundle, out);
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static List<Coding> loadKdlCodes(FhirContext fhirContext) {
+        ValueSet valueSet;
+        try (InputStream is = new ClassPathResource("fhir/valuesets/valueset-kdl-2021.json").getInputStream()) {
+            valueSet = fhirContext.newJsonParser().parseResource(ValueSet.class, is);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read KDL ValueSet", e);
+        }
+        List<Coding> codes = new ArrayList<>();
+        collect(valueSet.getExpansion().getContains(), codes);
+        if (codes.isEmpty()) {
+            throw new IllegalStateException("KDL ValueSet has no expansion");
+        }
+        return codes;
+    }
+
+    private static void collect(List<ValueSet.ValueSetExpansionContainsComponent> contains, List<Coding> codes) {
+        for (ValueSet.ValueSetExpansionContainsComponent entry : contains) {
+            if (KDL_SYSTEM.equals(entry.getSystem()) && entry.hasCode() && !entry.getAbstract()) {
+                codes.add(new Coding(KDL_SYSTEM, entry.getCode(), entry.getDisplay()));
+            }
+            collect(entry.getContains(), codes);
+        }
+    }
+
+    /**
+     * Erzeugte Ressource und ggf. der eingebaute Fehler.
+     */
+    public static final class Generated {
+
+        private final Resource resource;
+        private final String defect;
+
+        Generated(Resource resource, String defect) {
+            this.resource = resource;
+            this.defect = defect;
+        }
+
+        public Resource getResource() {
+            return resource;
+        }
+
+        public boolean isValid() {
+            return defect == null;
+        }
+
+        /**
+         * @return Pfad des absichtlich fehlerhaften Elements oder null
+         */
+        public String getDefect() {
+            return defect;
+        }
+    }
+
+    /**
+     * Verteilung der Attachment-Größen in Bytes.
+     */
+    public interface SizeDistribution {
+
+        int next(Random random);
+
+        static SizeDistribution fixed(int bytes) {
+            return random -> bytes;
+        }
+
+        static SizeDistribution uniform(int minBytes, int maxBytes) {
+            return random -> minBytes + random.nextInt(maxBytes - minBytes + 1);
+        }
+
+        /**
+         * Log-Normalverteilung: viele kleine, wenige sehr große Dokumente.
+         *
+         * @param medianBytes Median der Größe
+         * @param sigma       Streuung (Standardabweichung des Logarithmus)
+         * @param maxBytes    Obergrenze
+         */
+        static SizeDistribution logNormal(int medianBytes, double sigma, int maxBytes) {
+            double mu = Math.log(medianBytes);
+            return random -> (int) Math.max(1, Math.min(maxBytes, Math.exp(mu + sigma * random.nextGaussian())));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: IsikWorkloadGenerator <file> <count> [ndjson|bundle] [seed] [invalid-fraction]");
+            System.exit(1);
+        }
+        long count = Long.parseLong(args[1]);
+        boolean bundles = args.length > 2 && "bundle".equals(args[2]);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+        double invalidFraction = args.length > 4 ? Double.parseDouble(args[4]) : 0.0;
+
+        IsikWorkloadGenerator generator = new IsikWorkloadGenerator(FhirContext.forR4(), seed)
+                .invalidFraction(invalidFraction);
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            if (bundles) {
+                generator.writeBundles(out, count, 100);
+            } else {
+                generator.writeNdjson(out, count);
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.demo.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.DocumentReference;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.dto.DocumentDTO;
+import com.example.demo.dto.PersonDTO;
+import com.example.demo.mapping.FhirMappingService;
+import com.example.demo.mapping.ValueConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ca.uhn.fhir.context.FhirContext;
+
+/**
+ * Vergleicht das kompilierte, deklarative Mapping mit der Extraktion, die PatientService
+ * und DocumentReferenceService vor Einführung der Mappings verwendet haben
+ * (Patient → PersonDTO, DocumentReference → DocumentDTO).
+ *
+ * Geprüft wird zuerst, dass beide Varianten für einen synthetischen ISiK-Workload
+ * dieselben DTOs liefern, und danach, dass das kompilierte Mapping höchstens
+ * {@link #MAX_SLOWDOWN} so lange braucht wie die bisherige Extraktion.
+ *
+ * Kein Bestandteil des normalen Testlaufs; Ausführung mit
+ * {@code mvn test -Dtest=MappingBenchmark}.
+ */
+class MappingBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappingBenchmark.class);
+
+    private static final String KDL_SYSTEM = "http://dvmd.de/fhir/CodeSystem/kdl";
+
+    private static final int PATIENTS = 1_000;
+    private static final int WARMUP_ROUNDS = 100;
+    private static final int ROUNDS = 500;
+
+    // Toleranz für Messrauschen; das kompilierte Mapping soll nicht langsamer sein
+    private static final double MAX_SLOWDOWN = 1.1;
+
+    @Test
+    void compiledMappingVersusPreviousExtraction() throws Exception {
+        FhirContext fhirContext = FhirContext.forR4();
+        FhirMappingService mappingService = new FhirMappingService(fhirContext, new ObjectMapper());
+        ReflectionTestUtils.setField(mappingService, "mappingLocation", "classpath:mappings/*.json");
+        ReflectionTestUtils.invokeMethod(mappingService, "loadMappings");
+
+        IsikWorkloadGenerator generator = new IsikWorkloadGenerator(fhirContext, 42)
+                .invalidFraction(0)
+                .attachmentSizes(IsikWorkloadGenerator.SizeDistribution.fixed(16));
+        List<Patient> patients = new ArrayList<>();
+        List<DocumentReference> documents = new ArrayList<>();
+        for (int i = 0; i < PATIENTS; i++) {
+            Patient patient = (Patient) generator.nextPatient().getResource();
+            patients.add(patient);
+            documents.add((DocumentReference) generator
+                    .nextDocumentReference(patient.getIdElement().getIdPart()).getResource());
+        }
+
+        for (Patient patient : patients) {
+            PersonDTO expected = PreviousExtraction.person(patient);
+            PersonDTO actual = mappingService.map("patient-to-person", patient, PersonDTO.class);
+            assertEquals(expected.getFirstName(), actual.getFirstName());
+            assertEquals(expected.getLastName(), actual.getLastName());
+            assertEquals(expected.getBirthDate(), actual.getBirthDate());
+        }
+        for (DocumentReference document : documents) {
+            DocumentDTO expected = PreviousExtraction.document(document);
+            DocumentDTO actual = mappingService.map("documentreference-to-document", document, DocumentDTO.class);
+            assertEquals(expected.getKdlCode(), actual.getKdlCode());
+            assertEquals(expected.getPatientId(), actual.getPatientId());
+            assertEquals(expected.getVisitNumber(), actual.getVisitNumber());
+            assertEquals(expected.getDateCreated(), creationDate(document));
+        }
+
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += previous(patients, documents) + compiled(mappingService, patients, documents);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += previous(patients, documents);
+        }
+        long previousNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += compiled(mappingService, patients, documents);
+        }
+        long compiledNanos = System.nanoTime() - start;
+
+        double operations = (double) ROUNDS * 2 * PATIENTS;
+        logger.info("Previous extraction: {} ns/op", String.format("%.1f", previousNanos / operations));
+        logger.info("Compiled mapping:    {} ns/op", String.format("%.1f", compiledNanos / operations));
+        logger.debug("sink {}", sink);
+        assertTrue(compiledNanos <= previousNanos * MAX_SLOWDOWN, String.format(
+                "Compiled mapping took %.2fx the time of the previous extraction",
+                (double) compiledNanos / previousNanos));
+    }
+
+    private static long previous(List<Patient> patients, List<DocumentReference> documents) {
+        long sink = 0;
+        for (Patient patient : patients) {
+            sink += PreviousExtraction.person(patient).getBirthDate().length();
+        }
+        for (DocumentReference document : documents) {
+            sink += PreviousExtraction.document(document).getDateCreated().length();
+        }
+        return sink;
+    }
+
+    private static long compiled(FhirMappingService mappingService, List<Patient> patients,
+            List<DocumentReference> documents) {
+        long sink = 0;
+        for (Patient patient : patients) {
+            sink += mappingService.map("patient-to-person", patient, PersonDTO.class).getBirthDate().length();
+        }
+        for (DocumentReference document : documents) {
+            sink += mappingService.map("documentreference-to-document", document, DocumentDTO.class)
+                    .getVisitNumber().length() + creationDate(document).length();
+        }
+        return sink;
+    }
+
+    /**
+     * Erstellungsdatum wie in DocumentReferenceService, das es pro content-Eintrag
+     * außerhalb des Mappings umwandelt.
+     */
+    private static String creationDate(DocumentReference document) {
+        return ValueConverter.DATE.convert(Collections.singletonList(
+                document.getContentFirstRep().getAttachment().getCreationElement().getValueAsString()));
+    }
+
+    /**
+     * Extraktion aus PatientService und DocumentReferenceService vor Einführung der
+     * Mappings, unverändert bis auf die Debug-Ausgaben und die KDL-Terminologieprüfung,
+     * die nicht zur Extraktion gehört und heute weiterhin separat erfolgt.
+     */
+    private static final class PreviousExtraction {
+
+        static PersonDTO person(Patient patient) {
+            // Extrahieren des Vornamens aus der Patient-Ressource
+            String firstName = patient.getName().get(0).getGiven().stream()
+                    .map(namePart -> namePart.getValue())
+                    .collect(Collectors.joining(" "));
+
+            // Extrahieren des Nachnamens aus der Patient-Ressource
+            String lastName = patient.getName().get(0).getFamily();
+
+            // Extrahieren des Geburtsdatums aus der Patient-Ressource und konvertieren
+            String birthDate = convertBirthDate(patient.getBirthDateElement().getValueAsString());
+
+            return new PersonDTO(firstName, lastName, birthDate);
+        }
+
+        static DocumentDTO document(DocumentReference documentReference) {
+            String kdlCode = extractKdlCode(documentReference);
+            String patientId = extractIdFromReference(documentReference.getSubject().getReference());
+            String visitNumber = extractIdFromReference(
+                    documentReference.getContext().getEncounterFirstRep().getReference());
+            String rawDateCreated = documentReference.getContentFirstRep().getAttachment().getCreationElement()
+                    .asStringValue();
+            String dateCreated = convertCreationDate(rawDateCreated);
+            return new DocumentDTO(kdlCode, patientId, visitNumber, dateCreated, null);
+        }
+
+        // Konvertierung des Geburtsdatums von YYYY-MM-DD zu DD.MM.YYYY
+        private static String convertBirthDate(String birthDate) {
+            // Validierung des Eingabeformats
+            if (birthDate == null || !birthDate.matches("\\d{4}-\\d{2}-\\d{2}")) {
+                throw new IllegalArgumentException("Invalid birth date format. Expected format: YYYY-MM-DD");
+            }
+
+            String[] dateParts = birthDate.split("-");
+            String day = dateParts[2];
+            String month = dateParts[1];
+            String year = dateParts[0];
+
+            return day + "." + month + "." + year;
+        }
+
+        // Extrahiert den KDL-Code aus der Coding-Liste des DocumentReference-Typs
+        private static String extractKdlCode(DocumentReference documentReference) {
+            for (Coding coding : documentReference.getType().getCoding()) {
+                if (coding != null && coding.hasSystem() && coding.hasCode()
+                        && KDL_SYSTEM.equals(coding.getSystem())) {
+                    return coding.getCode();
+                }
+            }
+            return null;
+        }
+
+        // Extrahiert die ID aus einer generischen FHIR-Referenz (entfernt alles vor dem /)
+        private static String extractIdFromReference(String reference) {
+            if (reference.contains("/")) {
+                return reference.substring(reference.lastIndexOf("/") + 1);
+            }
+            return reference;
+        }
+
+        // Konvertiert das Erstellungsdatum von ISO-8601 in dd.MM.yyyy
+        private static String convertCreationDate(String creationDate) {
+            if (creationDate == null || !creationDate.matches("\\d{4}-\\d{2}-\\d{2}.*")) {
+                throw new IllegalArgumentException("Invalid creation date format. Expected format: YYYY-MM-DD");
+            }
+
+            String[] dateComponents = creationDate.split("T")[0].split("-");
+            String day = dateComponents[2];
+            String month = dateComponents[1];
+            String year = dateComponents[0];
+
+            return day + "." + month + "." + year;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.demo.benchmark;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+
+import com.example.demo.service.FhirValidatorService;
+import com.example.demo.service.ProfileRegistryService;
+import com.example.demo.service.TerminologyService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ca.uhn.fhir.context.FhirContext;
+
+/**
+ * Misst den Durchsatz (Validierungen pro Sekunde) des Validator-Pools in
+ * {@link FhirValidatorService} für 1, 2, 4, … Threads bis zur Anzahl der CPU-Kerne.
+ * Bei thread-lokalen Validatoren sollte der Durchsatz annähernd linear skalieren.
+ *
+ * Kein Bestandteil des normalen Testlaufs; Ausführung mit
+ * {@code mvn test -Dtest=ValidatorPoolBenchmark}.
+ */
+class ValidatorPoolBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(ValidatorPoolBenchmark.class);
+
+    private static final long WARMUP_MILLIS = 5_000;
+    private static final long MEASURE_MILLIS = 10_000;
+
+    @Test
+    void throughputScalesWithThreads() throws Exception {
+        FhirContext fhirContext = FhirContext.forR4();
+        ProfileRegistryService registry = new ProfileRegistryService(fhirContext, new ObjectMapper());
+        ReflectionTestUtils.setField(registry, "validatorCacheBytes", Long.MAX_VALUE);
+        ReflectionTestUtils.invokeMethod(registry, "buildIndex");
+        String patientJson = readResource("examples/Beispiel-FHIR-Ressource-Patient.json");
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < cores; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(cores);
+
+        double baseline = 0;
+        logger.info("threads  validations/s  efficiency");
+        for (int threads : threadCounts) {
+            FhirValidatorService validatorService = new FhirValidatorService(registry, new TerminologyService(fhirContext));
+            ReflectionTestUtils.setField(validatorService, "validatorThreads", threads);
+            ReflectionTestUtils.setField(validatorService, "queueCapacity", threads * 4);
+            ReflectionTestUtils.setField(validatorService, "validationTimeoutMs", 60_000L);
+            ReflectionTestUtils.setField(validatorService, "warmup", true);
+            ReflectionTestUtils.invokeMethod(validatorService, "startPool");
+            try {
+                run(validatorService, fhirContext, patientJson, threads * 2, WARMUP_MILLIS);
+                double rate = run(validatorService, fhirContext, patientJson, threads * 2, MEASURE_MILLIS);
+                if (threads == 1) {
+                    baseline = rate;
+                }
+                logger.info(String.format("%7d  %13.1f  %9.0f%%", threads, rate, 100 * rate / (baseline * threads)));
+            } finally {
+                ReflectionTestUtils.invokeMethod(validatorService, "stopPool");
+            }
+        }
+    }
+
+    /**
+     * Lässt {@code clients} Aufrufer für die angegebene Dauer validieren und liefert
+     * die Anzahl abgeschlossener Validierungen pro Sekunde.
+     */
+    private static double run(FhirValidatorService validatorService, FhirContext fhirContext, String patientJson,
+            int clients, long millis) throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(clients);
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder completed = new LongAdder();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Patient patient = fhirContext.newJsonParser().parseResource(Patient.class, patientJson);
+            futures.add(callers.submit(() -> {
+                while (running.get()) {
+                    // Validierungsfehler zählen ebenso als abgeschlossene Validierung
+                    validatorService.validateIsikPatient(patient);
+                    completed.increment();
+                }
+                return null;
+            }));
+        }
+        long start = System.nanoTime();
+        Thread.sleep(millis);
+        running.set(false);
+        long elapsed = System.nanoTime() - start;
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        callers.shutdown();
+        callers.awaitTermination(1, TimeUnit.MINUTES);
+        return completed.sum() / (elapsed / 1e9);
+    }
+
+    private static String readResource(String path) throws Exception {
+        try (InputStream is = new ClassPathResource(path).getInputStream()) {
+            return StreamUtils.copyToString(is, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.demo.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.service.AdmissionControlService;
+import com.example.demo.service.FhirResponseService;
+
+import ca.uhn.fhir.context.FhirContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Prüft, dass der Filter abgelehnte Anfragen mit OperationOutcome und Retry-After
+ * beantwortet und nur die FHIR-Endpunkte ohne die Statusabfrage asynchroner Aufträge
+ * erfasst.
+ */
+class AdmissionControlFilterTests {
+
+    private AdmissionControlFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        AdmissionControlService admissionControlService = new AdmissionControlService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(admissionControlService, "clientRatePerSecond", 1.0);
+        ReflectionTestUtils.setField(admissionControlService, "clientBurst", 1);
+        ReflectionTestUtils.setField(admissionControlService, "maxClients", 100);
+        ReflectionTestUtils.setField(admissionControlService, "maxInFlight", 4);
+        ReflectionTestUtils.setField(admissionControlService, "queueTimeBudgetMs", 50L);
+        ReflectionTestUtils.invokeMethod(admissionControlService, "init");
+
+        filter = new AdmissionControlFilter(admissionControlService, new FhirResponseService(FhirContext.forR4()));
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "clientHeader", "X-Client-Id");
+    }
+
+    @Test
+    void rejectsClientOverRateWith429AndRetryAfter() throws Exception {
+        MockFilterChain admitted = new MockFilterChain();
+        filter.doFilter(request("/fhir/Patient", "client-1"), new MockHttpServletResponse(), admitted);
+        assertNotNull(admitted.getRequest());
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain rejected = new MockFilterChain();
+        filter.doFilter(request("/fhir/Patient", "client-1"), response, rejected);
+
+        assertNull(rejected.getRequest());
+        assertEquals(429, response.getStatus());
+        assertEquals("1", response.getHeader("Retry-After"));
+        assertTrue(response.getContentAsString().contains("\"throttled\""));
+
+        MockFilterChain otherClient = new MockFilterChain();
+        filter.doFilter(request("/fhir/Patient", "client-2"), new MockHttpServletResponse(), otherClient);
+        assertNotNull(otherClient.getRequest());
+    }
+
+    @Test
+    void ignoresNonFhirPathsAndAsyncStatusPolling() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            MockFilterChain chain = new MockFilterChain();
+            filter.doFilter(request("/actuator/health", "client-1"), new MockHttpServletResponse(), chain);
+            assertNotNull(chain.getRequest());
+
+            MockFilterChain polling = new MockFilterChain();
+            filter.doFilter(request("/fhir/_async/4a0a8f8e-5b1c-4c55-9d38-0c2f1f6c7e11", "client-1"),
+                    new MockHttpServletResponse(), polling);
+            assertNotNull(polling.getRequest());
+        }
+    }
+
+    private static MockHttpServletRequest request(String uri, String clientId) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        request.addHeader("X-Client-Id", clientId);
+        return request;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.demo.filter;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.service.FhirResponseService;
+import com.example.demo.util.CorruptBodyException;
+import com.example.demo.util.PayloadTooLargeException;
+
+import ca.uhn.fhir.context.FhirContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Prüft das transparente Entpacken, das Größenlimit gegen Dekompressionsbomben und
+ * die Ablehnung unbekannter Encodings und beschädigter Daten.
+ */
+class RequestDecompressionFilterTests {
+
+    private RequestDecompressionFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new RequestDecompressionFilter(new FhirResponseService(FhirContext.forR4()), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(filter, "maxDecompressedBytes", 1024L);
+    }
+
+    @Test
+    void inflatesGzipBodyAndHidesEncodingHeaders() throws Exception {
+        byte[] body = "{\"resourceType\":\"Patient\"}".getBytes(StandardCharsets.UTF_8);
+        byte[][] seen = new byte[1][];
+        String[] encoding = new String[1];
+        FilterChain chain = (request, response) -> {
+            HttpServletRequest http = (HttpServletRequest) request;
+            encoding[0] = http.getHeader(HttpHeaders.CONTENT_ENCODING);
+            assertEquals(-1, http.getContentLengthLong());
+            seen[0] = http.getInputStream().readAllBytes();
+        };
+
+        filter.doFilter(request("gzip", gzip(body)), new MockHttpServletResponse(), chain);
+
+        assertArrayEquals(body, seen[0]);
+        assertNull(encoding[0]);
+    }
+
+    @Test
+    void stopsReadingWhenDecompressedBodyExceedsLimit() {
+        byte[] bomb = gzip(new byte[64 * 1024]);
+        FilterChain chain = (request, response) -> {
+            try (InputStream in = request.getInputStream()) {
+                in.readAllBytes();
+            }
+        };
+
+        assertThrows(PayloadTooLargeException.class,
+                () -> filter.doFilter(request("gzip", bomb), new MockHttpServletResponse(), chain));
+    }
+
+    @Test
+    void reportsTruncatedGzipBodyAsCorrupt() {
+        byte[] compressed = gzip("{\"resourceType\":\"DocumentReference\"}".getBytes(StandardCharsets.UTF_8));
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length - 12);
+        FilterChain chain = (request, response) -> request.getInputStream().readAllBytes();
+
+        assertThrows(CorruptBodyException.class,
+                () -> filter.doFilter(request("gzip", truncated), new MockHttpServletResponse(), chain));
+    }
+
+    @Test
+    void reportsInvalidDeflateDataAsCorrupt() {
+        byte[] garbage = { 0x78, (byte) 0x9c, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x00 };
+        FilterChain chain = (request, response) -> request.getInputStream().readAllBytes();
+
+        assertThrows(CorruptBodyException.class,
+                () -> filter.doFilter(request("deflate", garbage), new MockHttpServletResponse(), chain));
+    }
+
+    @Test
+    void reportsMissingGzipHeaderAsCorrupt() {
+        FilterChain chain = (request, response) -> request.getInputStream().readAllBytes();
+
+        assertThrows(CorruptBodyException.class, () -> filter.doFilter(
+                request("gzip", "plain".getBytes(StandardCharsets.UTF_8)), new MockHttpServletResponse(), chain));
+    }
+
+    @Test
+    void rejectsUnsupportedEncodingWith415() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request("br", new byte[] { 1, 2, 3 }), response, chain);
+
+        assertEquals(415, response.getStatus());
+        assertNull(chain.getRequest());
+    }
+
+    private static MockHttpServletRequest request(String encoding, byte[] content) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/fhir/Patient");
+        request.addHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+        request.setContent(content);
+        return request;
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.demo.mapping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.hl7.fhir.r4.model.DocumentReference;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.dto.DocumentDTO;
+import com.example.demo.dto.PersonDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ca.uhn.fhir.context.FhirContext;
+
+/**
+ * Prüft das Kompilieren der Mapping-Definitionen und das Anwenden der
+ * {@link CompiledMapping}s auf Ressourcen.
+ */
+class FhirMappingServiceTests {
+
+    private static final String KDL_SYSTEM = "http://dvmd.de/fhir/CodeSystem/kdl";
+
+    private FhirMappingService mappingService;
+
+    @BeforeEach
+    void setUp() {
+        mappingService = new FhirMappingService(FhirContext.forR4(), new ObjectMapper());
+        ReflectionTestUtils.setField(mappingService, "mappingLocation", "classpath:mappings/*.json");
+        ReflectionTestUtils.invokeMethod(mappingService, "loadMappings");
+    }
+
+    @Test
+    void mapsPatientWithJoinedGivenNamesAndConvertedBirthDate() {
+        Patient patient = new Patient();
+        patient.addName().setFamily("Müller").addGiven("Anna").addGiven("Maria");
+        patient.addName().setFamily("Schmidt").addGiven("Lena");
+        patient.getBirthDateElement().setValueAsString("1980-12-24");
+
+        PersonDTO person = mappingService.map("patient-to-person", patient, PersonDTO.class);
+
+        assertEquals("Anna Maria", person.getFirstName());
+        assertEquals("Müller", person.getLastName());
+        assertEquals("24.12.1980", person.getBirthDate());
+    }
+
+    @Test
+    void mapsPartialBirthDateWithItsPrecision() {
+        Patient patient = new Patient();
+        patient.addName().setFamily("Müller").addGiven("Anna");
+        patient.getBirthDateElement().setValueAsString("1980-05");
+
+        PersonDTO person = mappingService.map("patient-to-person", patient, PersonDTO.class);
+
+        assertEquals("05.1980", person.getBirthDate());
+    }
+
+    @Test
+    void conversionFailuresCarryTheElementPath() {
+        Patient patient = new Patient();
+        patient.addName().setFamily("Müller").addGiven("Anna");
+
+        ValueConversionException e = assertThrows(ValueConversionException.class,
+                () -> mappingService.map("patient-to-person", patient, PersonDTO.class));
+        assertEquals("Patient.birthDate", e.getLocation());
+    }
+
+    @Test
+    void mapsDocumentReferenceWithWhereFilterAndReferenceIds() {
+        DocumentReference documentReference = new DocumentReference();
+        documentReference.getType().addCoding().setSystem("http://loinc.org").setCode("11488-4");
+        documentReference.getType().addCoding().setSystem(KDL_SYSTEM).setCode("AD010101");
+        documentReference.setSubject(new Reference("Patient/p1"));
+        documentReference.getContext().addEncounter(new Reference("http://example.org/fhir/Encounter/e1"));
+        documentReference.addContent().getAttachment().getCreationElement()
+                .setValueAsString("2021-01-03T10:15:00+01:00");
+
+        DocumentDTO document = mappingService.map("documentreference-to-document", documentReference,
+                DocumentDTO.class);
+
+        assertEquals("AD010101", document.getKdlCode());
+        assertEquals("p1", document.getPatientId());
+        assertEquals("e1", document.getVisitNumber());
+        // Das Erstellungsdatum setzt DocumentReferenceService pro content-Eintrag
+        assertNull(document.getDateCreated());
+        assertNull(document.getContentB64());
+    }
+
+    @Test
+    void missingOptionalElementsMapToNull() {
+        DocumentReference documentReference = new DocumentReference();
+        documentReference.getType().addCoding().setSystem("http://loinc.org").setCode("11488-4");
+        documentReference.addContent().getAttachment().getCreationElement().setValueAsString("2021-01-03");
+
+        DocumentDTO document = mappingService.map("documentreference-to-document", documentReference,
+                DocumentDTO.class);
+
+        assertNull(document.getKdlCode());
+        assertNull(document.getPatientId());
+        assertNull(document.getVisitNumber());
+    }
+
+    @Test
+    void rejectsUnknownMappingsAndWrongResourceTypes() {
+        Patient patient = new Patient();
+        assertThrows(IllegalStateException.class, () -> mappingService.map("unknown", patient, PersonDTO.class));
+        assertThrows(IllegalStateException.class,
+                () -> mappingService.map("patient-to-person", patient, DocumentDTO.class));
+        assertThrows(IllegalArgumentException.class,
+                () -> mappingService.map("patient-to-person", new DocumentReference(), PersonDTO.class));
+    }
+
+    @Test
+    void compileFailsForUnknownElementsNonPrimitivePathsAndMissingSetters() {
+        MappingDefinition typo = definition("name[0].famly");
+        assertThrows(IllegalStateException.class, () -> mappingService.compile(typo));
+
+        MappingDefinition composite = definition("name[0]");
+        assertThrows(IllegalStateException.class, () -> mappingService.compile(composite));
+
+        MappingDefinition noSetter = definition("name[0].family");
+        noSetter.fields.put("unknownField", noSetter.fields.remove("lastName"));
+        assertThrows(IllegalStateException.class, () -> mappingService.compile(noSetter));
+    }
+
+    private static MappingDefinition definition(String lastNamePath) {
+        MappingDefinition definition = new MappingDefinition();
+        definition.name = "test";
+        definition.resourceType = "Patient";
+        definition.target = PersonDTO.class.getName();
+        MappingDefinition.FieldDefinition field = new MappingDefinition.FieldDefinition();
+        field.path = lastNamePath;
+        definition.fields.put("lastName", field);
+        return definition;
+    }
+}
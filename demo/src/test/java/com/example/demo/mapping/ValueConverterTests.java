@@ -0,0 +1,60 @@
+package com.example.demo.mapping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Prüft die Konverter, die auf die Werte eines Mapping-Pfads angewendet werden.
+ */
+class ValueConverterTests {
+
+    @Test
+    void firstAndJoinHandleEmptyAndMultipleValues() {
+        assertNull(ValueConverter.FIRST.convert(Collections.emptyList()));
+        assertEquals("Anna", ValueConverter.FIRST.convert(Arrays.asList("Anna", "Maria")));
+        assertNull(ValueConverter.JOIN.convert(Collections.emptyList()));
+        assertEquals("Anna", ValueConverter.JOIN.convert(Collections.singletonList("Anna")));
+        assertEquals("Anna Maria", ValueConverter.JOIN.convert(Arrays.asList("Anna", "Maria")));
+    }
+
+    @Test
+    void dateConvertsIsoDatesAndDateTimes() {
+        assertEquals("24.12.1980", ValueConverter.DATE.convert(Collections.singletonList("1980-12-24")));
+        assertEquals("03.01.2021",
+                ValueConverter.DATE.convert(Collections.singletonList("2021-01-03T10:15:00+01:00")));
+    }
+
+    @Test
+    void dateKeepsPrecisionOfPartialDates() {
+        assertEquals("05.1980", ValueConverter.DATE.convert(Collections.singletonList("1980-05")));
+        assertEquals("1980", ValueConverter.DATE.convert(Collections.singletonList("1980")));
+    }
+
+    @Test
+    void dateRejectsMissingAndMalformedValues() {
+        assertThrows(IllegalArgumentException.class, () -> ValueConverter.DATE.convert(Collections.emptyList()));
+        assertThrows(IllegalArgumentException.class,
+                () -> ValueConverter.DATE.convert(Collections.singletonList("24.12.1980")));
+        assertThrows(IllegalArgumentException.class,
+                () -> ValueConverter.DATE.convert(Collections.singletonList("1980-1-24")));
+
+        ValueConversionException e = assertThrows(ValueConversionException.class,
+                () -> ValueConverter.DATE.convert(Collections.singletonList("1980-5")));
+        assertEquals("1980-5", e.getValue());
+    }
+
+    @Test
+    void referenceIdStripsEverythingUpToTheLastSlash() {
+        assertNull(ValueConverter.REFERENCE_ID.convert(Collections.emptyList()));
+        assertEquals("123", ValueConverter.REFERENCE_ID.convert(Collections.singletonList("Patient/123")));
+        assertEquals("123",
+                ValueConverter.REFERENCE_ID.convert(Collections.singletonList("http://example.org/fhir/Patient/123")));
+        assertEquals("123", ValueConverter.REFERENCE_ID.convert(Collections.singletonList("123")));
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.service.AdmissionControlService.Admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Prüft Ratenbegrenzung pro Client (429), die globale Obergrenze mit Wartezeitbudget
+ * (503), die Obergrenze verfolgter Clients und die Freigabe von Verarbeitungsplätzen.
+ */
+class AdmissionControlServiceTests {
+
+    private AdmissionControlService admissionControlService;
+
+    @BeforeEach
+    void setUp() {
+        admissionControlService = create(1.0, 3, 2);
+    }
+
+    @Test
+    void rateLimitsEachClientAfterBurst() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            admissionControlService.admit("a").release();
+        }
+
+        Admission rejected = admissionControlService.admit("a");
+        assertFalse(rejected.isAdmitted());
+        assertEquals(429, rejected.getRejectionStatus());
+        assertEquals(1, rejected.getRetryAfterSeconds());
+
+        Admission other = admissionControlService.admit("b");
+        assertTrue(other.isAdmitted());
+        other.release();
+    }
+
+    @Test
+    void refillsTokensOverTime() throws InterruptedException {
+        AdmissionControlService fastRefill = create(1000.0, 1, 2);
+        fastRefill.admit("a").release();
+        assertEquals(429, fastRefill.admit("a").getRejectionStatus());
+
+        Thread.sleep(20);
+
+        assertTrue(fastRefill.admit("a").isAdmitted());
+    }
+
+    @Test
+    void shedsWhenNoSlotFreesWithinBudget() throws InterruptedException {
+        Admission first = admissionControlService.admit("a");
+        Admission second = admissionControlService.admit("b");
+        assertTrue(first.isAdmitted() && second.isAdmitted());
+
+        long start = System.nanoTime();
+        Admission shed = admissionControlService.admit("c");
+        long waitedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(503, shed.getRejectionStatus());
+        assertTrue(shed.getRetryAfterSeconds() >= 1);
+        assertTrue(waitedMs >= 40, "Should wait up to the queue time budget, waited " + waitedMs + " ms");
+
+        // Mehrfaches Freigeben gibt nur einen Platz frei
+        first.release();
+        first.release();
+        Admission admitted = admissionControlService.admit("c");
+        assertTrue(admitted.isAdmitted());
+        assertFalse(admissionControlService.admit("d").isAdmitted());
+        admitted.release();
+        second.release();
+    }
+
+    @Test
+    void sharesOverflowBucketWhenClientTableIsFull() throws InterruptedException {
+        AdmissionControlService limited = create(20.0, 1, 10, 2);
+        limited.admit("a").release();
+        limited.admit("b").release();
+
+        // Tabelle voll und keine inaktiven Buckets: neue Clients teilen sich einen Bucket
+        assertTrue(limited.admit("c").isAdmitted());
+        assertEquals(429, limited.admit("d").getRejectionStatus());
+        assertEquals(2, buckets(limited).size());
+
+        Thread.sleep(100);
+
+        // Inzwischen volle Buckets werden verworfen und machen Platz für eigene Buckets
+        assertTrue(limited.admit("e").isAdmitted());
+        assertTrue(buckets(limited).containsKey("e"));
+        assertTrue(buckets(limited).size() <= 2);
+    }
+
+    private static Map<?, ?> buckets(AdmissionControlService service) {
+        return (Map<?, ?>) ReflectionTestUtils.getField(service, "buckets");
+    }
+
+    private static AdmissionControlService create(double ratePerSecond, int burst, int maxInFlight) {
+        return create(ratePerSecond, burst, maxInFlight, 100);
+    }
+
+    private static AdmissionControlService create(double ratePerSecond, int burst, int maxInFlight, int maxClients) {
+        AdmissionControlService service = new AdmissionControlService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "clientRatePerSecond", ratePerSecond);
+        ReflectionTestUtils.setField(service, "clientBurst", burst);
+        ReflectionTestUtils.setField(service, "maxClients", maxClients);
+        ReflectionTestUtils.setField(service, "maxInFlight", maxInFlight);
+        ReflectionTestUtils.setField(service, "queueTimeBudgetMs", 50L);
+        ReflectionTestUtils.invokeMethod(service, "init");
+        return service;
+    }
+}
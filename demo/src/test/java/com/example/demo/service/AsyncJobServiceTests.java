@@ -0,0 +1,94 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.service.AsyncJobService.JobStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ca.uhn.fhir.context.FhirContext;
+
+/**
+ * Prüft die Begrenzung des Statusspeichers asynchroner Aufträge mit Ablage auf der
+ * Platte und das Aufräumen abgelaufener Ablagen.
+ */
+class AsyncJobServiceTests {
+
+    private static final int MAX_JOBS = 3;
+
+    @TempDir
+    Path persistenceDir;
+
+    private AsyncJobService asyncJobService;
+
+    @BeforeEach
+    void setUp() {
+        asyncJobService = new AsyncJobService(new FhirResponseService(FhirContext.forR4()), new ObjectMapper());
+        ReflectionTestUtils.setField(asyncJobService, "threads", 1);
+        ReflectionTestUtils.setField(asyncJobService, "queueCapacity", 16);
+        ReflectionTestUtils.setField(asyncJobService, "maxJobs", MAX_JOBS);
+        ReflectionTestUtils.setField(asyncJobService, "retentionMinutes", 60L);
+        ReflectionTestUtils.setField(asyncJobService, "persistenceDir", persistenceDir.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(asyncJobService, "shutdown");
+    }
+
+    @Test
+    void evictionKeepsMemoryBoundedAndResultsOnDisk() throws Exception {
+        ReflectionTestUtils.invokeMethod(asyncJobService, "init");
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String id = asyncJobService.submit(() -> ResponseEntity.status(201).body("{}"));
+            ids.add(id);
+            awaitDone(id);
+        }
+
+        assertTrue(((Collection<?>) ReflectionTestUtils.getField(asyncJobService, "order")).size() <= MAX_JOBS);
+        JobStatus evicted = asyncJobService.getStatus(ids.get(0));
+        assertNotNull(evicted);
+        assertEquals(201, evicted.getHttpStatus());
+    }
+
+    @Test
+    void purgesExpiredStoredResultsOnStartup() throws Exception {
+        Path expired = persistenceDir.resolve("00000000-0000-0000-0000-000000000001.json");
+        Path recent = persistenceDir.resolve("00000000-0000-0000-0000-000000000002.json");
+        Files.writeString(expired, "{}");
+        Files.writeString(recent, "{}");
+        Files.setLastModifiedTime(expired, FileTime.from(Instant.now().minus(2, ChronoUnit.HOURS)));
+
+        ReflectionTestUtils.invokeMethod(asyncJobService, "init");
+
+        assertTrue(Files.notExists(expired));
+        assertTrue(Files.exists(recent));
+    }
+
+    private void awaitDone(String id) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!asyncJobService.getStatus(id).isDone()) {
+            assertTrue(System.nanoTime() < deadline, "Job " + id + " did not finish");
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.util.BinaryNotFoundException;
+import com.example.demo.util.FileSlice;
+import com.example.demo.util.PayloadTooLargeException;
+
+/**
+ * Prüft Ablage, Existenzprüfung, Größenlimit und Aufbewahrung des Binary-Speichers sowie
+ * die Meldung einer nach der Validierung gelöschten Binary.
+ */
+class BinaryStoreServiceTests {
+
+    @TempDir
+    Path storeDir;
+
+    private BinaryStoreService binaryStoreService;
+
+    @BeforeEach
+    void setUp() {
+        binaryStoreService = new BinaryStoreService();
+        ReflectionTestUtils.setField(binaryStoreService, "storeDir", storeDir.toString());
+        ReflectionTestUtils.setField(binaryStoreService, "maxBytes", 16L);
+        ReflectionTestUtils.setField(binaryStoreService, "retentionHours", 1L);
+        ReflectionTestUtils.invokeMethod(binaryStoreService, "initStore");
+    }
+
+    @Test
+    void storesBase64AndResolvesKnownBinaries() throws IOException {
+        String id = binaryStoreService.store(stream("ABCDEFGH"));
+
+        assertTrue(binaryStoreService.exists("Binary/" + id));
+        assertTrue(binaryStoreService.exists("http://example.org/fhir/Binary/" + id));
+        FileSlice slice = binaryStoreService.resolve("Binary/" + id);
+        assertEquals("QUJDREVGR0g=", new String(Files.readAllBytes(slice.getPath()), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void reportsUnknownBinariesAsMissing() {
+        assertTrue(binaryStoreService.isBinaryReference("Binary/unknown"));
+        assertFalse(binaryStoreService.exists("Binary/unknown"));
+        assertFalse(binaryStoreService.exists("Patient/1"));
+        assertFalse(binaryStoreService.exists(null));
+    }
+
+    @Test
+    void rejectsUploadsAboveLimitWithoutLeavingFiles() throws IOException {
+        assertThrows(PayloadTooLargeException.class, () -> binaryStoreService.store(stream("0123456789abcdefX")));
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void purgesExpiredBinariesAndIncompleteUploadsOnStartup() throws IOException {
+        String id = binaryStoreService.store(stream("ABCD"));
+        Path stored = storeDir.resolve(id + ".b64");
+        Files.setLastModifiedTime(stored, FileTime.from(Instant.now().minus(2, ChronoUnit.HOURS)));
+        Files.createFile(storeDir.resolve("abgebrochen.part"));
+        String fresh = binaryStoreService.store(stream("EFGH"));
+
+        ReflectionTestUtils.invokeMethod(binaryStoreService, "initStore");
+
+        assertFalse(binaryStoreService.exists("Binary/" + id));
+        assertTrue(binaryStoreService.exists("Binary/" + fresh));
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    void reportsBinaryPurgedAfterValidationAsNotFound() throws IOException {
+        String id = binaryStoreService.store(stream("ABCD"));
+        assertTrue(binaryStoreService.exists("Binary/" + id));
+
+        // Aufbewahrungsfrist läuft zwischen Validierung und Auflösen ab
+        Files.delete(storeDir.resolve(id + ".b64"));
+
+        BinaryNotFoundException e = assertThrows(BinaryNotFoundException.class,
+                () -> binaryStoreService.resolve("Binary/" + id));
+        assertEquals("Binary/" + id, e.getUrl());
+        assertFalse(assertThrows(IllegalArgumentException.class,
+                () -> binaryStoreService.resolve("Patient/1")) instanceof BinaryNotFoundException);
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(storeDir)) {
+            return files.count();
+        }
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII));
+    }
+}
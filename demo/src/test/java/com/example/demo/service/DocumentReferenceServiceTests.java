@@ -0,0 +1,109 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hl7.fhir.r4.model.Attachment;
+import org.hl7.fhir.r4.model.DocumentReference;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.dto.DocumentDTO;
+import com.example.demo.mapping.FhirMappingService;
+import com.example.demo.util.FileSlice;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ca.uhn.fhir.context.FhirContext;
+
+/**
+ * Prüft die Aufteilung einer DocumentReference mit mehreren content-Einträgen in je ein
+ * DocumentDTO mit eigenem Erstellungsdatum und eigener Inhaltsquelle (inline, Binary,
+ * ausgelagerter Körper).
+ */
+class DocumentReferenceServiceTests {
+
+    private static final String KDL_SYSTEM = "http://dvmd.de/fhir/CodeSystem/kdl";
+
+    @TempDir
+    Path tempDir;
+
+    private BinaryStoreService binaryStoreService;
+    private DocumentReferenceService documentReferenceService;
+
+    @BeforeEach
+    void setUp() {
+        FhirMappingService mappingService = new FhirMappingService(FhirContext.forR4(), new ObjectMapper());
+        ReflectionTestUtils.setField(mappingService, "mappingLocation", "classpath:mappings/*.json");
+        ReflectionTestUtils.invokeMethod(mappingService, "loadMappings");
+
+        binaryStoreService = new BinaryStoreService();
+        ReflectionTestUtils.setField(binaryStoreService, "storeDir", tempDir.resolve("binaries").toString());
+        ReflectionTestUtils.setField(binaryStoreService, "maxBytes", 1024L);
+        ReflectionTestUtils.setField(binaryStoreService, "retentionHours", 1L);
+        ReflectionTestUtils.invokeMethod(binaryStoreService, "initStore");
+
+        documentReferenceService = new DocumentReferenceService(null, binaryStoreService, mappingService);
+    }
+
+    @Test
+    void createsOneDocumentPerContentEntryWithItsDateAndSource() throws IOException {
+        String binaryId = binaryStoreService.store(new ByteArrayInputStream("XYZ".getBytes(StandardCharsets.US_ASCII)));
+        DocumentReference documentReference = documentReference();
+        addContent(documentReference, "2024-05-17").setData("ABC".getBytes(StandardCharsets.US_ASCII));
+        addContent(documentReference, "2024-05").setUrl("Binary/" + binaryId);
+        addContent(documentReference, "2023").setData("DEF".getBytes(StandardCharsets.US_ASCII));
+        FileSlice spooled = new FileSlice(Files.createFile(tempDir.resolve("body.json")), 100, 4);
+
+        List<DocumentDTO> documents = documentReferenceService.processDocumentReference(documentReference,
+                Arrays.asList(null, null, spooled));
+
+        assertEquals(3, documents.size());
+        for (DocumentDTO document : documents) {
+            assertEquals("PT130102", document.getKdlCode());
+            assertEquals("123", document.getPatientId());
+            assertEquals("456", document.getVisitNumber());
+        }
+        assertEquals("17.05.2024", documents.get(0).getDateCreated());
+        assertEquals("05.2024", documents.get(1).getDateCreated());
+        assertEquals("2023", documents.get(2).getDateCreated());
+
+        // Inline ohne ausgelagerten Bereich: Base64 aus der Ressource
+        assertEquals("QUJD", documents.get(0).getContentB64());
+        assertNull(documents.get(0).getContentSlice());
+        // Binary-Referenz: Datei des Binary-Speichers
+        FileSlice binary = documents.get(1).getContentSlice();
+        assertNull(documents.get(1).getContentB64());
+        assertEquals("WFla", new String(Files.readAllBytes(binary.getPath()), StandardCharsets.US_ASCII));
+        assertEquals(0, binary.getOffset());
+        assertEquals(4, binary.getLength());
+        // Ausgelagerter Körper: Bereich der Spool-Datei
+        assertSame(spooled, documents.get(2).getContentSlice());
+        assertNull(documents.get(2).getContentB64());
+    }
+
+    private static DocumentReference documentReference() {
+        DocumentReference documentReference = new DocumentReference();
+        documentReference.getType().addCoding().setSystem(KDL_SYSTEM).setCode("PT130102");
+        documentReference.setSubject(new Reference("Patient/123"));
+        documentReference.getContext().addEncounter(new Reference("Encounter/456"));
+        return documentReference;
+    }
+
+    private static Attachment addContent(DocumentReference documentReference, String creation) {
+        Attachment attachment = documentReference.addContent().getAttachment();
+        attachment.getCreationElement().setValueAsString(creation);
+        return attachment;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.dto.DocumentDTO;
+import com.example.demo.dto.PersonDTO;
+import com.example.demo.util.FileSlice;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Prüft die Schema-Regeln für ausgehende DTOs: Pflichtfelder, als String modellierte
+ * Zahlen, den nur auf Vorhandensein geprüften Dokumentinhalt und das Abschalten.
+ */
+class DtoContractServiceTests {
+
+    private DtoContractService contractService;
+
+    @BeforeEach
+    void setUp() {
+        contractService = new DtoContractService(new ObjectMapper());
+        ReflectionTestUtils.setField(contractService, "enabled", true);
+        ReflectionTestUtils.invokeMethod(contractService, "compileContracts");
+    }
+
+    @Test
+    void acceptsValidDtos() {
+        assertTrue(contractService.check(new PersonDTO("Peter James", "Chalmers", "25.12.1974")).isEmpty());
+        assertTrue(contractService.check(new DocumentDTO("PT130102", "42", "4711", "31.12.2020", "QUJD"))
+                .isEmpty());
+    }
+
+    @Test
+    void reportsMissingRequiredPropertiesBySchemaName() {
+        // Reihenfolge der Properties im Schema
+        assertEquals(List.of("PersonLastName: required property is missing", "PersonDOB: required property is missing"),
+                contractService.check(new PersonDTO("Peter", null, null)));
+    }
+
+    @Test
+    void checksNumbersModelledAsStringsByTheirLexicalForm() {
+        List<String> violations = contractService.check(
+                new DocumentDTO("PT130102", "P-42", "-4711", "31.12.2020", "QUJD"));
+
+        assertEquals(List.of("patientId: expected number"), violations);
+    }
+
+    @Test
+    void acceptsSpooledContentWithoutReadingIt() {
+        DocumentDTO document = new DocumentDTO("PT130102", "42", "4711", "31.12.2020", null);
+        assertEquals(List.of("contentB64: required property is missing"), contractService.check(document));
+
+        // Die Datei existiert nicht: gelesen werden darf sie für die Prüfung nicht
+        document.setContentSlice(new FileSlice(Paths.get("does-not-exist.json"), 0, 1024));
+        assertTrue(contractService.check(document).isEmpty());
+    }
+
+    @Test
+    void skipsDisabledChecksAndUnknownTypes() {
+        assertTrue(contractService.check("kein DTO").isEmpty());
+        assertTrue(contractService.check(null).isEmpty());
+
+        ReflectionTestUtils.setField(contractService, "enabled", false);
+        assertTrue(contractService.check(new PersonDTO(null, null, null)).isEmpty());
+    }
+}
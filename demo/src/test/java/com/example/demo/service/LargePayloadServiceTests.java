@@ -0,0 +1,91 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.hl7.fhir.r4.model.DocumentReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.util.FhirMessages;
+import com.example.demo.util.SpooledBody;
+import com.example.demo.util.ValidationReport;
+
+import ca.uhn.fhir.context.FhirContext;
+
+/**
+ * Prüft Parsen und Datenprüfung von DocumentReferences im Speicher und nach dem Auslagern.
+ */
+class LargePayloadServiceTests {
+
+    private static final String TEMPLATE = "{\"resourceType\":\"DocumentReference\",\"status\":\"current\","
+            + "\"content\":[{\"attachment\":{\"contentType\":\"application/pdf\",\"data\":\"%s\"}}]}";
+
+    @TempDir
+    Path tempDir;
+
+    private LargePayloadService largePayloadService;
+
+    @BeforeEach
+    void setUp() {
+        largePayloadService = new LargePayloadService(FhirContext.forR4().newJsonParser());
+        ReflectionTestUtils.setField(largePayloadService, "tempDir", tempDir.toString());
+    }
+
+    @Test
+    void parsesSpooledBodyWithPlaceholderData() throws IOException {
+        ReflectionTestUtils.setField(largePayloadService, "thresholdBytes", 16L);
+        try (SpooledBody body = spool(String.format(TEMPLATE, "QUJDREVGR0g="))) {
+            assertTrue(body.isSpooled());
+            assertTrue(largePayloadService.checkAttachmentData(body).isValid());
+            DocumentReference documentReference = largePayloadService.parseDocumentReference(body);
+            assertTrue(documentReference.getContentFirstRep().getAttachment().hasData());
+            assertEquals(12, body.getDataSlices().get(0).getLength());
+        }
+    }
+
+    @Test
+    void rejectsEscapedDataOnlyWhenSpooled() throws IOException {
+        String json = String.format(TEMPLATE, "QUJD\\/EVGR0g=");
+
+        ReflectionTestUtils.setField(largePayloadService, "thresholdBytes", 1024L);
+        try (SpooledBody body = spool(json)) {
+            assertTrue(largePayloadService.checkAttachmentData(body).isValid());
+        }
+
+        ReflectionTestUtils.setField(largePayloadService, "thresholdBytes", 16L);
+        try (SpooledBody body = spool(json)) {
+            assertIssue(largePayloadService.checkAttachmentData(body), FhirMessages.ATTACHMENT_DATA_ESCAPED);
+        }
+    }
+
+    @Test
+    void rejectsEmptyAndNonBase64Data() throws IOException {
+        ReflectionTestUtils.setField(largePayloadService, "thresholdBytes", 1024L);
+        try (SpooledBody body = spool(String.format(TEMPLATE, ""))) {
+            assertIssue(largePayloadService.checkAttachmentData(body), FhirMessages.ATTACHMENT_DATA_EMPTY);
+        }
+        try (SpooledBody body = spool(String.format(TEMPLATE, "kein base64!"))) {
+            assertIssue(largePayloadService.checkAttachmentData(body), FhirMessages.ATTACHMENT_DATA_NOT_BASE64);
+        }
+    }
+
+    private SpooledBody spool(String json) throws IOException {
+        return largePayloadService.spool(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void assertIssue(ValidationReport report, String message) {
+        assertFalse(report.isValid());
+        assertEquals(1, report.getIssues().size());
+        assertEquals(message, report.getIssues().get(0).getMessage());
+        assertEquals("DocumentReference.content[0].attachment.data", report.getIssues().get(0).getLocation());
+    }
+}
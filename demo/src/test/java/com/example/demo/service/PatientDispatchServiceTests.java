@@ -0,0 +1,294 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.dto.DocumentDTO;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Prüft die Reihenfolge pro Patient (auch über Bulkheads hinweg), die Parallelität
+ * zwischen Patienten, die Lane-Grenze eines Bulkheads (ohne wartende Lane-Threads) und
+ * die Ablehnung bei voller Lane sowie die Obergrenze gleichzeitiger Uploads der
+ * content-Einträge einer DocumentReference.
+ */
+class PatientDispatchServiceTests {
+
+    private static final int LANES = 2;
+
+    private SimpleMeterRegistry meterRegistry;
+    private BulkheadService bulkheadService;
+    private PatientDispatchService dispatchService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bulkheadService = new BulkheadService(meterRegistry);
+        ReflectionTestUtils.setField(bulkheadService, "personMaxConcurrent", 64);
+        ReflectionTestUtils.setField(bulkheadService, "personMaxWaitMs", 50L);
+        ReflectionTestUtils.setField(bulkheadService, "personLanes", LANES);
+        ReflectionTestUtils.setField(bulkheadService, "personConnections", 1);
+        ReflectionTestUtils.setField(bulkheadService, "documentMaxConcurrent", 8);
+        ReflectionTestUtils.setField(bulkheadService, "documentMaxWaitMs", 50L);
+        ReflectionTestUtils.setField(bulkheadService, "documentLanes", 1);
+        ReflectionTestUtils.setField(bulkheadService, "documentConnections", 1);
+        ReflectionTestUtils.invokeMethod(bulkheadService, "createBulkheads");
+
+        dispatchService = newDispatchService(null, 1, 1);
+    }
+
+    private PatientDispatchService newDispatchService(ProprietaryApiService api, int partParallelism,
+            int partThreads) {
+        PatientDispatchService service = new PatientDispatchService(api, bulkheadService, meterRegistry);
+        ReflectionTestUtils.setField(service, "laneCount", LANES);
+        ReflectionTestUtils.setField(service, "queueCapacity", 4);
+        ReflectionTestUtils.setField(service, "offerTimeoutMs", 50L);
+        ReflectionTestUtils.setField(service, "hotThreshold", 1000);
+        ReflectionTestUtils.setField(service, "partParallelism", partParallelism);
+        ReflectionTestUtils.setField(service, "partThreads", partThreads);
+        ReflectionTestUtils.invokeMethod(service, "startLanes");
+        return service;
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(dispatchService, "stopLanes");
+    }
+
+    @Test
+    void keepsSubmissionOrderPerPatient() {
+        Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String patient = "p" + (i % 5);
+            int sequence = i;
+            futures.add(submitWithRetry(patient, () -> {
+                seen.computeIfAbsent(patient, key -> Collections.synchronizedList(new ArrayList<>())).add(sequence);
+                return sequence;
+            }));
+        }
+        futures.forEach(CompletableFuture::join);
+
+        for (Map.Entry<String, List<Integer>> entry : seen.entrySet()) {
+            List<Integer> sequences = entry.getValue();
+            for (int i = 1; i < sequences.size(); i++) {
+                assertTrue(sequences.get(i - 1) < sequences.get(i), "Out of order for " + entry.getKey());
+            }
+        }
+        assertEquals(200, seen.values().stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    void blockedPatientDoesNotDelayPatientOnOtherLane() throws Exception {
+        String blocked = "p0";
+        String other = keyOnOtherLane(blocked);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Boolean> slow = dispatchService.submit(BulkheadService.PERSON, blocked, () -> await(release));
+        CompletableFuture<String> fast = dispatchService.submit(BulkheadService.PERSON, other, () -> "done");
+
+        assertEquals("done", fast.get(5, TimeUnit.SECONDS));
+        release.countDown();
+        assertTrue(slow.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void tasksWithoutPartitionKeyAreUnordered() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> blocked = dispatchService.submit(BulkheadService.PERSON, "p0", () -> await(release));
+
+        // Ein Patient ohne ID ist an keine Lane gebunden und wartet nicht auf die belegte
+        assertEquals("done", dispatchService.submit(BulkheadService.PERSON, null, () -> "done")
+                .get(5, TimeUnit.SECONDS));
+        release.countDown();
+        assertTrue(blocked.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void waitingCallerGetsFreedQueueSlot() throws Exception {
+        ReflectionTestUtils.setField(dispatchService, "offerTimeoutMs", 5000L);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 5; i++) {
+            dispatchService.submit(BulkheadService.PERSON, "p0", () -> await(release));
+        }
+
+        // Der Aufrufer wartet blockierend und übernimmt den ersten frei werdenden Platz
+        CompletableFuture<String> waiting = CompletableFuture.supplyAsync(
+                () -> dispatchService.submit(BulkheadService.PERSON, "p0", () -> "done").join());
+        assertThrows(TimeoutException.class, () -> waiting.get(100, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertEquals("done", waiting.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void patientDataPrecedesDocumentsOfSamePatient() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        CompletableFuture<Boolean> person = dispatchService.submit(BulkheadService.PERSON, "p0", () -> {
+            boolean released = await(release);
+            order.add("person");
+            return released;
+        });
+        CompletableFuture<Boolean> document = dispatchService.submit(BulkheadService.DOCUMENT, "p0",
+                () -> order.add("document"));
+
+        assertThrows(TimeoutException.class, () -> document.get(100, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertTrue(person.get(5, TimeUnit.SECONDS));
+        assertTrue(document.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("person", "document"), order);
+    }
+
+    @Test
+    void documentsOccupyOnlyTheirLanesWhilePatientsPass() throws Exception {
+        ReflectionTestUtils.setField(dispatchService, "offerTimeoutMs", 5000L);
+        String first = "p0";
+        String second = keyOnOtherLane(first);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Der Dokument-Bulkhead darf nur eine Lane belegen; die andere bleibt für Patienten frei
+        CompletableFuture<Boolean> slow = dispatchService.submit(BulkheadService.DOCUMENT, first, () -> await(release));
+        assertEquals("person", dispatchService.submit(BulkheadService.PERSON, second, () -> "person")
+                .get(5, TimeUnit.SECONDS));
+
+        // Das zweite Dokument wartet beim Aufrufer, nicht in der Lane von "second"
+        CompletableFuture<String> waiting = CompletableFuture.supplyAsync(
+                () -> dispatchService.submit(BulkheadService.DOCUMENT, second, () -> "done").join());
+        assertThrows(TimeoutException.class, () -> waiting.get(100, TimeUnit.MILLISECONDS));
+        assertEquals("person", dispatchService.submit(BulkheadService.PERSON, keyOnSameLane(second), () -> "person")
+                .get(5, TimeUnit.SECONDS));
+        assertThrows(TimeoutException.class, () -> waiting.get(0, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        assertTrue(slow.get(5, TimeUnit.SECONDS));
+        assertEquals("done", waiting.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void documentsShareOccupiedLaneWithoutWaiting() throws Exception {
+        String first = "p0";
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Boolean> slow = dispatchService.submit(BulkheadService.DOCUMENT, first, () -> await(release));
+        // Eine bereits belegte Lane nimmt weitere Dokumente auf, ohne dass der Aufrufer wartet
+        CompletableFuture<String> queued = dispatchService.submit(BulkheadService.DOCUMENT, keyOnSameLane(first),
+                () -> "queued");
+        release.countDown();
+        assertTrue(slow.get(5, TimeUnit.SECONDS));
+        assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectsWhenLaneStaysFull() {
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // Ein laufender Auftrag plus volle Warteschlange (Kapazität 4)
+            for (int i = 0; i < 5; i++) {
+                dispatchService.submit(BulkheadService.PERSON, "p0", () -> await(release));
+            }
+            assertThrows(RejectedExecutionException.class,
+                    () -> dispatchService.submit(BulkheadService.PERSON, "p0", () -> true));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void uploadsDocumentPartsWithBoundedParallelism() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        ProprietaryApiService api = new ProprietaryApiService(null, meterRegistry, null, null, null) {
+            @Override
+            public boolean sendDocumentData(DocumentDTO documentDTO) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                return !"fail".equals(documentDTO.getVisitNumber());
+            }
+        };
+        // Mehr Threads als erlaubte Uploads, damit nur partParallelism begrenzt
+        PatientDispatchService parts = newDispatchService(api, 3, 8);
+        try {
+            List<DocumentDTO> documents = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                documents.add(new DocumentDTO("PT130102", "p0", i == 5 ? "fail" : "v" + i, "17.05.2024", "QUJD"));
+            }
+
+            boolean[] sent = parts.sendDocumentParts(documents);
+
+            assertEquals(12, sent.length);
+            for (int i = 0; i < sent.length; i++) {
+                assertEquals(i != 5, sent[i], "part " + i);
+            }
+            assertTrue(maxInFlight.get() <= 3, "max in flight " + maxInFlight.get());
+            assertTrue(maxInFlight.get() > 1, "parts were not uploaded concurrently");
+        } finally {
+            ReflectionTestUtils.invokeMethod(parts, "stopLanes");
+        }
+    }
+
+    private <T> CompletableFuture<T> submitWithRetry(String patient, Supplier<T> task) {
+        while (true) {
+            try {
+                return dispatchService.submit(BulkheadService.PERSON, patient, task);
+            } catch (RejectedExecutionException e) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static String keyOnOtherLane(String key) {
+        int lane = Math.floorMod(key.hashCode(), LANES);
+        for (int i = 1;; i++) {
+            String candidate = "p" + i;
+            if (Math.floorMod(candidate.hashCode(), LANES) != lane) {
+                return candidate;
+            }
+        }
+    }
+
+    private static String keyOnSameLane(String key) {
+        int lane = Math.floorMod(key.hashCode(), LANES);
+        for (int i = 1;; i++) {
+            String candidate = "q" + i;
+            if (!candidate.equals(key) && Math.floorMod(candidate.hashCode(), LANES) == lane) {
+                return candidate;
+            }
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
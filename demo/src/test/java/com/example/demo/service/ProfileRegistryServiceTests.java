@@ -0,0 +1,222 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.CodeSystem;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.StructureDefinition;
+import org.hl7.fhir.r4.model.ValueSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.support.IValidationSupport;
+import ca.uhn.fhir.validation.FhirValidator;
+
+/**
+ * Prüft das Indizieren von FHIR-NPM-Paketen (inkl. langer Dateinamen per pax-Header),
+ * die Auflösung des Pakets über {@code meta.profile}, das typgerechte Laden von
+ * Artefakten mit gemeinsamer URL, die Bindung der Validatoren an ihre Kette sowie das
+ * Prüfen und Vorabladen der Artefakte beim Neuaufbau, bei dem gecachte Paketketten
+ * unveränderte Artefakte behalten.
+ */
+class ProfileRegistryServiceTests {
+
+    private static final String PACKAGE_ID = "example.test#1.0.0";
+    private static final String PROFILE_URL = "http://example.org/fhir/StructureDefinition/TestPatient";
+    private static final String SHARED_URL = "http://example.org/fhir/shared";
+    private static final String LOCAL_PROFILE_URL = "http://example.org/fhir/StructureDefinition/LocalPatient";
+    private static final String PATIENT_BASE = "http://hl7.org/fhir/StructureDefinition/Patient";
+
+    @TempDir
+    Path packagesDir;
+
+    private ProfileRegistryService registry;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        writePackage(packagesDir.resolve("example.test-1.0.0.tgz"));
+        registry = new ProfileRegistryService(FhirContext.forR4(), new ObjectMapper());
+        ReflectionTestUtils.setField(registry, "packagesDir", packagesDir.toString());
+        ReflectionTestUtils.setField(registry, "validatorCacheBytes", 1L << 30);
+        ReflectionTestUtils.invokeMethod(registry, "buildIndex");
+    }
+
+    @Test
+    void indexesPackageEntriesWithLongNames() {
+        assertTrue(registry.isKnownProfile(PROFILE_URL));
+        assertFalse(registry.isKnownProfile(SHARED_URL));
+
+        Patient patient = new Patient();
+        patient.getMeta().addProfile(PROFILE_URL);
+        assertEquals(PACKAGE_ID, registry.resolvePackage(patient, null));
+    }
+
+    @Test
+    void fetchesArtifactsByTypeWhenUrlsCollide() {
+        IValidationSupport support = registry.getValidationSupport(PACKAGE_ID);
+
+        IBaseResource codeSystem = support.fetchCodeSystem(SHARED_URL);
+        IBaseResource valueSet = support.fetchValueSet(SHARED_URL);
+        assertTrue(codeSystem instanceof CodeSystem);
+        assertTrue(valueSet instanceof ValueSet);
+        assertNotNull(support.fetchStructureDefinition(PROFILE_URL));
+    }
+
+    @Test
+    void reusesLoadedArtifactsAndChains() {
+        IValidationSupport support = registry.getValidationSupport(PACKAGE_ID);
+        IBaseResource first = support.fetchStructureDefinition(PROFILE_URL);
+
+        assertSame(support, registry.getValidationSupport(PACKAGE_ID));
+        assertSame(first, support.fetchStructureDefinition(PROFILE_URL));
+        assertTrue(first instanceof StructureDefinition);
+    }
+
+    @Test
+    void reusesValidatorsOnlyWhileTheirChainIsCached() {
+        FhirValidator first = registry.withValidator(PACKAGE_ID, validator -> validator);
+        assertSame(first, registry.withValidator(PACKAGE_ID, validator -> validator));
+
+        // Gleichzeitige Aufrufer erhalten verschiedene Validatoren
+        FhirValidator nested = registry.withValidator(PACKAGE_ID,
+                outer -> registry.withValidator(PACKAGE_ID, inner -> {
+                    assertNotSame(outer, inner);
+                    return inner;
+                }));
+        assertNotNull(nested);
+
+        // Die Kette des Pakets hat ein Artefakt geladen und wird verdrängt, sobald eine
+        // andere Kette entsteht und die Grenze überschritten ist
+        IValidationSupport before = registry.getValidationSupport(PACKAGE_ID);
+        before.fetchStructureDefinition(PROFILE_URL);
+        ReflectionTestUtils.setField(registry, "validatorCacheBytes", 1L);
+        registry.getValidationSupport(ProfileRegistryService.BUNDLED_PACKAGE);
+
+        assertNotSame(before, registry.getValidationSupport(PACKAGE_ID));
+        assertNotSame(first, registry.withValidator(PACKAGE_ID, validator -> validator));
+    }
+
+    @Test
+    void reloadRejectsUnparsableArtifacts() throws IOException {
+        Path artifacts = artifactsDirectory();
+        Files.writeString(artifacts.resolve("broken.json"), "{\"resourceType\":\"StructureDefinition\",\"url\":\""
+                + LOCAL_PROFILE_URL + "\",\"status\":\"unbekannt\"}");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, registry::prepareReload);
+        assertTrue(e.getMessage().contains("broken.json"), e.getMessage());
+    }
+
+    @Test
+    void reloadRejectsProfilesWithUnknownElementsOrBase() throws IOException {
+        Path artifacts = artifactsDirectory();
+        Path file = artifacts.resolve("local.json");
+
+        Files.writeString(file, profile(PATIENT_BASE, "Patient.name"));
+        ProfileRegistryService.PreparedIndex prepared = registry.prepareReload();
+        assertNotNull(prepared.getBundledSupport().fetchStructureDefinition(LOCAL_PROFILE_URL));
+
+        Files.writeString(file, profile(PATIENT_BASE, "Patient.nme"));
+        assertThrows(IllegalStateException.class, registry::prepareReload);
+
+        Files.writeString(file, profile("http://example.org/fhir/StructureDefinition/Unknown", "Patient.name"));
+        assertThrows(IllegalStateException.class, registry::prepareReload);
+    }
+
+    @Test
+    void chainsKeepArtifactsAfterFileIsDeleted() throws IOException {
+        Path file = artifactsDirectory().resolve("local.json");
+        Files.writeString(file, profile(PATIENT_BASE, "Patient.name"));
+        ReflectionTestUtils.invokeMethod(registry, "buildIndex");
+        IValidationSupport support = registry.getValidationSupport(ProfileRegistryService.BUNDLED_PACKAGE);
+
+        Files.delete(file);
+
+        assertNotNull(support.fetchStructureDefinition(LOCAL_PROFILE_URL));
+    }
+
+    @Test
+    void reloadKeepsUnchangedArtifactsOfCachedPackages() throws IOException {
+        IValidationSupport before = registry.getValidationSupport(PACKAGE_ID);
+        IBaseResource profile = before.fetchStructureDefinition(PROFILE_URL);
+        IBaseResource codeSystem = before.fetchCodeSystem(SHARED_URL);
+        writePackage(packagesDir.resolve("example.test-1.0.0.tgz"), "b");
+
+        registry.activate(registry.prepareReload());
+
+        IValidationSupport after = registry.getValidationSupport(PACKAGE_ID);
+        assertNotSame(before, after);
+        assertSame(profile, after.fetchStructureDefinition(PROFILE_URL));
+        CodeSystem reloaded = (CodeSystem) after.fetchCodeSystem(SHARED_URL);
+        assertNotSame(codeSystem, reloaded);
+        assertEquals(2, reloaded.getConcept().size());
+    }
+
+    private Path artifactsDirectory() throws IOException {
+        Path artifacts = Files.createDirectories(packagesDir.resolve("artifacts"));
+        ReflectionTestUtils.setField(registry, "artifactsDir", artifacts.toString());
+        return artifacts;
+    }
+
+    private static String profile(String baseDefinition, String constrainedPath) {
+        return "{\"resourceType\":\"StructureDefinition\",\"url\":\"" + LOCAL_PROFILE_URL + "\",\"version\":\"1.0.0\","
+                + "\"name\":\"LocalPatient\",\"status\":\"active\",\"kind\":\"resource\",\"abstract\":false,"
+                + "\"type\":\"Patient\",\"baseDefinition\":\"" + baseDefinition + "\",\"derivation\":\"constraint\","
+                + "\"differential\":{\"element\":[{\"id\":\"" + constrainedPath + "\",\"path\":\"" + constrainedPath
+                + "\",\"min\":1}]}}";
+    }
+
+    private static void writePackage(Path archive, String... extraCodes) throws IOException {
+        StringBuilder concepts = new StringBuilder("{\"code\":\"a\"}");
+        for (String code : extraCodes) {
+            concepts.append(",{\"code\":\"").append(code).append("\"}");
+        }
+        try (OutputStream out = Files.newOutputStream(archive);
+                TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(out))) {
+            tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            add(tar, "package/package.json", "{\"name\":\"example.test\",\"version\":\"1.0.0\"}");
+            // Länger als die 100 Zeichen des ustar-Namensfelds, daher per pax-Header
+            add(tar, "package/StructureDefinition-" + "a".repeat(100) + ".json",
+                    "{\"resourceType\":\"StructureDefinition\",\"url\":\"" + PROFILE_URL + "\",\"version\":\"1.0.0\","
+                            + "\"name\":\"TestPatient\",\"status\":\"active\",\"kind\":\"resource\","
+                            + "\"abstract\":false,\"type\":\"Patient\","
+                            + "\"baseDefinition\":\"http://hl7.org/fhir/StructureDefinition/Patient\","
+                            + "\"derivation\":\"constraint\"}");
+            add(tar, "package/CodeSystem-shared.json",
+                    "{\"resourceType\":\"CodeSystem\",\"url\":\"" + SHARED_URL + "\",\"version\":\"1.0.0\","
+                            + "\"status\":\"active\",\"content\":\"complete\",\"concept\":[" + concepts + "]}");
+            add(tar, "package/ValueSet-shared.json",
+                    "{\"resourceType\":\"ValueSet\",\"url\":\"" + SHARED_URL + "\",\"version\":\"1.0.0\","
+                            + "\"status\":\"active\",\"compose\":{\"include\":[{\"system\":\"" + SHARED_URL + "\"}]}}");
+        }
+    }
+
+    private static void add(TarArchiveOutputStream tar, String name, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(bytes.length);
+        tar.putArchiveEntry(entry);
+        tar.write(bytes);
+        tar.closeArchiveEntry();
+    }
+}
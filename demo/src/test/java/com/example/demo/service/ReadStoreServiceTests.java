@@ -0,0 +1,232 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.example.demo.controller.ReadController;
+import com.example.demo.dto.DocumentDTO;
+import com.example.demo.dto.PersonDTO;
+import com.example.demo.service.ReadStoreService.DateRange;
+import com.example.demo.service.ReadStoreService.DocumentRecord;
+import com.example.demo.service.ReadStoreService.Page;
+import com.example.demo.util.PartialDate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ca.uhn.fhir.context.FhirContext;
+
+/**
+ * Prüft Wiedereinlesen und Kompaktierung der NDJSON-Datei, die Behandlung einer
+ * abgeschnittenen letzten Zeile, die Indexsuche, Datumsbereiche und das Paging.
+ */
+class ReadStoreServiceTests {
+
+    @TempDir
+    Path storeDir;
+
+    private Path storeFile;
+    private final List<ReadStoreService> opened = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        storeFile = storeDir.resolve("read-store.ndjson");
+    }
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(service -> ReflectionTestUtils.invokeMethod(service, "close"));
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void replaysPatientsAndDocumentsAfterRestart() {
+        ReadStoreService first = open();
+        first.recordPatient("p1", new PersonDTO("Anna", "Alt", "01.02.1980"), 201);
+        first.recordPatient("p1", new PersonDTO("Anna", "Neu", "01.02.1980"), 201);
+        first.recordDocument(new DocumentDTO("PT130102", "p1", "v1", "17.05.2024", null), 201);
+        first.recordDocument(new DocumentDTO("PT130102", "p1", "v2", "18.05.2024", null), 500);
+
+        ReadStoreService second = open();
+
+        assertEquals("Neu", second.findPatient("p1").lastName);
+        Page<DocumentRecord> page = second.searchDocuments("p1", null, null, null, 0, 10);
+        assertEquals(2, page.getTotal());
+        assertEquals("v2", page.getItems().get(0).visitNumber);
+        assertEquals(500, page.getItems().get(0).status);
+    }
+
+    @Test
+    void compactsFileWhenMostEntriesAreStale() throws IOException {
+        ReadStoreService first = open();
+        for (int i = 0; i < 1100; i++) {
+            first.recordPatient("p1", new PersonDTO("Anna", "Version" + i, null), 201);
+        }
+        first.recordDocument(new DocumentDTO("PT130102", "p1", "v1", "17.05.2024", null), 201);
+        assertEquals(1101, lines());
+
+        ReadStoreService second = open();
+
+        assertEquals(2, lines());
+        assertEquals("Version1099", second.findPatient("p1").lastName);
+        assertEquals(1, second.searchDocuments("p1", null, null, null, 0, 10).getTotal());
+    }
+
+    @Test
+    void skipsTruncatedLastLineAndKeepsLaterEntries() throws IOException {
+        ReadStoreService first = open();
+        first.recordDocument(new DocumentDTO("PT130102", "p1", "v1", "17.05.2024", null), 201);
+        ReflectionTestUtils.invokeMethod(first, "close");
+        opened.remove(first);
+        Files.write(storeFile, "{\"type\":\"DocumentReference\",\"patientId\":\"p1\",\"vis"
+                .getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        ReadStoreService second = open();
+        assertEquals(1, second.searchDocuments("p1", null, null, null, 0, 10).getTotal());
+        second.recordDocument(new DocumentDTO("PT130102", "p1", "v2", "18.05.2024", null), 201);
+
+        ReadStoreService third = open();
+        Page<DocumentRecord> page = third.searchDocuments("p1", null, null, null, 0, 10);
+        assertEquals(2, page.getTotal());
+        assertEquals("v2", page.getItems().get(0).visitNumber);
+    }
+
+    @Test
+    void combinesIndexesAndFiltersRemainingCriteria() {
+        ReadStoreService service = open();
+        for (int i = 0; i < 5; i++) {
+            service.recordDocument(new DocumentDTO("PT130102", "p1", "v" + i, "17.05.2024", null), 201);
+        }
+        service.recordDocument(new DocumentDTO("AD010101", "p1", "v9", "17.05.2024", null), 201);
+        service.recordDocument(new DocumentDTO("AD010101", "p2", "v9", "18.05.2024", null), 201);
+
+        assertEquals(1, service.searchDocuments("p1", null, "AD010101", null, 0, 10).getTotal());
+        assertEquals(2, service.searchDocuments(null, "v9", null, null, 0, 10).getTotal());
+        assertEquals("p2", service.searchDocuments(null, "v9", "AD010101", DateRange.parse("ge2024-05-18"), 0, 10)
+                .getItems().get(0).patientId);
+        assertEquals(0, service.searchDocuments("p2", null, "PT130102", null, 0, 10).getTotal());
+        assertEquals(0, service.searchDocuments("unknown", null, null, null, 0, 10).getTotal());
+        assertEquals(7, service.searchDocuments(null, null, null, null, 0, 10).getTotal());
+    }
+
+    @Test
+    void searchesPartialDatesAtStoredPrecision() {
+        ReadStoreService service = open();
+        service.recordDocument(new DocumentDTO("PT130102", "p1", "day", "17.05.2024", null), 201);
+        service.recordDocument(new DocumentDTO("PT130102", "p1", "month", "05.2024", null), 201);
+        service.recordDocument(new DocumentDTO("PT130102", "p1", "year", "2024", null), 201);
+        service.recordDocument(new DocumentDTO("PT130102", "p1", "other", "03.01.2023", null), 201);
+
+        assertEquals(List.of("year", "month", "day"), visits(service, "2024-05-17"));
+        assertEquals(List.of("year", "month"), visits(service, "2024-05-20"));
+        assertEquals(List.of("year", "month", "day"), visits(service, "ge2024-05-17"));
+        assertEquals(List.of("other"), visits(service, "lt2024-05-17"));
+        assertEquals(List.of("year", "month", "day"), visits(service, "2024"));
+        assertEquals(List.of("other"), visits(service, "le2023-12"));
+    }
+
+    @Test
+    void parsesDatePrefixes() {
+        PartialDate may17 = PartialDate.parseFhir("2024-05-17");
+        PartialDate may16 = PartialDate.parseFhir("2024-05-16");
+        PartialDate may18 = PartialDate.parseFhir("2024-05-18");
+
+        DateRange eq = DateRange.parse("2024-05-17");
+        assertTrue(eq.contains(may17));
+        assertFalse(eq.contains(may16));
+        assertTrue(DateRange.parse("eq2024-05-17").contains(may17));
+        assertTrue(DateRange.parse("ge2024-05-17").contains(may17));
+        assertFalse(DateRange.parse("ge2024-05-17").contains(may16));
+        assertFalse(DateRange.parse("gt2024-05-17").contains(may17));
+        assertTrue(DateRange.parse("gt2024-05-17").contains(may18));
+        assertTrue(DateRange.parse("le2024-05-17").contains(may17));
+        assertFalse(DateRange.parse("le2024-05-17").contains(may18));
+        assertFalse(DateRange.parse("lt2024-05-17").contains(may17));
+        assertTrue(DateRange.parse("lt2024-05-17").contains(may16));
+        assertFalse(eq.contains(null));
+
+        assertThrows(IllegalArgumentException.class, () -> DateRange.parse("ne2024-05-17"));
+        assertThrows(IllegalArgumentException.class, () -> DateRange.parse("17.05.2024"));
+        assertThrows(IllegalArgumentException.class, () -> DateRange.parse("ge2024-13"));
+    }
+
+    @Test
+    void pagesNewestFirstWithNextLink() {
+        ReadStoreService service = open();
+        for (int i = 0; i < 5; i++) {
+            service.recordDocument(new DocumentDTO("PT130102", "p1", "v" + i, "17.05.2024", null), 201);
+        }
+
+        Page<DocumentRecord> second = service.searchDocuments("p1", null, null, null, 2, 2);
+        assertEquals(5, second.getTotal());
+        assertEquals(2, second.getOffset());
+        assertEquals("v2", second.getItems().get(0).visitNumber);
+        assertEquals("v1", second.getItems().get(1).visitNumber);
+        assertTrue(service.searchDocuments("p1", null, null, null, 9, 2).getItems().isEmpty());
+
+        Bundle middle = search(service, 2, 2);
+        assertEquals(5, middle.getTotal());
+        assertEquals(2, middle.getEntry().size());
+        assertNotNull(middle.getLink("next"));
+        assertTrue(middle.getLink("next").getUrl().contains("_offset=4"));
+        assertTrue(middle.getLink("next").getUrl().contains("_count=2"));
+
+        Bundle last = search(service, 4, 2);
+        assertEquals(1, last.getEntry().size());
+        assertNull(last.getLink("next"));
+    }
+
+    private ReadStoreService open() {
+        ReadStoreService service = new ReadStoreService(new ObjectMapper());
+        ReflectionTestUtils.setField(service, "storeLocation", storeFile.toString());
+        ReflectionTestUtils.invokeMethod(service, "open");
+        opened.add(service);
+        return service;
+    }
+
+    private long lines() throws IOException {
+        return Files.readAllLines(storeFile, StandardCharsets.UTF_8).stream().filter(l -> !l.isBlank()).count();
+    }
+
+    private static List<String> visits(ReadStoreService service, String date) {
+        List<String> visits = new ArrayList<>();
+        for (DocumentRecord record : service.searchDocuments(null, null, null, DateRange.parse(date), 0, 10)
+                .getItems()) {
+            visits.add(record.visitNumber);
+        }
+        return visits;
+    }
+
+    private static Bundle search(ReadStoreService service, int offset, int count) {
+        FhirContext fhirContext = FhirContext.forR4();
+        ReadController controller = new ReadController(service, new FhirResponseService(fhirContext), fhirContext);
+        ReflectionTestUtils.setField(controller, "defaultCount", 20);
+        ReflectionTestUtils.setField(controller, "maxCount", 100);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/fhir/DocumentReference");
+        request.setQueryString("patient=p1&_offset=" + offset + "&_count=" + count);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        String body = controller.searchDocumentReferences("p1", null, null, null, count, offset).getBody();
+        return fhirContext.newJsonParser().parseResource(Bundle.class, body);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Prüft die aus den Perzentilen abgeleiteten Timeouts, die Gesamtfrist und die
+ * Erfassung abgebrochener Versuche.
+ */
+class TailLatencyServiceTests {
+
+    private TailLatencyService.EndpointPolicy policy;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BulkheadService bulkheadService = new BulkheadService(meterRegistry);
+        ReflectionTestUtils.setField(bulkheadService, "personMaxConcurrent", 8);
+        ReflectionTestUtils.setField(bulkheadService, "personMaxWaitMs", 50L);
+        ReflectionTestUtils.setField(bulkheadService, "personLanes", 2);
+        ReflectionTestUtils.setField(bulkheadService, "personConnections", 1);
+        ReflectionTestUtils.setField(bulkheadService, "documentMaxConcurrent", 2);
+        ReflectionTestUtils.setField(bulkheadService, "documentMaxWaitMs", 50L);
+        ReflectionTestUtils.setField(bulkheadService, "documentLanes", 1);
+        ReflectionTestUtils.setField(bulkheadService, "documentConnections", 1);
+        ReflectionTestUtils.invokeMethod(bulkheadService, "createBulkheads");
+
+        TailLatencyService tailLatencyService = new TailLatencyService(bulkheadService, meterRegistry);
+        ReflectionTestUtils.setField(tailLatencyService, "timeoutPercentile", 0.99);
+        ReflectionTestUtils.setField(tailLatencyService, "timeoutMultiplier", 3.0);
+        ReflectionTestUtils.setField(tailLatencyService, "windowSize", 100);
+        ReflectionTestUtils.setField(tailLatencyService, "minSamples", 10);
+        ReflectionTestUtils.setField(tailLatencyService, "connectMaxMs", 2000L);
+        ReflectionTestUtils.setField(tailLatencyService, "personMinMs", 200L);
+        ReflectionTestUtils.setField(tailLatencyService, "personMaxMs", 5000L);
+        ReflectionTestUtils.setField(tailLatencyService, "personDeadlineMs", 10000L);
+        ReflectionTestUtils.setField(tailLatencyService, "documentMinMs", 2000L);
+        ReflectionTestUtils.setField(tailLatencyService, "documentMaxMs", 120000L);
+        ReflectionTestUtils.setField(tailLatencyService, "documentDeadlineMs", 300000L);
+        ReflectionTestUtils.setField(tailLatencyService, "hedgePercentile", 0.95);
+        ReflectionTestUtils.setField(tailLatencyService, "hedgeMinDelayMs", 10L);
+        ReflectionTestUtils.setField(tailLatencyService, "hedgeMaxRatio", 0.05);
+        ReflectionTestUtils.invokeMethod(tailLatencyService, "createPolicies");
+        policy = tailLatencyService.get("/Person");
+    }
+
+    @Test
+    void connectTimeoutFollowsResponseTimeoutBelowItsCap() {
+        // Ohne Messwerte gilt max-ms; der Verbindungsaufbau bleibt bei seiner Obergrenze
+        assertEquals(Duration.ofMillis(5000), policy.getResponseTimeout());
+        assertEquals(2000, policy.getConnectTimeoutMillis());
+        assertEquals(Duration.ofMillis(10000), policy.getDeadline());
+
+        recordSuccesses(100, 20);
+
+        // p99 (20 ms) x 3 liegt unter min-ms
+        assertEquals(Duration.ofMillis(200), policy.getResponseTimeout());
+        assertEquals(200, policy.getConnectTimeoutMillis());
+    }
+
+    @Test
+    void cancelledAttemptsKeepSlowSamplesInTheWindow() {
+        recordSuccesses(90, 20);
+        for (int i = 0; i < 10; i++) {
+            policy.recordCancelled(TimeUnit.MILLISECONDS.toNanos(400));
+        }
+
+        // p99 ist der abgebrochene Versuch: 400 ms x 3
+        assertEquals(Duration.ofMillis(1200), policy.getResponseTimeout());
+        assertEquals(1200, policy.getConnectTimeoutMillis());
+    }
+
+    private void recordSuccesses(int count, long millis) {
+        for (int i = 0; i < count; i++) {
+            policy.recordSuccess(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.service.TerminologyService.CodeSystemIndex;
+import com.example.demo.service.TerminologyService.Concept;
+import com.example.demo.service.TerminologyService.ValueSetIndex;
+
+import ca.uhn.fhir.context.FhirContext;
+
+/**
+ * Prüft Präfixsuche, Lookup über System und Code sowie das Cache-Tag des
+ * Terminologie-Index.
+ */
+class TerminologyServiceTests {
+
+    private static final String SYSTEM_A = "http://example.org/fhir/CodeSystem/a";
+    private static final String SYSTEM_B = "http://example.org/fhir/CodeSystem/b";
+    private static final String VALUE_SET = "http://example.org/fhir/ValueSet/ab";
+    private static final String ENUMERATED_VALUE_SET = "http://example.org/fhir/ValueSet/enumerated";
+
+    @TempDir
+    Path directory;
+
+    private TerminologyService terminologyService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.createDirectories(directory.resolve("codesystems"));
+        Files.createDirectories(directory.resolve("valuesets"));
+        writeCodeSystem(SYSTEM_A, "Arztbrief");
+        Files.writeString(directory.resolve("codesystems/b.json"), "{\"resourceType\":\"CodeSystem\",\"url\":\""
+                + SYSTEM_B + "\",\"version\":\"1\",\"status\":\"active\",\"content\":\"complete\","
+                + "\"concept\":[{\"code\":\"X1\",\"display\":\"Befundbericht\"}]}");
+        Files.writeString(directory.resolve("valuesets/ab.json"), "{\"resourceType\":\"ValueSet\",\"url\":\""
+                + VALUE_SET + "\",\"version\":\"1\",\"status\":\"active\",\"compose\":{\"include\":["
+                + "{\"system\":\"" + SYSTEM_A + "\"},{\"system\":\"" + SYSTEM_B + "\"}]}}");
+        Files.writeString(directory.resolve("valuesets/enumerated.json"), "{\"resourceType\":\"ValueSet\",\"url\":\""
+                + ENUMERATED_VALUE_SET + "\",\"version\":\"1\",\"status\":\"active\",\"compose\":{\"include\":["
+                + "{\"system\":\"" + SYSTEM_A + "\",\"concept\":[{\"code\":\"X2\"}]},"
+                + "{\"system\":\"" + SYSTEM_B + "\",\"concept\":[{\"code\":\"X1\",\"display\":\"Befund\"}]}]}}");
+
+        terminologyService = new TerminologyService(FhirContext.forR4());
+        ReflectionTestUtils.setField(terminologyService, "codeSystemLocation",
+                "file:" + directory.resolve("codesystems") + "/*.json");
+        ReflectionTestUtils.setField(terminologyService, "valueSetLocation",
+                "file:" + directory.resolve("valuesets") + "/*.json");
+        ReflectionTestUtils.invokeMethod(terminologyService, "buildIndex");
+    }
+
+    @Test
+    void searchReturnsPrefixMatchesInDefinitionOrder() {
+        CodeSystemIndex index = terminologyService.getCodeSystem(SYSTEM_A);
+
+        assertEquals(List.of("X1", "X2", "X3"), codes(index.search(null)));
+        assertEquals(List.of("X1", "X3"), codes(index.search("arzt")));
+        assertEquals(List.of("X3"), codes(index.search("Ärztl ent")));
+        assertEquals(List.of(), codes(index.search("unbekannt")));
+    }
+
+    @Test
+    void valueSetKeepsEqualCodesFromDifferentSystems() {
+        ValueSetIndex index = terminologyService.getValueSet(VALUE_SET);
+
+        assertEquals(4, index.size());
+        assertEquals("Arztbrief", index.lookup(SYSTEM_A, "X1").getDisplay());
+        assertEquals("Befundbericht", index.lookup(SYSTEM_B, "X1").getDisplay());
+        assertEquals(SYSTEM_A, index.lookup("X1").getSystem());
+        assertNull(index.lookup(SYSTEM_B, "X2"));
+    }
+
+    @Test
+    void valueSetIndexesEnumeratedConcepts() {
+        ValueSetIndex index = terminologyService.getValueSet(ENUMERATED_VALUE_SET);
+
+        assertEquals(2, index.size());
+        assertEquals("Pflegebericht", index.lookup(SYSTEM_A, "X2").getDisplay());
+        assertEquals("Befund", index.lookup(SYSTEM_B, "X1").getDisplay());
+        assertNull(index.lookup(SYSTEM_A, "X1"));
+        assertEquals(List.of("X2"), codes(index.search("pflege")));
+    }
+
+    @Test
+    void cacheTagChangesWithContentOfSameVersion() throws IOException {
+        String before = terminologyService.getCodeSystem(SYSTEM_A).getCacheTag();
+        assertEquals(before, terminologyService.getCodeSystem(SYSTEM_A).getCacheTag());
+
+        writeCodeSystem(SYSTEM_A, "Entlassbrief");
+        terminologyService.activate(terminologyService.prepareReload());
+
+        assertNotEquals(before, terminologyService.getCodeSystem(SYSTEM_A).getCacheTag());
+    }
+
+    private void writeCodeSystem(String url, String firstDisplay) throws IOException {
+        Files.writeString(directory.resolve("codesystems/a.json"), "{\"resourceType\":\"CodeSystem\",\"url\":\""
+                + url + "\",\"version\":\"1\",\"status\":\"active\",\"content\":\"complete\",\"concept\":["
+                + "{\"code\":\"X1\",\"display\":\"" + firstDisplay + "\"},"
+                + "{\"code\":\"X2\",\"display\":\"Pflegebericht\"},"
+                + "{\"code\":\"X3\",\"display\":\"Ärztliche Entlassung\"}]}");
+    }
+
+    private static List<String> codes(List<Concept> concepts) {
+        return concepts.stream().map(Concept::getCode).collect(Collectors.toList());
+    }
+}
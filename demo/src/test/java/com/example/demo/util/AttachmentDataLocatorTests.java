@@ -0,0 +1,103 @@
+package com.example.demo.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Prüft, dass {@link AttachmentDataLocator} nur {@code content[i].attachment.data}
+ * der Wurzelressource erfasst und fehlerhafte Werte als Befund meldet.
+ */
+class AttachmentDataLocatorTests {
+
+    @Test
+    void locatesDataOfEveryContentEntry() {
+        String json = "{\"resourceType\":\"DocumentReference\",\"content\":["
+                + "{\"attachment\":{\"contentType\":\"application/pdf\",\"data\":\"QUJD\"}},"
+                + "{\"attachment\":{\"url\":\"Binary/1\"}},"
+                + "{\"attachment\":{\"data\" : \"REVGRw==\"}}]}";
+
+        AttachmentDataLocator locator = locate(json, json.length());
+
+        List<long[]> ranges = locator.getRanges();
+        assertEquals(2, ranges.size());
+        assertRange(json, ranges.get(0), "QUJD", 0);
+        assertRange(json, ranges.get(1), "REVGRw==", 2);
+        assertTrue(locator.getFindings().isEmpty());
+    }
+
+    @Test
+    void ignoresDataOutsideOfContentAttachments() {
+        String json = "{\"resourceType\":\"DocumentReference\","
+                + "\"contained\":[{\"resourceType\":\"Binary\",\"data\":\"AAAA\"}],"
+                + "\"description\":\"\\\"data\\\":\\\"BBBB\\\"\","
+                + "\"content\":[{\"attachment\":{"
+                + "\"extension\":[{\"url\":\"x\",\"valueAttachment\":{\"data\":\"CCCC\"}}],"
+                + "\"title\":\"data\",\"data\":\"RERE\"}}],"
+                + "\"data\":\"EEEE\"}";
+
+        AttachmentDataLocator locator = locate(json, json.length());
+
+        assertEquals(1, locator.getRanges().size());
+        assertRange(json, locator.getRanges().get(0), "RERE", 0);
+    }
+
+    @Test
+    void resultIsIndependentOfBlockBoundaries() {
+        String json = "{\"content\":[{\"attachment\":{\"title\":\"a\\\"b\",\"data\":\"QUJDRA==\"}},"
+                + "{\"attachment\":{\"data\":\"RUZHSA==\"}}]}";
+        AttachmentDataLocator whole = locate(json, json.length());
+        for (int blockSize = 1; blockSize < 8; blockSize++) {
+            AttachmentDataLocator blocks = locate(json, blockSize);
+            assertEquals(whole.getRanges().size(), blocks.getRanges().size());
+            for (int i = 0; i < whole.getRanges().size(); i++) {
+                assertArrayEquals(whole.getRanges().get(i), blocks.getRanges().get(i));
+            }
+        }
+    }
+
+    @Test
+    void reportsEmptyEscapedAndNonBase64Values() {
+        String json = "{\"content\":["
+                + "{\"attachment\":{\"data\":\"\"}},"
+                + "{\"attachment\":{\"data\":\"QU\\/D\"}},"
+                + "{\"attachment\":{\"data\":\"QU D!\"}},"
+                + "{\"attachment\":{\"data\":\"QUJD\"}}]}";
+
+        AttachmentDataLocator locator = locate(json, json.length());
+
+        List<AttachmentDataLocator.Finding> findings = locator.getFindings();
+        assertEquals(3, findings.size());
+        assertFinding(findings.get(0), 0, AttachmentDataLocator.Defect.EMPTY);
+        assertFinding(findings.get(1), 1, AttachmentDataLocator.Defect.ESCAPED);
+        assertFinding(findings.get(2), 2, AttachmentDataLocator.Defect.NOT_BASE64);
+        assertEquals(1, locator.getRanges().size());
+        assertRange(json, locator.getRanges().get(0), "QUJD", 3);
+    }
+
+    private static AttachmentDataLocator locate(String json, int blockSize) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        AttachmentDataLocator locator = new AttachmentDataLocator();
+        for (int offset = 0; offset < bytes.length; offset += blockSize) {
+            locator.update(bytes, offset, Math.min(blockSize, bytes.length - offset));
+        }
+        assertEquals(bytes.length, locator.getPosition());
+        return locator;
+    }
+
+    private static void assertRange(String json, long[] range, String expectedValue, int contentIndex) {
+        assertEquals(expectedValue, json.substring((int) range[0], (int) (range[0] + range[1])));
+        assertEquals(contentIndex, range[2]);
+    }
+
+    private static void assertFinding(AttachmentDataLocator.Finding finding, int contentIndex,
+            AttachmentDataLocator.Defect defect) {
+        assertEquals(contentIndex, finding.getContentIndex());
+        assertEquals(defect, finding.getDefect());
+    }
+}
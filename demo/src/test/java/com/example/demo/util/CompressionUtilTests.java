@@ -0,0 +1,103 @@
+package com.example.demo.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.core.io.buffer.PooledDataBuffer;
+
+import io.netty.buffer.UnpooledByteBufAllocator;
+import reactor.core.publisher.Flux;
+
+/**
+ * Prüft die streamende gzip-Komprimierung: gültiges gzip über beliebige Blockgrenzen
+ * und Freigabe aller Puffer auch bei Abbruch.
+ */
+class CompressionUtilTests {
+
+    private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT);
+
+    @Test
+    void producesValidGzipAcrossChunks() throws IOException {
+        byte[] data = sample(200_000);
+        List<DataBuffer> input = chunks(data, 7_000);
+        AtomicLong nanos = new AtomicLong();
+
+        List<DataBuffer> output = CompressionUtil.gzip(Flux.fromIterable(input), bufferFactory, nanos::addAndGet)
+                .collectList().block();
+
+        assertArrayEquals(data, gunzip(output));
+        assertTrue(nanos.get() > 0);
+        input.forEach(buffer -> assertFalse(((PooledDataBuffer) buffer).isAllocated(), "Input must be released"));
+    }
+
+    @Test
+    void producesValidGzipForEmptyInput() throws IOException {
+        List<DataBuffer> output = CompressionUtil.gzip(Flux.empty(), bufferFactory, nanos -> { })
+                .collectList().block();
+
+        assertEquals(0, gunzip(output).length);
+    }
+
+    @Test
+    void releasesBuffersWhenCancelled() {
+        List<DataBuffer> input = chunks(sample(500_000), 4_096);
+
+        List<DataBuffer> emitted = new ArrayList<>();
+        CompressionUtil.gzip(Flux.fromIterable(input), bufferFactory, nanos -> { })
+                .doOnNext(emitted::add)
+                .take(1)
+                .blockLast();
+
+        input.forEach(buffer -> assertFalse(((PooledDataBuffer) buffer).isAllocated(), "Input must be released"));
+        emitted.forEach(DataBufferUtils::release);
+    }
+
+    private List<DataBuffer> chunks(byte[] data, int size) {
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int offset = 0; offset < data.length; offset += size) {
+            DataBuffer buffer = bufferFactory.allocateBuffer(size);
+            buffer.write(data, offset, Math.min(size, data.length - offset));
+            buffers.add(buffer);
+        }
+        return buffers;
+    }
+
+    private static byte[] sample(int length) {
+        // Teilweise komprimierbar: Zufallsbytes aus einem kleinen Alphabet
+        Random random = new Random(42);
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ('A' + random.nextInt(16));
+        }
+        return data;
+    }
+
+    private static byte[] gunzip(List<DataBuffer> buffers) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        for (DataBuffer buffer : buffers) {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            compressed.write(bytes);
+            DataBufferUtils.release(buffer);
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+            return in.readAllBytes();
+        }
+    }
+}
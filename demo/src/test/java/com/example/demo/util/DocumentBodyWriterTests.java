@@ -0,0 +1,113 @@
+package com.example.demo.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+
+import com.example.demo.dto.DocumentDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+/**
+ * Prüft, dass der gestreamte Anfragekörper Byte für Byte der Jackson-Serialisierung des
+ * {@link DocumentDTO} entspricht, für Inhalt als String, als {@link FileSlice}, ohne
+ * Inhalt und nach gzip-Komprimierung.
+ */
+class DocumentBodyWriterTests {
+
+    // Klein, damit der Inhalt über mehrere Puffer verteilt wird
+    private static final int CHUNK_SIZE = 7;
+    private static final String CONTENT = "SGFsbG8gV2VsdCwgZGllcyBpc3QgZWluIFRlc3Rkb2t1bWVudC4=";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void streamsStringContentLikeJackson() throws IOException {
+        DocumentDTO document = document(CONTENT);
+
+        assertStreamedLikeJackson(document, document);
+    }
+
+    @Test
+    void streamsFileSliceLikeJackson() throws IOException {
+        Path file = tempDir.resolve("body.json");
+        Files.write(file, ("{\"data\":\"" + CONTENT + "\"}").getBytes(StandardCharsets.US_ASCII));
+        DocumentDTO document = document(null);
+        document.setContentSlice(new FileSlice(file, 9, CONTENT.length()));
+
+        assertStreamedLikeJackson(document, document(CONTENT));
+    }
+
+    @Test
+    void streamsMissingContentLikeJackson() throws IOException {
+        DocumentDTO document = document(null);
+
+        assertStreamedLikeJackson(document, document);
+    }
+
+    @Test
+    void gzipBodyInflatesToJacksonSerialization() throws IOException {
+        DocumentDTO document = document(CONTENT);
+        DocumentBodyWriter writer = new DocumentBodyWriter(document, CHUNK_SIZE);
+
+        List<DataBuffer> compressed = CompressionUtil.gzip(writer.write(bufferFactory), bufferFactory, nanos -> { })
+                .collectList().block();
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(document), gunzip(compressed));
+    }
+
+    private void assertStreamedLikeJackson(DocumentDTO document, DocumentDTO expected) throws IOException {
+        DocumentBodyWriter writer = new DocumentBodyWriter(document, CHUNK_SIZE);
+        byte[] jackson = objectMapper.writeValueAsBytes(expected);
+
+        byte[] streamed = join(writer.write(bufferFactory).collectList().block());
+
+        assertEquals(new String(jackson, StandardCharsets.UTF_8), new String(streamed, StandardCharsets.UTF_8));
+        assertArrayEquals(jackson, streamed);
+        assertEquals(jackson.length, writer.getContentLength());
+    }
+
+    /**
+     * DTO mit Sonderzeichen in den kleinen Feldern, die Jackson maskiert bzw. als UTF-8 schreibt.
+     */
+    private static DocumentDTO document(String contentB64) {
+        return new DocumentDTO("PT130102", "pät\"1\\", "v/1\n", "17.05.2024", contentB64);
+    }
+
+    private static byte[] join(List<DataBuffer> buffers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (DataBuffer buffer : buffers) {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            out.write(bytes, 0, bytes.length);
+            DataBufferUtils.release(buffer);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(List<DataBuffer> buffers) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(join(buffers)))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.demo.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Prüft das Einlesen von Teildaten in beiden Formaten und den Vergleich in der
+ * gröberen Genauigkeit.
+ */
+class PartialDateTests {
+
+    @Test
+    void readsMappingFormatsWithTheirPrecision() {
+        PartialDate day = PartialDate.parseDto("17.05.2024");
+        PartialDate month = PartialDate.parseDto("05.2024");
+        PartialDate year = PartialDate.parseDto("2024");
+
+        assertEquals(LocalDate.of(2024, 5, 17), day.getStart());
+        assertEquals(ChronoUnit.DAYS, day.getPrecision());
+        assertEquals(LocalDate.of(2024, 5, 1), month.getStart());
+        assertEquals(ChronoUnit.MONTHS, month.getPrecision());
+        assertEquals(LocalDate.of(2024, 1, 1), year.getStart());
+        assertEquals(ChronoUnit.YEARS, year.getPrecision());
+        assertEquals("2024-05-17", day.toFhirString());
+        assertEquals("2024-05", month.toFhirString());
+        assertEquals("2024", year.toFhirString());
+    }
+
+    @Test
+    void readsFhirFormats() {
+        assertEquals("2024-05-17", PartialDate.parseFhir("2024-05-17").toFhirString());
+        assertEquals("2024-05", PartialDate.parseFhir("2024-05").toFhirString());
+        assertEquals("2024", PartialDate.parseFhir("2024").toFhirString());
+    }
+
+    @Test
+    void rejectsUnreadableValues() {
+        assertNull(PartialDate.parseDto(null));
+        assertNull(PartialDate.parseDto("2024-05-17"));
+        assertNull(PartialDate.parseDto("31.02.2024"));
+        assertNull(PartialDate.parseDto("13.2024"));
+        assertNull(PartialDate.parseDto("20x4"));
+        assertNull(PartialDate.parseFhir("17.05.2024"));
+        assertNull(PartialDate.parseFhir("2024-5-17"));
+    }
+
+    @Test
+    void comparesAtCoarserPrecision() {
+        PartialDate month = PartialDate.parseDto("05.2024");
+
+        assertEquals(0, month.compareAtPrecision(PartialDate.parseFhir("2024-05-17")));
+        assertTrue(month.compareAtPrecision(PartialDate.parseFhir("2024-06-01")) < 0);
+        assertTrue(month.compareAtPrecision(PartialDate.parseFhir("2024-04-30")) > 0);
+        assertEquals(0, PartialDate.parseDto("17.05.2024").compareAtPrecision(PartialDate.parseFhir("2024")));
+    }
+}
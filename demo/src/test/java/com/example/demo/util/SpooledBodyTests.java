@@ -0,0 +1,116 @@
+package com.example.demo.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Prüft das Auslagern von Anfragekörpern, die Zuordnung der Datenbereiche zu den
+ * content-Einträgen und das Ersetzen der Bereiche durch einen Platzhalter.
+ */
+class SpooledBodyTests {
+
+    private static final String JSON = "{\"resourceType\":\"DocumentReference\",\"content\":["
+            + "{\"attachment\":{\"url\":\"Binary/1\"}},"
+            + "{\"attachment\":{\"data\":\"QUJDREVGR0g=\"}},"
+            + "{\"attachment\":{\"data\":\"SUpL\"}}]}";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void keepsSmallBodiesInMemory() throws IOException {
+        try (SpooledBody body = SpooledBody.read(stream(JSON), 1024, tempDir)) {
+            assertFalse(body.isSpooled());
+            assertEquals(JSON.length(), body.getSize());
+            assertEquals(2, body.getDataRangeCount());
+            assertTrue(body.getDataSlices().isEmpty());
+            assertEquals(JSON, read(body.openStream()));
+        }
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void spoolsLargeBodiesAndMapsSlicesToContentEntries() throws IOException {
+        Path file;
+        try (SpooledBody body = SpooledBody.read(stream(JSON), 16, tempDir)) {
+            assertTrue(body.isSpooled());
+            assertEquals(JSON, read(body.openStream()));
+
+            List<FileSlice> slices = body.getDataSlices();
+            assertEquals(3, slices.size());
+            assertNull(slices.get(0));
+            assertEquals("QUJDREVGR0g=", read(slices.get(1)));
+            assertEquals("SUpL", read(slices.get(2)));
+            file = slices.get(1).getPath();
+            assertTrue(Files.exists(file));
+        }
+        assertFalse(Files.exists(file), "Spool file must be deleted on close");
+    }
+
+    @Test
+    void replacesDataRangesWithPlaceholder() throws IOException {
+        byte[] placeholder = "AA==".getBytes(StandardCharsets.US_ASCII);
+        String expected = JSON.replace("QUJDREVGR0g=", "AA==").replace("SUpL", "AA==");
+        try (SpooledBody body = SpooledBody.read(stream(JSON), 16, tempDir)) {
+            assertEquals(expected, read(body.openStreamWithPlaceholder(placeholder)));
+
+            // Byteweises Lesen liefert denselben Inhalt wie blockweises Lesen
+            StringBuilder single = new StringBuilder();
+            try (InputStream in = body.openStreamWithPlaceholder(placeholder)) {
+                int b;
+                while ((b = in.read()) != -1) {
+                    single.append((char) b);
+                }
+            }
+            assertEquals(expected, single.toString());
+        }
+    }
+
+    @Test
+    void keepsEmptyDataUnchanged() throws IOException {
+        String json = "{\"content\":[{\"attachment\":{\"data\":\"\"}}]}";
+        try (SpooledBody body = SpooledBody.read(stream(json), 8, tempDir)) {
+            assertEquals(1, body.getDataFindings().size());
+            assertEquals(AttachmentDataLocator.Defect.EMPTY, body.getDataFindings().get(0).getDefect());
+            assertEquals(json, read(body.openStreamWithPlaceholder("AA==".getBytes(StandardCharsets.US_ASCII))));
+        }
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String read(FileSlice slice) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) slice.getLength());
+        try (FileChannel channel = slice.openChannel()) {
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // weiterlesen, bis der Bereich vollständig ist
+            }
+        }
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+}